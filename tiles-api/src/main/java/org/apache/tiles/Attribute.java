@@ -127,6 +127,14 @@ public class Attribute implements Serializable {
      */
     private AttributeType type = null;
 
+    /**
+     * Indicates whether the type has been inferred from the value, instead of
+     * being declared.
+     *
+     * @since 2.0.8
+     */
+    private boolean typeInferred = false;
+
     /**
      * The name of the attribute. If it is <code>null</code>, it should be used
      * as an element of a list attribute.
@@ -135,6 +143,13 @@ public class Attribute implements Serializable {
     @Deprecated
     private String name = null;
 
+    /**
+     * The policy to cache the rendered output of this attribute.
+     *
+     * @since 2.0.8
+     */
+    private CachePolicy cachePolicy = null;
+
     /**
      * Constructor.
      *
@@ -160,7 +175,9 @@ public class Attribute implements Serializable {
         this.name = attribute.name;
         this.roles = attribute.roles;
         this.type = attribute.type;
+        this.typeInferred = attribute.typeInferred;
         this.value = attribute.getValue();
+        this.cachePolicy = attribute.cachePolicy;
     }
 
     /**
@@ -316,6 +333,55 @@ public class Attribute implements Serializable {
      */
     public void setType(AttributeType type) {
         this.type = type;
+        typeInferred = false;
+    }
+
+    /**
+     * Sets the type of this attribute, inferred from its value when the
+     * definitions are loaded. An inferred type can be checked again when the
+     * attribute is rendered, while a declared one is always used as it is.
+     *
+     * @param type The inferred attribute type.
+     * @since 2.0.8
+     */
+    public void setInferredType(AttributeType type) {
+        this.type = type;
+        typeInferred = true;
+    }
+
+    /**
+     * Indicates whether the type of this attribute has been inferred from its
+     * value, instead of being declared.
+     *
+     * @return <code>true</code> if the type has been set with
+     * {@link #setInferredType(AttributeType)}.
+     * @since 2.0.8
+     */
+    public boolean isTypeInferred() {
+        return typeInferred;
+    }
+
+    /**
+     * Returns the policy to cache the rendered output of this attribute.
+     *
+     * @return The cache policy, or <code>null</code> if the output must not be
+     * cached.
+     * @since 2.0.8
+     */
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Sets the policy to cache the rendered output of this attribute. Only
+     * attributes that refer to a template or a definition are cached.
+     *
+     * @param cachePolicy The cache policy, or <code>null</code> if the output
+     * must not be cached.
+     * @since 2.0.8
+     */
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
     }
 
     /**
@@ -0,0 +1,283 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes how the rendered output of a definition or of an attribute can be
+ * cached. A policy is created from a specification like:
+ * <pre>
+ * ttl=300; stale=60; vary=locale,param:id,role:admin,attr:selected
+ * </pre>
+ * where:
+ * <ul>
+ * <li><code>ttl</code> is the number of seconds the output is fresh, 300 if
+ * not specified;</li>
+ * <li><code>stale</code> is the number of seconds the output can still be
+ * used after it expires, while it is rendered again by one request, 0 if not
+ * specified;</li>
+ * <li><code>vary</code> is the list of the parts of the request that change
+ * the output: <code>locale</code>, <code>param:</code><em>name</em>,
+ * <code>header:</code><em>name</em>, <code>role:</code><em>name</em> and
+ * <code>attr:</code><em>name</em>, an attribute visible from the caller.</li>
+ * </ul>
+ * The output is cached separately for each combination of the values of the
+ * listed parts only. An attribute that the caller puts and that a template
+ * reads must be listed, otherwise the output rendered for the first caller is
+ * used for all of them. The output is not cached for a request if a listed
+ * attribute is neither a string nor a list of strings.
+ * <p/>
+ * A policy cannot be modified after it has been created.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public final class CachePolicy implements Serializable {
+
+    /**
+     * The default number of seconds the output is fresh.
+     */
+    public static final int DEFAULT_TIME_TO_LIVE = 300;
+
+    /**
+     * The key component that varies the output by locale.
+     */
+    public static final String LOCALE_COMPONENT = "locale";
+
+    /**
+     * The prefix of the key components that vary the output by request
+     * parameter.
+     */
+    public static final String PARAM_COMPONENT_PREFIX = "param:";
+
+    /**
+     * The prefix of the key components that vary the output by request
+     * header.
+     */
+    public static final String HEADER_COMPONENT_PREFIX = "header:";
+
+    /**
+     * The prefix of the key components that vary the output by user role.
+     */
+    public static final String ROLE_COMPONENT_PREFIX = "role:";
+
+    /**
+     * The prefix of the key components that vary the output by attribute
+     * visible from the caller.
+     */
+    public static final String ATTRIBUTE_COMPONENT_PREFIX = "attr:";
+
+    /**
+     * The number of milliseconds the output is fresh.
+     */
+    private final long timeToLive;
+
+    /**
+     * The number of milliseconds the output can be used after it expires.
+     */
+    private final long staleTime;
+
+    /**
+     * The parts of the request that change the output.
+     */
+    private final List<String> keyComponents;
+
+    /**
+     * Constructor.
+     *
+     * @param timeToLive The number of seconds the output is fresh.
+     * @param staleTime The number of seconds the output can be used after it
+     * expires.
+     * @param keyComponents The parts of the request that change the output.
+     */
+    public CachePolicy(long timeToLive, long staleTime,
+            List<String> keyComponents) {
+        if (timeToLive <= 0 || staleTime < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid cache times: ttl must be positive, stale must not be negative");
+        }
+        for (String component : keyComponents) {
+            checkComponent(component);
+        }
+        this.timeToLive = timeToLive * 1000L;
+        this.staleTime = staleTime * 1000L;
+        this.keyComponents = Collections.unmodifiableList(
+                new ArrayList<String>(keyComponents));
+    }
+
+    /**
+     * Creates a policy from its specification.
+     *
+     * @param specification The specification of the policy.
+     * @return The policy, or <code>null</code> if the specification is
+     * <code>null</code> or empty.
+     * @throws IllegalArgumentException If the specification is not valid.
+     */
+    public static CachePolicy parse(String specification) {
+        if (specification == null || specification.trim().length() == 0) {
+            return null;
+        }
+
+        long timeToLive = DEFAULT_TIME_TO_LIVE;
+        long staleTime = 0;
+        List<String> keyComponents = new ArrayList<String>();
+        for (String setting : specification.split(";")) {
+            setting = setting.trim();
+            if (setting.length() == 0) {
+                continue;
+            }
+            int equals = setting.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Invalid cache setting '"
+                        + setting + "' in '" + specification + "'");
+            }
+            String name = setting.substring(0, equals).trim();
+            String value = setting.substring(equals + 1).trim();
+            if ("ttl".equals(name)) {
+                timeToLive = parseSeconds(value, specification);
+            } else if ("stale".equals(name)) {
+                staleTime = parseSeconds(value, specification);
+            } else if ("vary".equals(name)) {
+                for (String component : value.split(",")) {
+                    component = component.trim();
+                    if (component.length() > 0) {
+                        keyComponents.add(component);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown cache setting '"
+                        + name + "' in '" + specification + "'");
+            }
+        }
+        return new CachePolicy(timeToLive, staleTime, keyComponents);
+    }
+
+    /**
+     * Returns the number of milliseconds the output is fresh.
+     *
+     * @return The time to live.
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Returns the number of milliseconds the output can be used after it
+     * expires, while it is rendered again.
+     *
+     * @return The stale time.
+     */
+    public long getStaleTime() {
+        return staleTime;
+    }
+
+    /**
+     * Returns the parts of the request that change the output.
+     *
+     * @return The key components, as a read-only list.
+     */
+    public List<String> getKeyComponents() {
+        return keyComponents;
+    }
+
+    /**
+     * Returns the specification of this policy, that can be parsed to create
+     * an equal policy.
+     *
+     * @return The specification.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("ttl=").append(timeToLive / 1000);
+        builder.append("; stale=").append(staleTime / 1000);
+        if (!keyComponents.isEmpty()) {
+            builder.append("; vary=");
+            for (int i = 0; i < keyComponents.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(keyComponents.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CachePolicy)) {
+            return false;
+        }
+        CachePolicy policy = (CachePolicy) obj;
+        return timeToLive == policy.timeToLive
+                && staleTime == policy.staleTime
+                && keyComponents.equals(policy.keyComponents);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode() {
+        return (int) (timeToLive ^ (staleTime << 16)) ^ keyComponents.hashCode();
+    }
+
+    /**
+     * Parses a number of seconds.
+     *
+     * @param value The value to parse.
+     * @param specification The whole specification, for error messages.
+     * @return The number of seconds.
+     */
+    private static long parseSeconds(String value, String specification) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of seconds '"
+                    + value + "' in '" + specification + "'");
+        }
+    }
+
+    /**
+     * Checks that a key component is supported.
+     *
+     * @param component The key component.
+     */
+    private static void checkComponent(String component) {
+        if (LOCALE_COMPONENT.equals(component)) {
+            return;
+        }
+        String[] prefixes = {PARAM_COMPONENT_PREFIX, HEADER_COMPONENT_PREFIX,
+                ROLE_COMPONENT_PREFIX, ATTRIBUTE_COMPONENT_PREFIX};
+        for (String prefix : prefixes) {
+            if (component.startsWith(prefix)
+                    && component.length() > prefix.length()) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cache key component '"
+                + component + "'");
+    }
+}
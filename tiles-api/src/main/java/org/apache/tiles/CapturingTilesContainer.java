@@ -0,0 +1,80 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A container that can render definitions and attributes into a writer,
+ * instead of the response. The request objects must allow the output to be
+ * captured, as the ones of servlet and JSP environments do.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface CapturingTilesContainer extends TilesContainer {
+
+    /**
+     * Renders a definition into a writer, instead of the response. The
+     * output of the templates and of the definitions included by the
+     * definition is written into the writer too.
+     *
+     * @param definition The name of the definition to render.
+     * @param writer The writer that receives the output.
+     * @param requestItems the current request objects.
+     * @throws TilesException If something goes wrong during rendering, or if
+     * the output of the request cannot be captured.
+     * @throws IOException If something goes wrong during writing to the output.
+     */
+    void renderTo(String definition, Writer writer, Object... requestItems)
+        throws TilesException, IOException;
+
+    /**
+     * Renders an attribute into a writer, instead of the response. Unlike
+     * {@link TilesContainer#render(Attribute, Writer, Object...)}, the output
+     * of attributes of "template" and "definition" type is written into the
+     * writer too.
+     *
+     * @param attribute The attribute to render.
+     * @param writer The writer that receives the output.
+     * @param requestItems the current request objects.
+     * @throws TilesException If something goes wrong during rendering, or if
+     * the output of the request cannot be captured.
+     * @throws IOException If something goes wrong during writing to the output.
+     */
+    void renderTo(Attribute attribute, Writer writer, Object... requestItems)
+        throws TilesException, IOException;
+
+    /**
+     * Renders a definition and returns its output.
+     *
+     * @param definition The name of the definition to render.
+     * @param requestItems the current request objects.
+     * @return The output of the definition.
+     * @throws TilesException If something goes wrong during rendering, or if
+     * the output of the request cannot be captured.
+     * @throws IOException If something goes wrong during writing to the output.
+     * @see #renderTo(String, Writer, Object...)
+     */
+    String renderToString(String definition, Object... requestItems)
+        throws TilesException, IOException;
+}
@@ -65,6 +65,12 @@ public class Definition {
      */
     protected String preparer = null;
 
+    /**
+     * The policy to cache the rendered output of this definition.
+     * @since 2.0.8
+     */
+    protected CachePolicy cachePolicy = null;
+
 
     /**
      * Constructor.
@@ -89,6 +95,7 @@ public class Definition {
         this.roles = definition.roles;
         this.preparer = definition.preparer;
         this.inherit = definition.inherit;
+        this.cachePolicy = definition.cachePolicy;
     }
 
     /**
@@ -304,6 +311,29 @@ public class Definition {
         return preparer;
     }
 
+    /**
+     * Returns the policy to cache the rendered output of this definition.
+     * It is not inherited by the definitions that extend this one.
+     *
+     * @return The cache policy, or <code>null</code> if the output must not be
+     * cached.
+     * @since 2.0.8
+     */
+    public CachePolicy getCachePolicy() {
+        return cachePolicy;
+    }
+
+    /**
+     * Sets the policy to cache the rendered output of this definition.
+     *
+     * @param cachePolicy The cache policy, or <code>null</code> if the output
+     * must not be cached.
+     * @since 2.0.8
+     */
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
     /**
      * Set associated preparerInstance URL.
      *
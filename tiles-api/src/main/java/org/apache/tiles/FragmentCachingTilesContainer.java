@@ -0,0 +1,45 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles;
+
+/**
+ * A container that caches the rendered output of the definitions and
+ * attributes that have a {@link CachePolicy}, and whose cached output can be
+ * removed when it is not valid anymore.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface FragmentCachingTilesContainer extends TilesContainer {
+
+    /**
+     * Removes the cached rendered output of a definition, or of the
+     * attributes with the given value.
+     *
+     * @param name The name of the definition, or the value of the attributes.
+     */
+    void invalidateFragments(String name);
+
+    /**
+     * Removes all the cached rendered output.
+     */
+    void invalidateAllFragments();
+}
@@ -0,0 +1,313 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Generates synthetic definition catalogs, to measure how Tiles behaves with
+ * more definitions than the ones found in the test files.
+ * <p/>
+ * Definitions are generated in inheritance chains: the first definition of
+ * each chain has a template and all the attributes, and every other
+ * definition extends the previous one and overrides one of its attributes.
+ * A localized catalog overrides one definition every
+ * <code>localizedStep</code> definitions.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DefinitionCatalogGenerator {
+
+    /**
+     * The prefix of the names of the generated definitions.
+     */
+    public static final String DEFINITION_PREFIX = "definition.";
+
+    /**
+     * The number of definitions.
+     */
+    private int count;
+
+    /**
+     * The length of the inheritance chains.
+     */
+    private int depth;
+
+    /**
+     * The number of attributes of each definition.
+     */
+    private int attributes;
+
+    /**
+     * Overrides one definition every <code>localizedStep</code> definitions
+     * in the localized catalogs.
+     */
+    private int localizedStep = 10;
+
+    /**
+     * Constructor.
+     *
+     * @param count The number of definitions.
+     * @param depth The length of the inheritance chains. <code>1</code>
+     * means that no definition extends another one.
+     * @param attributes The number of attributes of each definition.
+     */
+    public DefinitionCatalogGenerator(int count, int depth, int attributes) {
+        if (count < 1 || depth < 1 || attributes < 1) {
+            throw new IllegalArgumentException(
+                    "The count, the depth and the attributes must be positive");
+        }
+        this.count = count;
+        this.depth = depth;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Sets how many definitions are overridden in localized catalogs.
+     *
+     * @param localizedStep One definition every <code>localizedStep</code>
+     * definitions is overridden.
+     */
+    public void setLocalizedStep(int localizedStep) {
+        if (localizedStep < 1) {
+            throw new IllegalArgumentException(
+                    "The localized step must be positive");
+        }
+        this.localizedStep = localizedStep;
+    }
+
+    /**
+     * Returns the name of a generated definition.
+     *
+     * @param index The index of the definition, between <code>0</code>
+     * and the number of definitions.
+     * @return The name of the definition.
+     */
+    public static String getDefinitionName(int index) {
+        return DEFINITION_PREFIX + index;
+    }
+
+    /**
+     * Returns the index of the last definition of the first inheritance
+     * chain, i.e. the deepest definition.
+     *
+     * @return The index of the deepest definition.
+     */
+    public int getDeepestIndex() {
+        return Math.min(depth, count) - 1;
+    }
+
+    /**
+     * Writes the base catalog.
+     *
+     * @param writer The writer that receives the catalog.
+     * @throws IOException If the catalog cannot be written.
+     */
+    public void write(Writer writer) throws IOException {
+        write(writer, null);
+    }
+
+    /**
+     * Writes a catalog.
+     *
+     * @param writer The writer that receives the catalog.
+     * @param locale The locale of the catalog, or <code>null</code> to write
+     * the base catalog.
+     * @throws IOException If the catalog cannot be written.
+     */
+    public void write(Writer writer, Locale locale) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+        writer.write("<!DOCTYPE tiles-definitions PUBLIC\n");
+        writer.write("       \"-//Apache Software Foundation//DTD Tiles "
+                + "Configuration 2.0//EN\"\n");
+        writer.write("       \"http://tiles.apache.org/dtds/"
+                + "tiles-config_2_0.dtd\">\n");
+        writer.write("<tiles-definitions>\n");
+        for (int i = 0; i < count; i++) {
+            if (locale == null) {
+                writeDefinition(writer, i, "");
+            } else if (i % localizedStep == 0) {
+                writeDefinition(writer, i, "_" + locale);
+            }
+        }
+        writer.write("</tiles-definitions>\n");
+        writer.flush();
+    }
+
+    /**
+     * Writes a catalog into memory, to be read without touching the file
+     * system.
+     *
+     * @param locale The locale of the catalog, or <code>null</code> to write
+     * the base catalog.
+     * @return The catalog, encoded in UTF-8.
+     * @throws IOException If the catalog cannot be written.
+     */
+    public byte[] toByteArray(Locale locale) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(stream, "UTF-8");
+        write(writer, locale);
+        writer.close();
+        return stream.toByteArray();
+    }
+
+    /**
+     * Writes the base catalog and the localized catalogs into files. The
+     * localized files are named as Tiles looks for them, e.g.
+     * <code>defs_fr.xml</code> for <code>defs.xml</code>.
+     *
+     * @param directory The directory of the files.
+     * @param baseName The name of the base file, without the extension.
+     * @param locales The locales of the localized catalogs.
+     * @return The base file.
+     * @throws IOException If the catalogs cannot be written.
+     */
+    public File writeFiles(File directory, String baseName, Locale... locales)
+            throws IOException {
+        File file = new File(directory, baseName + ".xml");
+        writeFile(file, null);
+        for (Locale locale : locales) {
+            writeFile(new File(directory, baseName + "_" + locale + ".xml"),
+                    locale);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a catalog into a file.
+     *
+     * @param file The file.
+     * @param locale The locale of the catalog, or <code>null</code> to write
+     * the base catalog.
+     * @throws IOException If the catalog cannot be written.
+     */
+    private void writeFile(File file, Locale locale) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                "UTF-8");
+        try {
+            write(writer, locale);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes a single definition.
+     *
+     * @param writer The writer.
+     * @param index The index of the definition.
+     * @param suffix The suffix of the attribute values.
+     * @throws IOException If the definition cannot be written.
+     */
+    private void writeDefinition(Writer writer, int index, String suffix)
+            throws IOException {
+        int position = index % depth;
+        writer.write("  <definition name=\"");
+        writer.write(getDefinitionName(index));
+        if (position == 0) {
+            writer.write("\" template=\"/layout" + (index / depth) % 10
+                    + ".jsp\">\n");
+            for (int j = 0; j < attributes; j++) {
+                writeAttribute(writer, j, index, suffix);
+            }
+        } else {
+            writer.write("\" extends=\"");
+            writer.write(getDefinitionName(index - 1));
+            writer.write("\">\n");
+            writeAttribute(writer, position % attributes, index, suffix);
+        }
+        writer.write("  </definition>\n");
+    }
+
+    /**
+     * Writes a single attribute. The first attribute is a string, the others
+     * are templates.
+     *
+     * @param writer The writer.
+     * @param attribute The index of the attribute.
+     * @param index The index of the definition.
+     * @param suffix The suffix of the value.
+     * @throws IOException If the attribute cannot be written.
+     */
+    private void writeAttribute(Writer writer, int attribute, int index,
+            String suffix) throws IOException {
+        writer.write("    <put-attribute name=\"attribute" + attribute
+                + "\" value=\"");
+        if (attribute == 0) {
+            writer.write("Title " + index + suffix + "\" type=\"string\"/>\n");
+        } else {
+            writer.write("/tile" + attribute + "_" + index % 100 + suffix
+                    + ".jsp\"/>\n");
+        }
+    }
+
+    /**
+     * Writes a catalog and its localized versions into a directory.
+     * <p/>
+     * Usage: <code>DefinitionCatalogGenerator &lt;directory&gt;
+     * &lt;base name&gt; &lt;count&gt; [&lt;depth&gt; [&lt;attributes&gt;
+     * [&lt;locale&gt;...]]]</code>
+     *
+     * @param args The arguments.
+     * @throws IOException If the catalogs cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: DefinitionCatalogGenerator <directory>"
+                    + " <base name> <count> [<depth> [<attributes>"
+                    + " [<locale>...]]]");
+            System.exit(1);
+        }
+        int depth = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int attributes = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        Locale[] locales = new Locale[Math.max(args.length - 5, 0)];
+        for (int i = 0; i < locales.length; i++) {
+            locales[i] = parseLocale(args[i + 5]);
+        }
+        DefinitionCatalogGenerator generator = new DefinitionCatalogGenerator(
+                Integer.parseInt(args[2]), depth, attributes);
+        File file = generator.writeFiles(new File(args[0]), args[1], locales);
+        System.out.println("Written " + file);
+    }
+
+    /**
+     * Parses a locale, written as in <code>en_US</code>.
+     *
+     * @param value The locale, as a string.
+     * @return The locale.
+     */
+    private static Locale parseLocale(String value) {
+        String[] parts = value.split("_", 3);
+        if (parts.length == 1) {
+            return new Locale(parts[0]);
+        } else if (parts.length == 2) {
+            return new Locale(parts[0], parts[1]);
+        }
+        return new Locale(parts[0], parts[1], parts[2]);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.definition.DefinitionsImpl;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DefinitionsImpl#getDefinition(String, Locale)} when many
+ * threads look up definitions at the same time, as it happens in a loaded
+ * web application.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DefinitionsLookupBenchmark {
+
+    /**
+     * The number of definitions.
+     */
+    @Param({"100", "10000"})
+    public int count;
+
+    /**
+     * The definitions.
+     */
+    private DefinitionsImpl definitions;
+
+    /**
+     * The names of the definitions.
+     */
+    private String[] names;
+
+    /**
+     * The position of a thread in the names of the definitions. Each thread
+     * starts at a different position, so that threads do not look up the
+     * same definition at the same time.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /**
+         * The current position.
+         */
+        private int index = ThreadLocalRandom.current().nextInt(1 << 20);
+
+        /**
+         * Returns the next name to look up.
+         *
+         * @param names The names.
+         * @return The next name.
+         */
+        public String next(String[] names) {
+            index = (index + 1) % names.length;
+            return names[index];
+        }
+    }
+
+    /**
+     * Reads a synthetic catalog, with its French version.
+     *
+     * @throws Exception If the catalog cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        DefinitionCatalogGenerator generator = new DefinitionCatalogGenerator(
+                count, 3, 5);
+        DigesterDefinitionsReader reader = new DigesterDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        definitions = new DefinitionsImpl();
+        definitions.addDefinitions(reader.read(new ByteArrayInputStream(
+                generator.toByteArray(null))));
+        definitions.addDefinitions(reader.read(new ByteArrayInputStream(
+                generator.toByteArray(Locale.FRENCH))), Locale.FRENCH);
+        names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = DefinitionCatalogGenerator.getDefinitionName(i);
+        }
+    }
+
+    /**
+     * Looks up base definitions.
+     *
+     * @param cursor The position of the thread.
+     * @return The definition.
+     */
+    @Benchmark
+    public Definition base(Cursor cursor) {
+        return definitions.getDefinition(cursor.next(names), null);
+    }
+
+    /**
+     * Looks up definitions in a locale that overrides some of them.
+     *
+     * @param cursor The position of the thread.
+     * @return The definition.
+     */
+    @Benchmark
+    public Definition localized(Cursor cursor) {
+        return definitions.getDefinition(cursor.next(names), Locale.FRENCH);
+    }
+
+    /**
+     * Looks up definitions in a locale that has no definitions, falling back
+     * to the base ones.
+     *
+     * @param cursor The position of the thread.
+     * @return The definition.
+     */
+    @Benchmark
+    public Definition fallback(Cursor cursor) {
+        return definitions.getDefinition(cursor.next(names), Locale.GERMAN);
+    }
+}
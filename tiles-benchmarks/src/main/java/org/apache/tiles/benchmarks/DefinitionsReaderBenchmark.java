@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.definition.DefinitionsReader;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.apache.tiles.definition.sax.SAXDefinitionsReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time needed to read a definitions file, with a small file and
+ * with a synthetic catalog of 10000 definitions. The file is read from
+ * memory, so only the parsing is measured.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DefinitionsReaderBenchmark {
+
+    /**
+     * The number of definitions of the file.
+     */
+    @Param({"10", "10000"})
+    public int count;
+
+    /**
+     * The reader: <code>digester</code> for
+     * {@link DigesterDefinitionsReader}, <code>sax</code> for
+     * {@link SAXDefinitionsReader}.
+     */
+    @Param({"digester", "sax"})
+    public String readerType;
+
+    /**
+     * The reader.
+     */
+    private DefinitionsReader reader;
+
+    /**
+     * The content of the file.
+     */
+    private byte[] content;
+
+    /**
+     * Generates the file and creates the reader.
+     *
+     * @throws Exception If the reader cannot be created.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        content = new DefinitionCatalogGenerator(count, 3, 5)
+                .toByteArray(null);
+        if ("sax".equals(readerType)) {
+            reader = new SAXDefinitionsReader();
+        } else {
+            reader = new DigesterDefinitionsReader();
+        }
+        reader.init(new HashMap<String, String>());
+    }
+
+    /**
+     * Reads the file.
+     *
+     * @return The read definitions.
+     * @throws Exception If the file cannot be read.
+     */
+    @Benchmark
+    public Map<String, Definition> read() throws Exception {
+        return reader.read(new ByteArrayInputStream(content));
+    }
+}
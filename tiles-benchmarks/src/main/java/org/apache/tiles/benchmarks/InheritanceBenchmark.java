@@ -0,0 +1,122 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.definition.DefinitionsImpl;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the resolution of inheritance in
+ * {@link DefinitionsImpl#resolveInheritances()}, with inheritance chains
+ * of different lengths and the same number of definitions.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InheritanceBenchmark {
+
+    /**
+     * The number of definitions.
+     */
+    @Param({"1000"})
+    public int count;
+
+    /**
+     * The length of the inheritance chains.
+     */
+    @Param({"2", "10", "50"})
+    public int depth;
+
+    /**
+     * The definitions, as read.
+     */
+    private Map<String, Definition> sources;
+
+    /**
+     * The definitions, with the inheritance resolved.
+     */
+    private DefinitionsImpl definitions;
+
+    /**
+     * Reads the definitions.
+     *
+     * @throws Exception If the definitions cannot be read.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        DigesterDefinitionsReader reader = new DigesterDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        sources = reader.read(new ByteArrayInputStream(
+                new DefinitionCatalogGenerator(count, depth, 5)
+                        .toByteArray(null)));
+        definitions = new DefinitionsImpl();
+        definitions.addDefinitions(sources);
+    }
+
+    /**
+     * Resolves again the inheritance of all the definitions.
+     *
+     * @return The definitions.
+     * @throws Exception If the inheritance cannot be resolved.
+     */
+    @Benchmark
+    public DefinitionsImpl resolveInheritances() throws Exception {
+        definitions.resolveInheritances();
+        return definitions;
+    }
+
+    /**
+     * Adds the definitions to an empty container, which resolves their
+     * inheritance.
+     *
+     * @return The definitions.
+     * @throws Exception If the inheritance cannot be resolved.
+     */
+    @Benchmark
+    public DefinitionsImpl addDefinitions() throws Exception {
+        DefinitionsImpl newDefinitions = new DefinitionsImpl();
+        newDefinitions.addDefinitions(sources);
+        return newDefinitions;
+    }
+}
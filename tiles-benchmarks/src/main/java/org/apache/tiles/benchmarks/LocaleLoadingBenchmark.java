@@ -0,0 +1,169 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+import org.apache.tiles.harness.HarnessRequest;
+import org.apache.tiles.harness.InMemoryTilesApplicationContext;
+import org.apache.tiles.harness.InMemoryTilesRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the first request of a locale to {@link UrlDefinitionsFactory},
+ * that loads the localized sources of that locale. Every invocation uses a
+ * new factory, in which only the base definitions have been loaded.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocaleLoadingBenchmark {
+
+    /**
+     * The number of definitions.
+     */
+    @Param({"100", "10000"})
+    public int count;
+
+    /**
+     * The directory of the definition files.
+     */
+    private File directory;
+
+    /**
+     * The base definition file.
+     */
+    private File file;
+
+    /**
+     * The factory, with the base definitions loaded.
+     */
+    private UrlDefinitionsFactory factory;
+
+    /**
+     * The application context of the requests.
+     */
+    private InMemoryTilesApplicationContext applicationContext;
+
+    /**
+     * Writes the definition files, in English, French and Italian.
+     *
+     * @throws Exception If the files cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void setUpFiles() throws Exception {
+        directory = File.createTempFile("tiles-benchmarks", "");
+        directory.delete();
+        directory.mkdir();
+        file = new DefinitionCatalogGenerator(count, 3, 5).writeFiles(
+                directory, "tiles-defs", Locale.ENGLISH, Locale.FRENCH,
+                Locale.ITALIAN);
+        applicationContext = new InMemoryTilesApplicationContext(
+                new HashMap<String, String>());
+    }
+
+    /**
+     * Deletes the definition files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDownFiles() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Creates a new factory and loads the base definitions.
+     *
+     * @throws Exception If the definitions cannot be loaded.
+     */
+    @Setup(Level.Invocation)
+    public void setUpFactory() throws Exception {
+        factory = new UrlDefinitionsFactory();
+        factory.init(new HashMap<String, String>());
+        factory.addSource(file.toURI().toURL());
+        factory.readDefinitions();
+    }
+
+    /**
+     * Looks up a definition for a locale that has not been loaded yet.
+     *
+     * @return The definition.
+     * @throws Exception If the definitions cannot be loaded.
+     */
+    @Benchmark
+    public Definition firstHit() throws Exception {
+        return factory.getDefinition(DefinitionCatalogGenerator
+                .getDefinitionName(0), createRequestContext(Locale.FRENCH));
+    }
+
+    /**
+     * Looks up a definition for a country-specific locale, that loads the
+     * definitions of its language too.
+     *
+     * @return The definition.
+     * @throws Exception If the definitions cannot be loaded.
+     */
+    @Benchmark
+    public Definition firstHitWithFallback() throws Exception {
+        return factory.getDefinition(DefinitionCatalogGenerator
+                .getDefinitionName(0), createRequestContext(
+                Locale.CANADA_FRENCH));
+    }
+
+    /**
+     * Creates the context of a request.
+     *
+     * @param locale The locale of the request.
+     * @return The request context.
+     */
+    private InMemoryTilesRequestContext createRequestContext(Locale locale) {
+        return new InMemoryTilesRequestContext(applicationContext,
+                new HarnessRequest(locale, null, null, null));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.Definition;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.access.TilesAccess;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.definition.Definitions;
+import org.apache.tiles.definition.DefinitionsFactory;
+import org.apache.tiles.definition.DefinitionsImpl;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.apache.tiles.harness.HarnessRequest;
+import org.apache.tiles.harness.InMemoryTilesApplicationContext;
+import org.apache.tiles.harness.InMemoryTilesContextFactory;
+import org.apache.tiles.harness.Template;
+import org.apache.tiles.harness.TemplateContext;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.listener.MetricsRenderListener;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BasicTilesContainer#render(String, Object...)} without a
+ * servlet container, using the in-memory contexts of the load harness. The
+ * templates only write their path, so the benchmark measures what Tiles does
+ * around them.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    /**
+     * The render listener added to the container: <code>none</code> or
+     * <code>metrics</code> for {@link MetricsRenderListener}.
+     */
+    @Param({"none", "metrics"})
+    public String listener;
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The request.
+     */
+    private HarnessRequest request;
+
+    /**
+     * The writer of the request.
+     */
+    private StringWriter output;
+
+    /**
+     * The name of the rendered definition.
+     */
+    private String definitionName;
+
+    /**
+     * A string attribute.
+     */
+    private Attribute stringAttribute;
+
+    /**
+     * The writer of the attributes.
+     */
+    private StringWriter writer;
+
+    /**
+     * Creates the container.
+     *
+     * @throws Exception If the container cannot be created.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        DefinitionCatalogGenerator generator = new DefinitionCatalogGenerator(
+                100, 3, 5);
+        DigesterDefinitionsReader reader = new DigesterDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        final DefinitionsImpl definitions = new DefinitionsImpl();
+        definitions.addDefinitions(reader.read(new ByteArrayInputStream(
+                generator.toByteArray(null))));
+        definitionName = DefinitionCatalogGenerator.getDefinitionName(
+                generator.getDeepestIndex());
+
+        container = new BasicTilesContainer();
+        container.setDefinitionsFactory(new DefinitionsFactory() {
+
+            public void init(Map<String, String> params) {
+            }
+
+            public Definition getDefinition(String name,
+                    TilesRequestContext tilesContext) {
+                return definitions.getDefinition(name, tilesContext
+                        .getRequestLocale());
+            }
+
+            public void addSource(Object source) {
+            }
+
+            public Definitions readDefinitions() {
+                return definitions;
+            }
+        });
+        InMemoryTilesApplicationContext applicationContext =
+            new InMemoryTilesApplicationContext(new HashMap<String, String>());
+        for (int i = 0; i < 10; i++) {
+            final String path = "/layout" + i + ".jsp";
+            applicationContext.registerTemplate(path, new Template() {
+
+                public void render(TemplateContext context)
+                        throws IOException {
+                    context.write(path);
+                }
+            });
+        }
+        container.setApplicationContext(applicationContext);
+        container.setContextFactory(new InMemoryTilesContextFactory());
+        TilesAccess.setContainer(applicationContext, container);
+        container.setPreparerFactory(new BasicPreparerFactory());
+        if ("metrics".equals(listener)) {
+            MetricsRenderListener metrics = new MetricsRenderListener();
+            metrics.init(new HashMap<String, String>());
+            container.addRenderListener(metrics);
+        }
+
+        output = new StringWriter();
+        request = new HarnessRequest(Locale.ENGLISH, null,
+                new HashMap<String, Object>(), output);
+        stringAttribute = new Attribute("title", "Title", null,
+                AttributeType.STRING);
+        writer = new StringWriter();
+    }
+
+    /**
+     * Renders a definition at the end of an inheritance chain.
+     *
+     * @return The output.
+     * @throws Exception If the definition cannot be rendered.
+     */
+    @Benchmark
+    public String renderDefinition() throws Exception {
+        reset();
+        container.render(definitionName, request);
+        return output.toString();
+    }
+
+    /**
+     * Renders a string attribute.
+     *
+     * @return The output.
+     * @throws Exception If the attribute cannot be rendered.
+     */
+    @Benchmark
+    public String renderStringAttribute() throws Exception {
+        reset();
+        writer.getBuffer().setLength(0);
+        container.render(stringAttribute, writer, request);
+        return writer.toString();
+    }
+
+    /**
+     * Prepares the request for a new rendering: the request scope and the
+     * output are cleared, the session scope is kept.
+     */
+    private void reset() {
+        request.getRequestScope().clear();
+        output.getBuffer().setLength(0);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shale.test.mock.MockHttpServletRequest;
+import org.apache.shale.test.mock.MockHttpServletResponse;
+import org.apache.shale.test.mock.MockHttpSession;
+import org.apache.shale.test.mock.MockServletContext;
+import org.apache.tiles.servlet.context.ServletTilesRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the maps that wrap the scopes of a servlet request, as they are
+ * returned by {@link ServletTilesRequestContext}: lookups, updates and
+ * iterations.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScopeMapBenchmark {
+
+    /**
+     * The number of attributes, parameters and headers of the request.
+     */
+    private static final int SIZE = 20;
+
+    /**
+     * The request scope.
+     */
+    private Map<String, Object> requestScope;
+
+    /**
+     * The parameters.
+     */
+    private Map<String, String> param;
+
+    /**
+     * The headers.
+     */
+    private Map<String, String> header;
+
+    /**
+     * Creates the request and its maps.
+     */
+    @Setup
+    public void setUp() {
+        MockServletContext servletContext = new MockServletContext();
+        MockHttpServletRequest request = new MockHttpServletRequest(
+                new MockHttpSession(servletContext));
+        for (int i = 0; i < SIZE; i++) {
+            request.setAttribute("attribute" + i, "value" + i);
+            request.addParameter("param" + i, "value" + i);
+            request.addHeader("header" + i, "value" + i);
+        }
+        ServletTilesRequestContext context = new ServletTilesRequestContext(
+                servletContext, request, new MockHttpServletResponse());
+        requestScope = context.getRequestScope();
+        param = context.getParam();
+        header = context.getHeader();
+    }
+
+    /**
+     * Gets a request attribute.
+     *
+     * @return The attribute.
+     */
+    @Benchmark
+    public Object requestScopeGet() {
+        return requestScope.get("attribute10");
+    }
+
+    /**
+     * Checks whether a request attribute exists.
+     *
+     * @return <code>true</code> if the attribute exists.
+     */
+    @Benchmark
+    public boolean requestScopeContainsKey() {
+        return requestScope.containsKey("attribute10");
+    }
+
+    /**
+     * Puts and removes a request attribute.
+     *
+     * @return The removed attribute.
+     */
+    @Benchmark
+    public Object requestScopePutRemove() {
+        requestScope.put("temporary", "value");
+        return requestScope.remove("temporary");
+    }
+
+    /**
+     * Iterates over the request attributes.
+     *
+     * @param blackhole Consumes the entries.
+     */
+    @Benchmark
+    public void requestScopeIterate(Blackhole blackhole) {
+        for (Map.Entry<String, Object> entry : requestScope.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    /**
+     * Gets a parameter.
+     *
+     * @return The parameter.
+     */
+    @Benchmark
+    public String paramGet() {
+        return param.get("param10");
+    }
+
+    /**
+     * Iterates over the parameters.
+     *
+     * @param blackhole Consumes the entries.
+     */
+    @Benchmark
+    public void paramIterate(Blackhole blackhole) {
+        for (Map.Entry<String, String> entry : param.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    /**
+     * Gets a header.
+     *
+     * @return The header.
+     */
+    @Benchmark
+    public String headerGet() {
+        return header.get("header10");
+    }
+
+    /**
+     * Gets the number of headers.
+     *
+     * @return The number of headers.
+     */
+    @Benchmark
+    public int headerSize() {
+        return header.size();
+    }
+}
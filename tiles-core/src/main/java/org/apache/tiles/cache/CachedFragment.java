@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.cache;
+
+/**
+ * The rendered output of a definition or of an attribute, kept in a
+ * {@link FragmentCache}. It cannot be modified after it has been created.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class CachedFragment {
+
+    /**
+     * The name of the rendered definition or attribute.
+     */
+    private String name;
+
+    /**
+     * The rendered output.
+     */
+    private String content;
+
+    /**
+     * The time until which the output is fresh, in milliseconds.
+     */
+    private long freshUntil;
+
+    /**
+     * The time until which the output can still be used while it is rendered
+     * again, in milliseconds.
+     */
+    private long staleUntil;
+
+    /**
+     * Constructor.
+     *
+     * @param name The name of the rendered definition or attribute.
+     * @param content The rendered output.
+     * @param freshUntil The time until which the output is fresh, in
+     * milliseconds.
+     * @param staleUntil The time until which the output can still be used
+     * while it is rendered again, in milliseconds.
+     */
+    public CachedFragment(String name, String content, long freshUntil,
+            long staleUntil) {
+        this.name = name;
+        this.content = content;
+        this.freshUntil = freshUntil;
+        this.staleUntil = staleUntil;
+    }
+
+    /**
+     * Returns the name of the rendered definition or attribute.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the rendered output.
+     *
+     * @return The content.
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * Checks whether the output is fresh.
+     *
+     * @param now The current time, in milliseconds.
+     * @return <code>true</code> if the output can be used without rendering
+     * it again.
+     */
+    public boolean isFresh(long now) {
+        return now < freshUntil;
+    }
+
+    /**
+     * Checks whether the output has expired and cannot be used anymore.
+     *
+     * @param now The current time, in milliseconds.
+     * @return <code>true</code> if the output cannot be used, not even while
+     * it is rendered again.
+     */
+    public boolean isExpired(long now) {
+        return now >= staleUntil;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tiles.CachePolicy;
+
+/**
+ * Keeps the rendered output of definitions and attributes, mapped by a key
+ * that contains their name and the parts of the request that change their
+ * output.
+ * <p/>
+ * The cache is bounded both by number of entries and by total number of
+ * characters: when a bound is exceeded, the least recently used entries are
+ * removed. Only one request at a time renders the output of a key: the
+ * request that {@link #startPopulation(String, String) starts} the population
+ * must {@link #endPopulation(String, String, CachePolicy) end} it, while
+ * the other requests can {@link #awaitPopulation(String, long) wait} for it
+ * or use the stale output, if any.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class FragmentCache {
+
+    /**
+     * The maximum number of entries.
+     */
+    private int maxEntries;
+
+    /**
+     * The maximum total number of characters of the entries.
+     */
+    private long maxSize;
+
+    /**
+     * The entries, in access order. Access must be synchronized on the map.
+     */
+    private LinkedHashMap<String, CachedFragment> fragments;
+
+    /**
+     * The total number of characters of the entries.
+     */
+    private long size;
+
+    /**
+     * The populations in progress, mapped by key.
+     */
+    private ConcurrentHashMap<String, Population> populations;
+
+    /**
+     * Incremented every time all the entries are invalidated, so that
+     * populations started before do not store their output. The populations
+     * of a single definition or attribute are marked when it is invalidated.
+     */
+    private AtomicLong generation = new AtomicLong();
+
+    /**
+     * The number of lookups that found an entry.
+     */
+    private AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * The number of lookups that did not find an entry.
+     */
+    private AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries The maximum number of entries.
+     * @param maxSize The maximum total number of characters of the entries.
+     */
+    public FragmentCache(int maxEntries, long maxSize) {
+        if (maxEntries <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The bounds of the cache must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        fragments = new LinkedHashMap<String, CachedFragment>(16, 0.75f, true);
+        populations = new ConcurrentHashMap<String, Population>();
+    }
+
+    /**
+     * Returns the entry of a key, if it has not expired. The returned entry
+     * may be stale.
+     *
+     * @param key The key.
+     * @return The entry, or <code>null</code> if it is not present or it has
+     * expired.
+     */
+    public CachedFragment getFragment(String key) {
+        CachedFragment fragment;
+        synchronized (fragments) {
+            fragment = fragments.get(key);
+            if (fragment != null
+                    && fragment.isExpired(System.currentTimeMillis())) {
+                remove(key);
+                fragment = null;
+            }
+        }
+        if (fragment != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return fragment;
+    }
+
+    /**
+     * Starts rendering the output of a key.
+     *
+     * @param key The key.
+     * @param name The name of the rendered definition or attribute.
+     * @return <code>true</code> if the caller must render the output and then
+     * call {@link #endPopulation(String, String, CachePolicy)},
+     * <code>false</code> if another request is already rendering it.
+     */
+    public boolean startPopulation(String key, String name) {
+        return populations.putIfAbsent(key,
+                new Population(name, generation.get())) == null;
+    }
+
+    /**
+     * Waits for the population of a key to end.
+     *
+     * @param key The key.
+     * @param timeout The maximum time to wait, in milliseconds.
+     * @return <code>true</code> if no population of the key is in progress
+     * anymore, <code>false</code> if the time elapsed or the thread has been
+     * interrupted.
+     */
+    public boolean awaitPopulation(String key, long timeout) {
+        Population population = populations.get(key);
+        if (population == null) {
+            return true;
+        }
+        try {
+            return population.latch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Ends the population of a key, storing the rendered output, and wakes
+     * up the requests that are waiting for it.
+     *
+     * @param key The key.
+     * @param content The rendered output, or <code>null</code> if it could
+     * not be rendered.
+     * @param policy The cache policy of the definition or attribute.
+     */
+    public void endPopulation(String key, String content, CachePolicy policy) {
+        Population population = populations.get(key);
+        try {
+            if (content != null && population != null
+                    && !population.invalidated
+                    && population.generation == generation.get()) {
+                long now = System.currentTimeMillis();
+                long freshUntil = now + policy.getTimeToLive();
+                putFragment(key, new CachedFragment(population.name, content,
+                        freshUntil, freshUntil + policy.getStaleTime()));
+            }
+        } finally {
+            if (population != null) {
+                populations.remove(key);
+                population.latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * Stores an entry, removing the least recently used entries if the cache
+     * is full. Entries bigger than the cache are not stored.
+     *
+     * @param key The key.
+     * @param fragment The entry.
+     */
+    public void putFragment(String key, CachedFragment fragment) {
+        int length = fragment.getContent().length();
+        if (length > maxSize) {
+            return;
+        }
+        synchronized (fragments) {
+            remove(key);
+            fragments.put(key, fragment);
+            size += length;
+            Iterator<CachedFragment> it = fragments.values().iterator();
+            while ((fragments.size() > maxEntries || size > maxSize)
+                    && it.hasNext()) {
+                size -= it.next().getContent().length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries of a definition or attribute. The populations
+     * of the same definition or attribute that are in progress do not store
+     * their output, while the other ones are not affected.
+     *
+     * @param name The name of the definition or attribute.
+     * @return The number of removed entries.
+     */
+    public int invalidate(String name) {
+        int count = 0;
+        for (Population population : populations.values()) {
+            if (population.name.equals(name)) {
+                population.invalidated = true;
+            }
+        }
+        synchronized (fragments) {
+            Iterator<CachedFragment> it = fragments.values().iterator();
+            while (it.hasNext()) {
+                CachedFragment fragment = it.next();
+                if (fragment.getName().equals(name)) {
+                    size -= fragment.getContent().length();
+                    it.remove();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (fragments) {
+            fragments.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        synchronized (fragments) {
+            return fragments.size();
+        }
+    }
+
+    /**
+     * Returns the total number of characters of the entries.
+     *
+     * @return The size of the content.
+     */
+    public long getContentSize() {
+        synchronized (fragments) {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found an entry.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find an entry.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Removes an entry. The caller must synchronize on {@link #fragments}.
+     *
+     * @param key The key.
+     */
+    private void remove(String key) {
+        CachedFragment fragment = fragments.remove(key);
+        if (fragment != null) {
+            size -= fragment.getContent().length();
+        }
+    }
+
+    /**
+     * A population in progress.
+     */
+    private static class Population {
+
+        /**
+         * Released when the population ends.
+         */
+        private CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * The name of the rendered definition or attribute.
+         */
+        private String name;
+
+        /**
+         * The generation of the cache when the population started.
+         */
+        private long generation;
+
+        /**
+         * Indicates that the definition or attribute has been invalidated
+         * after the population started.
+         */
+        private volatile boolean invalidated;
+
+        /**
+         * Constructor.
+         *
+         * @param name The name of the rendered definition or attribute.
+         * @param generation The generation of the cache.
+         */
+        public Population(String name, long generation) {
+            this.name = name;
+            this.generation = generation;
+        }
+    }
+}
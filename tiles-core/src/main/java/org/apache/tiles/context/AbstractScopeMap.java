@@ -0,0 +1,505 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.tiles.context;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Base class of the maps that are views of the attributes, parameters or
+ * headers of a servlet or portlet object. Nothing is copied: every call reads
+ * or writes the underlying object, and the collection views iterate over the
+ * enumeration of its names. <code>get</code> and <code>containsKey</code> do
+ * not allocate, and <code>size</code> counts the names without storing them.
+ * <p/>
+ * Subclasses implement {@link #getValue(String)} and {@link #getKeys()}, and
+ * {@link #setValue(String, Object)} and {@link #removeValue(String)} if the
+ * map can be modified. Keys are converted to strings, and <code>null</code>
+ * keys are not allowed. Putting a <code>null</code> value removes the key.
+ * The iterators of the collection views do not support removal, but the
+ * values of their entries can be set.
+ *
+ * @param <V> The type of the values.
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public abstract class AbstractScopeMap<V> extends AbstractMap<String, V> {
+
+    /**
+     * The keys of an object that has none.
+     */
+    private static final Enumeration<String> EMPTY_KEYS = new Enumeration<String>() {
+
+        /** {@inheritDoc} */
+        public boolean hasMoreElements() {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public String nextElement() {
+            throw new NoSuchElementException();
+        }
+    };
+
+    /**
+     * The view of the keys, created when first requested.
+     */
+    private Set<String> keySet;
+
+    /**
+     * The view of the values, created when first requested.
+     */
+    private Collection<V> values;
+
+    /**
+     * The view of the entries, created when first requested.
+     */
+    private Set<Map.Entry<String, V>> entrySet;
+
+    /**
+     * Returns the value of a key in the underlying object.
+     *
+     * @param key The key.
+     * @return The value, or <code>null</code> if the key is not present.
+     */
+    protected abstract V getValue(String key);
+
+    /**
+     * Returns the keys of the underlying object.
+     *
+     * @return The enumeration of the keys.
+     */
+    protected abstract Enumeration<String> getKeys();
+
+    /**
+     * Sets the value of a key in the underlying object. By default the map
+     * cannot be modified.
+     *
+     * @param key The key.
+     * @param value The value, not <code>null</code>.
+     */
+    protected void setValue(String key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Removes a key from the underlying object. By default the map cannot be
+     * modified.
+     *
+     * @param key The key.
+     */
+    protected void removeValue(String key) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns an enumeration without keys, for example when the underlying
+     * object does not exist yet.
+     *
+     * @return The empty enumeration.
+     */
+    protected static Enumeration<String> emptyKeys() {
+        return EMPTY_KEYS;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V get(Object key) {
+        return getValue(key(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(Object key) {
+        return getValue(key(key)) != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            return false;
+        }
+        Enumeration<String> keys = getKeys();
+        while (keys.hasMoreElements()) {
+            if (valueEquals(value, getValue(keys.nextElement()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V put(String key, V value) {
+        if (value == null) {
+            return remove(key);
+        }
+        String skey = key(key);
+        V previous = getValue(skey);
+        setValue(skey, value);
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void putAll(Map<? extends String, ? extends V> map) {
+        for (Map.Entry<? extends String, ? extends V> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public V remove(Object key) {
+        String skey = key(key);
+        V previous = getValue(skey);
+        removeValue(skey);
+        return previous;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clear() {
+        // Removing while enumerating is not supported by every container.
+        List<String> keys = new ArrayList<String>();
+        Enumeration<String> enumeration = getKeys();
+        while (enumeration.hasMoreElements()) {
+            keys.add(enumeration.nextElement());
+        }
+        for (String key : keys) {
+            removeValue(key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        int size = 0;
+        Enumeration<String> keys = getKeys();
+        while (keys.hasMoreElements()) {
+            keys.nextElement();
+            size++;
+        }
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEmpty() {
+        return !getKeys().hasMoreElements();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<String> keySet() {
+        if (keySet == null) {
+            keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Collection<V> values() {
+        if (values == null) {
+            values = new Values();
+        }
+        return values;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Converts a key to a string.
+     *
+     * @param key The key.
+     * @return The key, as a string.
+     * @throws IllegalArgumentException If the key is <code>null</code>.
+     */
+    private static String key(Object key) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        } else if (key instanceof String) {
+            return (String) key;
+        } else {
+            return key.toString();
+        }
+    }
+
+    /**
+     * Compares two values. Arrays, such as the values of parameters and
+     * headers, are compared by content.
+     *
+     * @param value The value to look for, not <code>null</code>.
+     * @param current The value in the map.
+     * @return <code>true</code> if the values are equal.
+     */
+    private static boolean valueEquals(Object value, Object current) {
+        if (value instanceof Object[] && current instanceof Object[]) {
+            return Arrays.equals((Object[]) value, (Object[]) current);
+        }
+        return value.equals(current);
+    }
+
+    /**
+     * Iterator over the keys of the underlying object.
+     */
+    private class KeyIterator implements Iterator<String> {
+
+        /**
+         * The enumeration of the keys.
+         */
+        private Enumeration<String> keys = getKeys();
+
+        /** {@inheritDoc} */
+        public boolean hasNext() {
+            return keys.hasMoreElements();
+        }
+
+        /** {@inheritDoc} */
+        public String next() {
+            return keys.nextElement();
+        }
+
+        /** {@inheritDoc} */
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * View of the keys.
+     */
+    private class KeySet extends AbstractSet<String> {
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<String> iterator() {
+            return new KeyIterator();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean contains(Object o) {
+            return o != null && containsKey(o);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isEmpty() {
+            return AbstractScopeMap.this.isEmpty();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return AbstractScopeMap.this.size();
+        }
+    }
+
+    /**
+     * View of the values.
+     */
+    private class Values extends AbstractCollection<V> {
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<V> iterator() {
+            final Iterator<String> keys = new KeyIterator();
+            return new Iterator<V>() {
+
+                /** {@inheritDoc} */
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                /** {@inheritDoc} */
+                public V next() {
+                    return getValue(keys.next());
+                }
+
+                /** {@inheritDoc} */
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isEmpty() {
+            return AbstractScopeMap.this.isEmpty();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return AbstractScopeMap.this.size();
+        }
+    }
+
+    /**
+     * View of the entries.
+     */
+    private class EntrySet extends AbstractSet<Map.Entry<String, V>> {
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            final Iterator<String> keys = new KeyIterator();
+            return new Iterator<Map.Entry<String, V>>() {
+
+                /** {@inheritDoc} */
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                /** {@inheritDoc} */
+                public Map.Entry<String, V> next() {
+                    return new ScopeEntry(keys.next());
+                }
+
+                /** {@inheritDoc} */
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            Object value = entry.getValue();
+            return entry.getKey() != null && value != null
+                    && valueEquals(value, get(entry.getKey()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isEmpty() {
+            return AbstractScopeMap.this.isEmpty();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return AbstractScopeMap.this.size();
+        }
+    }
+
+    /**
+     * Entry whose value is read when it is created, and written through to
+     * the underlying object when it is set.
+     */
+    private class ScopeEntry implements Map.Entry<String, V> {
+
+        /**
+         * The key.
+         */
+        private String key;
+
+        /**
+         * The value.
+         */
+        private V value;
+
+        /**
+         * Constructor.
+         *
+         * @param key The key.
+         */
+        public ScopeEntry(String key) {
+            this.key = key;
+            this.value = AbstractScopeMap.this.getValue(key);
+        }
+
+        /** {@inheritDoc} */
+        public String getKey() {
+            return key;
+        }
+
+        /** {@inheritDoc} */
+        public V getValue() {
+            return value;
+        }
+
+        /** {@inheritDoc} */
+        public V setValue(V value) {
+            V previous = put(key, value);
+            this.value = value;
+            return previous;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey())
+                    && (value == null ? entry.getValue() == null : value
+                            .equals(entry.getValue()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
@@ -39,12 +39,6 @@ import org.apache.tiles.AttributeContext;
  */
 public class BasicAttributeContext implements AttributeContext, Serializable {
 
-    /**
-     * Name used to store attribute context stack.
-     */
-    private static final String ATTRIBUTE_CONTEXT_STACK =
-        "org.apache.tiles.AttributeContext.STACK";
-
     /**
      * Template attributes.
      */
@@ -200,18 +194,8 @@ public class BasicAttributeContext implements AttributeContext, Serializable {
      * {@link TilesContainer#endContext(Object...)}.
      */
     @Deprecated
-    @SuppressWarnings("unchecked")
     public static Stack<AttributeContext> getContextStack(TilesRequestContext tilesContext) {
-        Stack<AttributeContext> contextStack =
-            (Stack<AttributeContext>) tilesContext.getRequestScope().get(
-                BasicAttributeContext.ATTRIBUTE_CONTEXT_STACK);
-        if (contextStack == null) {
-            contextStack = new Stack<AttributeContext>();
-            tilesContext.getRequestScope().put(BasicAttributeContext.ATTRIBUTE_CONTEXT_STACK,
-                    contextStack);
-        }
-
-        return contextStack;
+        return TilesRequestState.getInstance(tilesContext).getContextStack();
     }
 
     /**
@@ -0,0 +1,54 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.context;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A Tiles request context whose output can be redirected to a writer, so that
+ * a rendered page fragment can be kept, for example to be cached.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface CapturingTilesRequestContext extends TilesRequestContext {
+
+    /**
+     * Returns the writer where the output of this request context goes.
+     *
+     * @return The writer.
+     * @throws IOException If the writer cannot be obtained.
+     */
+    Writer getWriter() throws IOException;
+
+    /**
+     * Creates a request context for the same request, that writes everything
+     * it dispatches to and includes into the given writer, instead of the
+     * response. Dispatching is always done by including.
+     *
+     * @param writer The writer that receives the output.
+     * @return The capturing request context, or <code>null</code> if the
+     * output of this request cannot be captured.
+     */
+    TilesRequestContext createCapturingContext(Writer writer);
+}
@@ -32,10 +32,15 @@ import java.util.Map;
 /**
  * Default implementation for TilesContextFactory, that creates a chain of
  * sub-factories, trying each one until it returns a not-null value.
+ * <p/>
+ * The factory that creates a request context is remembered together with the
+ * types of the request items, and it is tried first the next time request
+ * items of the same types are received.
  *
  * @version $Rev$ $Date$
  */
-public class ChainedTilesContextFactory implements TilesContextFactory {
+public class ChainedTilesContextFactory implements TilesContextFactory,
+        RequestContextStatistics {
 
     /**
      * Factory class names initialization parameter to use.
@@ -57,11 +62,22 @@ public class ChainedTilesContextFactory implements TilesContextFactory {
     private static final Log LOG = LogFactory
             .getLog(ChainedTilesContextFactory.class);
 
+    /**
+     * The maximum number of request item type signatures that are memoized.
+     */
+    private static final int MAX_SIGNATURES = 16;
+
     /**
      * The Tiles context factories composing the chain.
      */
     private TilesContextFactory[] factories;
 
+    /**
+     * The factories that created a request context, each with the types of
+     * the request items it received. The array is replaced, never modified.
+     */
+    private volatile Signature[] signatures = new Signature[0];
+
     /** {@inheritDoc} */
     @SuppressWarnings("unchecked")
     public void init(Map<String, String> configParameters) {
@@ -132,8 +148,22 @@ public class ChainedTilesContextFactory implements TilesContextFactory {
             TilesApplicationContext context, Object... requestItems) {
         TilesRequestContext retValue = null;
 
+        Signature[] currentSignatures = signatures;
+        for (int i = 0; i < currentSignatures.length && retValue == null; i++) {
+            if (currentSignatures[i].matches(requestItems)) {
+                retValue = currentSignatures[i].factory.createRequestContext(
+                        context, requestItems);
+            }
+        }
+        if (retValue != null) {
+            return retValue;
+        }
+
         for (int i = 0; i < factories.length && retValue == null; i++) {
             retValue = factories[i].createRequestContext(context, requestItems);
+            if (retValue != null) {
+                addSignature(factories[i], requestItems);
+            }
         }
 
         if (retValue == null) {
@@ -143,4 +173,114 @@ public class ChainedTilesContextFactory implements TilesContextFactory {
 
         return retValue;
     }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The counts of the factories of the chain are added.
+     */
+    public long getCreatedRequestContextCount() {
+        long count = 0;
+        for (TilesContextFactory factory : factories) {
+            if (factory instanceof RequestContextStatistics) {
+                count += ((RequestContextStatistics) factory)
+                        .getCreatedRequestContextCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The counts of the factories of the chain are added.
+     */
+    public long getReusedRequestContextCount() {
+        long count = 0;
+        for (TilesContextFactory factory : factories) {
+            if (factory instanceof RequestContextStatistics) {
+                count += ((RequestContextStatistics) factory)
+                        .getReusedRequestContextCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Memoizes the factory that created a request context for request items
+     * of the given types, so that next time the chain does not need to be
+     * walked.
+     *
+     * @param factory The factory.
+     * @param requestItems The request items.
+     */
+    private synchronized void addSignature(TilesContextFactory factory,
+            Object... requestItems) {
+        Signature[] currentSignatures = signatures;
+        if (currentSignatures.length >= MAX_SIGNATURES) {
+            return;
+        }
+        for (Signature signature : currentSignatures) {
+            if (signature.matches(requestItems)) {
+                return;
+            }
+        }
+        Signature[] newSignatures = new Signature[currentSignatures.length + 1];
+        System.arraycopy(currentSignatures, 0, newSignatures, 0,
+                currentSignatures.length);
+        newSignatures[currentSignatures.length] = new Signature(factory,
+                requestItems);
+        signatures = newSignatures;
+    }
+
+    /**
+     * The types of a set of request items, with the factory that handles them.
+     */
+    private static final class Signature {
+
+        /**
+         * The types of the request items. A <code>null</code> element
+         * matches a <code>null</code> request item.
+         */
+        private Class<?>[] types;
+
+        /**
+         * The factory that handles the request items.
+         */
+        private TilesContextFactory factory;
+
+        /**
+         * Constructor.
+         *
+         * @param factory The factory that handles the request items.
+         * @param requestItems The request items.
+         */
+        private Signature(TilesContextFactory factory, Object... requestItems) {
+            this.factory = factory;
+            types = new Class<?>[requestItems.length];
+            for (int i = 0; i < requestItems.length; i++) {
+                types[i] = requestItems[i] != null ? requestItems[i]
+                        .getClass() : null;
+            }
+        }
+
+        /**
+         * Checks whether request items have the types of this signature.
+         *
+         * @param requestItems The request items.
+         * @return <code>true</code> if the types are the same.
+         */
+        private boolean matches(Object... requestItems) {
+            if (types.length != requestItems.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                Object item = requestItems[i];
+                if ((item != null ? item.getClass() : null) != types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
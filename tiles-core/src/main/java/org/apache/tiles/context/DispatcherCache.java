@@ -0,0 +1,196 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.context;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.tiles.TilesApplicationContext;
+
+/**
+ * Application-scoped cache of the request dispatchers of absolute paths, so
+ * that the same dispatcher is not looked up by every dispatch to a template.
+ * Dispatchers obtained from the servlet or portlet context do not depend on
+ * the request, so they can be shared. Paths with a query string are not
+ * cached, since they are usually built for a single request.
+ * <p/>
+ * The cache is bounded: when it is full, the least recently used dispatchers
+ * are removed. It is cleared when the definitions are reloaded, since
+ * templates may have been added or removed.
+ *
+ * @param <D> The type of the request dispatchers.
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DispatcherCache<D> {
+
+    /**
+     * The name of the application-scoped attribute that contains the cache.
+     */
+    public static final String ATTRIBUTE_NAME =
+        "org.apache.tiles.context.DispatcherCache";
+
+    /**
+     * Initialization parameter of the application that contains the maximum
+     * number of cached dispatchers. If it is <code>0</code>, dispatchers are
+     * not cached.
+     */
+    public static final String MAX_ENTRIES_INIT_PARAM =
+        "org.apache.tiles.context.DispatcherCache.MAX_ENTRIES";
+
+    /**
+     * The default maximum number of cached dispatchers.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * The dispatchers, mapped by path, in access order. Access must be
+     * synchronized on the map.
+     */
+    private LinkedHashMap<String, D> dispatchers;
+
+    /**
+     * The maximum number of cached dispatchers.
+     */
+    private int maxEntries;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries The maximum number of cached dispatchers.
+     */
+    public DispatcherCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        dispatchers = new LinkedHashMap<String, D>(16, 0.75f, true) {
+
+            /**
+             * The serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, D> eldest) {
+                return size() > DispatcherCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Indicates whether the dispatcher of a path can be cached, that is if
+     * the path is absolute and it has no query string.
+     *
+     * @param path The path.
+     * @return <code>true</code> if the dispatcher can be cached.
+     */
+    public static boolean isCacheable(String path) {
+        return path.startsWith("/") && path.indexOf('?') < 0;
+    }
+
+    /**
+     * Returns the cache of an application, creating it if needed. Two caches
+     * may be created at the same time: one of them is discarded.
+     *
+     * @param <D> The type of the request dispatchers.
+     * @param context The application context.
+     * @return The dispatcher cache.
+     */
+    @SuppressWarnings("unchecked")
+    public static <D> DispatcherCache<D> getInstance(
+            TilesApplicationContext context) {
+        Map<String, Object> applicationScope = context.getApplicationScope();
+        DispatcherCache<D> cache = (DispatcherCache<D>) applicationScope
+                .get(ATTRIBUTE_NAME);
+        if (cache == null) {
+            int maxEntries = DEFAULT_MAX_ENTRIES;
+            String value = context.getInitParams().get(MAX_ENTRIES_INIT_PARAM);
+            if (value != null) {
+                maxEntries = Integer.parseInt(value.trim());
+            }
+            cache = new DispatcherCache<D>(maxEntries);
+            applicationScope.put(ATTRIBUTE_NAME, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Removes all the dispatchers cached for an application, if any.
+     *
+     * @param context The application context.
+     */
+    public static void invalidate(TilesApplicationContext context) {
+        DispatcherCache<?> cache = (DispatcherCache<?>) context
+                .getApplicationScope().get(ATTRIBUTE_NAME);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the cached dispatcher of a path.
+     *
+     * @param path The absolute path.
+     * @return The dispatcher, or <code>null</code> if it is not cached.
+     */
+    public D get(String path) {
+        synchronized (dispatchers) {
+            return dispatchers.get(path);
+        }
+    }
+
+    /**
+     * Caches the dispatcher of a path, removing the least recently used
+     * dispatcher if the cache is full. Nothing is cached if the path is not
+     * {@link #isCacheable(String) cacheable}.
+     *
+     * @param path The absolute path.
+     * @param dispatcher The dispatcher.
+     */
+    public void put(String path, D dispatcher) {
+        if (maxEntries <= 0 || !isCacheable(path)) {
+            return;
+        }
+        synchronized (dispatchers) {
+            dispatchers.put(path, dispatcher);
+        }
+    }
+
+    /**
+     * Removes all the cached dispatchers.
+     */
+    public void clear() {
+        synchronized (dispatchers) {
+            dispatchers.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached dispatchers.
+     *
+     * @return The size of the cache.
+     */
+    public int size() {
+        synchronized (dispatchers) {
+            return dispatchers.size();
+        }
+    }
+}
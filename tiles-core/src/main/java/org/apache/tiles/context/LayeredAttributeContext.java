@@ -0,0 +1,257 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.tiles.context;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+
+/**
+ * An <code>AttributeContext</code> that is layered over a parent context
+ * instead of copying it. An attribute is looked up in the attributes put in
+ * this context, then in the parent context and finally in the default
+ * attributes, so creating a context for a nested definition does not copy
+ * anything.
+ * <p/>
+ * The parent context and the default attributes must not be modified while
+ * this context is in use: it is the case of the contexts below it in the
+ * attribute context stack, and of the attributes of compiled definitions.
+ * <p/>
+ * Looking up an attribute that is not in this context walks down the layers,
+ * so its cost grows with the number of layered contexts below this one, that
+ * is with the nesting of the rendered definitions. It is bounded: a context
+ * created over {@link #MAX_DEPTH} layers copies the attributes visible from
+ * its parent into a single layer.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LayeredAttributeContext implements AttributeContext, Serializable {
+
+    /**
+     * The maximum number of layered contexts that a lookup walks through.
+     */
+    public static final int MAX_DEPTH = 16;
+
+    /**
+     * The parent context. It can be <code>null</code>.
+     */
+    private AttributeContext parent;
+
+    /**
+     * The default attributes, used if an attribute is not present in the
+     * parent context. It can be <code>null</code>.
+     */
+    private Map<String, Attribute> defaults;
+
+    /**
+     * The attributes put in this context.
+     */
+    private Map<String, Attribute> attributes = null;
+
+    /**
+     * Constructor.
+     *
+     * @param parent The parent context. It can be <code>null</code>.
+     * @param defaults The default attributes, that are not copied. It can be
+     * <code>null</code>.
+     */
+    public LayeredAttributeContext(AttributeContext parent,
+            Map<String, Attribute> defaults) {
+        this.defaults = defaults;
+        if (parent instanceof LayeredAttributeContext
+                && ((LayeredAttributeContext) parent).getDepth() >= MAX_DEPTH) {
+            parent = flatten(parent);
+        }
+        this.parent = parent;
+    }
+
+    /** {@inheritDoc} */
+    public void addAll(Map<String, Attribute> newAttributes) {
+        if (newAttributes == null) {
+            return;
+        }
+
+        if (attributes == null) {
+            attributes = new HashMap<String, Attribute>(newAttributes);
+            return;
+        }
+
+        attributes.putAll(newAttributes);
+    }
+
+    /** {@inheritDoc} */
+    public void addMissing(Map<String, Attribute> defaultAttributes) {
+        if (defaultAttributes == null) {
+            return;
+        }
+
+        for (Map.Entry<String, Attribute> entry : defaultAttributes.entrySet()) {
+            if (!containsAttribute(entry.getKey())) {
+                putAttribute(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Attribute getAttribute(String name) {
+        if (attributes != null && attributes.containsKey(name)) {
+            return attributes.get(name);
+        }
+        if (parent != null) {
+            Attribute attribute = parent.getAttribute(name);
+            if (attribute != null) {
+                return attribute;
+            }
+        }
+        return defaults != null ? defaults.get(name) : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Each name is returned once, even if it is present in more than one
+     * layer.
+     */
+    public Iterator<String> getAttributeNames() {
+        Set<String> names = new LinkedHashSet<String>();
+        addAttributeNames(names);
+        return names.iterator();
+    }
+
+    /** {@inheritDoc} */
+    public void putAttribute(String name, Attribute value) {
+        if (attributes == null) {
+            attributes = new HashMap<String, Attribute>();
+        }
+
+        attributes.put(name, value);
+    }
+
+    /**
+     * Returns the attributes that have been put in this context, without the
+     * ones of the parent context and the default ones.
+     *
+     * @return The local attributes, as a read-only map.
+     */
+    public Map<String, Attribute> getLocalAttributes() {
+        if (attributes == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The attributes of the parent context and the default attributes are
+     * no longer visible from this context, but they are not modified.
+     */
+    public void clear() {
+        parent = null;
+        defaults = null;
+        if (attributes != null) {
+            attributes.clear();
+        }
+    }
+
+    /**
+     * Returns the number of layered contexts, including this one, that a
+     * lookup walks through. It is computed instead of being stored, so the
+     * contexts created for every rendered definition stay small.
+     *
+     * @return The depth of this context.
+     */
+    int getDepth() {
+        int depth = 1;
+        AttributeContext context = parent;
+        while (context instanceof LayeredAttributeContext) {
+            depth++;
+            context = ((LayeredAttributeContext) context).parent;
+        }
+        return depth;
+    }
+
+    /**
+     * Adds the names of the attributes visible from this context to a set.
+     * The names of the layered contexts below are added to the same set.
+     *
+     * @param names The set of names.
+     */
+    private void addAttributeNames(Set<String> names) {
+        if (attributes != null) {
+            names.addAll(attributes.keySet());
+        }
+        if (parent instanceof LayeredAttributeContext) {
+            ((LayeredAttributeContext) parent).addAttributeNames(names);
+        } else if (parent != null) {
+            Iterator<String> parentNames = parent.getAttributeNames();
+            while (parentNames.hasNext()) {
+                names.add(parentNames.next());
+            }
+        }
+        if (defaults != null) {
+            names.addAll(defaults.keySet());
+        }
+    }
+
+    /**
+     * Copies the attributes visible from a context into a single layer.
+     *
+     * @param context The context to copy.
+     * @return The new context.
+     */
+    private static AttributeContext flatten(AttributeContext context) {
+        Map<String, Attribute> visible = new HashMap<String, Attribute>();
+        Iterator<String> names = context.getAttributeNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            visible.put(name, context.getAttribute(name));
+        }
+        return new LayeredAttributeContext(null, visible);
+    }
+
+    /**
+     * Checks whether an attribute is visible from this context.
+     *
+     * @param name The name of the attribute.
+     * @return <code>true</code> if the attribute is present in one of the
+     * layers.
+     */
+    private boolean containsAttribute(String name) {
+        if (attributes != null && attributes.containsKey(name)) {
+            return true;
+        }
+        if (parent != null && parent.getAttribute(name) != null) {
+            return true;
+        }
+        return defaults != null && defaults.containsKey(name);
+    }
+}
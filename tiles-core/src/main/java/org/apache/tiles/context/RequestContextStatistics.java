@@ -0,0 +1,47 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.context;
+
+/**
+ * A {@link TilesContextFactory} that counts the request contexts it creates
+ * and the ones it reuses for the same request items.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface RequestContextStatistics {
+
+    /**
+     * Returns the number of request contexts that have been created.
+     *
+     * @return The number of created request contexts.
+     */
+    long getCreatedRequestContextCount();
+
+    /**
+     * Returns the number of times a request context already created for the
+     * same request items has been returned.
+     *
+     * @return The number of reused request contexts.
+     */
+    long getReusedRequestContextCount();
+}
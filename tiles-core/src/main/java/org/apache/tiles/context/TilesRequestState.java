@@ -0,0 +1,257 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.context;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+
+import org.apache.tiles.AttributeContext;
+
+/**
+ * The state that Tiles keeps for a single request. It is stored as one
+ * request-scoped attribute, so everything Tiles needs during a request is
+ * found with a single lookup: the attribute context stack, the force-include
+ * flag, the last created request context, the resolved locale and other
+ * objects that live as long as the request.
+ * <p/>
+ * A request is processed by one thread at a time, so this class is not
+ * synchronized.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class TilesRequestState {
+
+    /**
+     * Name of the request-scoped attribute that contains the state.
+     */
+    public static final String STATE_ATTRIBUTE_NAME =
+        "org.apache.tiles.context.TilesRequestState";
+
+    /**
+     * The attribute context stack.
+     */
+    private Stack<AttributeContext> contextStack;
+
+    /**
+     * The force-include flag.
+     */
+    private boolean forceInclude;
+
+    /**
+     * The request items used to create {@link #requestContext}.
+     */
+    private Object[] requestItems;
+
+    /**
+     * The last created request context.
+     */
+    private TilesRequestContext requestContext;
+
+    /**
+     * The object that resolved {@link #resolvedLocale}.
+     */
+    private Object localeResolver;
+
+    /**
+     * The locale that has been resolved into {@link #resolvedLocale}.
+     */
+    private Locale requestedLocale;
+
+    /**
+     * The resolved locale.
+     */
+    private Locale resolvedLocale;
+
+    /**
+     * Other objects that live as long as the request, mapped by name.
+     */
+    private Map<String, Object> attributes;
+
+    /**
+     * Returns the state stored in a request scope, creating it if needed.
+     *
+     * @param requestScope The request scope.
+     * @return The state of the request, or <code>null</code> if the request
+     * scope is <code>null</code>.
+     */
+    public static TilesRequestState getInstance(Map<String, Object> requestScope) {
+        if (requestScope == null) {
+            return null;
+        }
+        TilesRequestState state = (TilesRequestState) requestScope
+                .get(STATE_ATTRIBUTE_NAME);
+        if (state == null) {
+            state = new TilesRequestState();
+            requestScope.put(STATE_ATTRIBUTE_NAME, state);
+        }
+        return state;
+    }
+
+    /**
+     * Returns the state of a request, creating it if needed.
+     *
+     * @param request The request context.
+     * @return The state of the request, or <code>null</code> if the request
+     * has no request scope.
+     */
+    public static TilesRequestState getInstance(TilesRequestContext request) {
+        return getInstance(request.getRequestScope());
+    }
+
+    /**
+     * Returns the attribute context stack, creating it if needed.
+     *
+     * @return The attribute context stack.
+     */
+    public Stack<AttributeContext> getContextStack() {
+        if (contextStack == null) {
+            contextStack = new Stack<AttributeContext>();
+        }
+        return contextStack;
+    }
+
+    /**
+     * Returns <code>true</code> if the forced include of the result is
+     * needed.
+     *
+     * @return The force-include flag.
+     */
+    public boolean isForceInclude() {
+        return forceInclude;
+    }
+
+    /**
+     * Sets the option that enables the forced include of the response.
+     *
+     * @param forceInclude If <code>true</code> the include operation must be
+     * forced.
+     */
+    public void setForceInclude(boolean forceInclude) {
+        this.forceInclude = forceInclude;
+    }
+
+    /**
+     * Returns the request context created for the given request items, if it
+     * is the last one that has been stored. Request items are compared by
+     * identity.
+     *
+     * @param requestItems The request items.
+     * @return The request context, or <code>null</code> if it has not been
+     * stored.
+     */
+    public TilesRequestContext getRequestContext(Object... requestItems) {
+        Object[] items = this.requestItems;
+        if (items == null || items.length != requestItems.length) {
+            return null;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (items[i] != requestItems[i]) {
+                return null;
+            }
+        }
+        return requestContext;
+    }
+
+    /**
+     * Stores the request context created for the given request items,
+     * replacing the one previously stored.
+     *
+     * @param requestContext The request context.
+     * @param requestItems The request items used to create it.
+     */
+    public void setRequestContext(TilesRequestContext requestContext,
+            Object... requestItems) {
+        this.requestContext = requestContext;
+        this.requestItems = requestItems;
+    }
+
+    /**
+     * Checks whether a locale has already been resolved by the given object
+     * during this request.
+     *
+     * @param resolver The object that resolves the locale.
+     * @param locale The locale to resolve.
+     * @return <code>true</code> if {@link #getResolvedLocale()} returns the
+     * locale resolved by <code>resolver</code> for <code>locale</code>.
+     */
+    public boolean isLocaleResolved(Object resolver, Locale locale) {
+        return resolver == localeResolver
+                && (locale == null ? requestedLocale == null : locale
+                        .equals(requestedLocale));
+    }
+
+    /**
+     * Returns the last resolved locale.
+     *
+     * @return The resolved locale.
+     * @see #isLocaleResolved(Object, Locale)
+     */
+    public Locale getResolvedLocale() {
+        return resolvedLocale;
+    }
+
+    /**
+     * Stores a resolved locale.
+     *
+     * @param resolver The object that resolved the locale.
+     * @param locale The locale that has been resolved.
+     * @param resolvedLocale The resolved locale.
+     */
+    public void setResolvedLocale(Object resolver, Locale locale,
+            Locale resolvedLocale) {
+        this.localeResolver = resolver;
+        this.requestedLocale = locale;
+        this.resolvedLocale = resolvedLocale;
+    }
+
+    /**
+     * Returns an object that lives as long as the request.
+     *
+     * @param name The name of the object.
+     * @return The object, or <code>null</code> if it is not present.
+     */
+    public Object getAttribute(String name) {
+        return attributes != null ? attributes.get(name) : null;
+    }
+
+    /**
+     * Stores an object that lives as long as the request.
+     *
+     * @param name The name of the object.
+     * @param value The object. If <code>null</code>, the object is removed.
+     */
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            if (attributes != null) {
+                attributes.remove(name);
+            }
+            return;
+        }
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>();
+        }
+        attributes.put(name, value);
+    }
+}
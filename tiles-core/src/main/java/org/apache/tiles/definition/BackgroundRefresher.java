@@ -0,0 +1,153 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reloads the definitions of a {@link UrlDefinitionsFactory} in a background
+ * thread. Requests for a refresh made while another one is pending are
+ * ignored. Once closed, no new refresh is started.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class BackgroundRefresher {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(BackgroundRefresher.class);
+
+    /**
+     * Creates the daemon threads that perform background refreshes.
+     */
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Tiles definitions refresh");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /**
+     * The factory whose definitions are reloaded.
+     */
+    private final UrlDefinitionsFactory factory;
+
+    /**
+     * The executor of background refreshes, created when first needed.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Indicates whether the refresher has been closed, so that no new
+     * background refresh is started.
+     */
+    private boolean closed = false;
+
+    /**
+     * Indicates whether a background refresh has been requested and not yet
+     * started.
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param factory The factory whose definitions are reloaded.
+     */
+    public BackgroundRefresher(UrlDefinitionsFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Requests a reload of the definitions, and returns immediately. If
+     * the reload fails, the current definitions are kept.
+     */
+    public void refresh() {
+        ExecutorService refreshExecutor = getExecutor();
+        if (refreshExecutor == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Refresh ignored, the factory has been destroyed");
+            }
+            return;
+        }
+
+        if (pending.compareAndSet(false, true)) {
+            refreshExecutor.execute(new Runnable() {
+
+                /** {@inheritDoc} */
+                public void run() {
+                    pending.set(false);
+                    try {
+                        factory.reloadDefinitions();
+                    } catch (DefinitionsFactoryException e) {
+                        // Already logged.
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Background refresh failed", e);
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.error("Background refresh failed, the current"
+                                + " definitions are kept", e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the thread of background refreshes. Later requests for a
+     * refresh are ignored.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the executor of background refreshes, creating it if needed.
+     *
+     * @return The executor, or <code>null</code> if the refresher has been
+     * closed.
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (closed) {
+            return null;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(THREAD_FACTORY);
+        }
+        return executor;
+    }
+}
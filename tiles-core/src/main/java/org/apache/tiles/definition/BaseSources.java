@@ -0,0 +1,142 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.definition.util.LocalizedSourceIndex;
+
+/**
+ * What has been read from the base sources: the definitions of each
+ * source, not resolved, their content hashes and the index of the
+ * localized sources that exist. It is created by
+ * {@link UrlDefinitionsFactory} every time the base definitions are loaded,
+ * and replaced together with them.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class BaseSources {
+
+    /**
+     * The definitions of each source, mapped by URL.
+     */
+    private Map<String, Map<String, Definition>> definitions;
+
+    /**
+     * The hashes of the sources, mapped by URL. It is <code>null</code> if
+     * the hashes are not computed.
+     */
+    private Map<String, String> hashes;
+
+    /**
+     * The index of the localized sources.
+     */
+    private LocalizedSourceIndex index;
+
+    /**
+     * Indicates whether localized sources may exist.
+     */
+    private boolean localizedSources;
+
+    /**
+     * Constructor.
+     *
+     * @param hashes The map where the hashes of the sources are recorded.
+     * It can be <code>null</code>.
+     * @param index The index of the localized sources.
+     * @param localizedSources <code>true</code> if localized sources may
+     * exist.
+     */
+    public BaseSources(Map<String, String> hashes,
+            LocalizedSourceIndex index, boolean localizedSources) {
+        this.hashes = hashes;
+        this.index = index;
+        this.localizedSources = localizedSources;
+        definitions = new ConcurrentHashMap<String, Map<String, Definition>>();
+    }
+
+    /**
+     * Returns the definitions read from a source.
+     *
+     * @param path The URL of the source.
+     * @return The definitions, not resolved, or <code>null</code> if the
+     * source has not been read.
+     */
+    public Map<String, Definition> getDefinitions(String path) {
+        return definitions.get(path);
+    }
+
+    /**
+     * Records the definitions read from a source.
+     *
+     * @param path The URL of the source.
+     * @param defsMap The definitions.
+     */
+    public void putDefinitions(String path, Map<String, Definition> defsMap) {
+        definitions.put(path, defsMap);
+    }
+
+    /**
+     * Returns the hashes of the sources.
+     *
+     * @return The hashes, mapped by URL, or <code>null</code> if they are
+     * not computed.
+     */
+    public Map<String, String> getHashes() {
+        return hashes;
+    }
+
+    /**
+     * Returns the hash of a source.
+     *
+     * @param path The URL of the source.
+     * @return The hash, or <code>null</code> if it is not known.
+     */
+    public String getHash(String path) {
+        if (hashes == null) {
+            return null;
+        }
+        return hashes.get(path);
+    }
+
+    /**
+     * Returns the index of the localized sources.
+     *
+     * @return The index.
+     */
+    public LocalizedSourceIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Indicates whether localized sources may exist, i.e. if a source
+     * is not indexed or if a localized version of a source exists.
+     *
+     * @return <code>true</code> if localized sources may exist.
+     */
+    public boolean hasLocalizedSources() {
+        return localizedSources;
+    }
+}
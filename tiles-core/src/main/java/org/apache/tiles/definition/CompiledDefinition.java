@@ -0,0 +1,200 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.Definition;
+
+/**
+ * A definition whose inheritance has been resolved, and that cannot be
+ * modified anymore.
+ * <p/>
+ * The template, the preparer and the roles are taken from the definition
+ * itself or, if not specified, from its parent. The cache policy is never
+ * inherited. The attributes are flattened
+ * in a single read-only table, that contains the attributes of the definition
+ * and the ones inherited from the parent: inherited attributes are shared with
+ * the parent, not copied. If the definition does not specify any attribute,
+ * the whole table of the parent is shared.
+ * <p/>
+ * Since it cannot be modified, a compiled definition can be safely shared
+ * between threads. All the methods that modify a definition throw an
+ * <code>UnsupportedOperationException</code>.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public final class CompiledDefinition extends Definition {
+
+    /**
+     * The roles, as a comma-separated string.
+     */
+    private String role;
+
+    /**
+     * Compiles a definition that does not extend any other definition.
+     *
+     * @param definition The definition to compile.
+     */
+    public CompiledDefinition(Definition definition) {
+        this(definition, null);
+    }
+
+    /**
+     * Compiles a definition, using the given definition as its parent.
+     *
+     * @param definition The definition to compile.
+     * @param parent The parent definition, that must have been already
+     * resolved. It can be <code>null</code>.
+     */
+    public CompiledDefinition(Definition definition, Definition parent) {
+        super(definition.getName(), definition.getTemplate(), flatten(
+                definition, parent));
+        inherit = definition.getExtends();
+        preparer = definition.getPreparer();
+        cachePolicy = definition.getCachePolicy();
+        Set<String> definitionRoles = definition.getRoles();
+        if (parent != null) {
+            if (template == null) {
+                template = parent.getTemplate();
+            }
+            if (preparer == null) {
+                preparer = parent.getPreparer();
+            }
+            if (definitionRoles == null) {
+                definitionRoles = parent.getRoles();
+            }
+        }
+        if (definitionRoles != null) {
+            roles = Collections.unmodifiableSet(new HashSet<String>(
+                    definitionRoles));
+        }
+        role = super.getRole();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRole() {
+        return role;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setName(String aName) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setTemplate(String template) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setRole(String role) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setRoles(Set<String> roles) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void putAttribute(String key, Attribute value) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setPreparer(String url) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setExtends(String name) {
+        throw new UnsupportedOperationException(
+                "A compiled definition cannot be modified");
+    }
+
+    /**
+     * Creates the attribute table of a compiled definition.
+     *
+     * @param definition The definition to compile.
+     * @param parent The parent definition. It can be <code>null</code>.
+     * @return The read-only attribute table.
+     */
+    private static Map<String, Attribute> flatten(Definition definition,
+            Definition parent) {
+        Map<String, Attribute> attributes = definition.getAttributes();
+        Map<String, Attribute> parentAttributes = null;
+        if (parent != null) {
+            parentAttributes = parent.getAttributes();
+        }
+
+        if (parentAttributes == null || parentAttributes.isEmpty()) {
+            if (attributes == null || attributes.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            return Collections.unmodifiableMap(
+                    new HashMap<String, Attribute>(attributes));
+        }
+
+        if (attributes == null || attributes.isEmpty()) {
+            if (parent instanceof CompiledDefinition) {
+                return parentAttributes;
+            }
+            return Collections.unmodifiableMap(
+                    new HashMap<String, Attribute>(parentAttributes));
+        }
+
+        Map<String, Attribute> table = new HashMap<String, Attribute>(
+                (parentAttributes.size() + attributes.size()) * 4 / 3 + 1);
+        table.putAll(parentAttributes);
+        table.putAll(attributes);
+        return Collections.unmodifiableMap(table);
+    }
+}
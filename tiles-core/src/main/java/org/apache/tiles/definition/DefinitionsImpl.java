@@ -25,18 +25,58 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.tiles.Attribute;
 import org.apache.tiles.Definition;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.ListAttribute;
+import org.apache.tiles.definition.util.NameFilter;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
+ * Default implementation of {@link Definitions}.
+ * <p/>
+ * When definitions are added, their inheritance is resolved and they are
+ * replaced by {@link CompiledDefinition} objects, that cannot be modified
+ * and share the inherited attributes with their parents.
+ * <p/>
+ * The definitions are kept as they have been added, together with a graph
+ * that connects each parent to the definitions that extend it. When
+ * definitions are added, only them and their descendants are resolved again.
+ * The resolution proceeds in topological order, from parents to children: if
+ * an executor has been {@link #setExecutor(ExecutorService) set}, the
+ * definitions at the same inheritance depth are compiled in parallel.
+ * <p/>
+ * Once resolved, the attributes without a type are classified against the
+ * names of the definitions they can see, so that the type of an attribute
+ * never needs to be computed, and stored, while rendering.
+ *
  * @version $Rev$ $Date$
  */
 public class DefinitionsImpl implements Definitions {
 
+    /**
+     * The minimum number of definitions, at the same inheritance depth, that
+     * are compiled in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 512;
+
+    /**
+     * The number of definitions compiled by a single parallel task.
+     */
+    private static final int CHUNK_SIZE = 128;
+
     /**
      * Commons Logging instance.
      */
@@ -45,19 +85,72 @@ public class DefinitionsImpl implements Definitions {
     /**
      * The base set of Definition objects not discriminated by locale.
      */
-    private Map<String, Definition> baseDefinitions;
+    private Scope baseScope;
+
+    /**
+     * Indicates whether {@link #baseScope} can be modified, i.e. it is not
+     * shared with other definitions.
+     */
+    private boolean baseScopeOwned;
+
     /**
      * The locale-specific set of definitions objects.
      */
-    private Map<Locale, Map<String, Definition>> localeSpecificDefinitions;
+    private Map<Locale, Scope> localeScopes;
+
+    /**
+     * The locales whose scope can be modified, i.e. it is not shared with
+     * other definitions.
+     */
+    private Set<Locale> ownedLocales;
+
+    /**
+     * The executor to use to compile definitions in parallel. It can be
+     * <code>null</code>.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The filter over the names of all the definitions, created when it is
+     * first needed after a modification.
+     */
+    private volatile NameFilter nameFilter;
 
     /**
      * Creates a new instance of DefinitionsImpl.
      */
     public DefinitionsImpl() {
-        baseDefinitions = new HashMap<String, Definition>();
-        localeSpecificDefinitions =
-            new HashMap<Locale, Map<String, Definition>>();
+        reset();
+    }
+
+    /**
+     * Copy constructor.
+     * Creates a shallow copy of the given definitions. The internal data are
+     * shared with the original object, and they are copied only when they are
+     * modified. It is used to build a new definitions snapshot without
+     * modifying one that may be read by other threads, so the original object
+     * must not be modified after the copy.
+     *
+     * @param definitions The definitions to copy.
+     * @since 2.0.8
+     */
+    public DefinitionsImpl(DefinitionsImpl definitions) {
+        baseScope = definitions.baseScope;
+        baseScopeOwned = false;
+        localeScopes = new HashMap<Locale, Scope>(definitions.localeScopes);
+        ownedLocales = new HashSet<Locale>();
+        executor = definitions.executor;
+    }
+
+    /**
+     * Sets the executor to use to compile definitions in parallel. If it is
+     * <code>null</code>, definitions are compiled in the calling thread.
+     *
+     * @param executor The executor.
+     * @since 2.0.8
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
     /**
@@ -68,12 +161,14 @@ public class DefinitionsImpl implements Definitions {
      *         is found.
      */
     public Definition getDefinition(String name) {
-        return baseDefinitions.get(name);
+        return baseScope.definitions.get(name);
     }
 
     /**
      * Adds new Definition objects to the internal collection and
-     * resolves inheritance attraibutes.
+     * resolves inheritance attraibutes. Only the added definitions, their
+     * descendants and the locale-specific definitions that depend on them
+     * are resolved.
      *
      * @param defsMap The new definitions to add.
      * @throws NoSuchDefinitionException If something goes wrong during
@@ -81,8 +176,31 @@ public class DefinitionsImpl implements Definitions {
      */
     public void addDefinitions(Map<String, Definition> defsMap)
             throws NoSuchDefinitionException {
-        this.baseDefinitions.putAll(defsMap);
-        resolveInheritances();
+        Scope scope = getBaseScope();
+        for (Map.Entry<String, Definition> entry : defsMap.entrySet()) {
+            scope.putSource(entry.getKey(), entry.getValue());
+        }
+
+        Set<String> affected = scope.getDescendants(defsMap.keySet());
+        resolve(scope, affected, null);
+
+        // Locale-specific definitions that extend a changed base definition,
+        // not overridden in their locale, must be resolved again.
+        for (Locale locale : new ArrayList<Locale>(localeScopes.keySet())) {
+            Scope localeScope = localeScopes.get(locale);
+            Set<String> names = new HashSet<String>();
+            for (String name : affected) {
+                Set<String> children = localeScope.children.get(name);
+                if (children != null
+                        && !localeScope.sources.containsKey(name)) {
+                    names.addAll(children);
+                }
+            }
+            if (!names.isEmpty()) {
+                localeScope = getLocaleScope(locale);
+                resolve(localeScope, localeScope.getDescendants(names), locale);
+            }
+        }
     }
 
     /**
@@ -96,10 +214,74 @@ public class DefinitionsImpl implements Definitions {
      */
     public void addDefinitions(Map<String, Definition> defsMap,
             Locale locale) throws NoSuchDefinitionException {
-        localeSpecificDefinitions.put(locale, defsMap);
+        nameFilter = null;
+        Scope scope = new Scope();
+        for (Map.Entry<String, Definition> entry : defsMap.entrySet()) {
+            scope.putSource(entry.getKey(), entry.getValue());
+        }
+        localeScopes.put(locale, scope);
+        ownedLocales.add(locale);
         resolveInheritances(locale);
     }
 
+    /**
+     * Adds definitions whose inheritance has already been resolved, for
+     * example read from a snapshot of previously loaded definitions. They are
+     * stored as they are, without resolving them again. Definitions added
+     * later that extend them inherit their resolved attributes.
+     *
+     * @param defsMap The resolved definitions.
+     * @param locale The locale to add the definitions to, or
+     * <code>null</code> to add them to the base definitions.
+     * @since 2.0.8
+     */
+    public void addResolvedDefinitions(Map<String, Definition> defsMap,
+            Locale locale) {
+        nameFilter = null;
+        Scope scope;
+        if (locale == null) {
+            scope = getBaseScope();
+        } else {
+            scope = new Scope();
+            localeScopes.put(locale, scope);
+            ownedLocales.add(locale);
+        }
+        for (Map.Entry<String, Definition> entry : defsMap.entrySet()) {
+            scope.putSource(entry.getKey(), entry.getValue());
+            scope.definitions.put(entry.getKey(), entry.getValue());
+        }
+        classifyAttributes(scope, defsMap.keySet(), locale);
+    }
+
+    /**
+     * Removes the definitions of a locale. The base definitions will be used
+     * for that locale.
+     *
+     * @param locale The locale.
+     * @since 2.0.8
+     */
+    public void removeLocaleDefinitions(Locale locale) {
+        nameFilter = null;
+        localeScopes.remove(locale);
+        ownedLocales.remove(locale);
+    }
+
+    /**
+     * Returns the resolved definitions of a locale.
+     *
+     * @param locale The locale.
+     * @return The locale-specific definitions map, or <code>null</code> if
+     * the definitions of the locale have not been added.
+     * @since 2.0.8
+     */
+    public Map<String, Definition> getLocaleDefinitions(Locale locale) {
+        Scope scope = localeScopes.get(locale);
+        if (scope == null) {
+            return null;
+        }
+        return scope.definitions;
+    }
+
     /**
      * Returns a Definition object that matches the given name and locale.
      *
@@ -112,10 +294,9 @@ public class DefinitionsImpl implements Definitions {
         Definition definition = null;
 
         if (locale != null) {
-            Map<String, Definition> localeSpecificMap =
-                localeSpecificDefinitions.get(locale);
-            if (localeSpecificMap != null) {
-                definition = localeSpecificMap.get(name);
+            Scope localeScope = localeScopes.get(locale);
+            if (localeScope != null) {
+                definition = localeScope.definitions.get(name);
             }
         }
 
@@ -132,29 +313,22 @@ public class DefinitionsImpl implements Definitions {
      * @throws NoSuchDefinitionException If a parent definition is not found.
      */
     public void resolveInheritances() throws NoSuchDefinitionException {
-        Set<String> alreadyResolvedDefinitions = new HashSet<String>();
-
-        for (Definition definition : baseDefinitions.values()) {
-            resolveInheritance(definition, null, alreadyResolvedDefinitions);
-        }  // end loop
+        Scope scope = getBaseScope();
+        resolve(scope, scope.sources.keySet(), null);
     }
 
     /**
-     * Resolve locale-specific extended instances.
+     * Resolve locale-specific extended instances. Base definitions are always
+     * resolved when they are added, so only the definitions of the given
+     * locale are resolved.
      *
      * @param locale The locale to use.
      * @throws NoSuchDefinitionException If a parent definition is not found.
      */
     public void resolveInheritances(Locale locale) throws NoSuchDefinitionException {
-        resolveInheritances();
-
-        Map<String, Definition> map = localeSpecificDefinitions.get(locale);
-        if (map != null) {
-            Set<String> alreadyResolvedDefinitions = new HashSet<String>();
-            for (Definition definition : map.values()) {
-                resolveInheritance(definition, locale,
-                        alreadyResolvedDefinitions);
-            }  // end loop
+        if (localeScopes.containsKey(locale)) {
+            Scope scope = getLocaleScope(locale);
+            resolve(scope, scope.sources.keySet(), locale);
         }
     }
 
@@ -162,9 +336,46 @@ public class DefinitionsImpl implements Definitions {
      * Clears definitions.
      */
     public void reset() {
-        this.baseDefinitions = new HashMap<String, Definition>();
-        this.localeSpecificDefinitions =
-            new HashMap<Locale, Map<String, Definition>>();
+        nameFilter = null;
+        baseScope = new Scope();
+        baseScopeOwned = true;
+        localeScopes = new HashMap<Locale, Scope>();
+        ownedLocales = new HashSet<Locale>();
+    }
+
+    /**
+     * Checks whether a definition with the given name may exist, in the base
+     * definitions or in the definitions of any locale. It uses a compact
+     * filter over the names, so it is faster than looking the definition up
+     * when the name does not exist.
+     *
+     * @param name The name of the definition.
+     * @return <code>false</code> if there is surely no definition with that
+     * name.
+     * @since 2.0.8
+     */
+    public boolean mayContainDefinition(String name) {
+        NameFilter filter = nameFilter;
+        if (filter == null) {
+            Set<String> names = new HashSet<String>(baseScope.sources.keySet());
+            for (Scope scope : localeScopes.values()) {
+                names.addAll(scope.sources.keySet());
+            }
+            filter = new NameFilter(names);
+            nameFilter = filter;
+        }
+        return filter.mightContain(name);
+    }
+
+    /**
+     * Returns the names of the definitions that do not depend on any locale,
+     * including the ones whose inheritance has not been resolved yet.
+     *
+     * @return The names of the base definitions.
+     * @since 2.0.8
+     */
+    public Set<String> getBaseDefinitionNames() {
+        return Collections.unmodifiableSet(baseScope.sources.keySet());
     }
 
     /**
@@ -173,7 +384,7 @@ public class DefinitionsImpl implements Definitions {
      * @return The base (i.e. not depending on any locale) definitions map.
      */
     public Map<String, Definition> getBaseDefinitions() {
-        return baseDefinitions;
+        return baseScope.definitions;
     }
 
     /**
@@ -199,52 +410,47 @@ public class DefinitionsImpl implements Definitions {
 
     /**
      * Resolve locale-specific inheritance.
-     * First, resolve parent's inheritance, then set template to the parent's
-     * template.
-     * Also copy attributes setted in parent, and not set in child
-     * If instance doesn't extend anything, do nothing.
+     * The definition, and all the definitions that extend it, are compiled
+     * again with their parents.
      *
      * @param definition The definition to resolve
      * @param locale The locale to use.
      * @param alreadyResolvedDefinitions The set of the definitions that have
      * been already resolved.
      * @throws NoSuchDefinitionException If an inheritance can not be solved.
+     * @deprecated Definitions are resolved when they are added.
      */
+    @Deprecated
     protected void resolveInheritance(Definition definition, Locale locale,
             Set<String> alreadyResolvedDefinitions)
             throws NoSuchDefinitionException {
-        // Already done, or not needed ?
-        if (!definition.isExtending()
-                || alreadyResolvedDefinitions.contains(definition.getName())) {
+        if (!alreadyResolvedDefinitions.add(definition.getName())) {
             return;
         }
 
-        if (log.isDebugEnabled()) {
-            log.debug("Resolve definition for child name='"
-                + definition.getName()
-                + "' extends='" + definition.getExtends() + "'.");
+        Scope scope;
+        if (locale != null && localeScopes.containsKey(locale)) {
+            scope = getLocaleScope(locale);
+        } else {
+            scope = getBaseScope();
         }
-
-        // Set as visited to avoid endless recurisvity.
-        alreadyResolvedDefinitions.add(definition.getName());
-
-        // Resolve parent before itself.
-        Definition parent = getDefinition(definition.getExtends(),
-            locale);
-        if (parent == null) { // error
-            String msg = "Error while resolving definition inheritance: child '"
-                + definition.getName()
-                + "' can't find its ancestor '"
-                + definition.getExtends()
-                + "'. Please check your description file.";
-            log.error(msg);
-            // to do : find better exception
-            throw new NoSuchDefinitionException(msg);
+        if (scope.sources.containsKey(definition.getName())) {
+            resolve(scope, scope.getDescendants(Collections
+                    .singleton(definition.getName())), locale);
         }
+    }
 
-        resolveInheritance(parent, locale, alreadyResolvedDefinitions);
-
-        overload(parent, definition);
+    /**
+     * Compiles a definition with its parent.
+     *
+     * @param definition The definition to compile.
+     * @param parent The parent definition, already resolved. It can be
+     * <code>null</code> if the definition does not extend anything.
+     * @return The compiled definition.
+     * @since 2.0.8
+     */
+    protected Definition compile(Definition definition, Definition parent) {
+        return new CompiledDefinition(definition, parent);
     }
 
     /**
@@ -256,8 +462,10 @@ public class DefinitionsImpl implements Definitions {
      *
      * @param parent The parent definition.
      * @param child  The child that will be overloaded.
+     * @deprecated Definitions are compiled with
+     * {@link #compile(Definition, Definition)}.
      */
-    // FIXME This is the same as DefinitionManager.overload.
+    @Deprecated
     protected void overload(Definition parent, Definition child) {
         // Iterate on each parent's attribute and add it if not defined in child.
         for (Map.Entry<String, Attribute> entry : parent.getAttributes().entrySet()) {
@@ -276,4 +484,385 @@ public class DefinitionsImpl implements Definitions {
             child.setPreparer(parent.getPreparer());
         }
     }
+
+    /**
+     * Returns the base scope, copying it if it is shared.
+     *
+     * @return The base scope, that can be modified.
+     */
+    private Scope getBaseScope() {
+        nameFilter = null;
+        if (!baseScopeOwned) {
+            baseScope = new Scope(baseScope);
+            baseScopeOwned = true;
+        }
+        return baseScope;
+    }
+
+    /**
+     * Returns the scope of a locale, copying it if it is shared.
+     *
+     * @param locale The locale.
+     * @return The locale scope, that can be modified.
+     */
+    private Scope getLocaleScope(Locale locale) {
+        nameFilter = null;
+        Scope scope = localeScopes.get(locale);
+        if (!ownedLocales.contains(locale)) {
+            scope = new Scope(scope);
+            localeScopes.put(locale, scope);
+            ownedLocales.add(locale);
+        }
+        return scope;
+    }
+
+    /**
+     * Resolves the inheritance of some definitions of a scope, in topological
+     * order. Each definition is compiled after its parent, so the
+     * definitions are processed one inheritance level at a time.
+     *
+     * @param scope The scope that contains the definitions.
+     * @param names The names of the definitions to resolve.
+     * @param locale The locale of the scope, or <code>null</code> for the base
+     * scope.
+     * @throws NoSuchDefinitionException If a parent definition is not found, or
+     * if the inheritance is circular.
+     */
+    private void resolve(Scope scope, Collection<String> names, Locale locale)
+            throws NoSuchDefinitionException {
+        Set<String> pending = new HashSet<String>(names);
+
+        // The definitions whose parent must be resolved first, indexed by
+        // the name of the parent.
+        Map<String, List<String>> waiting = new HashMap<String, List<String>>();
+        List<String> level = new ArrayList<String>();
+        for (String name : pending) {
+            String parentName = scope.sources.get(name).getExtends();
+            if (parentName != null && pending.contains(parentName)) {
+                List<String> children = waiting.get(parentName);
+                if (children == null) {
+                    children = new ArrayList<String>();
+                    waiting.put(parentName, children);
+                }
+                children.add(name);
+            } else {
+                level.add(name);
+            }
+        }
+
+        while (!level.isEmpty()) {
+            Definition[] compiled = compileLevel(scope, level, locale);
+            List<String> nextLevel = new ArrayList<String>();
+            for (int i = 0; i < compiled.length; i++) {
+                String name = level.get(i);
+                scope.definitions.put(name, compiled[i]);
+                List<String> children = waiting.remove(name);
+                if (children != null) {
+                    nextLevel.addAll(children);
+                }
+            }
+            level = nextLevel;
+        }
+
+        if (!waiting.isEmpty()) {
+            String msg = "Error while resolving definition inheritance: "
+                + "circular inheritance for the definitions extending "
+                + waiting.keySet() + ". Please check your description file.";
+            log.error(msg);
+            throw new NoSuchDefinitionException(msg);
+        }
+
+        classifyAttributes(scope, names, locale);
+    }
+
+    /**
+     * Infers the type of the attributes of resolved definitions that do not
+     * have one. A string is the name of a definition if a definition with
+     * that name can be seen from the scope, a template if it starts with
+     * "/", otherwise a string. Other values are objects.
+     * <p/>
+     * A definition that can be seen from the scope is visible to every
+     * request that renders the attribute, so the definition and object types
+     * are final. The template and string types are only probable: the string
+     * may name a definition that exists only in a locale loaded later, in
+     * another definitions factory, or that is added at runtime. The container
+     * checks them again when the attribute is rendered, using the name filter
+     * of the factory to exclude most strings without a lookup.
+     * <p/>
+     * Attributes are shared between definitions, and between copies of the
+     * definitions: only attributes without a type, that have not been
+     * published yet, are modified. The attributes that a locale scope
+     * inherits from the base scope have already been classified there.
+     *
+     * @param scope The scope that contains the definitions.
+     * @param names The names of the definitions.
+     * @param locale The locale of the scope, or <code>null</code> for the base
+     * scope.
+     */
+    private void classifyAttributes(Scope scope, Collection<String> names,
+            Locale locale) {
+        for (String name : names) {
+            Definition definition = scope.definitions.get(name);
+            if (definition != null && definition.getAttributes() != null) {
+                for (Attribute attribute : definition.getAttributes().values()) {
+                    classifyAttribute(attribute, scope, locale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Infers the type of an attribute that does not have one, and of the
+     * attributes it contains if it is a list.
+     *
+     * @param attribute The attribute to classify.
+     * @param scope The scope that contains the attribute.
+     * @param locale The locale of the scope, or <code>null</code> for the base
+     * scope.
+     * @see #classifyAttributes(Scope, Collection, Locale)
+     */
+    private void classifyAttribute(Attribute attribute, Scope scope,
+            Locale locale) {
+        if (attribute == null) {
+            return;
+        }
+        if (attribute instanceof ListAttribute
+                && attribute.getValue() instanceof List) {
+            for (Object item : (List<?>) attribute.getValue()) {
+                if (item instanceof Attribute) {
+                    classifyAttribute((Attribute) item, scope, locale);
+                }
+            }
+        }
+        if (attribute.getType() != null) {
+            return;
+        }
+
+        AttributeType type;
+        Object value = attribute.getValue();
+        if (value instanceof String) {
+            String valueString = (String) value;
+            if (scope.sources.containsKey(valueString)
+                    || (locale != null && baseScope.sources
+                            .containsKey(valueString))) {
+                type = AttributeType.DEFINITION;
+            } else if (valueString.startsWith("/")) {
+                type = AttributeType.TEMPLATE;
+            } else {
+                type = AttributeType.STRING;
+            }
+        } else if (value != null) {
+            type = AttributeType.OBJECT;
+        } else {
+            return;
+        }
+        attribute.setInferredType(type);
+    }
+
+    /**
+     * Compiles definitions whose parents have been already resolved. If an
+     * executor is set and there are many definitions, they are compiled in
+     * parallel.
+     *
+     * @param scope The scope that contains the definitions.
+     * @param names The names of the definitions to compile.
+     * @param locale The locale of the scope, or <code>null</code> for the base
+     * scope.
+     * @return The compiled definitions, in the same order of the names.
+     * @throws NoSuchDefinitionException If a parent definition is not found.
+     */
+    private Definition[] compileLevel(final Scope scope,
+            final List<String> names, final Locale locale)
+            throws NoSuchDefinitionException {
+        final Definition[] compiled = new Definition[names.size()];
+        if (executor == null || compiled.length < PARALLEL_THRESHOLD) {
+            compileRange(scope, names, locale, compiled, 0, compiled.length);
+            return compiled;
+        }
+
+        // Definitions are only read while the tasks run: the results are
+        // stored in the scope by the calling thread.
+        List<Future<Object>> futures = new LinkedList<Future<Object>>();
+        for (int start = 0; start < compiled.length; start += CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(start + CHUNK_SIZE, compiled.length);
+            futures.add(executor.submit(new Callable<Object>() {
+
+                /** {@inheritDoc} */
+                public Object call() throws NoSuchDefinitionException {
+                    compileRange(scope, names, locale, compiled, from, to);
+                    return null;
+                }
+            }));
+        }
+
+        boolean interrupted = false;
+        try {
+            for (Future<Object> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoSuchDefinitionException) {
+                throw (NoSuchDefinitionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Compiles a range of definitions whose parents have been already
+     * resolved.
+     *
+     * @param scope The scope that contains the definitions.
+     * @param names The names of the definitions to compile.
+     * @param locale The locale of the scope, or <code>null</code> for the base
+     * scope.
+     * @param compiled The array where the compiled definitions are stored.
+     * @param from The index of the first definition to compile, inclusive.
+     * @param to The index of the last definition to compile, exclusive.
+     * @throws NoSuchDefinitionException If a parent definition is not found.
+     */
+    private void compileRange(Scope scope, List<String> names, Locale locale,
+            Definition[] compiled, int from, int to)
+            throws NoSuchDefinitionException {
+        for (int i = from; i < to; i++) {
+            Definition definition = scope.sources.get(names.get(i));
+            Definition parent = null;
+            if (definition.isExtending()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Resolve definition for child name='"
+                        + definition.getName()
+                        + "' extends='" + definition.getExtends() + "'.");
+                }
+
+                parent = getDefinition(definition.getExtends(), locale);
+                if (parent == null) { // error
+                    String msg = "Error while resolving definition inheritance: child '"
+                        + definition.getName()
+                        + "' can't find its ancestor '"
+                        + definition.getExtends()
+                        + "'. Please check your description file.";
+                    log.error(msg);
+                    // to do : find better exception
+                    throw new NoSuchDefinitionException(msg);
+                }
+            }
+            compiled[i] = compile(definition, parent);
+        }
+    }
+
+    /**
+     * A set of definitions, base or locale-specific.
+     */
+    private static class Scope {
+
+        /**
+         * The definitions, as they have been added.
+         */
+        private Map<String, Definition> sources;
+
+        /**
+         * The resolved definitions.
+         */
+        private Map<String, Definition> definitions;
+
+        /**
+         * Maps the name of a parent definition to the names of the
+         * definitions that extend it. The sets are never modified, but
+         * replaced, so they can be shared between copies.
+         */
+        private Map<String, Set<String>> children;
+
+        /**
+         * Constructor.
+         */
+        public Scope() {
+            sources = new HashMap<String, Definition>();
+            definitions = new HashMap<String, Definition>();
+            children = new HashMap<String, Set<String>>();
+        }
+
+        /**
+         * Copy constructor.
+         *
+         * @param scope The scope to copy.
+         */
+        public Scope(Scope scope) {
+            sources = new HashMap<String, Definition>(scope.sources);
+            definitions = new HashMap<String, Definition>(scope.definitions);
+            children = new HashMap<String, Set<String>>(scope.children);
+        }
+
+        /**
+         * Adds or replaces an unresolved definition.
+         *
+         * @param name The name of the definition.
+         * @param definition The definition.
+         */
+        public void putSource(String name, Definition definition) {
+            Definition oldDefinition = sources.put(name, definition);
+            if (oldDefinition != null && oldDefinition.isExtending()) {
+                Set<String> names = new HashSet<String>(children
+                        .get(oldDefinition.getExtends()));
+                names.remove(name);
+                if (names.isEmpty()) {
+                    children.remove(oldDefinition.getExtends());
+                } else {
+                    children.put(oldDefinition.getExtends(), names);
+                }
+            }
+            if (definition.isExtending()) {
+                Set<String> oldNames = children.get(definition.getExtends());
+                Set<String> names;
+                if (oldNames != null) {
+                    names = new HashSet<String>(oldNames);
+                } else {
+                    names = new HashSet<String>();
+                }
+                names.add(name);
+                children.put(definition.getExtends(), names);
+            }
+        }
+
+        /**
+         * Returns the names of the definitions of this scope that extend,
+         * directly or not, the given definitions, together with the given
+         * definitions that are part of this scope.
+         *
+         * @param names The names of the definitions.
+         * @return The names of the definitions and their descendants.
+         */
+        public Set<String> getDescendants(Collection<String> names) {
+            Set<String> descendants = new HashSet<String>();
+            LinkedList<String> queue = new LinkedList<String>(names);
+            while (!queue.isEmpty()) {
+                String name = queue.removeFirst();
+                if (sources.containsKey(name) && descendants.add(name)) {
+                    Set<String> extending = children.get(name);
+                    if (extending != null) {
+                        queue.addAll(extending);
+                    }
+                }
+            }
+            return descendants;
+        }
+    }
 }
@@ -0,0 +1,721 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.Definition;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.ListAttribute;
+
+/**
+ * A file that stores definitions whose inheritance has already been resolved,
+ * together with the content hashes of the sources they have been read from.
+ * It is used by {@link UrlDefinitionsFactory} to avoid parsing and resolving
+ * the definitions again at startup, when the sources have not changed.
+ * <p/>
+ * The file contains a number of entries: the base definitions, stored with
+ * the <code>null</code> locale, and the definitions of every loaded locale.
+ * Attributes shared between definitions are stored only once, and they are
+ * shared again when the file is read. String values and lists are stored in a
+ * compact binary form; other values are stored using Java serialization, so
+ * they must be serializable.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DefinitionsSnapshotFile {
+
+    /**
+     * The hash used for sources that do not exist.
+     */
+    public static final String MISSING_SOURCE = "";
+
+    /**
+     * Identifies the format of the file.
+     */
+    private static final String MAGIC = "Tiles definitions snapshot";
+
+    /**
+     * The version of the format of the file.
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * Kind of a plain attribute.
+     */
+    private static final byte KIND_ATTRIBUTE = 0;
+
+    /**
+     * Kind of a list attribute.
+     */
+    private static final byte KIND_LIST = 1;
+
+    /**
+     * Kind of an attribute of a custom class, stored using Java
+     * serialization.
+     */
+    private static final byte KIND_SERIALIZED = 2;
+
+    /**
+     * Tag of a <code>null</code> value.
+     */
+    private static final byte VALUE_NULL = 0;
+
+    /**
+     * Tag of a string value.
+     */
+    private static final byte VALUE_STRING = 1;
+
+    /**
+     * Tag of an attribute inside a list.
+     */
+    private static final byte VALUE_ATTRIBUTE = 2;
+
+    /**
+     * Tag of a value stored using Java serialization.
+     */
+    private static final byte VALUE_SERIALIZED = 3;
+
+    /**
+     * Hexadecimal digits, used to format hashes.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The file.
+     */
+    private File file;
+
+    /**
+     * Constructor.
+     *
+     * @param file The file to read and write.
+     */
+    public DefinitionsSnapshotFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the file.
+     *
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Computes the hash of the content of a source.
+     *
+     * @param content The content of the source.
+     * @return The hash, as an hexadecimal string.
+     */
+    public static String computeHash(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        byte[] hash = digest.digest(content);
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads the whole content of a stream, and closes it.
+     *
+     * @param stream The stream to read.
+     * @return The content of the stream.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static byte[] readContent(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = stream.read(buffer)) >= 0) {
+                content.write(buffer, 0, count);
+            }
+            return content.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes the entries to the file. The file is written to a temporary file
+     * first and then renamed, so readers never see a partially written file.
+     *
+     * @param entries The entries to write, mapped by locale. The base
+     * definitions are mapped to the <code>null</code> locale.
+     * @throws IOException If the file cannot be written, or if an attribute
+     * value cannot be serialized.
+     */
+    public void write(Map<Locale, Entry> entries) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists()) {
+            directory.mkdirs();
+        }
+        File tempFile = File.createTempFile("tiles", ".tmp", directory);
+        boolean written = false;
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                write(out, entries);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                // Some platforms do not replace existing files.
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tempFile
+                            + " to " + file);
+                }
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the entries from the file.
+     *
+     * @return The entries, mapped by locale. The base definitions are mapped
+     * to the <code>null</code> locale. If the file does not exist,
+     * <code>null</code> is returned.
+     * @throws IOException If the file cannot be read, or if it is not valid.
+     */
+    public Map<Locale, Entry> read() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            return read(in);
+        } catch (ClassNotFoundException e) {
+            IOException exception = new IOException(
+                    "Cannot read a definitions snapshot value");
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the entries to a stream.
+     *
+     * @param out The stream to write to.
+     * @param entries The entries to write.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void write(DataOutputStream out, Map<Locale, Entry> entries)
+            throws IOException {
+        out.writeUTF(MAGIC);
+        out.writeInt(VERSION);
+
+        // Attributes are shared between compiled definitions: they are
+        // written once and referenced by index.
+        Map<Attribute, Integer> attributeIndexes =
+            new IdentityHashMap<Attribute, Integer>();
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Entry entry : entries.values()) {
+            for (Definition definition : entry.getDefinitions().values()) {
+                for (Attribute attribute : definition.getAttributes().values()) {
+                    if (!attributeIndexes.containsKey(attribute)) {
+                        attributeIndexes.put(attribute, attributes.size());
+                        attributes.add(attribute);
+                    }
+                }
+            }
+        }
+        out.writeInt(attributes.size());
+        for (Attribute attribute : attributes) {
+            writeAttribute(out, attribute);
+        }
+
+        out.writeInt(entries.size());
+        for (Map.Entry<Locale, Entry> mapEntry : entries.entrySet()) {
+            Locale locale = mapEntry.getKey();
+            out.writeBoolean(locale != null);
+            if (locale != null) {
+                out.writeUTF(locale.getLanguage());
+                out.writeUTF(locale.getCountry());
+                out.writeUTF(locale.getVariant());
+            }
+
+            Entry entry = mapEntry.getValue();
+            out.writeInt(entry.getSourceHashes().size());
+            for (Map.Entry<String, String> source : entry.getSourceHashes()
+                    .entrySet()) {
+                writeString(out, source.getKey());
+                writeString(out, source.getValue());
+            }
+
+            out.writeInt(entry.getDefinitions().size());
+            for (Definition definition : entry.getDefinitions().values()) {
+                writeString(out, definition.getName());
+                writeString(out, definition.getTemplate());
+                writeString(out, definition.getPreparer());
+                writeString(out, definition.getExtends());
+                writeRoles(out, definition.getRoles());
+                writeCachePolicy(out, definition.getCachePolicy());
+                Map<String, Attribute> definitionAttributes = definition
+                        .getAttributes();
+                out.writeInt(definitionAttributes.size());
+                for (Map.Entry<String, Attribute> attribute
+                        : definitionAttributes.entrySet()) {
+                    writeString(out, attribute.getKey());
+                    out.writeInt(attributeIndexes.get(attribute.getValue()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the entries from a stream.
+     *
+     * @param in The stream to read from.
+     * @return The entries.
+     * @throws IOException If something goes wrong while reading.
+     * @throws ClassNotFoundException If the class of a serialized value
+     * cannot be found.
+     */
+    private Map<Locale, Entry> read(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        if (!MAGIC.equals(in.readUTF())) {
+            throw new IOException(file + " is not a definitions snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported definitions snapshot version: "
+                    + version);
+        }
+
+        Attribute[] attributes = new Attribute[in.readInt()];
+        for (int i = 0; i < attributes.length; i++) {
+            attributes[i] = readAttribute(in);
+        }
+
+        int entryCount = in.readInt();
+        Map<Locale, Entry> entries = new LinkedHashMap<Locale, Entry>();
+        for (int i = 0; i < entryCount; i++) {
+            Locale locale = null;
+            if (in.readBoolean()) {
+                locale = new Locale(in.readUTF(), in.readUTF(), in.readUTF());
+            }
+
+            int sourceCount = in.readInt();
+            Map<String, String> sourceHashes =
+                new LinkedHashMap<String, String>();
+            for (int j = 0; j < sourceCount; j++) {
+                sourceHashes.put(readString(in), readString(in));
+            }
+
+            int definitionCount = in.readInt();
+            Map<String, Definition> definitions =
+                new HashMap<String, Definition>(definitionCount * 4 / 3 + 1);
+            for (int j = 0; j < definitionCount; j++) {
+                Definition definition = new Definition();
+                definition.setName(readString(in));
+                definition.setTemplate(readString(in));
+                definition.setPreparer(readString(in));
+                definition.setExtends(readString(in));
+                definition.setRoles(readRoles(in));
+                definition.setCachePolicy(readCachePolicy(in));
+                int attributeCount = in.readInt();
+                for (int k = 0; k < attributeCount; k++) {
+                    String name = readString(in);
+                    definition.putAttribute(name, attributes[in.readInt()]);
+                }
+                definitions.put(definition.getName(), new CompiledDefinition(
+                        definition));
+            }
+            entries.put(locale, new Entry(sourceHashes, definitions));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes an attribute. Only a declared type is written: an inferred type
+     * is inferred again when the definitions are read.
+     *
+     * @param out The stream to write to.
+     * @param attribute The attribute to write.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void writeAttribute(DataOutputStream out, Attribute attribute)
+            throws IOException {
+        Class<?> clazz = attribute.getClass();
+        if (clazz != Attribute.class && clazz != ListAttribute.class) {
+            out.writeByte(KIND_SERIALIZED);
+            writeSerialized(out, attribute);
+            return;
+        }
+
+        boolean list = clazz == ListAttribute.class;
+        out.writeByte(list ? KIND_LIST : KIND_ATTRIBUTE);
+        writeString(out, attribute.getName());
+        AttributeType type = attribute.isTypeInferred() ? null : attribute
+                .getType();
+        out.writeByte(type != null ? type.ordinal() : -1);
+        writeRoles(out, attribute.getRoles());
+        writeCachePolicy(out, attribute.getCachePolicy());
+        if (list) {
+            List<?> elements = (List<?>) attribute.getValue();
+            out.writeInt(elements.size());
+            for (Object element : elements) {
+                writeValue(out, element);
+            }
+        } else {
+            writeValue(out, attribute.getValue());
+        }
+    }
+
+    /**
+     * Reads an attribute.
+     *
+     * @param in The stream to read from.
+     * @return The attribute.
+     * @throws IOException If something goes wrong while reading.
+     * @throws ClassNotFoundException If the class of a serialized value
+     * cannot be found.
+     */
+    private Attribute readAttribute(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        byte kind = in.readByte();
+        if (kind == KIND_SERIALIZED) {
+            return (Attribute) readSerialized(in);
+        }
+
+        String name = readString(in);
+        byte typeOrdinal = in.readByte();
+        Set<String> roles = readRoles(in);
+        CachePolicy cachePolicy = readCachePolicy(in);
+        Attribute attribute;
+        if (kind == KIND_LIST) {
+            int size = in.readInt();
+            List<Object> elements = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                elements.add(readValue(in));
+            }
+            attribute = new ListAttribute(name, elements);
+        } else {
+            attribute = new Attribute(name, readValue(in));
+        }
+        if (typeOrdinal >= 0) {
+            attribute.setType(AttributeType.values()[typeOrdinal]);
+        }
+        attribute.setRoles(roles);
+        attribute.setCachePolicy(cachePolicy);
+        return attribute;
+    }
+
+    /**
+     * Writes the value of an attribute, or an element of a list.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void writeValue(DataOutputStream out, Object value)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Attribute) {
+            out.writeByte(VALUE_ATTRIBUTE);
+            writeAttribute(out, (Attribute) value);
+        } else {
+            out.writeByte(VALUE_SERIALIZED);
+            writeSerialized(out, value);
+        }
+    }
+
+    /**
+     * Reads the value of an attribute, or an element of a list.
+     *
+     * @param in The stream to read from.
+     * @return The value.
+     * @throws IOException If something goes wrong while reading.
+     * @throws ClassNotFoundException If the class of a serialized value
+     * cannot be found.
+     */
+    private Object readValue(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case VALUE_NULL:
+            return null;
+        case VALUE_STRING:
+            return readString(in);
+        case VALUE_ATTRIBUTE:
+            return readAttribute(in);
+        case VALUE_SERIALIZED:
+            return readSerialized(in);
+        default:
+            throw new IOException("Invalid value tag: " + tag);
+        }
+    }
+
+    /**
+     * Writes an object using Java serialization.
+     *
+     * @param out The stream to write to.
+     * @param value The object to write.
+     * @throws IOException If something goes wrong while writing, or if the
+     * object is not serializable.
+     */
+    private void writeSerialized(DataOutputStream out, Object value)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+        objectOut.writeObject(value);
+        objectOut.close();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Reads an object stored using Java serialization. Classes are loaded
+     * using the context class loader, if available.
+     *
+     * @param in The stream to read from.
+     * @return The object.
+     * @throws IOException If something goes wrong while reading.
+     * @throws ClassNotFoundException If the class of the object cannot be
+     * found.
+     */
+    private Object readSerialized(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        ObjectInputStream objectIn = new ObjectInputStream(
+                new ByteArrayInputStream(bytes)) {
+
+            /** {@inheritDoc} */
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc)
+                    throws IOException, ClassNotFoundException {
+                ClassLoader loader = Thread.currentThread()
+                        .getContextClassLoader();
+                if (loader != null) {
+                    try {
+                        return Class.forName(desc.getName(), false, loader);
+                    } catch (ClassNotFoundException e) {
+                        // Try with the default class loader.
+                    }
+                }
+                return super.resolveClass(desc);
+            }
+        };
+        try {
+            return objectIn.readObject();
+        } finally {
+            objectIn.close();
+        }
+    }
+
+    /**
+     * Writes a set of roles.
+     *
+     * @param out The stream to write to.
+     * @param roles The roles. It can be <code>null</code>.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void writeRoles(DataOutputStream out, Set<String> roles)
+            throws IOException {
+        if (roles == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(roles.size());
+        for (String role : roles) {
+            writeString(out, role);
+        }
+    }
+
+    /**
+     * Reads a set of roles.
+     *
+     * @param in The stream to read from.
+     * @return The roles. It can be <code>null</code>.
+     * @throws IOException If something goes wrong while reading.
+     */
+    private Set<String> readRoles(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Set<String> roles = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+            roles.add(readString(in));
+        }
+        return roles;
+    }
+
+    /**
+     * Writes a cache policy.
+     *
+     * @param out The stream to write to.
+     * @param cachePolicy The cache policy. It can be <code>null</code>.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void writeCachePolicy(DataOutputStream out,
+            CachePolicy cachePolicy) throws IOException {
+        writeString(out, cachePolicy != null ? cachePolicy.toString() : null);
+    }
+
+    /**
+     * Reads a cache policy.
+     *
+     * @param in The stream to read from.
+     * @return The cache policy, or <code>null</code> if it is not present.
+     * @throws IOException If something goes wrong while reading.
+     */
+    private CachePolicy readCachePolicy(DataInputStream in) throws IOException {
+        return CachePolicy.parse(readString(in));
+    }
+
+    /**
+     * Writes a string, that can be <code>null</code> and of any length.
+     *
+     * @param out The stream to write to.
+     * @param string The string to write.
+     * @throws IOException If something goes wrong while writing.
+     */
+    private void writeString(DataOutputStream out, String string)
+            throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in The stream to read from.
+     * @return The string. It can be <code>null</code>.
+     * @throws IOException If something goes wrong while reading.
+     */
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * The definitions of a locale, with the hashes of the sources they have
+     * been read from.
+     */
+    public static class Entry {
+
+        /**
+         * The hashes of the sources, mapped by URL.
+         */
+        private Map<String, String> sourceHashes;
+
+        /**
+         * The resolved definitions, mapped by name.
+         */
+        private Map<String, Definition> definitions;
+
+        /**
+         * Constructor.
+         *
+         * @param sourceHashes The hashes of the sources, mapped by URL. A
+         * source that does not exist is mapped to {@link #MISSING_SOURCE}.
+         * @param definitions The resolved definitions, mapped by name.
+         */
+        public Entry(Map<String, String> sourceHashes,
+                Map<String, Definition> definitions) {
+            this.sourceHashes = sourceHashes;
+            this.definitions = definitions;
+        }
+
+        /**
+         * Returns the hashes of the sources.
+         *
+         * @return The hashes of the sources, mapped by URL.
+         */
+        public Map<String, String> getSourceHashes() {
+            return sourceHashes;
+        }
+
+        /**
+         * Returns the resolved definitions.
+         *
+         * @return The definitions, mapped by name.
+         */
+        public Map<String, Definition> getDefinitions() {
+            return definitions;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Definition;
+
+/**
+ * Reads and writes the definitions snapshots of a
+ * {@link UrlDefinitionsFactory} in a {@link DefinitionsSnapshotFile}. The
+ * entries of the snapshot are checked against the current content of their
+ * sources before they are used. The snapshots are written in a background
+ * thread, so that requests that load the definitions of a new locale do not
+ * wait for the file to be written. When several snapshots are published
+ * before the thread writes the file, only the last one is written.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DefinitionsSnapshotStore {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(DefinitionsSnapshotStore.class);
+
+    /**
+     * Creates the daemon threads that write the snapshots.
+     */
+    private static final ThreadFactory WRITER_THREAD_FACTORY = new ThreadFactory() {
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Tiles definitions snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /**
+     * The snapshot file.
+     */
+    private DefinitionsSnapshotFile file;
+
+    /**
+     * The entries of the last snapshot that has not been written yet, or
+     * <code>null</code> if there is none.
+     */
+    private final AtomicReference<Map<Locale, DefinitionsSnapshotFile.Entry>> pending =
+        new AtomicReference<Map<Locale, DefinitionsSnapshotFile.Entry>>();
+
+    /**
+     * The executor that writes the snapshots, created when first needed.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Indicates whether the store has been closed.
+     */
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param file The snapshot file.
+     */
+    public DefinitionsSnapshotStore(DefinitionsSnapshotFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the snapshot file.
+     *
+     * @return The snapshot file.
+     */
+    public DefinitionsSnapshotFile getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the entries of the snapshot file.
+     *
+     * @return The entries, mapped by locale, or <code>null</code> if the file
+     * does not exist or cannot be read.
+     */
+    public Map<Locale, DefinitionsSnapshotFile.Entry> read() {
+        try {
+            return file.read();
+        } catch (IOException e) {
+            LOG.warn("Cannot read the definitions snapshot " + file.getFile()
+                    + ", the sources will be read", e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the sources of a snapshot entry have not changed since
+     * the snapshot was written. The entry must have been read from exactly
+     * the given sources, and their content must have the same hashes.
+     *
+     * @param entry The snapshot entry.
+     * @param paths The URLs of the sources the entry must have been read
+     * from.
+     * @param currentHashes The hashes of the sources already checked, mapped
+     * by URL. The hashes computed by this method are added to it.
+     * @param lastModifiedDates The last modification dates of the sources,
+     * mapped by URL. The dates of the sources read by this method are added
+     * to it.
+     * @return <code>true</code> if the entry can be used.
+     */
+    public boolean isUpToDate(DefinitionsSnapshotFile.Entry entry,
+            Set<String> paths, Map<String, String> currentHashes,
+            Map<String, Long> lastModifiedDates) {
+        if (!paths.equals(entry.getSourceHashes().keySet())) {
+            return false;
+        }
+
+        for (Map.Entry<String, String> source : entry.getSourceHashes()
+                .entrySet()) {
+            String path = source.getKey();
+            String hash = currentHashes.get(path);
+            if (hash == null) {
+                try {
+                    hash = computeHash(path, lastModifiedDates);
+                } catch (IOException e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Cannot read " + path, e);
+                    }
+                    return false;
+                }
+                currentHashes.put(path, hash);
+            }
+            if (!hash.equals(source.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the writing of a snapshot of resolved definitions. The base
+     * definitions and the definitions of each locale are written only if the
+     * hashes of their sources are known.
+     *
+     * @param definitions The definitions, that must not be modified
+     * afterwards.
+     * @param hashes The hashes of the sources of the definitions, mapped by
+     * locale and then by URL. The base sources are mapped to the
+     * <code>null</code> locale.
+     * @param locales The locales whose definitions are written.
+     */
+    public void write(DefinitionsImpl definitions,
+            Map<Locale, Map<String, String>> hashes, List<Locale> locales) {
+        if (hashes.get(null) == null) {
+            return;
+        }
+        Map<Locale, DefinitionsSnapshotFile.Entry> entries =
+            new LinkedHashMap<Locale, DefinitionsSnapshotFile.Entry>();
+        entries.put(null, new DefinitionsSnapshotFile.Entry(hashes.get(null),
+                definitions.getBaseDefinitions()));
+        for (Locale locale : locales) {
+            Map<String, Definition> localeDefinitions = definitions
+                    .getLocaleDefinitions(locale);
+            if (localeDefinitions != null && hashes.get(locale) != null) {
+                entries.put(locale, new DefinitionsSnapshotFile.Entry(hashes
+                        .get(locale), localeDefinitions));
+            }
+        }
+        write(entries);
+    }
+
+    /**
+     * Schedules the writing of a snapshot. The entries must not be modified
+     * afterwards. If a snapshot is already waiting to be written, it is
+     * replaced. Nothing is written once the store has been closed.
+     *
+     * @param entries The entries of the snapshot, mapped by locale.
+     */
+    public void write(Map<Locale, DefinitionsSnapshotFile.Entry> entries) {
+        if (pending.getAndSet(entries) != null) {
+            return;
+        }
+        ExecutorService writer = getExecutor();
+        if (writer == null) {
+            pending.set(null);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Snapshot not written, the store has been closed");
+            }
+            return;
+        }
+        try {
+            writer.execute(new Runnable() {
+
+                /** {@inheritDoc} */
+                public void run() {
+                    writePending();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The store has just been closed, and it has written the pending
+            // snapshot.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Snapshot store already closed", e);
+            }
+        }
+    }
+
+    /**
+     * Waits until the snapshots scheduled so far have been written.
+     */
+    public void flush() {
+        ExecutorService writer;
+        synchronized (this) {
+            writer = executor;
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(new Runnable() {
+
+                /** {@inheritDoc} */
+                public void run() {
+                    writePending();
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Cannot write the definitions snapshot "
+                    + file.getFile(), e.getCause());
+        } catch (RejectedExecutionException e) {
+            // The executor has been shut down: the pending snapshot, if any,
+            // is written by the close method.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Snapshot store already closed", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending snapshot, if any, and stops the background thread.
+     */
+    public void close() {
+        ExecutorService writer;
+        synchronized (this) {
+            closed = true;
+            writer = executor;
+            executor = null;
+        }
+        if (writer != null) {
+            writer.shutdown();
+        }
+        // Written here too, in case the thread has not been started.
+        writePending();
+    }
+
+    /**
+     * Writes the pending snapshot, if any. If the file cannot be written, a
+     * warning is logged.
+     */
+    private void writePending() {
+        // The entries are taken while holding the lock, so an older snapshot
+        // is never written after a newer one.
+        synchronized (file) {
+            Map<Locale, DefinitionsSnapshotFile.Entry> entries = pending
+                    .getAndSet(null);
+            if (entries == null) {
+                return;
+            }
+            try {
+                file.write(entries);
+            } catch (IOException e) {
+                LOG.warn("Cannot write the definitions snapshot "
+                        + file.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Computes the hash of the current content of a source, and records its
+     * last modification date.
+     *
+     * @param path The URL of the source.
+     * @param lastModifiedDates The last modification dates of the sources,
+     * mapped by URL.
+     * @return The hash, or {@link DefinitionsSnapshotFile#MISSING_SOURCE} if
+     * the source does not exist.
+     * @throws IOException If the source cannot be read.
+     */
+    private String computeHash(String path,
+            Map<String, Long> lastModifiedDates) throws IOException {
+        try {
+            URLConnection connection = new URL(path).openConnection();
+            connection.connect();
+            long lastModified = connection.getLastModified();
+            byte[] content = DefinitionsSnapshotFile.readContent(connection
+                    .getInputStream());
+            lastModifiedDates.put(path, lastModified);
+            return DefinitionsSnapshotFile.computeHash(content);
+        } catch (FileNotFoundException e) {
+            return DefinitionsSnapshotFile.MISSING_SOURCE;
+        }
+    }
+
+    /**
+     * Returns the executor that writes the snapshots, creating it if needed.
+     *
+     * @return The executor, or <code>null</code> if the store has been
+     * closed.
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (closed) {
+            return null;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(WRITER_THREAD_FACTORY);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.tiles.definition;
+
+import java.util.Set;
+
+import org.apache.tiles.context.TilesRequestContext;
+
+/**
+ * Indicates that a definitions factory keeps an index of the names of its
+ * definitions, so it can tell that a definition does not exist without
+ * looking it up.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface IndexedDefinitionsFactory {
+
+    /**
+     * Checks whether a definition with the given name may be returned for a
+     * request. If <code>false</code> is returned,
+     * {@link DefinitionsFactory#getDefinition(String, TilesRequestContext)}
+     * would not find the definition.
+     *
+     * @param name The name of the definition.
+     * @param tilesContext The request context.
+     * @return <code>false</code> if the definition surely does not exist.
+     */
+    boolean mayContainDefinition(String name, TilesRequestContext tilesContext);
+
+    /**
+     * Returns the names of the definitions that do not depend on the locale.
+     * Each of them can be got calling
+     * {@link DefinitionsFactory#getDefinition(String, TilesRequestContext)}
+     * without a request context.
+     *
+     * @return The names of the base definitions.
+     */
+    Set<String> getDefinitionNames();
+}
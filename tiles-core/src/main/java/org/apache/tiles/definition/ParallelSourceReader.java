@@ -0,0 +1,150 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.tiles.Definition;
+
+/**
+ * Reads the base sources of a {@link UrlDefinitionsFactory} in parallel, if
+ * its reader is thread-safe, and returns their definitions in the order of
+ * the sources, so that they can be merged as if they had been read one
+ * after the other.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class ParallelSourceReader {
+
+    /**
+     * Creates the daemon threads that read and resolve definitions in parallel
+     * while they are loaded.
+     */
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Tiles definitions loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /**
+     * Constructor, private to avoid instantiation.
+     */
+    private ParallelSourceReader() {
+    }
+
+    /**
+     * Creates an executor that reads the sources and resolves the
+     * definitions with a thread for each processor.
+     *
+     * @return The executor, or <code>null</code> if there is only one
+     * processor.
+     */
+    public static ExecutorService createExecutor() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors < 2) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(processors, THREAD_FACTORY);
+    }
+
+    /**
+     * Reads the definitions of all the base sources of a factory. If an
+     * executor is passed and the reader of the factory is thread-safe, the
+     * sources are read in parallel.
+     *
+     * @param factory The factory that reads each source.
+     * @param sources The URLs of the sources.
+     * @param executor The executor to use. It can be <code>null</code>.
+     * @param hashes The map where the hashes of the sources are recorded. It
+     * can be <code>null</code>.
+     * @return The definitions of each source, in the order of the sources.
+     * @throws DefinitionsFactoryException If a source cannot be read.
+     */
+    public static List<Map<String, Definition>> read(
+            final UrlDefinitionsFactory factory, List<Object> sources,
+            ExecutorService executor, final Map<String, String> hashes)
+            throws DefinitionsFactoryException {
+        List<Map<String, Definition>> defsMaps =
+            new ArrayList<Map<String, Definition>>(sources.size());
+        if (executor == null || sources.size() < 2
+                || !factory.isReaderThreadSafe()) {
+            for (Object source : sources) {
+                defsMaps.add(factory.readSource((URL) source, hashes));
+            }
+            return defsMaps;
+        }
+
+        List<Future<Map<String, Definition>>> futures =
+            new ArrayList<Future<Map<String, Definition>>>(sources.size());
+        for (final Object source : sources) {
+            futures.add(executor.submit(
+                    new Callable<Map<String, Definition>>() {
+
+                        /** {@inheritDoc} */
+                        public Map<String, Definition> call()
+                            throws DefinitionsFactoryException {
+                            return factory.readSource((URL) source, hashes);
+                        }
+                    }));
+        }
+
+        try {
+            for (Future<Map<String, Definition>> future : futures) {
+                defsMaps.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DefinitionsFactoryException) {
+                throw (DefinitionsFactoryException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DefinitionsFactoryException(
+                "Error reading definitions.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DefinitionsFactoryException(
+                "Interrupted while reading definitions.", e);
+        } finally {
+            for (Future<Map<String, Definition>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return defsMaps;
+    }
+}
@@ -38,7 +38,8 @@ public interface ReloadableDefinitionsFactory {
     boolean refreshRequired();
 
     /**
-     * Refreshes the stored definitions, reloading them.
+     * Refreshes the stored definitions, reloading them. Implementations
+     * should keep the current definitions if the new ones cannot be loaded.
      *
      * @throws DefinitionsFactoryException If something goes wrong during
      * refresh.
@@ -25,34 +25,145 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.tiles.Definition;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.context.TilesRequestContext;
-import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.definition.sax.SAXDefinitionsReader;
+import org.apache.tiles.definition.util.BoundedLocaleSet;
+import org.apache.tiles.definition.util.DefinitionsLoadStatistics;
+import org.apache.tiles.definition.util.LocaleFailures;
+import org.apache.tiles.definition.util.LocalizedSourceIndex;
+import org.apache.tiles.definition.util.SupportedLocales;
 import org.apache.tiles.locale.LocaleResolver;
 import org.apache.tiles.locale.impl.DefaultLocaleResolver;
 import org.apache.tiles.reflect.ClassUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 /**
  * {@link DefinitionsFactory DefinitionsFactory} implementation
  * that manages Definitions configuration data from URLs.
  * <p/>
  * <p>The Definition objects are read from the
- * {@link org.apache.tiles.definition.digester.DigesterDefinitionsReader DigesterDefinitionsReader}
+ * {@link org.apache.tiles.definition.sax.SAXDefinitionsReader SAXDefinitionsReader}
  * class unless another implementation is specified.</p>
+ * <p>The definitions are published as snapshots: once a {@link Definitions}
+ * object is visible to request threads it is never modified. Loading the
+ * definitions of a new locale or refreshing them creates a new snapshot
+ * that replaces the current one, so reading a definition never needs to
+ * acquire a lock.</p>
+ * <p>The base sources are read in parallel, if the reader is thread-safe, and
+ * merged in the order they have been added, so a definition in a source
+ * replaces the one with the same name in the previous sources. Inheritance is
+ * resolved once, after the merge.</p>
+ * <p>A refresh reads the base definitions and the definitions of every
+ * locale already loaded, and replaces the current definitions only if all of
+ * them have been read and resolved successfully. If the
+ * {@link #BACKGROUND_REFRESH_PROPERTY} initialization parameter is set to
+ * <code>true</code>, the refresh is performed in a background thread.</p>
+ * <p>The localized versions of the sources that exist are indexed when the
+ * base definitions are loaded, listing the directories of <code>file:</code>
+ * and <code>jar:</code> sources, so loading a locale reads only the localized
+ * files that exist and reuses the base sources already parsed.</p>
+ * <p>The definitions of at most {@link #LOCALE_CACHE_SIZE_PROPERTY} locales
+ * are kept: when a new locale is loaded, the least recently used one is
+ * discarded. If the {@link #SUPPORTED_LOCALES_PROPERTY} initialization
+ * parameter is specified, the locale of a request is mapped to the nearest
+ * supported locale, so the locales sent by clients cannot cause the load of
+ * an unlimited number of locales.</p>
+ * <p>If the {@link #SNAPSHOT_FILE_PROPERTY} initialization parameter is
+ * specified, the resolved definitions are written to a binary snapshot file
+ * every time they are loaded. At startup, if the content of all the sources
+ * is the same as when the snapshot was written, the definitions are read from
+ * the snapshot, without parsing the sources and resolving the inheritance.
+ * Otherwise the sources are read as usual.</p>
  *
  * @version $Rev$ $Date$
  */
 public class UrlDefinitionsFactory
-    implements DefinitionsFactory, ReloadableDefinitionsFactory {
+    implements DefinitionsFactory, ReloadableDefinitionsFactory,
+    IndexedDefinitionsFactory {
+
+    /**
+     * Initialization parameter that, if set to <code>true</code>, makes
+     * {@link #refresh()} reload definitions in a background thread.
+     *
+     * @since 2.0.8
+     */
+    public static final String BACKGROUND_REFRESH_PROPERTY =
+        "org.apache.tiles.definition.UrlDefinitionsFactory.BACKGROUND_REFRESH";
+
+    /**
+     * Initialization parameter that specifies the path of the file where the
+     * resolved definitions are stored, to be read at the next startup if the
+     * sources have not changed. If not specified, no snapshot is used.
+     *
+     * @since 2.0.8
+     */
+    public static final String SNAPSHOT_FILE_PROPERTY =
+        "org.apache.tiles.definition.UrlDefinitionsFactory.SNAPSHOT_FILE";
+
+    /**
+     * Initialization parameter that specifies the comma-separated list of
+     * supported locales, for example <code>en,en_US,fr</code>. If specified,
+     * the locale of a request is replaced by the nearest supported locale, that
+     * is the locale itself, the locale without the variant or the language
+     * only. If none of them is supported, the base definitions are used.
+     *
+     * @since 2.0.8
+     */
+    public static final String SUPPORTED_LOCALES_PROPERTY =
+        "org.apache.tiles.definition.UrlDefinitionsFactory.SUPPORTED_LOCALES";
+
+    /**
+     * Initialization parameter that specifies the maximum number of locales
+     * whose definitions are kept in memory.
+     *
+     * @since 2.0.8
+     */
+    public static final String LOCALE_CACHE_SIZE_PROPERTY =
+        "org.apache.tiles.definition.UrlDefinitionsFactory.LOCALE_CACHE_SIZE";
+
+    /**
+     * The default maximum number of locales whose definitions are kept in
+     * memory.
+     *
+     * @since 2.0.8
+     */
+    public static final int DEFAULT_LOCALE_CACHE_SIZE = 64;
+
+    /**
+     * The time, in milliseconds, before the definitions of a locale are read
+     * again after they could not be read the first time. It doubles after
+     * every failure, up to {@link #MAX_LOCALE_RETRY_DELAY}.
+     *
+     * @since 2.0.8
+     */
+    public static final long LOCALE_RETRY_DELAY = 5000;
+
+    /**
+     * The maximum time, in milliseconds, before the definitions of a locale
+     * are read again after they could not be read.
+     *
+     * @since 2.0.8
+     */
+    public static final long MAX_LOCALE_RETRY_DELAY = 300000;
 
     /**
      * LOG instance for all UrlDefinitionsFactory instances.
@@ -75,28 +186,93 @@ public class UrlDefinitionsFactory
     protected Map<String, Long> lastModifiedDates;
 
     /**
-     * Contains a list of locales that have been processed.
+     * Contains the locales that have been processed, up to the maximum
+     * number of locales kept in memory.
      */
-    private List<Locale> processedLocales;
+    private BoundedLocaleSet processedLocales;
 
+    /**
+     * The locales whose definitions could not be read. Until the delay of
+     * the last failure has elapsed, the base definitions are used for them.
+     */
+    private LocaleFailures failedLocales = new LocaleFailures(
+            LOCALE_RETRY_DELAY, MAX_LOCALE_RETRY_DELAY);
+
+    /**
+     * The supported locales, or <code>null</code> if all the locales are
+     * supported.
+     */
+    private SupportedLocales supportedLocales;
+
+
+    /**
+     * The definitions holder object. It is the current snapshot, and it is
+     * replaced (never modified) when new definitions are loaded.
+     */
+    private volatile Definitions definitions;
+
+    /**
+     * Lock used to serialize the creation of new definitions snapshots.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Indicates whether {@link #refresh()} works in a background thread.
+     */
+    private boolean backgroundRefresh = false;
 
     /**
-     * The definitions holder object.
+     * Performs the background refreshes.
      */
-    private Definitions definitions;
+    private final BackgroundRefresher refresher = new BackgroundRefresher(
+            this);
 
     /**
      * The locale resolver object.
      */
     private LocaleResolver localeResolver;
 
+    /**
+     * Reads and writes the snapshots of the resolved definitions. It is
+     * <code>null</code> if no snapshot is used.
+     */
+    private DefinitionsSnapshotStore snapshotStore;
+
+    /**
+     * The content hashes of the sources the current definitions have been
+     * read from, mapped by locale and then by URL. The hashes of the base
+     * sources are mapped to the <code>null</code> locale. It is replaced
+     * together with the definitions, and used only if a snapshot file is
+     * specified.
+     */
+    private volatile Map<Locale, Map<String, String>> sourceHashes =
+        new HashMap<Locale, Map<String, String>>();
+
+    /**
+     * The base sources the current definitions have been read from. It is
+     * replaced together with the definitions.
+     */
+    private volatile BaseSources baseSources;
+
+    /**
+     * The objects notified when the definitions are reloaded.
+     */
+    private List<DefinitionsRefreshListener> refreshListeners =
+        new CopyOnWriteArrayList<DefinitionsRefreshListener>();
+
+    /**
+     * The statistics about the loading of the definitions.
+     */
+    private DefinitionsLoadStatistics statistics =
+        new DefinitionsLoadStatistics();
+
     /**
      * Creates a new instance of UrlDefinitionsFactory.
      */
     public UrlDefinitionsFactory() {
         sources = new ArrayList<Object>();
-        lastModifiedDates = new HashMap<String, Long>();
-        processedLocales = new ArrayList<Locale>();
+        lastModifiedDates = new ConcurrentHashMap<String, Long>();
+        processedLocales = new BoundedLocaleSet(DEFAULT_LOCALE_CACHE_SIZE);
     }
 
     /**
@@ -115,7 +291,7 @@ public class UrlDefinitionsFactory
         if (readerClassName != null) {
             reader = (DefinitionsReader) ClassUtil.instantiate(readerClassName);
         } else {
-            reader = new DigesterDefinitionsReader();
+            reader = new SAXDefinitionsReader();
         }
         reader.init(params);
 
@@ -127,7 +303,40 @@ public class UrlDefinitionsFactory
             localeResolver = new DefaultLocaleResolver();
         }
         localeResolver.init(params);
-        definitions = readDefinitions();
+        backgroundRefresh = Boolean.valueOf(params
+                .get(BACKGROUND_REFRESH_PROPERTY));
+
+        String cacheSize = params.get(LOCALE_CACHE_SIZE_PROPERTY);
+        if (cacheSize != null) {
+            processedLocales = new BoundedLocaleSet(Integer.parseInt(cacheSize
+                    .trim()));
+        }
+        String supportedLocalesParam = params.get(SUPPORTED_LOCALES_PROPERTY);
+        if (supportedLocalesParam != null) {
+            supportedLocales = SupportedLocales.parse(supportedLocalesParam);
+        }
+
+        String snapshotPath = params.get(SNAPSHOT_FILE_PROPERTY);
+        if (snapshotPath != null && snapshotPath.trim().length() > 0) {
+            snapshotStore = new DefinitionsSnapshotStore(
+                    new DefinitionsSnapshotFile(new File(snapshotPath.trim())));
+        }
+        long start = System.currentTimeMillis();
+        synchronized (snapshotLock) {
+            BaseSources base = createBaseSources();
+            baseSources = base;
+            definitions = loadSnapshot();
+            if (definitions == null) {
+                Definitions newDefinitions = readDefinitions(base);
+                Map<Locale, Map<String, String>> newHashes =
+                    new HashMap<Locale, Map<String, String>>();
+                newHashes.put(null, base.getHashes());
+                definitions = newDefinitions;
+                sourceHashes = newHashes;
+                saveSnapshot();
+            }
+        }
+        statistics.recordReload(start, System.currentTimeMillis() - start);
     }
 
     /**
@@ -157,19 +366,66 @@ public class UrlDefinitionsFactory
                                              TilesRequestContext tilesContext)
         throws DefinitionsFactoryException {
 
-        Definitions definitions = getDefinitions();
         Locale locale = null;
 
         if (tilesContext != null) {
-            locale = localeResolver.resolveLocale(tilesContext);
-            if (!isContextProcessed(tilesContext)) {
-                synchronized (definitions) {
-                    addDefinitions(definitions, tilesContext);
-                }
+            locale = resolveLocale(tilesContext);
+            if (locale != null && !processedLocales.contains(locale)) {
+                return addLocaleDefinitions(tilesContext).getDefinition(name,
+                        locale);
             }
         }
 
-        return definitions.getDefinition(name, locale);
+        // The definitions are read after the locale is checked: a locale is
+        // marked as processed only after its definitions are published.
+        return getDefinitions().getDefinition(name, locale);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The names of the base definitions and of the definitions of the
+     * processed locales are checked against a filter. A name that is not
+     * there can only be defined in a localized source of a locale that has
+     * not been processed yet, if such a source exists.
+     */
+    public boolean mayContainDefinition(String name,
+            TilesRequestContext tilesContext) {
+        // The locale is checked before the definitions are read: a locale is
+        // marked as processed only after its definitions are published.
+        boolean processed = tilesContext == null
+                || isContextProcessed(tilesContext);
+        Definitions currentDefinitions;
+        try {
+            currentDefinitions = getDefinitions();
+        } catch (DefinitionsFactoryException e) {
+            return true;
+        }
+        if (!(currentDefinitions instanceof DefinitionsImpl)
+                || ((DefinitionsImpl) currentDefinitions)
+                        .mayContainDefinition(name)) {
+            return true;
+        }
+        BaseSources base = baseSources;
+        return !processed && (base == null || base.hasLocalizedSources());
+    }
+
+    /** {@inheritDoc} */
+    public Set<String> getDefinitionNames() {
+        Definitions currentDefinitions;
+        try {
+            currentDefinitions = getDefinitions();
+        } catch (DefinitionsFactoryException e) {
+            return Collections.emptySet();
+        }
+        if (currentDefinitions instanceof DefinitionsImpl) {
+            return ((DefinitionsImpl) currentDefinitions)
+                    .getBaseDefinitionNames();
+        }
+        Map<String, Definition> baseDefinitions = currentDefinitions
+                .getBaseDefinitions();
+        return baseDefinitions != null ? baseDefinitions.keySet()
+                : Collections.<String>emptySet();
     }
 
     /**
@@ -213,26 +469,156 @@ public class UrlDefinitionsFactory
                                   TilesRequestContext tilesContext)
         throws DefinitionsFactoryException {
 
-        Locale locale = localeResolver.resolveLocale(tilesContext);
+        Locale locale = resolveLocale(tilesContext);
 
         if (isContextProcessed(tilesContext)) {
             return;
         }
 
-        if (locale == null) {
-            return;
+        Locale evicted = processedLocales.add(locale);
+        if (evicted != null) {
+            removeLocaleDefinitions(definitions, evicted);
+        }
+        addDefinitions(definitions, locale);
+    }
+
+    /**
+     * Creates a new definitions snapshot containing the locale-specific
+     * definitions for the locale of the given context, and publishes it.
+     * Definitions already published are not modified, so threads reading
+     * them are never blocked.
+     * <p/>
+     * The locale is marked as processed only if its definitions have been
+     * read. Otherwise the exception is thrown, and the base definitions are
+     * used for the locale until it is read again, after a delay that grows
+     * with the number of failures.
+     *
+     * @param tilesContext The request context.
+     * @return The definitions snapshot to use for the context.
+     * @throws DefinitionsFactoryException If something goes wrong when
+     * reading definitions.
+     * @since 2.0.8
+     */
+    protected Definitions addLocaleDefinitions(TilesRequestContext tilesContext)
+        throws DefinitionsFactoryException {
+        Locale locale = resolveLocale(tilesContext);
+        if (failedLocales.isRetryDeferred(locale)) {
+            return definitions;
+        }
+        synchronized (snapshotLock) {
+            Definitions current = definitions;
+            if (locale == null || processedLocales.contains(locale)
+                    || failedLocales.isRetryDeferred(locale)) {
+                return current;
+            }
+
+            // The least recently used locale is discarded before publishing
+            // the new snapshot, so it is never marked as processed while its
+            // definitions are missing.
+            Locale evicted = processedLocales.getEvictionCandidate();
+            if (evicted != null) {
+                processedLocales.remove(evicted);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Discarding the definitions of locale "
+                            + evicted);
+                }
+            }
+
+            Definitions newDefinitions = copyDefinitions(current);
+            Map<String, String> hashes = createHashes();
+            try {
+                addDefinitions(newDefinitions, locale, hashes, baseSources);
+            } catch (DefinitionsFactoryException e) {
+                if (evicted != null) {
+                    // Its definitions are still in the current snapshot.
+                    processedLocales.add(evicted);
+                }
+                LOG.error("Unable to read the definitions of locale " + locale
+                        + ", the base definitions are used for it during the"
+                        + " next " + failedLocales.recordFailure(locale)
+                        + " ms", e);
+                throw e;
+            }
+            Map<Locale, Map<String, String>> newHashes =
+                new HashMap<Locale, Map<String, String>>(sourceHashes);
+            if (evicted != null) {
+                removeLocaleDefinitions(newDefinitions, evicted);
+                newHashes.remove(evicted);
+            }
+            newHashes.put(locale, hashes);
+            definitions = newDefinitions;
+            sourceHashes = newHashes;
+            // The locale is marked as processed only after the new snapshot
+            // has been published.
+            processedLocales.add(locale);
+            failedLocales.remove(locale);
+            saveSnapshot();
+            return definitions;
         }
+    }
 
-        processedLocales.add(locale);
+    /**
+     * Appends the definitions specific for a locale to an existing
+     * {@link Definitions} set by reading locale-specific versions of
+     * the applied sources.
+     *
+     * @param definitions The Definitions object to append to.
+     * @param locale The locale to read.
+     * @throws DefinitionsFactoryException if an error occurs reading definitions.
+     * @since 2.0.8
+     */
+    protected void addDefinitions(Definitions definitions, Locale locale)
+        throws DefinitionsFactoryException {
+        addDefinitions(definitions, locale, null, baseSources);
+    }
+
+    /**
+     * Appends the definitions specific for a locale to an existing
+     * {@link Definitions} set, recording the content hashes of the sources.
+     * The base sources already parsed are reused, and the localized sources
+     * that do not exist according to the index are skipped.
+     *
+     * @param definitions The Definitions object to append to.
+     * @param locale The locale to read.
+     * @param hashes The map where the hashes of the sources are recorded,
+     * mapped by URL. If <code>null</code>, the hashes are not computed.
+     * @param base The base sources. It can be <code>null</code>.
+     * @throws DefinitionsFactoryException if an error occurs reading definitions.
+     */
+    private void addDefinitions(Definitions definitions, Locale locale,
+            Map<String, String> hashes, BaseSources base)
+        throws DefinitionsFactoryException {
         List<String> postfixes = calculatePostfixes(locale);
         Map<String, Definition> localeDefsMap = new HashMap<String, Definition>();
-        for (Object postfix : postfixes) {
+        for (String postfix : postfixes) {
             // For each postfix, all the sources must be loaded.
             for (Object source : sources) {
                 URL url = (URL) source;
                 String path = url.toExternalForm();
 
-                String newPath = concatPostfix(path, (String) postfix);
+                String newPath = concatPostfix(path, postfix);
+                if (base != null) {
+                    if (postfix.length() == 0) {
+                        Map<String, Definition> defsMap = base
+                                .getDefinitions(path);
+                        if (defsMap != null) {
+                            localeDefsMap.putAll(defsMap);
+                            String hash = base.getHash(path);
+                            if (hashes != null && hash != null) {
+                                hashes.put(path, hash);
+                            }
+                            continue;
+                        }
+                    } else if (base.getIndex().isIndexed(newPath)
+                            && !base.getIndex().exists(newPath)) {
+                        if (hashes != null) {
+                            hashes.put(newPath,
+                                    DefinitionsSnapshotFile.MISSING_SOURCE);
+                        }
+                        continue;
+                    }
+                }
+
                 try {
                     URL newUrl = new URL(newPath);
                     URLConnection connection = newUrl.openConnection();
@@ -242,13 +628,17 @@ public class UrlDefinitionsFactory
 
                     // Definition must be collected, starting from the base
                     // source up to the last localized file.
-                    Map<String, Definition> defsMap = reader
-                            .read(connection.getInputStream());
+                    Map<String, Definition> defsMap = read(newUrl,
+                            connection, hashes);
                     if (defsMap != null) {
                         localeDefsMap.putAll(defsMap);
                     }
                 } catch (FileNotFoundException e) {
                     // File not found. continue.
+                    if (hashes != null) {
+                        hashes.put(newPath,
+                                DefinitionsSnapshotFile.MISSING_SOURCE);
+                    }
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("File " + newPath + " not found, continue");
                     }
@@ -261,8 +651,7 @@ public class UrlDefinitionsFactory
 
         // At the end of definitions loading, they can be assigned to
         // Definitions implementation, to allow inheritance resolution.
-        definitions.addDefinitions(localeDefsMap, localeResolver
-                .resolveLocale(tilesContext));
+        definitions.addDefinitions(localeDefsMap, locale);
     }
 
     /**
@@ -274,23 +663,140 @@ public class UrlDefinitionsFactory
      * sources.
      */
     public Definitions readDefinitions()
+        throws DefinitionsFactoryException {
+        return readDefinitions(null);
+    }
+
+    /**
+     * Creates and returns a {@link Definitions} set by reading
+     * configuration data from the applied sources, recording what has been
+     * read from each source.
+     *
+     * @param base The object where the definitions and the hashes of each
+     * source are recorded. If <code>null</code>, nothing is recorded.
+     * @return The definitions holder object, filled with base definitions.
+     * @throws DefinitionsFactoryException if an error occurs reading the
+     * sources.
+     */
+    private Definitions readDefinitions(BaseSources base)
         throws DefinitionsFactoryException {
         Definitions definitions = createDefinitions();
+        ExecutorService loadExecutor = createLoadExecutor();
+        if (loadExecutor != null && definitions instanceof DefinitionsImpl) {
+            ((DefinitionsImpl) definitions).setExecutor(loadExecutor);
+        }
         try {
-            for (Object source1 : sources) {
-                URL source = (URL) source1;
-                URLConnection connection = source.openConnection();
-                connection.connect();
-                lastModifiedDates.put(source.toExternalForm(),
-                    connection.getLastModified());
-                Map<String, Definition> defsMap = reader
-                        .read(connection.getInputStream());
-                definitions.addDefinitions(defsMap);
+            // Merged in the order of the sources: the last definition wins.
+            Map<String, Definition> defsMap = new HashMap<String, Definition>();
+            List<Map<String, Definition>> defsMaps = ParallelSourceReader
+                    .read(this, sources, loadExecutor, base != null ? base
+                            .getHashes() : null);
+            for (int i = 0; i < defsMaps.size(); i++) {
+                Map<String, Definition> sourceDefsMap = defsMaps.get(i);
+                if (sourceDefsMap != null) {
+                    defsMap.putAll(sourceDefsMap);
+                    if (base != null) {
+                        base.putDefinitions(((URL) sources.get(i))
+                                .toExternalForm(), sourceDefsMap);
+                    }
+                }
             }
+            definitions.addDefinitions(defsMap);
+        } finally {
+            if (loadExecutor != null) {
+                // Locale-specific definitions are few: they are resolved in
+                // the calling thread.
+                if (definitions instanceof DefinitionsImpl) {
+                    ((DefinitionsImpl) definitions).setExecutor(null);
+                }
+                loadExecutor.shutdown();
+            }
+        }
+        return definitions;
+    }
+
+    /**
+     * Reads the definitions of a single source.
+     *
+     * @param source The source to read.
+     * @param hashes The map where the hash of the content of the source is
+     * recorded, mapped by URL. If <code>null</code>, the hash is not
+     * computed.
+     * @return The definitions read from the source, with their inheritance
+     * not resolved.
+     * @throws DefinitionsFactoryException If the source cannot be read.
+     * @since 2.0.8
+     */
+    protected Map<String, Definition> readSource(URL source,
+            Map<String, String> hashes) throws DefinitionsFactoryException {
+        try {
+            URLConnection connection = source.openConnection();
+            connection.connect();
+            lastModifiedDates.put(source.toExternalForm(),
+                connection.getLastModified());
+            return read(source, connection, hashes);
         } catch (IOException e) {
             throw new DefinitionsFactoryException("I/O error accessing source.", e);
         }
-        return definitions;
+    }
+
+    /**
+     * Reads the definitions from a connection, and closes its stream.
+     *
+     * @param url The URL of the connection.
+     * @param connection The connection to read from.
+     * @param hashes The map where the hash of the content is recorded,
+     * mapped by URL. If <code>null</code>, the content is parsed while it is
+     * read and the hash is not computed.
+     * @return The definitions read from the connection.
+     * @throws IOException If the connection cannot be read.
+     * @throws DefinitionsFactoryException If the definitions cannot be parsed.
+     */
+    private Map<String, Definition> read(URL url, URLConnection connection,
+            Map<String, String> hashes) throws IOException,
+            DefinitionsFactoryException {
+        InputStream stream = connection.getInputStream();
+        long start = System.nanoTime();
+        Map<String, Definition> defsMap;
+        if (hashes == null) {
+            try {
+                defsMap = reader.read(stream);
+            } finally {
+                stream.close();
+            }
+        } else {
+            byte[] content = DefinitionsSnapshotFile.readContent(stream);
+            hashes.put(url.toExternalForm(), DefinitionsSnapshotFile
+                    .computeHash(content));
+            defsMap = reader.read(new ByteArrayInputStream(content));
+        }
+        statistics.recordParse(url.toExternalForm(), System.nanoTime()
+                - start);
+        return defsMap;
+    }
+
+    /**
+     * Indicates whether the reader can be used by many threads at the same
+     * time. If it is the case, the base sources are read in parallel.
+     *
+     * @return <code>true</code> if the reader is thread-safe.
+     * @since 2.0.8
+     */
+    protected boolean isReaderThreadSafe() {
+        return reader instanceof SAXDefinitionsReader;
+    }
+
+    /**
+     * Creates the executor used to read the base sources and resolve the
+     * base definitions in parallel while they are loaded. It is shut down at
+     * the end of the loading.
+     *
+     * @return The executor, or <code>null</code> if definitions must be
+     * resolved in the calling thread.
+     * @since 2.0.8
+     */
+    protected ExecutorService createLoadExecutor() {
+        return ParallelSourceReader.createExecutor();
     }
 
     /**
@@ -305,8 +811,63 @@ public class UrlDefinitionsFactory
      * @return true if the given context has been processed and false otherwise.
      */
     protected boolean isContextProcessed(TilesRequestContext tilesContext) {
-        return processedLocales.contains(localeResolver
-                .resolveLocale(tilesContext));
+        Locale locale = resolveLocale(tilesContext);
+        return locale == null || processedLocales.contains(locale);
+    }
+
+    /**
+     * Returns the locale to use for a request: the locale returned by the
+     * locale resolver, mapped to the nearest supported locale. The mapping is
+     * remembered in the {@link TilesRequestState} of the request.
+     *
+     * @param tilesContext The request context.
+     * @return The locale, or <code>null</code> if the base definitions must
+     * be used.
+     * @since 2.0.8
+     */
+    protected Locale resolveLocale(TilesRequestContext tilesContext) {
+        Locale locale = localeResolver.resolveLocale(tilesContext);
+        if (supportedLocales == null) {
+            return locale;
+        }
+        TilesRequestState state = TilesRequestState.getInstance(tilesContext);
+        if (state == null) {
+            return getSupportedLocale(locale);
+        }
+        if (!state.isLocaleResolved(this, locale)) {
+            state.setResolvedLocale(this, locale, getSupportedLocale(locale));
+        }
+        return state.getResolvedLocale();
+    }
+
+    /**
+     * Returns the supported locale nearest to the given one: the locale
+     * itself, the locale without the variant or the language only. If no
+     * supported locales have been specified, the locale is returned as is.
+     *
+     * @param locale The locale.
+     * @return The supported locale, or <code>null</code> if the base
+     * definitions must be used.
+     * @since 2.0.8
+     */
+    protected Locale getSupportedLocale(Locale locale) {
+        if (supportedLocales == null) {
+            return locale;
+        }
+        return supportedLocales.getNearest(locale);
+    }
+
+    /**
+     * Removes the definitions of a locale, if the definitions support it.
+     *
+     * @param definitions The definitions to modify.
+     * @param locale The locale to remove.
+     */
+    private void removeLocaleDefinitions(Definitions definitions,
+            Locale locale) {
+        if (definitions instanceof DefinitionsImpl) {
+            ((DefinitionsImpl) definitions).removeLocaleDefinitions(locale);
+        }
     }
 
     /**
@@ -319,6 +880,29 @@ public class UrlDefinitionsFactory
         return new DefinitionsImpl();
     }
 
+    /**
+     * Creates a copy of a definitions set, that can be modified without
+     * affecting the original one. Override this method if you provide a
+     * custom instance of Definitions with {@link #createDefinitions()}.
+     * <p/>
+     * If the definitions cannot be copied, the same object is returned: in
+     * this case it will be modified in place, as in previous versions.
+     *
+     * @param definitions The definitions to copy.
+     * @return The copy of the definitions.
+     * @since 2.0.8
+     */
+    protected Definitions copyDefinitions(Definitions definitions) {
+        if (definitions instanceof DefinitionsImpl) {
+            return new DefinitionsImpl((DefinitionsImpl) definitions);
+        }
+
+        LOG.warn("Cannot copy definitions of type "
+                + definitions.getClass().getName()
+                + ", they will be modified in place");
+        return definitions;
+    }
+
     /**
      * Concat postfix to the name. Take care of existing filename extension.
      * Transform the given name "name.ext" to have "name" + "postfix" + "ext".
@@ -401,13 +985,392 @@ public class UrlDefinitionsFactory
     }
 
 
-    /** {@inheritDoc} */
+    /**
+     * Refreshes the stored definitions, reloading them. If the new definitions
+     * cannot be read or resolved, the current ones are kept.
+     * <p/>
+     * If background refresh is enabled, this method returns immediately and
+     * the definitions are reloaded by a background thread. Requests for a
+     * refresh made while another one is pending are ignored.
+     *
+     * @throws DefinitionsFactoryException If something goes wrong during
+     * a synchronous refresh.
+     */
     public void refresh() throws DefinitionsFactoryException {
+        if (!backgroundRefresh) {
+            reloadDefinitions();
+            return;
+        }
+
+        refresher.refresh();
+    }
+
+    /**
+     * Reloads the base definitions and the definitions for all the locales
+     * that have been already processed, and replaces the current definitions
+     * with them. If something goes wrong, the current definitions are kept.
+     *
+     * @throws DefinitionsFactoryException If the new definitions cannot be
+     * read or their inheritance cannot be resolved.
+     * @since 2.0.8
+     */
+    protected void reloadDefinitions() throws DefinitionsFactoryException {
         LOG.debug("Updating Tiles definitions. . .");
-        synchronized (definitions) {
-            Definitions newDefs = readDefinitions();
-            definitions.reset();
-            definitions.addDefinitions(newDefs.getBaseDefinitions());
+        long start = System.currentTimeMillis();
+        synchronized (snapshotLock) {
+            Definitions newDefs;
+            Map<Locale, Map<String, String>> newHashes =
+                new HashMap<Locale, Map<String, String>>();
+            BaseSources base = createBaseSources();
+            try {
+                newDefs = readDefinitions(base);
+                newHashes.put(null, base.getHashes());
+                for (Locale locale : processedLocales.getLocales()) {
+                    Map<String, String> hashes = createHashes();
+                    addDefinitions(newDefs, locale, hashes, base);
+                    newHashes.put(locale, hashes);
+                }
+            } catch (DefinitionsFactoryException e) {
+                LOG.error("Unable to refresh Tiles definitions, the current"
+                        + " ones are kept", e);
+                throw e;
+            }
+            definitions = newDefs;
+            sourceHashes = newHashes;
+            baseSources = base;
+            failedLocales.clear();
+            saveSnapshot();
+        }
+        long duration = System.currentTimeMillis() - start;
+        statistics.recordReload(start, duration);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Tiles definitions refreshed in " + duration + " ms");
+        }
+        for (DefinitionsRefreshListener listener : refreshListeners) {
+            try {
+                listener.definitionsRefreshed(this);
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a definitions refresh", e);
+            }
+        }
+    }
+
+    /**
+     * Adds an object that is notified every time the definitions are
+     * reloaded.
+     *
+     * @param listener The listener to add.
+     * @since 2.0.8
+     */
+    public void addRefreshListener(DefinitionsRefreshListener listener) {
+        refreshListeners.add(listener);
+    }
+
+    /**
+     * Removes an object that is notified when the definitions are reloaded.
+     *
+     * @param listener The listener to remove.
+     * @since 2.0.8
+     */
+    public void removeRefreshListener(DefinitionsRefreshListener listener) {
+        refreshListeners.remove(listener);
+    }
+
+    /**
+     * Returns the time when the base definitions have been loaded last,
+     * either when the factory has been initialized or when it has been
+     * refreshed.
+     *
+     * @return The time, in milliseconds since the epoch, or <code>0</code>
+     * if the definitions have not been loaded yet.
+     * @since 2.0.8
+     */
+    public long getLastReloadTime() {
+        return statistics.getLastReloadTime();
+    }
+
+    /**
+     * Returns how long the last load of the base definitions took, including
+     * the reload of the definitions of the processed locales.
+     *
+     * @return The duration, in milliseconds.
+     * @since 2.0.8
+     */
+    public long getLastReloadDuration() {
+        return statistics.getLastReloadDuration();
+    }
+
+    /**
+     * Returns the time spent parsing each source the last time it has been
+     * read. Localized sources are included once they have been read.
+     *
+     * @return A copy of the parse times, in nanoseconds, mapped by URL.
+     * @since 2.0.8
+     */
+    public Map<String, Long> getParseTimes() {
+        return statistics.getParseTimes();
+    }
+
+    /**
+     * Returns the locales whose definitions are currently in memory.
+     *
+     * @return A copy of the processed locales.
+     * @since 2.0.8
+     */
+    public List<Locale> getProcessedLocales() {
+        return processedLocales.getLocales();
+    }
+
+    /**
+     * Discards the definitions of a processed locale. They will be read again
+     * the next time the locale is requested.
+     *
+     * @param locale The locale to evict.
+     * @return <code>true</code> if the locale had been processed.
+     * @since 2.0.8
+     */
+    public boolean evictLocale(Locale locale) {
+        synchronized (snapshotLock) {
+            if (locale == null || !processedLocales.remove(locale)) {
+                return false;
+            }
+            Definitions newDefinitions = copyDefinitions(definitions);
+            removeLocaleDefinitions(newDefinitions, locale);
+            Map<Locale, Map<String, String>> newHashes =
+                new HashMap<Locale, Map<String, String>>(sourceHashes);
+            newHashes.remove(locale);
+            definitions = newDefinitions;
+            sourceHashes = newHashes;
+            saveSnapshot();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Discarding the definitions of locale " + locale);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of definitions that are in memory for a locale.
+     *
+     * @param locale The locale, or <code>null</code> for the base
+     * definitions.
+     * @return The number of definitions specific to the locale, or
+     * <code>-1</code> if the locale has not been processed or the count is not
+     * available.
+     * @since 2.0.8
+     */
+    public int getDefinitionCount(Locale locale) {
+        Definitions currentDefinitions = definitions;
+        if (locale == null) {
+            Map<String, Definition> baseDefinitions = currentDefinitions
+                    .getBaseDefinitions();
+            return baseDefinitions != null ? baseDefinitions.size() : 0;
+        }
+        if (currentDefinitions instanceof DefinitionsImpl) {
+            Map<String, Definition> localeDefinitions =
+                ((DefinitionsImpl) currentDefinitions)
+                        .getLocaleDefinitions(locale);
+            if (localeDefinitions != null) {
+                return localeDefinitions.size();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a definition among the ones that are in memory, without reading
+     * the definitions of the locale if it has not been processed.
+     *
+     * @param name The name of the definition.
+     * @param locale The locale, or <code>null</code> for the base
+     * definitions.
+     * @return The definition, or <code>null</code> if it is not found.
+     * @since 2.0.8
+     */
+    public Definition getLoadedDefinition(String name, Locale locale) {
+        return definitions.getDefinition(name, locale);
+    }
+
+    /**
+     * Creates the map where the content hashes of the sources are recorded
+     * while they are read.
+     *
+     * @return The map, or <code>null</code> if no snapshot file is used.
+     */
+    private Map<String, String> createHashes() {
+        if (snapshotStore == null) {
+            return null;
+        }
+        return new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * Creates the object that records what is read from the base sources,
+     * indexing the localized versions of the sources that exist.
+     *
+     * @return The base sources.
+     */
+    private BaseSources createBaseSources() {
+        List<URL> urls = new ArrayList<URL>(sources.size());
+        for (Object source : sources) {
+            urls.add((URL) source);
+        }
+        LocalizedSourceIndex index = new LocalizedSourceIndex(urls);
+        boolean localizedSources = false;
+        for (int i = 0; i < urls.size() && !localizedSources; i++) {
+            String path = urls.get(i).toExternalForm();
+            // The localized versions of the source are the ones that have
+            // something between the start and the end of this path.
+            String pattern = concatPostfix(path, "_");
+            int split = 0;
+            while (split < path.length()
+                    && path.charAt(split) == pattern.charAt(split)) {
+                split++;
+            }
+            localizedSources = !index.isIndexed(path)
+                    || index.existsBetween(pattern.substring(0, split + 1),
+                            pattern.substring(split + 1));
+        }
+        return new BaseSources(createHashes(), index, localizedSources);
+    }
+
+    /**
+     * Reads the definitions from the snapshot file, if it is up to date. The
+     * base definitions are read only if none of the base sources has changed,
+     * and the definitions of a locale are read only if none of the sources of
+     * that locale has changed.
+     *
+     * @return The definitions, or <code>null</code> if the snapshot cannot be
+     * used and the sources must be read.
+     */
+    private Definitions loadSnapshot() {
+        if (snapshotStore == null) {
+            return null;
+        }
+
+        Definitions newDefinitions = createDefinitions();
+        if (!(newDefinitions instanceof DefinitionsImpl)) {
+            LOG.warn("A definitions snapshot cannot be used with definitions"
+                    + " of type " + newDefinitions.getClass().getName());
+            return null;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<Locale, DefinitionsSnapshotFile.Entry> entries = snapshotStore
+                .read();
+        if (entries == null) {
+            return null;
+        }
+
+        Map<String, String> currentHashes = new HashMap<String, String>();
+        DefinitionsSnapshotFile.Entry baseEntry = entries.get(null);
+        if (baseEntry == null
+                || !isUpToDate(baseEntry, null, currentHashes)) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("The definitions snapshot "
+                        + snapshotStore.getFile().getFile()
+                        + " is out of date, the sources will be read");
+            }
+            return null;
+        }
+
+        DefinitionsImpl impl = (DefinitionsImpl) newDefinitions;
+        impl.addResolvedDefinitions(baseEntry.getDefinitions(), null);
+        Map<Locale, Map<String, String>> newHashes =
+            new HashMap<Locale, Map<String, String>>();
+        newHashes.put(null, baseEntry.getSourceHashes());
+        for (Map.Entry<Locale, DefinitionsSnapshotFile.Entry> entry : entries
+                .entrySet()) {
+            Locale locale = entry.getKey();
+            if (locale != null
+                    && isUpToDate(entry.getValue(), locale, currentHashes)) {
+                impl.addResolvedDefinitions(entry.getValue().getDefinitions(),
+                        locale);
+                newHashes.put(locale, entry.getValue().getSourceHashes());
+                Locale evicted = processedLocales.add(locale);
+                if (evicted != null) {
+                    impl.removeLocaleDefinitions(evicted);
+                    newHashes.remove(evicted);
+                }
+            }
+        }
+        sourceHashes = newHashes;
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Tiles definitions read from the snapshot "
+                    + snapshotStore.getFile().getFile() + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        return impl;
+    }
+
+    /**
+     * Schedules the writing of the current definitions to the snapshot file,
+     * if one is used. The file is written by a background thread, since the
+     * published definitions are not modified anymore. It must be called
+     * while holding the snapshot lock.
+     */
+    private void saveSnapshot() {
+        if (snapshotStore == null || !(definitions instanceof DefinitionsImpl)) {
+            return;
+        }
+
+        snapshotStore.write((DefinitionsImpl) definitions, sourceHashes,
+                processedLocales.getLocales());
+    }
+
+    /**
+     * Checks whether the sources of a snapshot entry have not changed since
+     * the snapshot was written.
+     *
+     * @param entry The snapshot entry.
+     * @param locale The locale of the entry, or <code>null</code> for the base
+     * definitions.
+     * @param currentHashes The hashes of the sources already checked, mapped
+     * by URL. The hashes computed by this method are added to it.
+     * @return <code>true</code> if the entry can be used.
+     */
+    private boolean isUpToDate(DefinitionsSnapshotFile.Entry entry,
+            Locale locale, Map<String, String> currentHashes) {
+        Set<String> paths = new HashSet<String>();
+        for (Object source : sources) {
+            String path = ((URL) source).toExternalForm();
+            if (locale == null) {
+                paths.add(path);
+            } else {
+                for (String postfix : calculatePostfixes(locale)) {
+                    paths.add(concatPostfix(path, postfix));
+                }
+            }
+        }
+        return snapshotStore.isUpToDate(entry, paths, currentHashes,
+                lastModifiedDates);
+    }
+
+    /**
+     * Releases the resources of the factory when it is removed from service.
+     * The thread of background refreshes is stopped, and later requests for
+     * a refresh are ignored if background refresh is enabled. The last
+     * snapshot, if not written yet, is written to the snapshot file.
+     *
+     * @since 2.0.8
+     */
+    public synchronized void destroy() {
+        refresher.close();
+        if (snapshotStore != null) {
+            snapshotStore.close();
+        }
+    }
+
+    /**
+     * Waits until the snapshots of the definitions published so far have
+     * been written to the snapshot file, if one is used.
+     *
+     * @since 2.0.8
+     */
+    public void flushSnapshot() {
+        if (snapshotStore != null) {
+            snapshotStore.flush();
         }
     }
 
@@ -426,10 +1389,7 @@ public class UrlDefinitionsFactory
         try {
             for (String urlPath : urls) {
                 Long lastModifiedDate = lastModifiedDates.get(urlPath);
-                URL url = new URL(urlPath);
-                URLConnection connection = url.openConnection();
-                connection.connect();
-                long newModDate = connection.getLastModified();
+                long newModDate = getLastModified(new URL(urlPath));
                 if (newModDate != lastModifiedDate) {
                     status = true;
                     break;
@@ -441,4 +1401,38 @@ public class UrlDefinitionsFactory
         }
         return status;
     }
+
+    /**
+     * Returns the last modification date of an URL. The date of
+     * <code>file:</code> URLs is read directly from the file system, without
+     * opening the file.
+     *
+     * @param url The URL to check.
+     * @return The last modification date.
+     * @throws IOException If the URL cannot be accessed.
+     */
+    private long getLastModified(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                File file = new File(url.toURI());
+                if (file.exists()) {
+                    return file.lastModified();
+                }
+            } catch (URISyntaxException e) {
+                // Fall back to the URL connection.
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Cannot convert " + url + " to a file", e);
+                }
+            } catch (IllegalArgumentException e) {
+                // Fall back to the URL connection.
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Cannot convert " + url + " to a file", e);
+                }
+            }
+        }
+
+        URLConnection connection = url.openConnection();
+        connection.connect();
+        return connection.getLastModified();
+    }
 }
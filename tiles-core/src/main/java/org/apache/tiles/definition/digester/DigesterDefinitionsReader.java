@@ -24,6 +24,7 @@ package org.apache.tiles.definition.digester;
 import org.apache.commons.digester.Digester;
 import org.apache.commons.digester.Rule;
 import org.apache.tiles.Attribute;
+import org.apache.tiles.CachePolicy;
 import org.apache.tiles.Definition;
 import org.apache.tiles.Attribute.AttributeType;
 import org.apache.tiles.context.ListAttribute;
@@ -151,6 +152,23 @@ public class DigesterDefinitionsReader implements DefinitionsReader {
             attribute.setRole(attributes.getValue("role"));
             attribute.setType(AttributeType
                     .getType(attributes.getValue("type")));
+            attribute.setCachePolicy(CachePolicy.parse(attributes
+                    .getValue("cache")));
+        }
+    }
+
+    /**
+     * Digester rule to manage the cache policy of a definition.
+     */
+    private static class DefinitionCacheRule extends Rule {
+
+        /** {@inheritDoc} */
+        @Override
+        public void begin(String namespace, String name, Attributes attributes)
+                throws Exception {
+            Definition definition = (Definition) digester.peek();
+            definition.setCachePolicy(CachePolicy.parse(attributes
+                    .getValue("cache")));
         }
     }
 
@@ -311,6 +329,7 @@ public class DigesterDefinitionsReader implements DefinitionsReader {
         // syntax rules
         digester.addObjectCreate(DEFINITION_TAG, DEFINITION_HANDLER_CLASS);
         digester.addSetProperties(DEFINITION_TAG);
+        digester.addRule(DEFINITION_TAG, new DefinitionCacheRule());
         digester.addSetNext(DEFINITION_TAG, "addDefinition", DEFINITION_HANDLER_CLASS);
         // put / putAttribute rules
         // Rules for a same pattern are called in order, but rule.end() are called
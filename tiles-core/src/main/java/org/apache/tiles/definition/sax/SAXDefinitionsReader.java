@@ -0,0 +1,652 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.sax;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.Definition;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.beans.SimpleMenuItem;
+import org.apache.tiles.context.ListAttribute;
+import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.definition.DefinitionsReader;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads {@link Definition} objects from an XML InputStream using a SAX
+ * parser.
+ * <p/>
+ * This reader understands the same syntax, and builds the same definitions,
+ * as {@link DigesterDefinitionsReader}, but it does not keep any state
+ * between two reads: a single instance can be used by many threads at the
+ * same time. Definitions, attributes, lists and menu items are created
+ * directly: reflection is used only for beans and items that specify a
+ * custom <code>classtype</code>.
+ * <p/>
+ * The DTD of Tiles configuration files is read once and kept in memory. By
+ * default the XML is validated against it: to use the faster non-validating
+ * mode, give the init method a parameter with a key of
+ * {@link #PARSER_VALIDATE_PARAMETER_NAME} (or
+ * {@link DigesterDefinitionsReader#PARSER_VALIDATE_PARAMETER_NAME}) and a
+ * value of <code>&quot;false&quot;</code>.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class SAXDefinitionsReader implements DefinitionsReader {
+
+    /**
+     * Validation parameter name.
+     */
+    public static final String PARSER_VALIDATE_PARAMETER_NAME =
+        "org.apache.tiles.definition.sax.SAXDefinitionsReader.PARSER_VALIDATE";
+
+    /**
+     * The public identifier of Tiles 2.0 DTD.
+     */
+    private static final String DTD_PUBLIC_ID =
+        "-//Apache Software Foundation//DTD Tiles Configuration 2.0//EN";
+
+    /**
+     * The resource that contains Tiles 2.0 DTD.
+     */
+    private static final String DTD_RESOURCE =
+        "/org/apache/tiles/resources/tiles-config_2_0.dtd";
+
+    /**
+     * The feature to disable the load of the external DTD when the parser is
+     * not validating.
+     */
+    private static final String LOAD_EXTERNAL_DTD_FEATURE =
+        "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+
+    /**
+     * The size of the buffer used to read the DTD.
+     */
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG =
+        LogFactory.getLog(SAXDefinitionsReader.class);
+
+    /**
+     * The content of Tiles DTD, loaded when first needed.
+     */
+    private static byte[] dtd;
+
+    /**
+     * Indicates whether the DTD has been searched for.
+     */
+    private static boolean dtdLoaded = false;
+
+    /**
+     * The factory of SAX parsers. It is not thread-safe, so it is used only
+     * while holding its lock.
+     */
+    private volatile SAXParserFactory parserFactory;
+
+    /**
+     * Reads <code>{@link Definition}</code> objects from a source.
+     *
+     * @param source The <code>InputStream</code> source from which definitions
+     *               will be read.
+     * @return a Map of <code>Definition</code> objects read from
+     *         the source.
+     * @throws DefinitionsFactoryException if the source is invalid or
+     *          an error occurs when reading definitions.
+     */
+    public Map<String, Definition> read(Object source)
+            throws DefinitionsFactoryException {
+        SAXParserFactory factory = parserFactory;
+
+        // Get out if we have not been initialized.
+        if (factory == null) {
+            throw new DefinitionsFactoryException(
+                "Definitions reader has not been initialized.");
+        }
+
+        if (source == null) {
+            return null;
+        }
+
+        if (!(source instanceof InputStream)) {
+            throw new DefinitionsFactoryException(
+                "Invalid source type.  Requires java.io.InputStream.");
+        }
+
+        DefinitionsHandler handler = new DefinitionsHandler();
+        try {
+            SAXParser parser;
+            synchronized (factory) {
+                parser = factory.newSAXParser();
+            }
+            parser.parse(new InputSource((InputStream) source), handler);
+        } catch (ParserConfigurationException e) {
+            throw new DefinitionsFactoryException(
+                "Cannot create the XML parser.", e);
+        } catch (SAXException e) {
+            throw new DefinitionsFactoryException(
+                "XML error reading definitions.", e);
+        } catch (IOException e) {
+            throw new DefinitionsFactoryException(
+                "I/O Error reading definitions.", e);
+        }
+
+        return handler.definitions;
+    }
+
+    /**
+     * Initializes the <code>DefinitionsReader</code> object.
+     * <p/>
+     * This method must be called before the {@link #read} method is called.
+     *
+     * @param params A map of properties used to set up the reader.
+     * @throws DefinitionsFactoryException if required properties are not
+     *          passed in or the initialization fails.
+     */
+    public void init(Map<String, String> params)
+            throws DefinitionsFactoryException {
+        boolean validating = true;
+        if (params != null) {
+            String value = params.get(PARSER_VALIDATE_PARAMETER_NAME);
+            if (value == null) {
+                value = params.get(
+                        DigesterDefinitionsReader.PARSER_VALIDATE_PARAMETER_NAME);
+            }
+            if (value != null) {
+                validating = Boolean.valueOf(value);
+            }
+        }
+
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(validating);
+        if (!validating) {
+            try {
+                factory.setFeature(LOAD_EXTERNAL_DTD_FEATURE, false);
+            } catch (Exception e) {
+                // The DTD will be read from memory anyway.
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Cannot disable the load of the DTD", e);
+                }
+            }
+        }
+        parserFactory = factory;
+    }
+
+    /**
+     * Returns the content of Tiles DTD.
+     *
+     * @return The DTD, or <code>null</code> if it cannot be found.
+     * @throws IOException If something goes wrong when reading the DTD.
+     */
+    private static synchronized byte[] getDtd() throws IOException {
+        if (!dtdLoaded) {
+            InputStream stream = SAXDefinitionsReader.class
+                    .getResourceAsStream(DTD_RESOURCE);
+            if (stream != null) {
+                try {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int length;
+                    while ((length = stream.read(buffer)) >= 0) {
+                        content.write(buffer, 0, length);
+                    }
+                    dtd = content.toByteArray();
+                } finally {
+                    stream.close();
+                }
+            }
+            dtdLoaded = true;
+        }
+        return dtd;
+    }
+
+    /**
+     * Sets the properties of an object, using the attributes of an element.
+     * Attributes that do not match a writable property are ignored.
+     *
+     * @param bean The object to modify.
+     * @param attributes The attributes of the element.
+     * @throws SAXException If a property cannot be set.
+     */
+    private static void setProperties(Object bean,
+            org.xml.sax.Attributes attributes) throws SAXException {
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String name = attributes.getLocalName(i);
+            if (name == null || name.length() == 0) {
+                name = attributes.getQName(i);
+            }
+            PropertyDescriptor descriptor = getPropertyDescriptor(bean, name);
+            if (descriptor != null) {
+                setProperty(bean, descriptor, attributes.getValue(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the descriptor of a writable property of an object.
+     *
+     * @param bean The object.
+     * @param name The name of the property.
+     * @return The property descriptor, or <code>null</code> if there is no
+     * such writable property.
+     * @throws SAXException If the object cannot be introspected.
+     */
+    private static PropertyDescriptor getPropertyDescriptor(Object bean,
+            String name) throws SAXException {
+        BeanInfo info;
+        try {
+            info = Introspector.getBeanInfo(bean.getClass());
+        } catch (IntrospectionException e) {
+            throw new SAXException("Cannot introspect "
+                    + bean.getClass().getName(), e);
+        }
+        for (PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
+            if (descriptor.getName().equals(name)
+                    && descriptor.getWriteMethod() != null) {
+                return descriptor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets a property of an object, converting the value if needed.
+     *
+     * @param bean The object to modify.
+     * @param descriptor The property descriptor.
+     * @param value The value to set, as a string.
+     * @throws SAXException If the property cannot be set.
+     */
+    private static void setProperty(Object bean, PropertyDescriptor descriptor,
+            String value) throws SAXException {
+        Class<?> type = descriptor.getPropertyType();
+        Object convertedValue = value;
+        if (!type.isAssignableFrom(String.class)) {
+            PropertyEditor editor = PropertyEditorManager.findEditor(type);
+            if (editor == null) {
+                throw new SAXException("Cannot convert '" + value
+                        + "' for the property '" + descriptor.getName()
+                        + "' of " + bean.getClass().getName());
+            }
+            editor.setAsText(value);
+            convertedValue = editor.getValue();
+        }
+        Method method = descriptor.getWriteMethod();
+        try {
+            method.invoke(bean, convertedValue);
+        } catch (Exception e) {
+            throw new SAXException("Cannot set the property '"
+                    + descriptor.getName() + "' of "
+                    + bean.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Creates an instance of a class, loaded with the context class loader.
+     *
+     * @param className The name of the class.
+     * @return The new instance.
+     * @throws SAXException If the class cannot be instantiated.
+     */
+    private static Object instantiate(String className) throws SAXException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = SAXDefinitionsReader.class.getClassLoader();
+        }
+        try {
+            return Class.forName(className, true, loader).newInstance();
+        } catch (Exception e) {
+            throw new SAXException("Cannot instantiate '" + className + "'",
+                    e);
+        }
+    }
+
+    /**
+     * Handles the SAX events of a single read, building the definitions.
+     */
+    private static class DefinitionsHandler extends DefaultHandler {
+
+        /**
+         * The read definitions.
+         */
+        private Map<String, Definition> definitions =
+            new HashMap<String, Definition>();
+
+        /**
+         * The names of the open elements, from the root.
+         */
+        private List<String> path = new ArrayList<String>();
+
+        /**
+         * The objects created by the open elements. It contains
+         * <code>null</code> for elements that do not create anything.
+         */
+        private List<Object> objects = new ArrayList<Object>();
+
+        /**
+         * The body of the open elements. It contains <code>null</code> for
+         * elements whose body is not needed.
+         */
+        private List<StringBuilder> bodies = new ArrayList<StringBuilder>();
+
+        /** {@inheritDoc} */
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                org.xml.sax.Attributes attributes) throws SAXException {
+            String name = localName;
+            if (name == null || name.length() == 0) {
+                name = qName;
+            }
+            int depth = path.size();
+            path.add(name);
+
+            Object object = null;
+            StringBuilder body = null;
+            if (depth == 1 && "definition".equals(name)
+                    && "tiles-definitions".equals(path.get(0))) {
+                object = createDefinition(attributes);
+            } else if (depth == 2 && "definition".equals(path.get(1))
+                    && "tiles-definitions".equals(path.get(0))
+                    && ("put-attribute".equals(name)
+                            || "put-list-attribute".equals(name))) {
+                Attribute attribute;
+                if ("put-attribute".equals(name)) {
+                    attribute = createAttribute(attributes);
+                    body = new StringBuilder();
+                } else {
+                    attribute = createListAttribute(attributes);
+                }
+                Definition definition = (Definition) peekObject();
+                definition.putAttribute(attributes.getValue("name"), attribute);
+                object = attribute;
+            } else if ("add-attribute".equals(name)) {
+                object = createAttribute(attributes);
+                body = new StringBuilder();
+            } else if ("add-list-attribute".equals(name)) {
+                object = createListAttribute(attributes);
+            } else if ("item".equals(name) || "bean".equals(name)) {
+                object = createBean(attributes);
+            } else if ("set-property".equals(name) && depth > 0
+                    && "bean".equals(path.get(depth - 1))) {
+                setBeanProperty(attributes);
+            }
+
+            objects.add(object);
+            bodies.add(body);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            StringBuilder body = bodies.get(bodies.size() - 1);
+            if (body != null) {
+                body.append(ch, start, length);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void endElement(String uri, String localName, String qName)
+                throws SAXException {
+            int depth = path.size() - 1;
+            String name = path.remove(depth);
+            Object object = objects.remove(depth);
+            StringBuilder body = bodies.remove(depth);
+
+            if (object == null) {
+                return;
+            }
+
+            if (body != null) {
+                ((Attribute) object).setBody(body.toString().trim());
+            }
+
+            if (object instanceof Definition) {
+                Definition definition = (Definition) object;
+                definitions.put(definition.getName(), definition);
+            } else if (!"put-attribute".equals(name)
+                    && !"put-list-attribute".equals(name)) {
+                // List elements are added to their list when they are
+                // complete.
+                Object parent = peekObject();
+                if (!(parent instanceof ListAttribute)) {
+                    throw new SAXException("The element '" + name
+                            + "' must be inside a list attribute");
+                }
+                ((ListAttribute) parent).add(object);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId)
+                throws IOException, SAXException {
+            if (DTD_PUBLIC_ID.equals(publicId)) {
+                byte[] content = getDtd();
+                if (content != null) {
+                    InputSource source = new InputSource(
+                            new ByteArrayInputStream(content));
+                    source.setPublicId(publicId);
+                    source.setSystemId(systemId);
+                    return source;
+                }
+            }
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void warning(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void fatalError(SAXParseException exception)
+                throws SAXException {
+            throw exception;
+        }
+
+        /**
+         * Returns the nearest object created by an open element.
+         *
+         * @return The object, or <code>null</code> if there is none.
+         */
+        private Object peekObject() {
+            for (int i = objects.size() - 1; i >= 0; i--) {
+                Object object = objects.get(i);
+                if (object != null) {
+                    return object;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Creates a definition from the attributes of a
+         * &lt;definition&gt; element.
+         *
+         * @param attributes The element attributes.
+         * @return The new definition.
+         */
+        private Definition createDefinition(org.xml.sax.Attributes attributes) {
+            Definition definition = new Definition();
+            String value = attributes.getValue("name");
+            if (value != null) {
+                definition.setName(value);
+            }
+            value = attributes.getValue("template");
+            if (value != null) {
+                definition.setTemplate(value);
+            }
+            value = attributes.getValue("role");
+            if (value != null) {
+                definition.setRole(value);
+            }
+            value = attributes.getValue("extends");
+            if (value != null) {
+                definition.setExtends(value);
+            }
+            value = attributes.getValue("preparer");
+            if (value != null) {
+                definition.setPreparer(value);
+            }
+            definition.setCachePolicy(CachePolicy.parse(attributes
+                    .getValue("cache")));
+            return definition;
+        }
+
+        /**
+         * Creates an attribute from the attributes of a
+         * &lt;put-attribute&gt; or &lt;add-attribute&gt; element.
+         *
+         * @param attributes The element attributes.
+         * @return The new attribute.
+         */
+        private Attribute createAttribute(org.xml.sax.Attributes attributes) {
+            Attribute attribute = new Attribute();
+            attribute.setValue(attributes.getValue("value"));
+            attribute.setRole(attributes.getValue("role"));
+            attribute.setType(AttributeType.getType(attributes
+                    .getValue("type")));
+            attribute.setCachePolicy(CachePolicy.parse(attributes
+                    .getValue("cache")));
+            return attribute;
+        }
+
+        /**
+         * Creates a list attribute from the attributes of a
+         * &lt;put-list-attribute&gt; or &lt;add-list-attribute&gt; element.
+         *
+         * @param attributes The element attributes.
+         * @return The new list attribute.
+         */
+        @SuppressWarnings("deprecation")
+        private ListAttribute createListAttribute(
+                org.xml.sax.Attributes attributes) {
+            ListAttribute attribute = new ListAttribute();
+            String value = attributes.getValue("name");
+            if (value != null) {
+                attribute.setName(value);
+            }
+            value = attributes.getValue("role");
+            if (value != null) {
+                attribute.setRole(value);
+            }
+            return attribute;
+        }
+
+        /**
+         * Creates a bean from the attributes of an &lt;item&gt; or
+         * &lt;bean&gt; element. If no class is specified, a
+         * {@link SimpleMenuItem} is created.
+         *
+         * @param attributes The element attributes.
+         * @return The new bean.
+         * @throws SAXException If the bean cannot be created.
+         */
+        private Object createBean(org.xml.sax.Attributes attributes)
+                throws SAXException {
+            String className = attributes.getValue("classtype");
+            if (className == null) {
+                SimpleMenuItem item = new SimpleMenuItem();
+                String value = attributes.getValue("value");
+                if (value != null) {
+                    item.setValue(value);
+                }
+                value = attributes.getValue("link");
+                if (value != null) {
+                    item.setLink(value);
+                }
+                value = attributes.getValue("icon");
+                if (value != null) {
+                    item.setIcon(value);
+                }
+                value = attributes.getValue("tooltip");
+                if (value != null) {
+                    item.setTooltip(value);
+                }
+                return item;
+            }
+
+            Object bean = instantiate(className);
+            setProperties(bean, attributes);
+            return bean;
+        }
+
+        /**
+         * Sets a property of the current bean, from the attributes of a
+         * &lt;set-property&gt; element.
+         *
+         * @param attributes The element attributes.
+         * @throws SAXException If the property cannot be set.
+         */
+        private void setBeanProperty(org.xml.sax.Attributes attributes)
+                throws SAXException {
+            Object bean = peekObject();
+            String property = attributes.getValue("property");
+            PropertyDescriptor descriptor = getPropertyDescriptor(bean,
+                    property);
+            if (descriptor == null) {
+                throw new SAXException("Bean has no property named "
+                        + property);
+            }
+            setProperty(bean, descriptor, attributes.getValue("value"));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of locales with a maximum size, that keeps track of the last time
+ * each locale has been used. When the set is full, the least recently used
+ * locale is the one that should be evicted to make room for a new one.
+ * <p/>
+ * Time is measured in additions: a locale used since the last locale was
+ * added is more recent than the locales that have not been used since, but
+ * locales used between the same two additions are equally recent. This way
+ * a lookup writes only the first time its locale is used after an addition,
+ * so the locales can be looked up by every request without contention.
+ * Looking up a locale never blocks.
+ * Changes should be serialized by the caller, since the choice of the locale
+ * to evict and its removal are separate operations.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class BoundedLocaleSet {
+
+    /**
+     * The maximum number of locales.
+     */
+    private int maxSize;
+
+    /**
+     * The time each locale has been used last, as a value of {@link #clock}.
+     */
+    private Map<Locale, AtomicLong> lastUses;
+
+    /**
+     * Logical clock, incremented every time a locale is added.
+     */
+    private AtomicLong clock = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize The maximum number of locales.
+     */
+    public BoundedLocaleSet(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of locales must be positive");
+        }
+        this.maxSize = maxSize;
+        lastUses = new ConcurrentHashMap<Locale, AtomicLong>();
+    }
+
+    /**
+     * Returns the maximum number of locales.
+     *
+     * @return The maximum size.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Checks whether a locale is in the set and, if it is the case, marks it
+     * as recently used.
+     *
+     * @param locale The locale to check.
+     * @return <code>true</code> if the locale is in the set.
+     */
+    public boolean contains(Locale locale) {
+        if (locale == null) {
+            return false;
+        }
+        AtomicLong lastUse = lastUses.get(locale);
+        if (lastUse == null) {
+            return false;
+        }
+        long now = clock.get();
+        if (lastUse.get() < now) {
+            lastUse.set(now);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the locale that must be removed before adding a new one.
+     *
+     * @return The least recently used locale, or <code>null</code> if the set
+     * is not full.
+     */
+    public Locale getEvictionCandidate() {
+        if (lastUses.size() < maxSize) {
+            return null;
+        }
+        Locale candidate = null;
+        long candidateUse = Long.MAX_VALUE;
+        for (Map.Entry<Locale, AtomicLong> entry : lastUses.entrySet()) {
+            long lastUse = entry.getValue().get();
+            if (lastUse < candidateUse) {
+                candidate = entry.getKey();
+                candidateUse = lastUse;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Adds a locale, marking it as recently used. If the set is full, the
+     * least recently used locale is removed.
+     *
+     * @param locale The locale to add.
+     * @return The removed locale, or <code>null</code> if no locale has been
+     * removed.
+     */
+    public Locale add(Locale locale) {
+        if (lastUses.containsKey(locale)) {
+            contains(locale);
+            return null;
+        }
+        Locale evicted = getEvictionCandidate();
+        if (evicted != null) {
+            lastUses.remove(evicted);
+        }
+        lastUses.put(locale, new AtomicLong(clock.getAndIncrement()));
+        return evicted;
+    }
+
+    /**
+     * Removes a locale.
+     *
+     * @param locale The locale to remove.
+     * @return <code>true</code> if the locale was in the set.
+     */
+    public boolean remove(Locale locale) {
+        return lastUses.remove(locale) != null;
+    }
+
+    /**
+     * Removes all the locales.
+     */
+    public void clear() {
+        lastUses.clear();
+    }
+
+    /**
+     * Returns the number of locales in the set.
+     *
+     * @return The size of the set.
+     */
+    public int size() {
+        return lastUses.size();
+    }
+
+    /**
+     * Returns the locales in the set, without marking them as used.
+     *
+     * @return A copy of the locales.
+     */
+    public List<Locale> getLocales() {
+        return new ArrayList<Locale>(lastUses.keySet());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.definition.ReloadableDefinitionsFactory;
+
+/**
+ * Checks periodically, in a background thread, whether a
+ * {@link ReloadableDefinitionsFactory} needs to be refreshed, and refreshes
+ * it. This way the request threads never check the definitions sources.
+ * <p/>
+ * When a change is detected, the refresh is delayed by a "quiet period", so
+ * that a burst of changes (for example, many files saved together) causes only
+ * one refresh.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DefinitionsFactoryReloader {
+
+    /**
+     * Initialization parameter that specifies the interval, in milliseconds,
+     * between two checks of the definitions sources.
+     */
+    public static final String CHECK_INTERVAL_INIT_PARAM =
+        "org.apache.tiles.definition.util.DefinitionsFactoryReloader.CHECK_INTERVAL";
+
+    /**
+     * Initialization parameter that specifies the time, in milliseconds,
+     * between the detection of a change and the refresh.
+     */
+    public static final String QUIET_PERIOD_INIT_PARAM =
+        "org.apache.tiles.definition.util.DefinitionsFactoryReloader.QUIET_PERIOD";
+
+    /**
+     * The default check interval, in milliseconds.
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 2000;
+
+    /**
+     * The default quiet period, in milliseconds.
+     */
+    public static final long DEFAULT_QUIET_PERIOD = 500;
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG =
+        LogFactory.getLog(DefinitionsFactoryReloader.class);
+
+    /**
+     * The factory to check and refresh.
+     */
+    private ReloadableDefinitionsFactory factory;
+
+    /**
+     * The interval between two checks, in milliseconds.
+     */
+    private long checkInterval;
+
+    /**
+     * The delay between a detected change and the refresh, in milliseconds.
+     */
+    private long quietPeriod;
+
+    /**
+     * The executor that runs the checks and the refreshes.
+     */
+    private volatile ScheduledExecutorService executor;
+
+    /**
+     * Indicates whether a refresh has been scheduled. It is accessed only by
+     * the executor thread.
+     */
+    private boolean refreshScheduled = false;
+
+    /**
+     * Constructor.
+     *
+     * @param factory The factory to check and refresh.
+     * @param checkInterval The interval between two checks, in milliseconds.
+     * @param quietPeriod The delay between a detected change and the refresh,
+     * in milliseconds.
+     */
+    public DefinitionsFactoryReloader(ReloadableDefinitionsFactory factory,
+            long checkInterval, long quietPeriod) {
+        if (checkInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "The check interval must be positive");
+        }
+        this.factory = factory;
+        this.checkInterval = checkInterval;
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * Creates a reloader, reading the intervals from initialization
+     * parameters. If a parameter is not specified, the default value is
+     * used.
+     *
+     * @param factory The factory to check and refresh.
+     * @param checkIntervalParam The value of the
+     * {@link #CHECK_INTERVAL_INIT_PARAM} parameter. It can be
+     * <code>null</code>.
+     * @param quietPeriodParam The value of the {@link #QUIET_PERIOD_INIT_PARAM}
+     * parameter. It can be <code>null</code>.
+     * @return The new reloader.
+     */
+    public static DefinitionsFactoryReloader createReloader(
+            ReloadableDefinitionsFactory factory, String checkIntervalParam,
+            String quietPeriodParam) {
+        long checkInterval = DEFAULT_CHECK_INTERVAL;
+        if (checkIntervalParam != null) {
+            checkInterval = Long.parseLong(checkIntervalParam.trim());
+        }
+        long quietPeriod = DEFAULT_QUIET_PERIOD;
+        if (quietPeriodParam != null) {
+            quietPeriod = Long.parseLong(quietPeriodParam.trim());
+        }
+        return new DefinitionsFactoryReloader(factory, checkInterval,
+                quietPeriod);
+    }
+
+    /**
+     * Starts checking the factory in a background thread.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+
+                    /** {@inheritDoc} */
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "Tiles definitions reloader");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            /** {@inheritDoc} */
+            public void run() {
+                check();
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Checking Tiles definitions for changes every "
+                    + checkInterval + " ms");
+        }
+    }
+
+    /**
+     * Stops checking the factory.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Checks whether the factory needs to be refreshed and, if it is the case,
+     * schedules a refresh after the quiet period.
+     */
+    protected void check() {
+        ScheduledExecutorService currentExecutor = executor;
+        if (refreshScheduled || currentExecutor == null) {
+            return;
+        }
+
+        try {
+            if (factory.refreshRequired()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Tiles definitions changed, refreshing in "
+                            + quietPeriod + " ms");
+                }
+                refreshScheduled = true;
+                currentExecutor.schedule(new Runnable() {
+
+                    /** {@inheritDoc} */
+                    public void run() {
+                        refresh();
+                    }
+                }, quietPeriod, TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Error while checking Tiles definitions", e);
+        }
+    }
+
+    /**
+     * Refreshes the factory.
+     */
+    protected void refresh() {
+        refreshScheduled = false;
+        try {
+            factory.refresh();
+        } catch (Exception e) {
+            LOG.error("Error while refreshing Tiles definitions", e);
+        }
+    }
+}
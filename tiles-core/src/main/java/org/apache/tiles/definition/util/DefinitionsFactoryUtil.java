@@ -50,16 +50,32 @@ public final class DefinitionsFactoryUtil {
      */
     public static void reloadDefinitionsFactory(Object context)
             throws DefinitionsFactoryException {
+        ReloadableDefinitionsFactory rFactory =
+            getReloadableDefinitionsFactory(context);
+        if (rFactory != null && rFactory.refreshRequired()) {
+            rFactory.refresh();
+        }
+    }
+
+    /**
+     * Returns the definitions factory of the container stored in the context,
+     * if it is reloadable.
+     *
+     * @param context The context object to use
+     * @return The reloadable definitions factory, or <code>null</code> if the
+     * container does not use a reloadable definitions factory.
+     * @since 2.0.8
+     */
+    public static ReloadableDefinitionsFactory getReloadableDefinitionsFactory(
+            Object context) {
         TilesContainer container = TilesAccess.getContainer(context);
         if (container instanceof BasicTilesContainer) {
             BasicTilesContainer basic = (BasicTilesContainer) container;
             DefinitionsFactory factory = basic.getDefinitionsFactory();
             if (factory instanceof ReloadableDefinitionsFactory) {
-                ReloadableDefinitionsFactory rFactory = (ReloadableDefinitionsFactory) factory;
-                if (rFactory.refreshRequired()) {
-                    rFactory.refresh();
-                }
+                return (ReloadableDefinitionsFactory) factory;
             }
         }
+        return null;
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statistics about the loading of definitions: when the base definitions
+ * have been loaded last, how long it took and how long each source took to
+ * be parsed. They are exposed through JMX by
+ * {@link org.apache.tiles.jmx.TilesContainerManagement}.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class DefinitionsLoadStatistics {
+
+    /**
+     * The time, in milliseconds since the epoch, when the base definitions
+     * have been loaded last.
+     */
+    private volatile long lastReloadTime;
+
+    /**
+     * The duration, in milliseconds, of the last load of the base
+     * definitions.
+     */
+    private volatile long lastReloadDuration;
+
+    /**
+     * The time, in nanoseconds, spent parsing each source the last time it
+     * has been read, mapped by URL.
+     */
+    private Map<String, Long> parseTimes = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Records a load of the base definitions.
+     *
+     * @param startTime The time, in milliseconds since the epoch, when the
+     * load started.
+     * @param duration The duration of the load, in milliseconds.
+     */
+    public void recordReload(long startTime, long duration) {
+        lastReloadTime = startTime;
+        lastReloadDuration = duration;
+    }
+
+    /**
+     * Records the time spent parsing a source.
+     *
+     * @param url The URL of the source.
+     * @param duration The time, in nanoseconds.
+     */
+    public void recordParse(String url, long duration) {
+        parseTimes.put(url, duration);
+    }
+
+    /**
+     * Returns the time when the base definitions have been loaded last.
+     *
+     * @return The time, in milliseconds since the epoch, or <code>0</code>
+     * if the definitions have not been loaded yet.
+     */
+    public long getLastReloadTime() {
+        return lastReloadTime;
+    }
+
+    /**
+     * Returns how long the last load of the base definitions took.
+     *
+     * @return The duration, in milliseconds.
+     */
+    public long getLastReloadDuration() {
+        return lastReloadDuration;
+    }
+
+    /**
+     * Returns the time spent parsing each source the last time it has been
+     * read.
+     *
+     * @return A copy of the parse times, in nanoseconds, mapped by URL.
+     */
+    public Map<String, Long> getParseTimes() {
+        return new HashMap<String, Long>(parseTimes);
+    }
+}
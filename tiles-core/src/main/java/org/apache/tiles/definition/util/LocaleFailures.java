@@ -0,0 +1,145 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the locales whose definitions could not be read, so that they are
+ * read again only after a delay, that doubles after every failure up to a
+ * maximum. Checking a locale never blocks. Failures should be recorded by a
+ * single thread at a time, since the delay of a failure depends on the
+ * previous one.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LocaleFailures {
+
+    /**
+     * The delay, in milliseconds, after the first failure.
+     */
+    private long initialDelay;
+
+    /**
+     * The maximum delay, in milliseconds.
+     */
+    private long maxDelay;
+
+    /**
+     * The last failure of each locale, mapped by locale.
+     */
+    private Map<Locale, Failure> failures =
+        new ConcurrentHashMap<Locale, Failure>();
+
+    /**
+     * Constructor.
+     *
+     * @param initialDelay The delay, in milliseconds, after the first
+     * failure.
+     * @param maxDelay The maximum delay, in milliseconds.
+     */
+    public LocaleFailures(long initialDelay, long maxDelay) {
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Indicates whether the definitions of a locale could not be read, and
+     * must not be read again yet.
+     *
+     * @param locale The locale.
+     * @return <code>true</code> if the delay of the last failure of the
+     * locale has not elapsed.
+     */
+    public boolean isRetryDeferred(Locale locale) {
+        if (locale == null || failures.isEmpty()) {
+            return false;
+        }
+        Failure failure = failures.get(locale);
+        return failure != null
+                && System.currentTimeMillis() < failure.retryTime;
+    }
+
+    /**
+     * Records that the definitions of a locale could not be read.
+     *
+     * @param locale The locale.
+     * @return The delay, in milliseconds, before the locale can be read
+     * again.
+     */
+    public long recordFailure(Locale locale) {
+        Failure previous = failures.get(locale);
+        long delay = previous != null ? Math.min(previous.delay * 2, maxDelay)
+                : initialDelay;
+        failures.put(locale, new Failure(delay, System.currentTimeMillis()
+                + delay));
+        return delay;
+    }
+
+    /**
+     * Forgets the failures of a locale, after its definitions have been
+     * read.
+     *
+     * @param locale The locale.
+     */
+    public void remove(Locale locale) {
+        failures.remove(locale);
+    }
+
+    /**
+     * Forgets the failures of all the locales.
+     */
+    public void clear() {
+        failures.clear();
+    }
+
+    /**
+     * A failure to read the definitions of a locale.
+     */
+    private static class Failure {
+
+        /**
+         * The delay, in milliseconds, before the locale is read again.
+         */
+        private long delay;
+
+        /**
+         * The time, in milliseconds since the epoch, after which the locale
+         * can be read again.
+         */
+        private long retryTime;
+
+        /**
+         * Constructor.
+         *
+         * @param delay The delay before the locale is read again.
+         * @param retryTime The time after which the locale can be read again.
+         */
+        public Failure(long delay, long retryTime) {
+            this.delay = delay;
+            this.retryTime = retryTime;
+        }
+    }
+}
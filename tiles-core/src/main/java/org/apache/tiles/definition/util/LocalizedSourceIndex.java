@@ -0,0 +1,267 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Index of the files that exist in the directories of a set of sources. It is
+ * used to know which localized versions of a source exist without trying to
+ * open each of them.
+ * <p/>
+ * The directories of <code>file:</code> URLs are listed from the file system,
+ * and the directories of <code>jar:</code> URLs that point to a local jar file
+ * are listed from the jar entries. The existence of other URLs is unknown.
+ * The index is built when it is created, and it is not updated.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LocalizedSourceIndex {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(LocalizedSourceIndex.class);
+
+    /**
+     * The separator between the jar URL and the entry name in a
+     * <code>jar:</code> URL.
+     */
+    private static final String JAR_SEPARATOR = "!/";
+
+    /**
+     * The names of the files in each indexed directory, mapped by directory
+     * key.
+     */
+    private Map<String, Set<String>> directories;
+
+    /**
+     * Creates the index of the directories of the given sources.
+     *
+     * @param sources The sources, as URLs.
+     */
+    public LocalizedSourceIndex(Collection<URL> sources) {
+        directories = new HashMap<String, Set<String>>();
+        Map<String, Set<String>> jarDirectories =
+            new HashMap<String, Set<String>>();
+        for (URL source : sources) {
+            String path = source.toExternalForm();
+            String[] location = getLocation(path);
+            if (location == null || directories.containsKey(location[0])) {
+                continue;
+            }
+            if ("file".equals(source.getProtocol())) {
+                File directory = getFile(path).getParentFile();
+                String[] names = directory.list();
+                if (names != null) {
+                    directories.put(location[0], new HashSet<String>(Arrays
+                            .asList(names)));
+                }
+            } else {
+                String jarPath = path.substring("jar:".length(), path
+                        .indexOf(JAR_SEPARATOR));
+                Set<String> jarKeys = jarDirectories.get(jarPath);
+                if (jarKeys == null) {
+                    jarKeys = new HashSet<String>();
+                    jarDirectories.put(jarPath, jarKeys);
+                }
+                jarKeys.add(location[0]);
+            }
+        }
+
+        for (Map.Entry<String, Set<String>> entry : jarDirectories.entrySet()) {
+            indexJar(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Indicates whether the directory of a URL has been indexed, i.e. if
+     * {@link #exists(String)} can be used.
+     *
+     * @param path The URL, as a string.
+     * @return <code>true</code> if the existence of the URL is known.
+     */
+    public boolean isIndexed(String path) {
+        String[] location = getLocation(path);
+        return location != null && directories.containsKey(location[0]);
+    }
+
+    /**
+     * Indicates whether a URL exists, according to the index.
+     *
+     * @param path The URL, as a string.
+     * @return <code>true</code> if the URL is in an indexed directory and it
+     * exists.
+     */
+    public boolean exists(String path) {
+        String[] location = getLocation(path);
+        if (location == null) {
+            return false;
+        }
+        Set<String> names = directories.get(location[0]);
+        return names != null && names.contains(location[1]);
+    }
+
+    /**
+     * Indicates whether a URL that starts and ends with the given strings,
+     * with something in between, exists according to the index. For example,
+     * it can be used to know whether any localized version of a source
+     * exists.
+     *
+     * @param prefix The start of the URL, as a string, including the name of
+     * the directory.
+     * @param suffix The end of the URL.
+     * @return <code>true</code> if a matching URL is in an indexed directory
+     * and it exists.
+     */
+    public boolean existsBetween(String prefix, String suffix) {
+        String[] location = getLocation(prefix + suffix);
+        if (location == null) {
+            return false;
+        }
+        Set<String> names = directories.get(location[0]);
+        if (names == null) {
+            return false;
+        }
+        String namePrefix = location[1].substring(0, location[1].length()
+                - suffix.length());
+        for (String name : names) {
+            if (name.length() > location[1].length()
+                    && name.startsWith(namePrefix) && name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the directories of a local jar file to the index.
+     *
+     * @param jarPath The URL of the jar file.
+     * @param keys The keys of the directories to index.
+     */
+    private void indexJar(String jarPath, Set<String> keys) {
+        if (!jarPath.startsWith("file:")) {
+            return;
+        }
+        File file = getFile(jarPath);
+        if (file == null || !file.isFile()) {
+            return;
+        }
+
+        Map<String, Set<String>> jarDirectories =
+            new HashMap<String, Set<String>>();
+        for (String key : keys) {
+            jarDirectories.put(key, new HashSet<String>());
+        }
+        String prefix = "jar:" + jarPath + JAR_SEPARATOR;
+        try {
+            JarFile jarFile = new JarFile(file);
+            try {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    String name = entry.getName();
+                    int slash = name.lastIndexOf('/');
+                    Set<String> names = jarDirectories.get(prefix
+                            + name.substring(0, slash + 1));
+                    if (names != null) {
+                        names.add(name.substring(slash + 1));
+                    }
+                }
+            } finally {
+                jarFile.close();
+            }
+            directories.putAll(jarDirectories);
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Cannot list the entries of " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the directory key and the name of a URL.
+     *
+     * @param path The URL, as a string.
+     * @return An array containing the key of the directory and the name of
+     * the file, or <code>null</code> if the URL cannot be indexed.
+     */
+    private static String[] getLocation(String path) {
+        if (path.startsWith("file:")) {
+            File file = getFile(path);
+            if (file == null || file.getParentFile() == null) {
+                return null;
+            }
+            return new String[] {file.getParentFile().getAbsolutePath(),
+                    file.getName()};
+        }
+        if (path.startsWith("jar:")) {
+            // Entry names are compared as they are: escaped names are not
+            // indexed.
+            if (path.indexOf(JAR_SEPARATOR) < 0 || path.indexOf('%') >= 0) {
+                return null;
+            }
+            int slash = path.lastIndexOf('/');
+            return new String[] {path.substring(0, slash + 1),
+                    path.substring(slash + 1)};
+        }
+        return null;
+    }
+
+    /**
+     * Converts a <code>file:</code> URL to a file.
+     *
+     * @param path The URL, as a string.
+     * @return The file, or <code>null</code> if the URL cannot be converted.
+     */
+    private static File getFile(String path) {
+        try {
+            return new File(new URL(path).toURI());
+        } catch (IOException e) {
+            return null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.tiles.definition.util;
+
+import java.util.Collection;
+
+/**
+ * A compact filter over a set of names, used to know quickly that a string is
+ * <em>not</em> one of them. It is a Bloom filter: {@link #mightContain(String)}
+ * never returns <code>false</code> for a name of the set, and returns
+ * <code>true</code> for a few other strings.
+ * <p/>
+ * The filter cannot be modified after it has been created, so it can be
+ * shared between threads.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class NameFilter {
+
+    /**
+     * The number of bits used for each name.
+     */
+    private static final int BITS_PER_NAME = 10;
+
+    /**
+     * The number of bits set for each name.
+     */
+    private static final int HASH_COUNT = 4;
+
+    /**
+     * The bits of the filter.
+     */
+    private final long[] bits;
+
+    /**
+     * The number of bits of the filter.
+     */
+    private final int size;
+
+    /**
+     * Creates a filter over a set of names.
+     *
+     * @param names The names.
+     */
+    public NameFilter(Collection<String> names) {
+        bits = new long[Math.max(1, (names.size() * BITS_PER_NAME + 63) / 64)];
+        size = bits.length * 64;
+        for (String name : names) {
+            int hash = name.hashCode();
+            int step = step(hash);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int bit = index(hash + i * step);
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a string might be one of the names of the filter.
+     *
+     * @param name The string to check.
+     * @return <code>false</code> if the string is surely not one of the names.
+     */
+    public boolean mightContain(String name) {
+        int hash = name.hashCode();
+        int step = step(hash);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = index(hash + i * step);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the second hash of a name, used as the distance between the
+     * bits of the name.
+     *
+     * @param hash The hash code of the name.
+     * @return The second hash, always odd.
+     */
+    private static int step(int hash) {
+        int step = hash * 0x9E3779B9;
+        return (step ^ (step >>> 16)) | 1;
+    }
+
+    /**
+     * Maps a hash to a bit index.
+     *
+     * @param hash The hash.
+     * @return The index of the bit.
+     */
+    private int index(int hash) {
+        return (hash & Integer.MAX_VALUE) % size;
+    }
+}
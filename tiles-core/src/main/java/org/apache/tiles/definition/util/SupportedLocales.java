@@ -0,0 +1,101 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.util;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The set of locales that have their own definitions. The locale of a
+ * request is mapped to the nearest supported locale, so the locales sent by
+ * clients cannot cause the load of an unlimited number of locales.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class SupportedLocales {
+
+    /**
+     * The supported locales.
+     */
+    private Set<Locale> locales;
+
+    /**
+     * Constructor.
+     *
+     * @param locales The supported locales.
+     */
+    public SupportedLocales(Set<Locale> locales) {
+        this.locales = new HashSet<Locale>(locales);
+    }
+
+    /**
+     * Parses a comma-separated list of locales, in the form
+     * <code>language[_country[_variant]]</code>. A hyphen can be used instead
+     * of the underscore.
+     *
+     * @param value The list of locales.
+     * @return The supported locales.
+     */
+    public static SupportedLocales parse(String value) {
+        Set<Locale> locales = new HashSet<Locale>();
+        for (String token : value.split(",")) {
+            token = token.trim();
+            if (token.length() > 0) {
+                String[] parts = token.split("[_-]", 3);
+                locales.add(new Locale(parts[0], parts.length > 1 ? parts[1]
+                        : "", parts.length > 2 ? parts[2] : ""));
+            }
+        }
+        return new SupportedLocales(locales);
+    }
+
+    /**
+     * Returns the supported locale nearest to the given one: the locale
+     * itself, the locale without the variant or the language only.
+     *
+     * @param locale The locale.
+     * @return The supported locale, or <code>null</code> if none is near to
+     * the locale.
+     */
+    public Locale getNearest(Locale locale) {
+        if (locale == null || locales.contains(locale)) {
+            return locale;
+        }
+
+        String language = locale.getLanguage();
+        if (locale.getVariant().length() > 0) {
+            Locale candidate = new Locale(language, locale.getCountry());
+            if (locales.contains(candidate)) {
+                return candidate;
+            }
+        }
+        if (locale.getCountry().length() > 0) {
+            Locale candidate = new Locale(language);
+            if (locales.contains(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
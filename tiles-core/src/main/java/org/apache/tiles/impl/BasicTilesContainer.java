@@ -24,31 +24,51 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.tiles.Attribute;
 import org.apache.tiles.AttributeContext;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.CapturingTilesContainer;
 import org.apache.tiles.Definition;
+import org.apache.tiles.FragmentCachingTilesContainer;
 import org.apache.tiles.TilesApplicationContext;
-import org.apache.tiles.TilesContainer;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.cache.FragmentCache;
 import org.apache.tiles.context.BasicAttributeContext;
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.DispatcherCache;
+import org.apache.tiles.context.LayeredAttributeContext;
 import org.apache.tiles.context.TilesContextFactory;
 import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
 import org.apache.tiles.definition.DefinitionsFactory;
 import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.definition.DefinitionsRefreshListener;
+import org.apache.tiles.definition.IndexedDefinitionsFactory;
 import org.apache.tiles.definition.NoSuchDefinitionException;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+import org.apache.tiles.listener.RenderListener;
+import org.apache.tiles.listener.RenderPhase;
+import org.apache.tiles.preparer.IndependentViewPreparer;
 import org.apache.tiles.preparer.NoSuchPreparerException;
+import org.apache.tiles.preparer.PreparerException;
 import org.apache.tiles.preparer.PreparerFactory;
 import org.apache.tiles.preparer.ViewPreparer;
+import org.apache.tiles.reflect.ClassUtil;
+import org.apache.tiles.util.CountingWriter;
+import org.apache.tiles.util.RenderBuffer;
+import org.apache.tiles.util.RenderBufferPool;
 
 import java.io.IOException;
 import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Basic implementation of the tiles container interface.
@@ -59,7 +79,8 @@ import java.util.StringTokenizer;
  * @since 2.0
  * @version $Rev$ $Date$
  */
-public class BasicTilesContainer implements TilesContainer {
+public class BasicTilesContainer implements CapturingTilesContainer,
+        FragmentCachingTilesContainer {
 
     /**
      * Constant representing the configuration parameter
@@ -68,17 +89,70 @@ public class BasicTilesContainer implements TilesContainer {
     public static final String DEFINITIONS_CONFIG = "org.apache.tiles.impl.BasicTilesContainer.DEFINITIONS_CONFIG";
 
     /**
-     * Compatibility constant.
+     * Initialization parameter that, if set to <code>true</code>, makes the
+     * container create the preparers of all the definitions that do not
+     * depend on the locale when a definitions factory is initialized, instead
+     * of creating them the first time they are used.
      *
-     * @deprecated use {@link #DEFINITIONS_CONFIG} to avoid namespace collisions.
+     * @since 2.0.8
      */
-    private static final String LEGACY_DEFINITIONS_CONFIG = "definitions-config";
+    public static final String PRELOAD_PREPARERS_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.PRELOAD_PREPARERS";
+
+    /**
+     * Initialization parameter that, if set to <code>true</code>, makes the
+     * container run the {@link IndependentViewPreparer}s of a page in
+     * parallel, before the definitions are rendered.
+     *
+     * @since 2.0.8
+     */
+    public static final String PARALLEL_PREPARERS_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.PARALLEL_PREPARERS";
+
+    /**
+     * Initialization parameter that contains the number of threads used to
+     * run preparers in parallel, when virtual threads are not available.
+     *
+     * @since 2.0.8
+     */
+    public static final String PREPARER_THREADS_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.PREPARER_THREADS";
+
+    /**
+     * Initialization parameter that contains the maximum number of rendered
+     * fragments kept by the fragment cache. If it is <code>0</code>, the
+     * cache is disabled.
+     *
+     * @since 2.0.8
+     */
+    public static final String FRAGMENT_CACHE_MAX_ENTRIES_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.FRAGMENT_CACHE_MAX_ENTRIES";
 
     /**
-     * Name used to store attribute context stack.
+     * Initialization parameter that contains the maximum total number of
+     * characters of the rendered fragments kept by the fragment cache.
+     *
+     * @since 2.0.8
+     */
+    public static final String FRAGMENT_CACHE_MAX_SIZE_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.FRAGMENT_CACHE_MAX_SIZE";
+
+    /**
+     * Initialization parameter that contains a comma-separated list of
+     * {@link RenderListener} class names. The listeners are created and
+     * initialized with the initialization parameters of the container.
+     *
+     * @since 2.0.8
      */
-    private static final String ATTRIBUTE_CONTEXT_STACK =
-        "org.apache.tiles.AttributeContext.STACK";
+    public static final String RENDER_LISTENERS_INIT_PARAM =
+        "org.apache.tiles.impl.BasicTilesContainer.RENDER_LISTENERS";
+
+    /**
+     * Compatibility constant.
+     *
+     * @deprecated use {@link #DEFINITIONS_CONFIG} to avoid namespace collisions.
+     */
+    private static final String LEGACY_DEFINITIONS_CONFIG = "definitions-config";
 
     /**
      * Log instance for all BasicTilesContainer
@@ -107,6 +181,29 @@ public class BasicTilesContainer implements TilesContainer {
      */
     private TilesContextFactory contextFactory;
 
+    /**
+     * The buffers used to capture the output of definitions and attributes.
+     */
+    private RenderBufferPool renderBufferPool = new RenderBufferPool();
+
+    /**
+     * The render listeners.
+     */
+    private final RenderListenerSupport renderListeners =
+        new RenderListenerSupport();
+
+    /**
+     * Runs the independent preparers in parallel.
+     */
+    private final PreparerScheduler preparerScheduler = new PreparerScheduler(
+            this, renderListeners);
+
+    /**
+     * Renders definitions and attributes through the fragment cache.
+     */
+    private final FragmentRenderer fragmentRenderer =
+        new FragmentRenderer(this);
+
     /**
      * Initialization flag. If set, this container cannot be changed.
      */
@@ -129,6 +226,41 @@ public class BasicTilesContainer implements TilesContainer {
         // our definitions
         initializeDefinitionsFactory(definitionsFactory, getResourceString(),
                 initParameters);
+
+        if (preparerScheduler.getExecutor() == null && initParameters != null
+                && "true".equalsIgnoreCase(initParameters
+                        .get(PARALLEL_PREPARERS_INIT_PARAM))) {
+            preparerScheduler.setExecutor(
+                    createPreparerExecutor(initParameters), true);
+        }
+
+        if (fragmentRenderer.getCache() == null) {
+            fragmentRenderer.setCache(createFragmentCache(initParameters));
+        }
+
+        String listenerNames = initParameters != null ? initParameters
+                .get(RENDER_LISTENERS_INIT_PARAM) : null;
+        if (listenerNames != null) {
+            for (String className : getResourceNames(listenerNames)) {
+                RenderListener listener = (RenderListener) ClassUtil
+                        .instantiate(className);
+                listener.init(initParameters);
+                addRenderListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Releases the resources of the container when it is removed from
+     * service. The executor of the preparers is shut down if the container
+     * created it, and the definitions factory is destroyed. The container
+     * should not be used after it has been destroyed.
+     *
+     * @since 2.0.8
+     */
+    public void destroy() {
+        preparerScheduler.shutdown();
+        destroyDefinitionsFactory(definitionsFactory);
     }
 
     /** {@inheritDoc} */
@@ -226,23 +358,127 @@ public class BasicTilesContainer implements TilesContainer {
         this.preparerFactory = preparerFactory;
     }
 
+    /**
+     * Returns the executor that runs preparers in parallel.
+     *
+     * @return The executor, or <code>null</code> if preparers do not run in
+     * parallel.
+     * @since 2.0.8
+     */
+    public ExecutorService getPreparerExecutor() {
+        return preparerScheduler.getExecutor();
+    }
+
+    /**
+     * Sets the executor that runs the {@link IndependentViewPreparer}s in
+     * parallel. If it is <code>null</code>, every preparer runs when its
+     * definition is rendered. The executor is not shut down by
+     * {@link #destroy()}.
+     *
+     * @param preparerExecutor The executor.
+     * @since 2.0.8
+     */
+    public void setPreparerExecutor(ExecutorService preparerExecutor) {
+        preparerScheduler.setExecutor(preparerExecutor, false);
+    }
+
+    /**
+     * Returns the cache of the rendered output of definitions and attributes.
+     *
+     * @return The fragment cache, or <code>null</code> if the output is not
+     * cached.
+     * @since 2.0.8
+     */
+    public FragmentCache getFragmentCache() {
+        return fragmentRenderer.getCache();
+    }
+
+    /**
+     * Sets the cache of the rendered output of the definitions and attributes
+     * that have a {@link CachePolicy}.
+     *
+     * @param fragmentCache The fragment cache. If <code>null</code>, the
+     * output is not cached.
+     * @since 2.0.8
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        fragmentRenderer.setCache(fragmentCache);
+    }
+
+    /**
+     * Returns the pool of the buffers used to capture the output of
+     * definitions and attributes.
+     *
+     * @return The buffer pool.
+     * @since 2.0.8
+     */
+    public RenderBufferPool getRenderBufferPool() {
+        return renderBufferPool;
+    }
+
+    /**
+     * Sets the pool of the buffers used to capture the output of definitions
+     * and attributes.
+     *
+     * @param renderBufferPool The buffer pool.
+     * @since 2.0.8
+     */
+    public void setRenderBufferPool(RenderBufferPool renderBufferPool) {
+        this.renderBufferPool = renderBufferPool;
+    }
+
+    /**
+     * Adds a listener that is notified when definitions, preparers,
+     * dispatches and attributes are rendered.
+     *
+     * @param listener The listener to add.
+     * @since 2.0.8
+     */
+    public void addRenderListener(RenderListener listener) {
+        renderListeners.addListener(listener);
+    }
+
+    /**
+     * Removes a render listener.
+     *
+     * @param listener The listener to remove.
+     * @since 2.0.8
+     */
+    public void removeRenderListener(RenderListener listener) {
+        renderListeners.removeListener(listener);
+    }
+
+    /**
+     * Returns the render listeners.
+     *
+     * @return A copy of the list of the listeners.
+     * @since 2.0.8
+     */
+    public List<RenderListener> getRenderListeners() {
+        return renderListeners.getListenerList();
+    }
+
+    /** {@inheritDoc} */
+    public void invalidateFragments(String name) {
+        fragmentRenderer.invalidate(name);
+    }
+
+    /** {@inheritDoc} */
+    public void invalidateAllFragments() {
+        fragmentRenderer.invalidateAll();
+    }
+
     /** {@inheritDoc} */
     public void prepare(String preparer, Object... requestItems)
         throws TilesException {
-        TilesRequestContext requestContext = getContextFactory().createRequestContext(
-            getApplicationContext(),
-            requestItems
-        );
+        TilesRequestContext requestContext = getRequestContext(requestItems);
         prepare(requestContext, preparer, false);
     }
 
     /** {@inheritDoc} */
     public void render(String definitionName, Object... requestItems)
         throws TilesException {
-        TilesRequestContext requestContext = getContextFactory().createRequestContext(
-            getApplicationContext(),
-            requestItems
-        );
+        TilesRequestContext requestContext = getRequestContext(requestItems);
         render(requestContext, definitionName);
     }
 
@@ -250,6 +486,51 @@ public class BasicTilesContainer implements TilesContainer {
     public void render(Attribute attr, Writer writer, Object... requestItems)
         throws TilesException, IOException {
         TilesRequestContext request = getRequestContext(requestItems);
+        render(request, attr, writer);
+    }
+
+    /** {@inheritDoc} */
+    public void renderTo(String definitionName, Writer writer,
+            Object... requestItems) throws TilesException, IOException {
+        TilesRequestContext request = getRequestContext(requestItems);
+        render(getCapturingContext(request, writer), definitionName);
+    }
+
+    /** {@inheritDoc} */
+    public void renderTo(Attribute attr, Writer writer,
+            Object... requestItems) throws TilesException, IOException {
+        TilesRequestContext request = getRequestContext(requestItems);
+        render(getCapturingContext(request, writer), attr, writer);
+    }
+
+    /** {@inheritDoc} */
+    public String renderToString(String definitionName,
+            Object... requestItems) throws TilesException, IOException {
+        RenderBuffer buffer = renderBufferPool.acquire();
+        try {
+            renderTo(definitionName, buffer, requestItems);
+            return buffer.toString();
+        } finally {
+            renderBufferPool.release(buffer);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean isValidDefinition(String definitionName, Object... requestItems) {
+        return isValidDefinition(getRequestContext(requestItems), definitionName);
+    }
+
+    /**
+     * Renders an attribute.
+     *
+     * @param request The request context.
+     * @param attr The attribute to render.
+     * @param writer The writer where string attributes are written.
+     * @throws TilesException If something goes wrong during rendering.
+     * @throws IOException If something goes wrong during writing.
+     */
+    private void render(TilesRequestContext request, final Attribute attr,
+            Writer writer) throws TilesException, IOException {
 
         if (attr == null) {
             throw new TilesException("Cannot render a null attribute");
@@ -264,23 +545,86 @@ public class BasicTilesContainer implements TilesContainer {
         }
 
         AttributeType type = attr.getType();
-        if (type == null) {
+        if (type == null || isTypeProbable(attr)) {
+            // Whether a string is the name of a definition may depend on the
+            // request, and attributes may be shared between requests, so the
+            // calculated type is not stored. Most strings that are not
+            // definition names are excluded by mayBeDefinition without a
+            // lookup.
             type = calculateType(attr, request);
-            attr.setType(type);
         }
 
+        RenderListener[] listeners = renderListeners.getListeners();
+        if (listeners == null) {
+            renderAttribute(request, attr, type, writer);
+            return;
+        }
+        String name = attr.getName() != null ? attr.getName() : String
+                .valueOf(attr.getValue());
+        long start = renderListeners.fireRenderStarted(listeners,
+                RenderPhase.ATTRIBUTE, name, request);
+        Throwable error = null;
+        try {
+            renderListeners.fireAttributeResolved(type, request);
+            renderAttribute(request, attr, type, writer);
+        } catch (TilesException e) {
+            error = e;
+            throw e;
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            renderListeners.fireRenderEnded(listeners, RenderPhase.ATTRIBUTE,
+                    name, request, System.nanoTime() - start, error);
+        }
+    }
+
+    /**
+     * Renders an attribute that the user is permitted to see.
+     *
+     * @param request The request context.
+     * @param attr The attribute to render.
+     * @param type The type of the attribute.
+     * @param writer The writer where string attributes are written.
+     * @throws TilesException If something goes wrong during rendering.
+     * @throws IOException If something goes wrong during writing.
+     */
+    private void renderAttribute(TilesRequestContext request,
+            final Attribute attr, AttributeType type, Writer writer)
+            throws TilesException, IOException {
         switch (type) {
             case OBJECT:
                 throw new TilesException(
                     "Cannot insert an attribute of 'object' type");
             case STRING:
-                writer.write(attr.getValue().toString());
+                String value = attr.getValue().toString();
+                writer.write(value);
+                if (renderListeners.hasDetailedListeners()) {
+                    renderListeners.fireOutputWritten(value.length(), request);
+                }
                 break;
             case DEFINITION:
-                render(request, attr.getValue().toString());
-                break;
             case TEMPLATE:
-                request.dispatch(attr.getValue().toString());
+                final AttributeType valueType = type;
+                CachePolicy policy = attr.getCachePolicy();
+                if (policy != null && fragmentRenderer.getCache() != null) {
+                    fragmentRenderer.render(request,
+                            FragmentRenderer.ATTRIBUTE_PREFIX
+                                    + attr.getValue(), policy,
+                            new FragmentRenderer.Fragment() {
+
+                        /** {@inheritDoc} */
+                        public void render(TilesRequestContext request)
+                                throws TilesException, IOException {
+                            renderValue(request, attr, valueType);
+                        }
+                    });
+                } else {
+                    renderValue(request, attr, type);
+                }
                 break;
             default: // should not happen
                 throw new TilesException(
@@ -289,13 +633,13 @@ public class BasicTilesContainer implements TilesContainer {
         }
     }
 
-    /** {@inheritDoc} */
-    public boolean isValidDefinition(String definitionName, Object... requestItems) {
-        return isValidDefinition(getRequestContext(requestItems), definitionName);
-    }
-
     /**
      * Returns a definition specifying its name.
+     * <p/>
+     * The definitions returned by Tiles definitions factories are
+     * {@link org.apache.tiles.definition.CompiledDefinition compiled}: they are
+     * already resolved and shared between requests, so they must not be
+     * modified.
      *
      * @param definitionName The name of the definition to find.
      * @param request The request context.
@@ -310,6 +654,39 @@ public class BasicTilesContainer implements TilesContainer {
         return definition;
     }
 
+    /**
+     * Checks whether a definition with the given name may exist, without
+     * looking it up. If the definitions factory keeps an index of the names
+     * of its definitions, it is used to exclude most of the strings that are
+     * not definition names.
+     *
+     * @param definitionName The name of the definition.
+     * @param request The request context.
+     * @return <code>false</code> if the definition surely does not exist.
+     * @since 2.0.8
+     */
+    protected boolean mayBeDefinition(String definitionName,
+            TilesRequestContext request) {
+        return mayContainDefinition(definitionsFactory, definitionName, request);
+    }
+
+    /**
+     * Checks whether a definitions factory may contain a definition.
+     *
+     * @param factory The definitions factory.
+     * @param definitionName The name of the definition.
+     * @param request The request context.
+     * @return <code>false</code> if the factory surely does not contain the
+     * definition.
+     * @since 2.0.8
+     */
+    protected boolean mayContainDefinition(DefinitionsFactory factory,
+            String definitionName, TilesRequestContext request) {
+        return !(factory instanceof IndexedDefinitionsFactory)
+                || ((IndexedDefinitionsFactory) factory).mayContainDefinition(
+                        definitionName, request);
+    }
+
     /**
      * Derive the resource string from the initialization parameters.
      * If no parameter {@link #DEFINITIONS_CONFIG} is available, attempts
@@ -372,6 +749,21 @@ public class BasicTilesContainer implements TilesContainer {
         }
     }
 
+    /**
+     * Destroys a definitions factory, releasing its resources, if it
+     * supports it.
+     *
+     * @param definitionsFactory The factory to destroy. It can be
+     * <code>null</code>.
+     * @since 2.0.8
+     */
+    protected void destroyDefinitionsFactory(
+            DefinitionsFactory definitionsFactory) {
+        if (definitionsFactory instanceof UrlDefinitionsFactory) {
+            ((UrlDefinitionsFactory) definitionsFactory).destroy();
+        }
+    }
+
     /**
      * Initializes a definitions factory.
      *
@@ -405,30 +797,115 @@ public class BasicTilesContainer implements TilesContainer {
 
         definitionsFactory.init(initParameters);
 
+        if (definitionsFactory instanceof UrlDefinitionsFactory) {
+            ((UrlDefinitionsFactory) definitionsFactory)
+                    .addRefreshListener(new DefinitionsRefreshListener() {
+
+                        /** {@inheritDoc} */
+                        public void definitionsRefreshed(
+                                DefinitionsFactory factory) {
+                            BasicTilesContainer.this
+                                    .definitionsRefreshed(factory);
+                        }
+                    });
+        }
+
+        if (initParameters != null
+                && "true".equalsIgnoreCase(initParameters
+                        .get(PRELOAD_PREPARERS_INIT_PARAM))) {
+            preloadPreparers(definitionsFactory);
+        }
+
         if (LOG.isInfoEnabled()) {
             LOG.info("Tiles2 container initialization complete.");
         }
     }
 
     /**
-     * Returns the context stack.
+     * Called when the definitions of a factory used by this container have
+     * been reloaded. It removes the cached request dispatchers of the
+     * application and the cached output of definitions and attributes.
+     *
+     * @param factory The definitions factory that has been refreshed.
+     * @since 2.0.8
+     */
+    protected void definitionsRefreshed(DefinitionsFactory factory) {
+        if (context != null) {
+            DispatcherCache.invalidate(context);
+        }
+        invalidateAllFragments();
+    }
+
+    /**
+     * Creates the preparers of the definitions that do not depend on the
+     * locale, so that requests find them already created. It works only with
+     * definitions factories that know the names of their definitions. The
+     * preparers that cannot be created are skipped, and will be reported when
+     * they are used.
+     *
+     * @param definitionsFactory The definitions factory.
+     * @since 2.0.8
+     */
+    protected void preloadPreparers(DefinitionsFactory definitionsFactory) {
+        if (preparerFactory == null
+                || !(definitionsFactory instanceof IndexedDefinitionsFactory)) {
+            return;
+        }
+
+        Set<String> preparerNames = new HashSet<String>();
+        for (String name : ((IndexedDefinitionsFactory) definitionsFactory)
+                .getDefinitionNames()) {
+            try {
+                Definition definition = definitionsFactory.getDefinition(name,
+                        null);
+                if (definition != null && definition.getPreparer() != null) {
+                    preparerNames.add(definition.getPreparer());
+                }
+            } catch (DefinitionsFactoryException e) {
+                LOG.warn("Unable to get the definition '" + name
+                        + "' to preload its preparer", e);
+            }
+        }
+
+        for (String preparerName : preparerNames) {
+            try {
+                preparerFactory.getPreparer(preparerName, null);
+            } catch (TilesException e) {
+                LOG.warn("Unable to preload the preparer '" + preparerName
+                        + "'", e);
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Preloaded " + preparerNames.size() + " preparers");
+        }
+    }
+
+    /**
+     * Creates the executor that runs preparers in parallel. Virtual threads
+     * are used if the platform supports them, otherwise a fixed pool of
+     * daemon threads is created.
+     *
+     * @param initParameters The initialization parameters.
+     * @return The executor.
+     * @since 2.0.8
+     */
+    protected ExecutorService createPreparerExecutor(
+            Map<String, String> initParameters) {
+        return PreparerScheduler.createExecutor(initParameters
+                .get(PREPARER_THREADS_INIT_PARAM));
+    }
+
+    /**
+     * Returns the context stack, that is stored in the
+     * {@link TilesRequestState} of the request.
      *
      * @param tilesContext The Tiles context object to use.
      * @return The needed stack of contexts.
      * @since 2.0.6
      */
-    @SuppressWarnings("unchecked")
     protected Stack<AttributeContext> getContextStack(TilesRequestContext tilesContext) {
-        Stack<AttributeContext> contextStack =
-            (Stack<AttributeContext>) tilesContext
-                .getRequestScope().get(ATTRIBUTE_CONTEXT_STACK);
-        if (contextStack == null) {
-            contextStack = new Stack<AttributeContext>();
-            tilesContext.getRequestScope().put(ATTRIBUTE_CONTEXT_STACK,
-                    contextStack);
-        }
-
-        return contextStack;
+        return TilesRequestState.getInstance(tilesContext).getContextStack();
     }
 
     /**
@@ -489,12 +966,14 @@ public class BasicTilesContainer implements TilesContainer {
     }
 
     /**
-     * Creates a Tiles request context from request items.
+     * Returns the Tiles request context for the request items. Context
+     * factories may return the same object for the same request items.
      *
      * @param requestItems The request items.
-     * @return The created Tiles request context.
+     * @return The Tiles request context.
+     * @since 2.0.8
      */
-    private TilesRequestContext getRequestContext(Object... requestItems) {
+    protected TilesRequestContext getRequestContext(Object... requestItems) {
         return getContextFactory().createRequestContext(
             getApplicationContext(),
             requestItems
@@ -551,7 +1030,99 @@ public class BasicTilesContainer implements TilesContainer {
 
         AttributeContext attributeContext = getContext(context);
 
-        preparer.execute(context, attributeContext);
+        execute(preparer, preparerName, context, attributeContext);
+    }
+
+    /**
+     * Executes a preparer, notifying the render listeners.
+     *
+     * @param preparer The preparer.
+     * @param preparerName The name of the preparer.
+     * @param request The request context.
+     * @param attributeContext The attribute context to prepare.
+     * @throws PreparerException If the preparer fails.
+     */
+    private void execute(ViewPreparer preparer, String preparerName,
+            TilesRequestContext request, AttributeContext attributeContext)
+            throws PreparerException {
+        RenderListener[] listeners = renderListeners.getListeners();
+        if (listeners == null) {
+            preparer.execute(request, attributeContext);
+            return;
+        }
+        long start = renderListeners.fireRenderStarted(listeners,
+                RenderPhase.PREPARER, preparerName, request);
+        Throwable error = null;
+        try {
+            preparer.execute(request, attributeContext);
+        } catch (PreparerException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            renderListeners.fireRenderEnded(listeners, RenderPhase.PREPARER,
+                    preparerName, request, System.nanoTime() - start, error);
+        }
+    }
+
+    /**
+     * Dispatches to a path, notifying the render listeners.
+     *
+     * @param request The request context.
+     * @param path The path to dispatch to.
+     * @throws IOException If something goes wrong during dispatching.
+     */
+    private void dispatch(TilesRequestContext request, String path)
+            throws IOException {
+        RenderListener[] listeners = renderListeners.getListeners();
+        if (listeners == null) {
+            request.dispatch(path);
+            return;
+        }
+        long start = renderListeners.fireRenderStarted(listeners,
+                RenderPhase.DISPATCH, path, request);
+        Throwable error = null;
+        try {
+            if (renderListeners.isOutputCounted(request)) {
+                CapturingTilesRequestContext capturing =
+                    (CapturingTilesRequestContext) request;
+                CountingWriter writer = new CountingWriter(capturing
+                        .getWriter());
+                capturing.createCapturingContext(writer).dispatch(path);
+                renderListeners.fireOutputWritten(writer.getCount(), request);
+            } else {
+                request.dispatch(path);
+            }
+        } catch (IOException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            renderListeners.fireRenderEnded(listeners, RenderPhase.DISPATCH,
+                    path, request, System.nanoTime() - start, error);
+        }
+    }
+
+    /**
+     * Renders the value of an attribute that is a definition or a template.
+     *
+     * @param request The request context.
+     * @param attr The attribute to render.
+     * @param type The type of the attribute.
+     * @throws TilesException If something goes wrong during rendering.
+     * @throws IOException If something goes wrong during dispatching.
+     */
+    private void renderValue(TilesRequestContext request, Attribute attr,
+            AttributeType type) throws TilesException, IOException {
+        if (type == AttributeType.DEFINITION) {
+            render(request, attr.getValue().toString());
+        } else {
+            dispatch(request, attr.getValue().toString());
+        }
     }
 
     /**
@@ -563,6 +1134,38 @@ public class BasicTilesContainer implements TilesContainer {
      */
     private void render(TilesRequestContext request, String definitionName)
         throws TilesException {
+        RenderListener[] listeners = renderListeners.getListeners();
+        if (listeners == null) {
+            renderDefinition(request, definitionName);
+            return;
+        }
+        long start = renderListeners.fireRenderStarted(listeners,
+                RenderPhase.DEFINITION, definitionName, request);
+        Throwable error = null;
+        try {
+            renderDefinition(request, definitionName);
+        } catch (TilesException e) {
+            error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            renderListeners.fireRenderEnded(listeners,
+                    RenderPhase.DEFINITION, definitionName, request,
+                    System.nanoTime() - start, error);
+        }
+    }
+
+    /**
+     * Finds and renders a definition.
+     *
+     * @param request The request context.
+     * @param definitionName The name of the definition to render.
+     * @throws TilesException If something goes wrong during rendering.
+     */
+    private void renderDefinition(TilesRequestContext request,
+            String definitionName) throws TilesException {
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Render request recieved for definition '" + definitionName + "'");
@@ -587,23 +1190,70 @@ public class BasicTilesContainer implements TilesContainer {
             return;
         }
 
+        CachePolicy policy = definition.getCachePolicy();
+        if (policy != null && fragmentRenderer.getCache() != null) {
+            final String cachedName = definitionName;
+            final Definition cachedDefinition = definition;
+            try {
+                fragmentRenderer.render(request, definitionName, policy,
+                        new FragmentRenderer.Fragment() {
+
+                            /** {@inheritDoc} */
+                            public void render(TilesRequestContext request)
+                                    throws TilesException {
+                                renderDefinition(request, cachedName,
+                                        cachedDefinition);
+                            }
+                        });
+            } catch (IOException e) {
+                throw new TilesException(e.getMessage(), e);
+            }
+        } else {
+            renderDefinition(request, definitionName, definition);
+        }
+    }
+
+    /**
+     * Renders a definition, that the user is permitted to see.
+     *
+     * @param request The request context.
+     * @param definitionName The name of the definition.
+     * @param definition The definition to render.
+     * @throws TilesException If something goes wrong during rendering.
+     */
+    private void renderDefinition(TilesRequestContext request,
+            String definitionName, Definition definition)
+            throws TilesException {
         AttributeContext originalContext = getAttributeContext(request);
-        BasicAttributeContext subContext = new BasicAttributeContext(originalContext);
-        subContext.addMissing(definition.getAttributes());
+        Map<String, PreparerScheduler.PreparerTask> startedPreparers =
+            preparerScheduler.start(request, definition, originalContext);
+        // The original context stays below the new one in the stack, and the
+        // attributes table is flattened and read-only, so both can be layered
+        // without copying them.
+        AttributeContext subContext = new LayeredAttributeContext(
+                originalContext, definition.getAttributes());
         pushContext(subContext, request);
 
         try {
-            if (definition.getPreparer() != null) {
-                prepare(request, definition.getPreparer(), true);
+            String preparer = definition.getPreparer();
+            if (preparer != null) {
+                Map<String, Attribute> preparedAttributes =
+                    preparerScheduler.getPreparedAttributes(request,
+                            definitionName);
+                if (preparedAttributes != null) {
+                    subContext.addAll(preparedAttributes);
+                } else {
+                    prepare(request, preparer, true);
+                }
             }
 
             String dispatchPath = definition.getTemplate();
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Dispatching to definition path '"
-                        + definition.getTemplate() + " '");
+                        + dispatchPath + " '");
             }
-            request.dispatch(dispatchPath);
+            dispatch(request, dispatchPath);
 
             // tiles exception so that it doesn't need to be rethrown.
         } catch (TilesException e) {
@@ -614,7 +1264,71 @@ public class BasicTilesContainer implements TilesContainer {
             throw new TilesException(e.getMessage(), e);
         } finally {
             popContext(request);
+            if (startedPreparers != null) {
+                preparerScheduler.end(request, startedPreparers);
+            }
+        }
+    }
+
+    /**
+     * Returns a request context that writes its output into a writer.
+     *
+     * @param request The request context.
+     * @param writer The writer that receives the output.
+     * @return The capturing request context.
+     * @throws TilesException If the output of the request cannot be
+     * captured.
+     */
+    private TilesRequestContext getCapturingContext(
+            TilesRequestContext request, Writer writer) throws TilesException {
+        TilesRequestContext capturingContext = null;
+        if (request instanceof CapturingTilesRequestContext) {
+            capturingContext = ((CapturingTilesRequestContext) request)
+                    .createCapturingContext(writer);
+        }
+        if (capturingContext == null) {
+            throw new TilesException(
+                    "The output of the request cannot be captured");
+        }
+        return capturingContext;
+    }
+
+    /**
+     * Returns the key under which the output of a definition or an attribute
+     * is cached for a request. It contains the name and the values of the
+     * parts of the request that the cache policy varies by, including the
+     * attributes visible from the attribute context of the caller that it
+     * lists.
+     *
+     * @param request The request context.
+     * @param name The name of the definition or attribute.
+     * @param policy The cache policy.
+     * @return The key of the output, or <code>null</code> if the output
+     * cannot be cached, because the value of a listed attribute is neither a
+     * string nor a list of strings.
+     * @since 2.0.8
+     */
+    protected String getFragmentKey(TilesRequestContext request, String name,
+            CachePolicy policy) {
+        return fragmentRenderer.getKey(request, name, policy);
+    }
+
+    /**
+     * Creates the fragment cache, if it is enabled by the initialization
+     * parameters.
+     *
+     * @param initParameters The initialization parameters.
+     * @return The fragment cache, or <code>null</code> if it is disabled.
+     * @since 2.0.8
+     */
+    protected FragmentCache createFragmentCache(
+            Map<String, String> initParameters) {
+        if (initParameters == null) {
+            return FragmentRenderer.createCache(null, null);
         }
+        return FragmentRenderer.createCache(initParameters
+                .get(FRAGMENT_CACHE_MAX_ENTRIES_INIT_PARAM), initParameters
+                .get(FRAGMENT_CACHE_MAX_SIZE_INIT_PARAM));
     }
 
     /**
@@ -645,6 +1359,21 @@ public class BasicTilesContainer implements TilesContainer {
         return type;
     }
 
+    /**
+     * Checks whether the type of an attribute has been inferred when the
+     * definitions have been loaded, and it must be checked again for each
+     * request. Only the template and string types are checked again, since
+     * the value may name a definition that only some requests can see.
+     *
+     * @param attr The attribute.
+     * @return <code>true</code> if the type must be calculated again.
+     */
+    static boolean isTypeProbable(Attribute attr) {
+        AttributeType type = attr.getType();
+        return attr.isTypeInferred() && (type == AttributeType.TEMPLATE
+                || type == AttributeType.STRING);
+    }
+
     /**
      * Checks if the current user is in one of the comma-separated roles
      * specified in the <code>role</code> parameter.
@@ -653,7 +1382,8 @@ public class BasicTilesContainer implements TilesContainer {
      * @param roles The list of roles.
      * @return <code>true</code> if the current user is in one of those roles.
      */
-    private boolean isPermitted(TilesRequestContext request, Set<String> roles) {
+    static boolean isPermitted(TilesRequestContext request,
+            Set<String> roles) {
         if (roles == null || roles.isEmpty()) {
             return true;
         }
@@ -677,6 +1407,9 @@ public class BasicTilesContainer implements TilesContainer {
      * definition name.
      */
     private boolean isValidDefinition(TilesRequestContext context, String definitionName) {
+        if (!mayBeDefinition(definitionName, context)) {
+            return false;
+        }
         try {
             Definition definition = getDefinition(definitionName, context);
             return definition != null;
@@ -0,0 +1,181 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+
+/**
+ * A read-only copy of a request context, given to the preparers that run in
+ * parallel with the rendering of the request. The headers, the parameters,
+ * the locale and the attributes of the request scope are copied when it is
+ * created, so it can be used by many threads at the same time without
+ * accessing the request. The session scope, the roles, the underlying
+ * request and response, dispatching and including are not available.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class DetachedTilesRequestContext implements TilesRequestContext {
+
+    /**
+     * The first value of each header.
+     */
+    private final Map<String, String> header;
+
+    /**
+     * The values of each header.
+     */
+    private final Map<String, String[]> headerValues;
+
+    /**
+     * The attributes of the request scope.
+     */
+    private final Map<String, Object> requestScope;
+
+    /**
+     * The first value of each parameter.
+     */
+    private final Map<String, String> param;
+
+    /**
+     * The values of each parameter.
+     */
+    private final Map<String, String[]> paramValues;
+
+    /**
+     * The locale of the request.
+     */
+    private final Locale requestLocale;
+
+    /**
+     * Constructor. It must be called by the thread that handles the request.
+     *
+     * @param request The request context to copy.
+     */
+    public DetachedTilesRequestContext(TilesRequestContext request) {
+        header = copy(request.getHeader());
+        headerValues = copy(request.getHeaderValues());
+        param = copy(request.getParam());
+        paramValues = copy(request.getParamValues());
+        requestLocale = request.getRequestLocale();
+        Map<String, Object> scope = request.getRequestScope();
+        if (scope == null) {
+            requestScope = Collections.emptyMap();
+        } else {
+            // The state of the request is used only by the rendering thread.
+            scope = new HashMap<String, Object>(scope);
+            scope.remove(TilesRequestState.STATE_ATTRIBUTE_NAME);
+            requestScope = Collections.unmodifiableMap(scope);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getHeader() {
+        return header;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getHeaderValues() {
+        return headerValues;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned map is a read-only copy.
+     */
+    public Map<String, Object> getRequestScope() {
+        return requestScope;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, Object> getSessionScope() {
+        throw new UnsupportedOperationException(
+                "The session is not available to independent preparers");
+    }
+
+    /** {@inheritDoc} */
+    public void dispatch(String path) throws IOException {
+        throw new UnsupportedOperationException(
+                "Independent preparers cannot dispatch");
+    }
+
+    /** {@inheritDoc} */
+    public void include(String path) throws IOException {
+        throw new UnsupportedOperationException(
+                "Independent preparers cannot include");
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getParam() {
+        return param;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getParamValues() {
+        return paramValues;
+    }
+
+    /** {@inheritDoc} */
+    public Locale getRequestLocale() {
+        return requestLocale;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isUserInRole(String role) {
+        throw new UnsupportedOperationException(
+                "The roles are not available to independent preparers");
+    }
+
+    /** {@inheritDoc} */
+    public Object getRequest() {
+        throw new UnsupportedOperationException(
+                "The request is not available to independent preparers");
+    }
+
+    /** {@inheritDoc} */
+    public Object getResponse() {
+        throw new UnsupportedOperationException(
+                "The response is not available to independent preparers");
+    }
+
+    /**
+     * Creates a read-only copy of a map.
+     *
+     * @param <V> The type of the values.
+     * @param map The map to copy. It can be <code>null</code>.
+     * @return The copy.
+     */
+    private static <V> Map<String, V> copy(Map<String, V> map) {
+        if (map == null || map.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(new HashMap<String, V>(map));
+    }
+}
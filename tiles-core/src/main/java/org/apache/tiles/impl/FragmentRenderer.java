@@ -0,0 +1,356 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.cache.CachedFragment;
+import org.apache.tiles.cache.FragmentCache;
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.ListAttribute;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.util.RenderBuffer;
+import org.apache.tiles.util.RenderBufferPool;
+
+/**
+ * Renders the definitions and the attributes that have a {@link CachePolicy}
+ * through the {@link FragmentCache} of a {@link BasicTilesContainer}. The
+ * cached output is written if it is fresh, otherwise the output is captured
+ * and stored in the cache, while the other requests that need it wait.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class FragmentRenderer {
+
+    /**
+     * The prefix of the names under which the output of attributes is cached.
+     */
+    static final String ATTRIBUTE_PREFIX = "attribute:";
+
+    /**
+     * The default maximum number of rendered fragments.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    /**
+     * The default maximum total number of characters of the rendered
+     * fragments.
+     */
+    private static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The maximum time a request waits for another request to render a
+     * fragment, in milliseconds, before rendering it by itself.
+     */
+    private static final long POPULATION_TIMEOUT = 10000;
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(FragmentRenderer.class);
+
+    /**
+     * The container, that computes the keys of the fragments and provides
+     * the buffers.
+     */
+    private final BasicTilesContainer container;
+
+    /**
+     * The cache of the rendered output of definitions and attributes. If
+     * <code>null</code>, the output is not cached.
+     */
+    private FragmentCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param container The container.
+     */
+    public FragmentRenderer(BasicTilesContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * Creates a fragment cache, unless it is disabled by a size that is not
+     * positive.
+     *
+     * @param maxEntries The maximum number of fragments, or <code>null</code>
+     * to use the default.
+     * @param maxSize The maximum total number of characters of the
+     * fragments, or <code>null</code> to use the default.
+     * @return The fragment cache, or <code>null</code> if it is disabled.
+     */
+    public static FragmentCache createCache(String maxEntries,
+            String maxSize) {
+        int entries = maxEntries != null ? Integer.parseInt(maxEntries.trim())
+                : DEFAULT_MAX_ENTRIES;
+        long size = maxSize != null ? Long.parseLong(maxSize.trim())
+                : DEFAULT_MAX_SIZE;
+        if (entries <= 0 || size <= 0) {
+            return null;
+        }
+        return new FragmentCache(entries, size);
+    }
+
+    /**
+     * Returns the fragment cache.
+     *
+     * @return The fragment cache, or <code>null</code> if the output is not
+     * cached.
+     */
+    public FragmentCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the fragment cache.
+     *
+     * @param cache The fragment cache, or <code>null</code> if the output
+     * must not be cached.
+     */
+    public void setCache(FragmentCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Removes the cached output of a definition and of the attributes whose
+     * value is the name of the definition.
+     *
+     * @param name The name of the definition.
+     */
+    public void invalidate(String name) {
+        FragmentCache fragmentCache = cache;
+        if (fragmentCache != null) {
+            fragmentCache.invalidate(name);
+            fragmentCache.invalidate(ATTRIBUTE_PREFIX + name);
+        }
+    }
+
+    /**
+     * Removes all the cached output.
+     */
+    public void invalidateAll() {
+        FragmentCache fragmentCache = cache;
+        if (fragmentCache != null) {
+            fragmentCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Renders a definition or an attribute through the fragment cache. The
+     * cached output is used if it is fresh, or if it is stale and another
+     * request is already rendering it again. Otherwise the output is captured
+     * and stored in the cache, while the other requests that need it wait.
+     * If there is no cache, or the output of the request cannot be captured,
+     * it is not cached.
+     *
+     * @param request The request context.
+     * @param name The name under which the output is cached.
+     * @param policy The cache policy.
+     * @param renderer Renders the output.
+     * @throws TilesException If something goes wrong during rendering.
+     * @throws IOException If something goes wrong during writing.
+     */
+    public void render(TilesRequestContext request, String name,
+            CachePolicy policy, Fragment renderer)
+            throws TilesException, IOException {
+        FragmentCache fragmentCache = cache;
+        if (fragmentCache == null
+                || !(request instanceof CapturingTilesRequestContext)) {
+            renderer.render(request);
+            return;
+        }
+        CapturingTilesRequestContext capturingRequest =
+            (CapturingTilesRequestContext) request;
+        String key = container.getFragmentKey(request, name, policy);
+        if (key == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rendering '" + name + "' without caching it, since"
+                        + " an attribute of the caller cannot be part of"
+                        + " its key");
+            }
+            renderer.render(request);
+            return;
+        }
+        CachedFragment fragment = fragmentCache.getFragment(key);
+        if (fragment == null && !fragmentCache.startPopulation(key, name)) {
+            fragmentCache.awaitPopulation(key, POPULATION_TIMEOUT);
+            fragment = fragmentCache.getFragment(key);
+            if (fragment == null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Rendering '" + name
+                            + "' without caching it, since it is taking"
+                            + " too long to be cached");
+                }
+                renderer.render(request);
+                return;
+            }
+        } else if (fragment != null
+                && !fragment.isFresh(System.currentTimeMillis())
+                && fragmentCache.startPopulation(key, name)) {
+            fragment = null;
+        }
+        if (fragment != null) {
+            capturingRequest.getWriter().write(fragment.getContent());
+            return;
+        }
+
+        String content = null;
+        RenderBufferPool renderBufferPool = container.getRenderBufferPool();
+        RenderBuffer buffer = renderBufferPool.acquire();
+        try {
+            TilesRequestContext capturingContext = capturingRequest
+                    .createCapturingContext(buffer);
+            if (capturingContext == null) {
+                renderer.render(request);
+                return;
+            }
+            renderer.render(capturingContext);
+            content = buffer.toString();
+        } finally {
+            fragmentCache.endPopulation(key, content, policy);
+            renderBufferPool.release(buffer);
+        }
+        capturingRequest.getWriter().write(content);
+    }
+
+    /**
+     * Returns the key under which the output of a definition or an attribute
+     * is cached for a request. It contains the name and the values of the
+     * parts of the request that the cache policy varies by, including the
+     * attributes visible from the attribute context of the caller that it
+     * lists.
+     *
+     * @param request The request context.
+     * @param name The name of the definition or attribute.
+     * @param policy The cache policy.
+     * @return The key of the output, or <code>null</code> if the output
+     * cannot be cached, because the value of a listed attribute is neither a
+     * string nor a list of strings.
+     * @see BasicTilesContainer#getFragmentKey(TilesRequestContext, String,
+     * CachePolicy)
+     */
+    public String getKey(TilesRequestContext request, String name,
+            CachePolicy policy) {
+        List<String> components = policy.getKeyComponents();
+        StringBuilder key = new StringBuilder(name);
+        for (String component : components) {
+            key.append('\n').append(component);
+            if (component.startsWith(CachePolicy.ATTRIBUTE_COMPONENT_PREFIX)) {
+                AttributeContext context = container.getContext(request);
+                Attribute attribute = context != null ? context
+                        .getAttribute(component.substring(CachePolicy
+                                .ATTRIBUTE_COMPONENT_PREFIX.length())) : null;
+                if (attribute != null && !appendValueKey(key, attribute)) {
+                    return null;
+                }
+                continue;
+            }
+            Object value;
+            if (CachePolicy.LOCALE_COMPONENT.equals(component)) {
+                TilesRequestState state = TilesRequestState
+                        .getInstance(request);
+                Locale locale = state != null ? state.getResolvedLocale()
+                        : null;
+                value = locale != null ? locale : request.getRequestLocale();
+            } else if (component
+                    .startsWith(CachePolicy.PARAM_COMPONENT_PREFIX)) {
+                value = request.getParam().get(component.substring(
+                        CachePolicy.PARAM_COMPONENT_PREFIX.length()));
+            } else if (component
+                    .startsWith(CachePolicy.HEADER_COMPONENT_PREFIX)) {
+                value = request.getHeader().get(component.substring(
+                        CachePolicy.HEADER_COMPONENT_PREFIX.length()));
+            } else {
+                value = Boolean.valueOf(request.isUserInRole(component
+                        .substring(CachePolicy.ROLE_COMPONENT_PREFIX
+                                .length())));
+            }
+            if (value != null) {
+                key.append('=').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Appends the value of an attribute to the key of a fragment.
+     *
+     * @param key The key of the fragment.
+     * @param attribute The attribute.
+     * @return <code>false</code> if the value is neither a string nor a list
+     * of strings.
+     */
+    private boolean appendValueKey(StringBuilder key, Attribute attribute) {
+        Object value = attribute.getValue();
+        if (value == null) {
+            key.append('-');
+            return true;
+        }
+        if (value instanceof String) {
+            String valueString = (String) value;
+            key.append('=').append(attribute.getType()).append(':').append(
+                    valueString.length()).append(':').append(valueString);
+            return true;
+        }
+        if (attribute instanceof ListAttribute && value instanceof List) {
+            List<?> elements = (List<?>) value;
+            key.append('[').append(elements.size());
+            for (Object element : elements) {
+                if (!(element instanceof Attribute)
+                        || !appendValueKey(key, (Attribute) element)) {
+                    return false;
+                }
+            }
+            key.append(']');
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Renders the output of a definition or of an attribute, so that it can
+     * be cached.
+     */
+    public interface Fragment {
+
+        /**
+         * Renders the output.
+         *
+         * @param request The request context where the output goes.
+         * @throws TilesException If something goes wrong during rendering.
+         * @throws IOException If something goes wrong during writing.
+         */
+        void render(TilesRequestContext request) throws TilesException,
+                IOException;
+    }
+}
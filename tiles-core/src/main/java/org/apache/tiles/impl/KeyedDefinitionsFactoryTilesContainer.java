@@ -24,6 +24,7 @@ package org.apache.tiles.impl;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.tiles.CachePolicy;
 import org.apache.tiles.Definition;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.context.TilesRequestContext;
@@ -178,6 +179,20 @@ public class KeyedDefinitionsFactoryTilesContainer extends BasicTilesContainer {
         this.keyExtractor = keyExtractor;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The keyed definitions factories are destroyed too.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        for (DefinitionsFactory definitionsFactory : key2definitionsFactory
+                .values()) {
+            destroyDefinitionsFactory(definitionsFactory);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     protected Definition getDefinition(String definitionName,
@@ -198,6 +213,38 @@ public class KeyedDefinitionsFactoryTilesContainer extends BasicTilesContainer {
         return retValue;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean mayBeDefinition(String definitionName,
+            TilesRequestContext request) {
+        String key = getDefinitionsFactoryKey(request);
+        if (key != null) {
+            DefinitionsFactory definitionsFactory =
+                key2definitionsFactory.get(key);
+            if (definitionsFactory != null
+                    && mayContainDefinition(definitionsFactory,
+                            definitionName, request)) {
+                return true;
+            }
+        }
+        return super.mayBeDefinition(definitionName, request);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The key of the definitions factory is part of the key, since the same
+     * name can refer to different definitions.
+     */
+    @Override
+    protected String getFragmentKey(TilesRequestContext request, String name,
+            CachePolicy policy) {
+        String key = super.getFragmentKey(request, name, policy);
+        String factoryKey = getDefinitionsFactoryKey(request);
+        return key != null && factoryKey != null ? factoryKey + "\n" + key
+                : key;
+    }
+
     /**
      * Returns the definitions factory key.
      *
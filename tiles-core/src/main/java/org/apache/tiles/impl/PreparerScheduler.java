@@ -0,0 +1,661 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.LayeredAttributeContext;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.preparer.IndependentViewPreparer;
+import org.apache.tiles.preparer.PreparerException;
+import org.apache.tiles.preparer.ViewPreparer;
+
+/**
+ * Runs the {@link IndependentViewPreparer}s of a page in parallel for a
+ * {@link BasicTilesContainer}. When the container starts rendering a
+ * definition, the independent preparers of the definition and of the ones it
+ * includes are submitted to an executor, and the rendering of each definition
+ * waits for the attributes put by its preparer. The preparers never see the
+ * request, but a read-only copy of it.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class PreparerScheduler {
+
+    /**
+     * The name of the {@link TilesRequestState} attribute that contains the
+     * preparers started in parallel, mapped by definition name.
+     */
+    static final String PENDING_PREPARERS_ATTRIBUTE_NAME =
+        "org.apache.tiles.impl.BasicTilesContainer.PENDING_PREPARERS";
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(PreparerScheduler.class);
+
+    /**
+     * Creates the daemon threads that run preparers in parallel.
+     */
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+
+        /** {@inheritDoc} */
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Tiles preparer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /**
+     * The container, that finds the definitions and the preparers.
+     */
+    private final BasicTilesContainer container;
+
+    /**
+     * The listeners notified when a preparer has been executed.
+     */
+    private final RenderListenerSupport renderListeners;
+
+    /**
+     * The executor that runs the preparers. If <code>null</code>, preparers
+     * run when their definition is rendered.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Indicates that {@link #executor} has been created for the container,
+     * so it is shut down with it.
+     */
+    private boolean executorCreated;
+
+    /**
+     * Constructor.
+     *
+     * @param container The container.
+     * @param renderListeners The listeners of the container.
+     */
+    public PreparerScheduler(BasicTilesContainer container,
+            RenderListenerSupport renderListeners) {
+        this.container = container;
+        this.renderListeners = renderListeners;
+    }
+
+    /**
+     * Creates an executor that runs preparers. Virtual threads are used if
+     * the platform supports them and no thread count is given, otherwise a
+     * fixed pool of daemon threads is created.
+     *
+     * @param threads The number of threads, or <code>null</code> to use
+     * virtual threads if possible.
+     * @return The executor.
+     */
+    public static ExecutorService createExecutor(String threads) {
+        if (threads == null) {
+            try {
+                Method method = Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) method.invoke(null);
+            } catch (NoSuchMethodException e) {
+                LOG.debug("Virtual threads are not available");
+            } catch (IllegalAccessException e) {
+                LOG.debug("Virtual threads are not accessible", e);
+            } catch (InvocationTargetException e) {
+                LOG.debug("Virtual threads cannot be used", e);
+            }
+        }
+
+        int threadCount = threads != null ? Integer.parseInt(threads.trim())
+                : Runtime.getRuntime().availableProcessors() * 4;
+        return Executors.newFixedThreadPool(threadCount, THREAD_FACTORY);
+    }
+
+    /**
+     * Returns the executor that runs the preparers.
+     *
+     * @return The executor, or <code>null</code> if preparers do not run in
+     * parallel.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor that runs the preparers.
+     *
+     * @param executor The executor, or <code>null</code> to run every
+     * preparer when its definition is rendered.
+     * @param created <code>true</code> if the executor has been created for
+     * the container, so that {@link #shutdown()} shuts it down.
+     */
+    public void setExecutor(ExecutorService executor, boolean created) {
+        this.executor = executor;
+        executorCreated = created;
+    }
+
+    /**
+     * Stops using the executor, shutting it down if it has been created for
+     * the container.
+     */
+    public void shutdown() {
+        ExecutorService current = executor;
+        executor = null;
+        if (current != null && executorCreated) {
+            current.shutdownNow();
+        }
+        executorCreated = false;
+    }
+
+    /**
+     * Starts the {@link IndependentViewPreparer}s of a definition and of the
+     * definitions that it includes through its attributes, if they have not
+     * been started for the request yet.
+     *
+     * @param request The request context.
+     * @param definition The definition to render.
+     * @param originalContext The attribute context of the caller.
+     * @return The started preparers, mapped by definition name, or
+     * <code>null</code> if preparers do not run in parallel or have already
+     * been started by an outer rendering.
+     * @throws TilesException If something goes wrong when getting
+     * definitions or preparers.
+     */
+    public Map<String, PreparerTask> start(
+            final TilesRequestContext request, Definition definition,
+            AttributeContext originalContext) throws TilesException {
+        ExecutorService currentExecutor = executor;
+        if (currentExecutor == null) {
+            return null;
+        }
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        if (state == null
+                || state.getAttribute(PENDING_PREPARERS_ATTRIBUTE_NAME)
+                        != null) {
+            return null;
+        }
+
+        Map<String, Attribute> visibleAttributes =
+            new HashMap<String, Attribute>();
+        if (originalContext != null) {
+            Iterator<String> names = originalContext.getAttributeNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                visibleAttributes.put(name, originalContext.getAttribute(name));
+            }
+        }
+        Map<String, Definition> definitions =
+            new LinkedHashMap<String, Definition>();
+        Map<String, Map<String, Attribute>> callerAttributes =
+            new HashMap<String, Map<String, Attribute>>();
+        findIndependentPreparers(request, definition, visibleAttributes,
+                new HashSet<String>(), definitions, callerAttributes);
+
+        Map<String, PreparerTask> pending = new HashMap<String, PreparerTask>();
+        if (definitions.isEmpty()) {
+            state.setAttribute(PENDING_PREPARERS_ATTRIBUTE_NAME, pending);
+            return pending;
+        }
+        // The preparers never see the request itself, that is not
+        // thread-safe, but a copy of what they can read.
+        TilesRequestContext detachedRequest = new DetachedTilesRequestContext(
+                request);
+        boolean started = false;
+        try {
+            for (Definition nested : definitions.values()) {
+                ViewPreparer preparer = getPreparer(nested.getPreparer(),
+                        request);
+                PreparerTask task = new PreparerTask(preparer, nested
+                        .getPreparer(), detachedRequest, nested
+                        .getAttributes(), callerAttributes.get(nested
+                        .getName()));
+                try {
+                    currentExecutor.execute(task);
+                    pending.put(nested.getName(), task);
+                } catch (RejectedExecutionException e) {
+                    // The preparer will run when its definition is rendered.
+                    LOG.debug("Unable to start the preparer of '"
+                            + nested.getName() + "' in parallel", e);
+                }
+            }
+            started = true;
+        } finally {
+            if (!started) {
+                end(request, pending);
+            }
+        }
+
+        state.setAttribute(PENDING_PREPARERS_ATTRIBUTE_NAME, pending);
+        return pending;
+    }
+
+    /**
+     * Finds the definitions that have an {@link IndependentViewPreparer},
+     * walking the definitions included through the attributes.
+     *
+     * @param request The request context.
+     * @param definition The definition to check.
+     * @param visibleAttributes The attributes that override the ones of the
+     * definition.
+     * @param visited The names of the definitions already checked.
+     * @param found The definitions with an independent preparer, mapped by
+     * name.
+     * @param callerAttributes The attributes that override the ones of each
+     * definition found, mapped by definition name.
+     * @throws TilesException If something goes wrong when getting a preparer.
+     */
+    private void findIndependentPreparers(TilesRequestContext request,
+            Definition definition, Map<String, Attribute> visibleAttributes,
+            Set<String> visited, Map<String, Definition> found,
+            Map<String, Map<String, Attribute>> callerAttributes)
+            throws TilesException {
+        if (!visited.add(definition.getName())
+                || !BasicTilesContainer.isPermitted(request, definition
+                        .getRoles())) {
+            return;
+        }
+        String preparerName = definition.getPreparer();
+        if (preparerName != null
+                && getPreparer(preparerName, request)
+                        instanceof IndependentViewPreparer) {
+            found.put(definition.getName(), definition);
+            callerAttributes.put(definition.getName(), visibleAttributes);
+        }
+
+        Map<String, Attribute> attributes = definition.getAttributes();
+        if (attributes == null || attributes.isEmpty()) {
+            return;
+        }
+        // As in the rendered attribute context, the attributes of the caller
+        // win over the ones of the definition.
+        Map<String, Attribute> nestedAttributes =
+            new HashMap<String, Attribute>(attributes);
+        nestedAttributes.putAll(visibleAttributes);
+        for (String name : attributes.keySet()) {
+            findIndependentPreparers(request, nestedAttributes.get(name),
+                    nestedAttributes, visited, found, callerAttributes);
+        }
+    }
+
+    /**
+     * Finds the definitions that have an {@link IndependentViewPreparer}
+     * starting from an attribute, if it refers to a definition or it contains
+     * a list of attributes.
+     *
+     * @param request The request context.
+     * @param attribute The attribute to check.
+     * @param visibleAttributes The attributes that override the ones of the
+     * included definitions.
+     * @param visited The names of the definitions already checked.
+     * @param found The definitions with an independent preparer, mapped by
+     * name.
+     * @param callerAttributes The attributes that override the ones of each
+     * definition found, mapped by definition name.
+     * @throws TilesException If something goes wrong when getting a preparer.
+     */
+    private void findIndependentPreparers(TilesRequestContext request,
+            Attribute attribute, Map<String, Attribute> visibleAttributes,
+            Set<String> visited, Map<String, Definition> found,
+            Map<String, Map<String, Attribute>> callerAttributes)
+            throws TilesException {
+        if (attribute == null) {
+            return;
+        }
+        Object value = attribute.getValue();
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element instanceof Attribute) {
+                    findIndependentPreparers(request, (Attribute) element,
+                            visibleAttributes, visited, found,
+                            callerAttributes);
+                }
+            }
+            return;
+        }
+
+        AttributeType type = attribute.getType();
+        if (!(value instanceof String)
+                || (type != null && type != AttributeType.DEFINITION
+                        && !BasicTilesContainer.isTypeProbable(attribute))) {
+            return;
+        }
+        String definitionName = (String) value;
+        if (!container.mayBeDefinition(definitionName, request)) {
+            return;
+        }
+        Definition definition;
+        try {
+            definition = container.getDefinition(definitionName, request);
+        } catch (DefinitionsFactoryException e) {
+            return;
+        }
+        if (definition != null) {
+            findIndependentPreparers(request, definition, visibleAttributes,
+                    visited, found, callerAttributes);
+        }
+    }
+
+    /**
+     * Returns the attributes put by the preparer of a definition, if it has
+     * been started in parallel, waiting for it to complete.
+     *
+     * @param request The request context.
+     * @param definitionName The name of the definition.
+     * @return The attributes put by the preparer, or <code>null</code> if the
+     * preparer has not been started in parallel.
+     * @throws TilesException If the preparer threw an exception or the wait
+     * has been interrupted.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Attribute> getPreparedAttributes(
+            TilesRequestContext request, String definitionName)
+            throws TilesException {
+        if (executor == null) {
+            return null;
+        }
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        Map<String, PreparerTask> pending = state != null
+                ? (Map<String, PreparerTask>) state
+                        .getAttribute(PENDING_PREPARERS_ATTRIBUTE_NAME)
+                : null;
+        PreparerTask result = pending != null ? pending.get(definitionName)
+                : null;
+        if (result == null) {
+            return null;
+        }
+
+        // If the wait is interrupted, the preparer stays pending, so the
+        // rendering that started it waits for it to stop running.
+        try {
+            Map<String, Attribute> attributes = result.get();
+            pending.remove(definitionName);
+            renderListeners.firePreparerExecuted(result.getPreparerName(),
+                    request, result.getDuration(), null);
+            return attributes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TilesException(
+                    "Interrupted while waiting for the preparer of '"
+                            + definitionName + "'", e);
+        } catch (ExecutionException e) {
+            pending.remove(definitionName);
+            Throwable cause = e.getCause();
+            renderListeners.firePreparerExecuted(result.getPreparerName(),
+                    request, result.getDuration(), cause);
+            if (cause instanceof TilesException) {
+                throw (TilesException) cause;
+            } else if (cause instanceof Exception) {
+                throw new TilesException(cause.getMessage(), (Exception) cause);
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TilesException("The preparer of '" + definitionName
+                    + "' failed", new UndeclaredThrowableException(cause));
+        }
+    }
+
+    /**
+     * Cancels the preparers started in parallel whose definitions have not
+     * been rendered, and allows them to be started again by another
+     * rendering of the same request. This method waits for the preparers
+     * that are already running to stop before returning, even if the thread
+     * is interrupted, so that no preparer of a rendering runs after it has
+     * ended.
+     *
+     * @param request The request context.
+     * @param startedPreparers The started preparers still pending.
+     */
+    public void end(TilesRequestContext request,
+            Map<String, PreparerTask> startedPreparers) {
+        boolean interrupted = false;
+        for (PreparerTask task : startedPreparers.values()) {
+            if (task.cancelAndAwait()) {
+                interrupted = true;
+            }
+        }
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        if (state != null) {
+            state.setAttribute(PENDING_PREPARERS_ATTRIBUTE_NAME, null);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns a preparer from the preparer factory of the container.
+     *
+     * @param preparerName The name of the preparer.
+     * @param request The request context.
+     * @return The preparer, or <code>null</code> if it does not exist.
+     * @throws TilesException If something goes wrong when creating the
+     * preparer.
+     */
+    private ViewPreparer getPreparer(String preparerName,
+            TilesRequestContext request) throws TilesException {
+        return container.getPreparerFactory().getPreparer(preparerName,
+                request);
+    }
+
+    /**
+     * A preparer started in parallel. It can be cancelled only if it has not
+     * started running, otherwise its end can be waited for.
+     */
+    static class PreparerTask extends FutureTask<Map<String, Attribute>> {
+
+        /**
+         * The code that runs the preparer.
+         */
+        private PreparerCall call;
+
+        /**
+         * Indicates that the preparer is running.
+         */
+        private boolean running;
+
+        /**
+         * Constructor.
+         *
+         * @param preparer The preparer.
+         * @param preparerName The name of the preparer.
+         * @param request The detached copy of the request.
+         * @param attributes The attributes of the definition.
+         * @param callerAttributes The attributes that override the ones of
+         * the definition.
+         */
+        public PreparerTask(ViewPreparer preparer, String preparerName,
+                TilesRequestContext request, Map<String, Attribute> attributes,
+                Map<String, Attribute> callerAttributes) {
+            this(new PreparerCall(preparer, preparerName, request, attributes,
+                    callerAttributes));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param call The code that runs the preparer.
+         */
+        private PreparerTask(PreparerCall call) {
+            super(call);
+            this.call = call;
+        }
+
+        /**
+         * Returns the name of the preparer.
+         *
+         * @return The name of the preparer.
+         */
+        public String getPreparerName() {
+            return call.preparerName;
+        }
+
+        /**
+         * Returns how long the preparer has run. It must be called after the
+         * preparer has completed.
+         *
+         * @return The duration, in nanoseconds.
+         */
+        public long getDuration() {
+            return call.duration;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                running = true;
+            }
+            try {
+                super.run();
+            } finally {
+                synchronized (this) {
+                    running = false;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Cancels the preparer if it has not started running, otherwise waits
+         * for it to stop, even if the thread is interrupted.
+         *
+         * @return <code>true</code> if the thread has been interrupted while
+         * waiting.
+         */
+        public synchronized boolean cancelAndAwait() {
+            cancel(false);
+            boolean interrupted = false;
+            while (running) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return interrupted;
+        }
+    }
+
+    /**
+     * Runs a preparer started in parallel, in an attribute context layered
+     * over the attributes visible from the caller, and returns the attributes
+     * it has put.
+     */
+    private static class PreparerCall implements
+            Callable<Map<String, Attribute>> {
+
+        /**
+         * The preparer.
+         */
+        private ViewPreparer preparer;
+
+        /**
+         * The name of the preparer.
+         */
+        private String preparerName;
+
+        /**
+         * The detached copy of the request.
+         */
+        private TilesRequestContext request;
+
+        /**
+         * The attributes of the definition.
+         */
+        private Map<String, Attribute> attributes;
+
+        /**
+         * The attributes that override the ones of the definition.
+         */
+        private Map<String, Attribute> callerAttributes;
+
+        /**
+         * How long the preparer has run, in nanoseconds.
+         */
+        private volatile long duration;
+
+        /**
+         * Constructor.
+         *
+         * @param preparer The preparer.
+         * @param preparerName The name of the preparer.
+         * @param request The detached copy of the request.
+         * @param attributes The attributes of the definition.
+         * @param callerAttributes The attributes that override the ones of
+         * the definition.
+         */
+        public PreparerCall(ViewPreparer preparer, String preparerName,
+                TilesRequestContext request, Map<String, Attribute> attributes,
+                Map<String, Attribute> callerAttributes) {
+            this.preparer = preparer;
+            this.preparerName = preparerName;
+            this.request = request;
+            this.attributes = attributes;
+            this.callerAttributes = callerAttributes;
+        }
+
+        /** {@inheritDoc} */
+        public Map<String, Attribute> call() throws PreparerException {
+            // As when the definition is rendered, the attributes of the
+            // caller win over the ones of the definition. Neither map is
+            // modified once the preparer has been started.
+            LayeredAttributeContext context = new LayeredAttributeContext(
+                    new LayeredAttributeContext(null, callerAttributes),
+                    attributes);
+            long start = System.nanoTime();
+            try {
+                preparer.execute(request, context);
+            } finally {
+                duration = System.nanoTime() - start;
+            }
+            return context.getLocalAttributes();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.listener.DetailedRenderListener;
+import org.apache.tiles.listener.RenderListener;
+import org.apache.tiles.listener.RenderPhase;
+
+/**
+ * Keeps the render listeners of a container and notifies them. The listeners
+ * are kept in arrays that are replaced, never modified, so that notifying
+ * them needs no lock, and rendering notifies nothing when there are no
+ * listeners. A listener that throws an exception is logged and does not stop
+ * the rendering.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+final class RenderListenerSupport {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG =
+        LogFactory.getLog(RenderListenerSupport.class);
+
+    /**
+     * The render listeners, or <code>null</code> if there are none.
+     */
+    private volatile RenderListener[] listeners;
+
+    /**
+     * The render listeners that receive details, or <code>null</code> if
+     * there are none.
+     */
+    private volatile DetailedRenderListener[] detailedListeners;
+
+    /**
+     * Adds a listener.
+     *
+     * @param listener The listener to add.
+     */
+    public synchronized void addListener(RenderListener listener) {
+        RenderListener[] current = listeners;
+        int length = current != null ? current.length : 0;
+        RenderListener[] newListeners = new RenderListener[length + 1];
+        if (current != null) {
+            System.arraycopy(current, 0, newListeners, 0, length);
+        }
+        newListeners[length] = listener;
+        listeners = newListeners;
+        updateDetailedListeners();
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public synchronized void removeListener(RenderListener listener) {
+        List<RenderListener> current = getListenerList();
+        if (current.remove(listener)) {
+            listeners = current.isEmpty() ? null : current
+                    .toArray(new RenderListener[current.size()]);
+            updateDetailedListeners();
+        }
+    }
+
+    /**
+     * Returns the listeners.
+     *
+     * @return A copy of the list of the listeners.
+     */
+    public List<RenderListener> getListenerList() {
+        RenderListener[] current = listeners;
+        if (current == null) {
+            return new ArrayList<RenderListener>();
+        }
+        return new ArrayList<RenderListener>(Arrays.asList(current));
+    }
+
+    /**
+     * Returns the listeners to notify of a phase. The same array must be
+     * passed when the phase starts and ends, so that a listener added in
+     * the meantime does not receive only the end.
+     *
+     * @return The listeners, or <code>null</code> if there are none.
+     */
+    public RenderListener[] getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Checks whether there are listeners that receive details.
+     *
+     * @return <code>true</code> if there is at least one.
+     */
+    public boolean hasDetailedListeners() {
+        return detailedListeners != null;
+    }
+
+    /**
+     * Notifies the listeners that a phase started.
+     *
+     * @param current The listeners, as returned by {@link #getListeners()}.
+     * @param phase The phase.
+     * @param name The name of what is rendered.
+     * @param request The request context.
+     * @return The start time of the phase, in nanoseconds.
+     */
+    public long fireRenderStarted(RenderListener[] current, RenderPhase phase,
+            String name, TilesRequestContext request) {
+        for (RenderListener listener : current) {
+            try {
+                listener.renderStarted(phase, name, request);
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a render listener", e);
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Notifies the listeners that a phase ended.
+     *
+     * @param current The listeners, as returned by {@link #getListeners()}.
+     * @param phase The phase.
+     * @param name The name of what has been rendered.
+     * @param request The request context.
+     * @param duration The duration of the phase, in nanoseconds.
+     * @param error The exception that made the phase fail, if any.
+     */
+    public void fireRenderEnded(RenderListener[] current, RenderPhase phase,
+            String name, TilesRequestContext request, long duration,
+            Throwable error) {
+        for (RenderListener listener : current) {
+            try {
+                listener.renderEnded(phase, name, request, duration, error);
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a render listener", e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that a preparer started in parallel has been
+     * executed. The listeners are notified by the thread of the request,
+     * when the result of the preparer is used.
+     *
+     * @param preparerName The name of the preparer.
+     * @param request The request context.
+     * @param duration How long the preparer has run, in nanoseconds.
+     * @param error The exception thrown by the preparer, if any.
+     */
+    public void firePreparerExecuted(String preparerName,
+            TilesRequestContext request, long duration, Throwable error) {
+        RenderListener[] current = listeners;
+        if (current == null) {
+            return;
+        }
+        fireRenderStarted(current, RenderPhase.PREPARER, preparerName,
+                request);
+        fireRenderEnded(current, RenderPhase.PREPARER, preparerName, request,
+                duration, error);
+    }
+
+    /**
+     * Notifies the listeners that receive details of the type an attribute
+     * has been resolved to.
+     *
+     * @param type The type of the attribute.
+     * @param request The request context.
+     */
+    public void fireAttributeResolved(AttributeType type,
+            TilesRequestContext request) {
+        DetailedRenderListener[] detailed = detailedListeners;
+        if (detailed == null) {
+            return;
+        }
+        for (DetailedRenderListener listener : detailed) {
+            try {
+                if (listener.isDetailed(request)) {
+                    listener.attributeResolved(type, request);
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a render listener", e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that receive details that characters have been
+     * written.
+     *
+     * @param count The number of characters.
+     * @param request The request context.
+     */
+    public void fireOutputWritten(long count, TilesRequestContext request) {
+        DetailedRenderListener[] detailed = detailedListeners;
+        if (detailed == null) {
+            return;
+        }
+        for (DetailedRenderListener listener : detailed) {
+            try {
+                if (listener.isDetailed(request)) {
+                    listener.outputWritten(count, request);
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a render listener", e);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the output of a dispatch must be counted for the
+     * listeners that receive details. It is counted only if the dispatch is
+     * an include, so that counting does not change how it is done.
+     *
+     * @param request The request context.
+     * @return <code>true</code> if the output must be counted.
+     */
+    public boolean isOutputCounted(TilesRequestContext request) {
+        DetailedRenderListener[] detailed = detailedListeners;
+        if (detailed == null
+                || !(request instanceof CapturingTilesRequestContext)) {
+            return false;
+        }
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        if (state == null || !state.isForceInclude()) {
+            return false;
+        }
+        for (DetailedRenderListener listener : detailed) {
+            try {
+                if (listener.isDetailed(request)) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Error while notifying a render listener", e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the array of the listeners that receive details, after the
+     * listeners changed.
+     */
+    private void updateDetailedListeners() {
+        List<DetailedRenderListener> detailed =
+            new ArrayList<DetailedRenderListener>();
+        for (RenderListener listener : getListenerList()) {
+            if (listener instanceof DetailedRenderListener) {
+                detailed.add((DetailedRenderListener) listener);
+            }
+        }
+        detailedListeners = detailed.isEmpty() ? null : detailed
+                .toArray(new DetailedRenderListener[detailed.size()]);
+    }
+}
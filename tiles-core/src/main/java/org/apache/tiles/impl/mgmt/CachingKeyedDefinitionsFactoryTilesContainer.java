@@ -63,10 +63,7 @@ public class CachingKeyedDefinitionsFactoryTilesContainer extends
 
     /** {@inheritDoc} */
     public void register(Definition definition, Object... requestItems) throws TilesException {
-        TilesRequestContext requestContext = getContextFactory().createRequestContext(
-                getApplicationContext(),
-                requestItems
-            );
+        TilesRequestContext requestContext = getRequestContext(requestItems);
         register(definition, requestContext);
     }
 
@@ -80,6 +77,15 @@ public class CachingKeyedDefinitionsFactoryTilesContainer extends
         return mgr.getDefinition(definition, context);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean mayBeDefinition(String definitionName,
+            TilesRequestContext request) {
+        DefinitionManager mgr = getProperDefinitionManager(
+                getDefinitionsFactoryKey(request));
+        return mgr.mayContainDefinition(definitionName, request);
+    }
+
     /** {@inheritDoc} */
     @Override
     public DefinitionsFactory getDefinitionsFactory() {
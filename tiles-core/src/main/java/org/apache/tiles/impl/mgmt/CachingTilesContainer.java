@@ -46,10 +46,7 @@ public class CachingTilesContainer extends BasicTilesContainer
 
     /** {@inheritDoc} */
     public void register(Definition definition, Object... requestItems) throws TilesException {
-        TilesRequestContext requestContext = getContextFactory().createRequestContext(
-                getApplicationContext(),
-                requestItems
-            );
+        TilesRequestContext requestContext = getRequestContext(requestItems);
         register(definition, requestContext);
     }
 
@@ -61,6 +58,13 @@ public class CachingTilesContainer extends BasicTilesContainer
         return mgr.getDefinition(definition, context);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected boolean mayBeDefinition(String definitionName,
+            TilesRequestContext request) {
+        return mgr.mayContainDefinition(definitionName, request);
+    }
+
 
     /** {@inheritDoc} */
     @Override
@@ -23,8 +23,11 @@ package org.apache.tiles.impl.mgmt;
 import org.apache.tiles.Attribute;
 import org.apache.tiles.Definition;
 import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.definition.CompiledDefinition;
 import org.apache.tiles.definition.DefinitionsFactory;
 import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.definition.IndexedDefinitionsFactory;
 import org.apache.tiles.definition.NoSuchDefinitionException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -120,7 +123,30 @@ public class DefinitionManager {
     }
 
     /**
-     * Adds a definition to the set of custom ones.
+     * Checks whether a definition with the given name may exist, either as a
+     * custom definition or as a main one.
+     *
+     * @param definition The name of the definition.
+     * @param request The current request.
+     * @return <code>false</code> if the definition surely does not exist.
+     * @since 2.0.8
+     */
+    public boolean mayContainDefinition(String definition,
+            TilesRequestContext request) {
+        Map<String, Definition> definitions = getDefinitions(request);
+        if (definitions != null && definitions.containsKey(definition)) {
+            return true;
+        }
+        DefinitionsFactory mainFactory = getFactory();
+        return !(mainFactory instanceof IndexedDefinitionsFactory)
+                || ((IndexedDefinitionsFactory) mainFactory)
+                        .mayContainDefinition(definition, request);
+    }
+
+    /**
+     * Adds a definition to the set of custom ones. The definition is compiled
+     * with its parent, so the stored definition is a different object, that
+     * cannot be modified.
      *
      * @param definition The definition to add.
      * @param request The current request.
@@ -132,11 +158,30 @@ public class DefinitionManager {
         throws DefinitionsFactoryException {
         validate(definition);
 
+        Definition parent = null;
         if (definition.isExtending()) {
-            this.resolveInheritance(definition, request);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Resolve definition for child name='"
+                    + definition.getName()
+                    + "' extends='" + definition.getExtends() + "'.");
+            }
+
+            // Parents are either main or custom definitions, so they have
+            // already been resolved.
+            parent = getDefinition(definition.getExtends(), request);
+            if (parent == null) { // error
+                String msg = "Error while resolving definition inheritance: child '"
+                    + definition.getName()
+                    + "' can't find its ancestor '"
+                    + definition.getExtends()
+                    + "'. Please check your description file.";
+                LOG.error(msg);
+                throw new NoSuchDefinitionException(msg);
+            }
         }
 
-        getOrCreateDefinitions(request).put(definition.getName(), definition);
+        getOrCreateDefinitions(request).put(definition.getName(),
+                new CompiledDefinition(definition, parent));
     }
 
     /**
@@ -164,7 +209,10 @@ public class DefinitionManager {
      * resolved.
      * @param request The current request.
      * @throws DefinitionsFactoryException If an inheritance can not be solved.
+     * @deprecated Definitions are compiled with their parent when they are
+     * added, see {@link CompiledDefinition}.
      */
+    @Deprecated
     protected void resolveInheritance(Definition definition,
             TilesRequestContext request)
         throws DefinitionsFactoryException  {
@@ -210,8 +258,10 @@ public class DefinitionManager {
      *
      * @param parent The parent definition.
      * @param child  The child that will be overloaded.
+     * @deprecated Definitions are compiled with their parent when they are
+     * added, see {@link CompiledDefinition}.
      */
-    // FIXME This is the same as DefinitionsImpl.overload.
+    @Deprecated
     protected void overload(Definition parent, Definition child) {
         // Iterate on each parent's attribute and add it if not defined in child.
         for (Map.Entry<String, Attribute> entry : parent.getAttributes().entrySet()) {
@@ -234,7 +284,8 @@ public class DefinitionManager {
     }
 
     /**
-     * Returns the map with custom definitions for the current request.
+     * Returns the map with custom definitions for the current request. It is
+     * stored in the {@link TilesRequestState} of the request.
      *
      * @param request The current request.
      * @return A map that connects a definition name to a definition.
@@ -242,8 +293,8 @@ public class DefinitionManager {
     @SuppressWarnings("unchecked")
     protected Map<String, Definition> getDefinitions(
             TilesRequestContext request) {
-        return (Map<String, Definition>) request.getRequestScope()
-                .get(definitionsAttributeName);
+        return (Map<String, Definition>) TilesRequestState.getInstance(request)
+                .getAttribute(definitionsAttributeName);
     }
 
     /**
@@ -256,13 +307,12 @@ public class DefinitionManager {
     @SuppressWarnings("unchecked")
     protected Map<String, Definition> getOrCreateDefinitions(
             TilesRequestContext request) {
+        TilesRequestState state = TilesRequestState.getInstance(request);
         Map<String, Definition> definitions =
-            (Map<String, Definition>) request
-                .getRequestScope().get(definitionsAttributeName);
+            (Map<String, Definition>) state.getAttribute(definitionsAttributeName);
         if (definitions == null) {
             definitions = new HashMap<String, Definition>();
-            request.getRequestScope()
-                    .put(definitionsAttributeName, definitions);
+            state.setAttribute(definitionsAttributeName, definitions);
         }
 
         return definitions;
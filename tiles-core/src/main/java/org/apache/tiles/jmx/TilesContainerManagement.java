@@ -0,0 +1,347 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesContainer;
+import org.apache.tiles.context.RequestContextStatistics;
+import org.apache.tiles.definition.DefinitionsFactory;
+import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.definition.ReloadableDefinitionsFactory;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+
+/**
+ * Exposes the statistics and the management operations of a
+ * {@link BasicTilesContainer} through JMX. The values are read from the
+ * container every time they are requested. When the container has more than
+ * one definitions factory, the default one is used.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class TilesContainerManagement implements TilesContainerManagementMBean {
+
+    /**
+     * Initialization parameter that, if set to <code>true</code>, makes the
+     * container be registered in the platform MBean server when it is
+     * created.
+     */
+    public static final String ENABLED_INIT_PARAM =
+        "org.apache.tiles.jmx.TilesContainerManagement.ENABLED";
+
+    /**
+     * Initialization parameter that specifies the value of the
+     * <code>name</code> key of the object name of the container. If not
+     * specified, the name of the application is used.
+     */
+    public static final String NAME_INIT_PARAM =
+        "org.apache.tiles.jmx.TilesContainerManagement.NAME";
+
+    /**
+     * The domain of the object names of the containers.
+     */
+    public static final String DOMAIN = "org.apache.tiles";
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(TilesContainerManagement.class);
+
+    /**
+     * The nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * The managed container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * Constructor.
+     *
+     * @param container The container to manage.
+     */
+    public TilesContainerManagement(BasicTilesContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * Registers a container in the platform MBean server. If an object with
+     * the same name is already registered, a warning is logged and the
+     * container is not registered.
+     *
+     * @param container The container to register.
+     * @param name The value of the <code>name</code> key of the object name.
+     * @return The object name of the registered container, or
+     * <code>null</code> if it has not been registered.
+     */
+    public static ObjectName register(TilesContainer container, String name) {
+        if (!(container instanceof BasicTilesContainer)) {
+            LOG.warn("Cannot manage a container of type "
+                    + container.getClass().getName());
+            return null;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN
+                    + ":type=TilesContainer,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new TilesContainerManagement(
+                    (BasicTilesContainer) container), objectName);
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            LOG.warn("A Tiles container named '" + name
+                    + "' is already registered, use the " + NAME_INIT_PARAM
+                    + " parameter to choose another name");
+        } catch (JMException e) {
+            LOG.warn("Cannot register the Tiles container '" + name + "'", e);
+        }
+        return null;
+    }
+
+    /**
+     * Unregisters a container from the platform MBean server.
+     *
+     * @param objectName The object name returned by
+     * {@link #register(TilesContainer, String)}.
+     */
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    objectName);
+        } catch (JMException e) {
+            LOG.warn("Cannot unregister the Tiles container " + objectName, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public int getBaseDefinitionCount() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        return factory != null ? factory.getDefinitionCount(null) : -1;
+    }
+
+    /** {@inheritDoc} */
+    public String[] getProcessedLocales() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        if (factory == null) {
+            return new String[0];
+        }
+        List<String> locales = new ArrayList<String>();
+        for (Locale locale : factory.getProcessedLocales()) {
+            locales.add(locale.toString());
+        }
+        return locales.toArray(new String[locales.size()]);
+    }
+
+    /** {@inheritDoc} */
+    public String[] getLocaleDefinitionCounts() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        if (factory == null) {
+            return new String[0];
+        }
+        List<String> counts = new ArrayList<String>();
+        for (Locale locale : factory.getProcessedLocales()) {
+            counts.add(locale + "=" + factory.getDefinitionCount(locale));
+        }
+        return counts.toArray(new String[counts.size()]);
+    }
+
+    /** {@inheritDoc} */
+    public Date getLastReloadTime() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        if (factory == null || factory.getLastReloadTime() == 0) {
+            return null;
+        }
+        return new Date(factory.getLastReloadTime());
+    }
+
+    /** {@inheritDoc} */
+    public long getLastReloadDuration() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        return factory != null ? factory.getLastReloadDuration() : -1;
+    }
+
+    /** {@inheritDoc} */
+    public String[] getSourceParseTimes() {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        if (factory == null) {
+            return new String[0];
+        }
+        Map<String, Long> parseTimes = new TreeMap<String, Long>(factory
+                .getParseTimes());
+        List<String> times = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : parseTimes.entrySet()) {
+            times.add(entry.getKey() + "=" + entry.getValue()
+                    / NANOS_PER_MILLI + " ms");
+        }
+        return times.toArray(new String[times.size()]);
+    }
+
+    /** {@inheritDoc} */
+    public int getPreparerCacheSize() {
+        if (container.getPreparerFactory() instanceof BasicPreparerFactory) {
+            return ((BasicPreparerFactory) container.getPreparerFactory())
+                    .getCacheSize();
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    public long getCreatedRequestContextCount() {
+        if (container.getContextFactory() instanceof RequestContextStatistics) {
+            return ((RequestContextStatistics) container.getContextFactory())
+                    .getCreatedRequestContextCount();
+        }
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    public long getReusedRequestContextCount() {
+        if (container.getContextFactory() instanceof RequestContextStatistics) {
+            return ((RequestContextStatistics) container.getContextFactory())
+                    .getReusedRequestContextCount();
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Exceptions are converted to <code>IllegalStateException</code>s that
+     * contain only their message, so that remote clients can read them.
+     */
+    public void refresh() {
+        DefinitionsFactory factory = container.getDefinitionsFactory();
+        if (!(factory instanceof ReloadableDefinitionsFactory)) {
+            throw new IllegalStateException(
+                    "The definitions factory cannot be refreshed");
+        }
+        try {
+            ((ReloadableDefinitionsFactory) factory).refresh();
+        } catch (DefinitionsFactoryException e) {
+            throw new IllegalStateException("Cannot refresh the definitions: "
+                    + e.getMessage());
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean evictLocale(String locale) {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        return factory != null && factory.evictLocale(parseLocale(locale));
+    }
+
+    /** {@inheritDoc} */
+    public String dumpDefinition(String name, String locale) {
+        UrlDefinitionsFactory factory = getUrlDefinitionsFactory();
+        if (factory == null) {
+            throw new IllegalStateException(
+                    "The definitions factory cannot be inspected");
+        }
+        Definition definition = factory.getLoadedDefinition(name,
+                parseLocale(locale));
+        if (definition == null) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("name: ").append(definition.getName()).append('\n');
+        builder.append("template: ").append(definition.getTemplate()).append(
+                '\n');
+        if (definition.getExtends() != null) {
+            builder.append("extends: ").append(definition.getExtends())
+                    .append('\n');
+        }
+        if (definition.getRole() != null) {
+            builder.append("role: ").append(definition.getRole()).append('\n');
+        }
+        if (definition.getPreparer() != null) {
+            builder.append("preparer: ").append(definition.getPreparer())
+                    .append('\n');
+        }
+        if (definition.getCachePolicy() != null) {
+            builder.append("cache: ").append(definition.getCachePolicy())
+                    .append('\n');
+        }
+        Map<String, Attribute> attributes = new TreeMap<String, Attribute>(
+                definition.getAttributes());
+        for (Map.Entry<String, Attribute> entry : attributes.entrySet()) {
+            Attribute attribute = entry.getValue();
+            builder.append("attribute ").append(entry.getKey()).append(": ")
+                    .append(attribute.getValue()).append(" [type=").append(
+                            attribute.getType());
+            if (attribute.getRole() != null) {
+                builder.append(", role=").append(attribute.getRole());
+            }
+            builder.append("]\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the definitions factory of the container, if it can be
+     * inspected.
+     *
+     * @return The definitions factory, or <code>null</code> if it is not a
+     * {@link UrlDefinitionsFactory}.
+     */
+    private UrlDefinitionsFactory getUrlDefinitionsFactory() {
+        DefinitionsFactory factory = container.getDefinitionsFactory();
+        if (factory instanceof UrlDefinitionsFactory) {
+            return (UrlDefinitionsFactory) factory;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a locale in the form <code>language_country_variant</code>.
+     *
+     * @param locale The locale to parse.
+     * @return The locale, or <code>null</code> if the string is empty.
+     */
+    private static Locale parseLocale(String locale) {
+        if (locale == null || locale.trim().length() == 0) {
+            return null;
+        }
+        String[] parts = locale.trim().split("_", 3);
+        return new Locale(parts[0], parts.length > 1 ? parts[1] : "",
+                parts.length > 2 ? parts[2] : "");
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.jmx;
+
+import java.util.Date;
+
+/**
+ * Management interface of a Tiles container.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface TilesContainerManagementMBean {
+
+    /**
+     * Returns the number of base definitions.
+     *
+     * @return The number of base definitions, or <code>-1</code> if it is
+     * not available.
+     */
+    int getBaseDefinitionCount();
+
+    /**
+     * Returns the locales whose definitions are in memory.
+     *
+     * @return The processed locales.
+     */
+    String[] getProcessedLocales();
+
+    /**
+     * Returns the number of definitions specific to each processed locale, in
+     * the form <code>locale=count</code>.
+     *
+     * @return The number of definitions of each locale.
+     */
+    String[] getLocaleDefinitionCounts();
+
+    /**
+     * Returns the time when the definitions have been loaded last.
+     *
+     * @return The time of the last load, or <code>null</code> if it is not
+     * available.
+     */
+    Date getLastReloadTime();
+
+    /**
+     * Returns how long the last load of the definitions took.
+     *
+     * @return The duration, in milliseconds, or <code>-1</code> if it is not
+     * available.
+     */
+    long getLastReloadDuration();
+
+    /**
+     * Returns the time spent parsing each source the last time it has been
+     * read, in the form <code>url=time ms</code>.
+     *
+     * @return The parse time of each source.
+     */
+    String[] getSourceParseTimes();
+
+    /**
+     * Returns the number of preparers that have been created and cached.
+     *
+     * @return The number of cached preparers, or <code>-1</code> if it is not
+     * available.
+     */
+    int getPreparerCacheSize();
+
+    /**
+     * Returns the number of request contexts that have been created.
+     *
+     * @return The number of created request contexts, or <code>-1</code> if
+     * it is not available.
+     */
+    long getCreatedRequestContextCount();
+
+    /**
+     * Returns the number of times a request context has been reused for the
+     * same request.
+     *
+     * @return The number of reused request contexts, or <code>-1</code> if it
+     * is not available.
+     */
+    long getReusedRequestContextCount();
+
+    /**
+     * Reloads the definitions.
+     */
+    void refresh();
+
+    /**
+     * Discards the definitions of a locale. They are read again the next time
+     * the locale is requested.
+     *
+     * @param locale The locale, for example <code>en_US</code>.
+     * @return <code>true</code> if the definitions of the locale were in
+     * memory.
+     */
+    boolean evictLocale(String locale);
+
+    /**
+     * Returns a description of a definition, as it is resolved in memory.
+     *
+     * @param name The name of the definition.
+     * @param locale The locale, for example <code>en_US</code>. If empty, the
+     * base definition is described.
+     * @return The description of the definition, or <code>null</code> if it
+     * is not found.
+     */
+    String dumpDefinition(String name, String locale);
+}
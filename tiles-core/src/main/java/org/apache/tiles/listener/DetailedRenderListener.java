@@ -0,0 +1,66 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.TilesRequestContext;
+
+/**
+ * A {@link RenderListener} that receives details about the rendering of some
+ * requests, for example to trace them. Collecting the details has a cost, so
+ * it is done only for the requests chosen by the listener.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface DetailedRenderListener extends RenderListener {
+
+    /**
+     * Indicates whether the details of the rendering of a request must be
+     * collected. It is called while a phase of rendering is in progress,
+     * after {@link #renderStarted(RenderPhase, String, TilesRequestContext)}.
+     *
+     * @param request The request context.
+     * @return <code>true</code> if this listener needs the details.
+     */
+    boolean isDetailed(TilesRequestContext request);
+
+    /**
+     * Called when the type of an attribute being rendered has been
+     * resolved, in the {@link RenderPhase#ATTRIBUTE} phase.
+     *
+     * @param type The type of the attribute.
+     * @param request The request context.
+     */
+    void attributeResolved(AttributeType type, TilesRequestContext request);
+
+    /**
+     * Called when characters have been written in the current phase. If the
+     * output of a dispatch can be counted, this method is called at the end
+     * of the dispatch with the characters written by the template, including
+     * the ones written by the phases nested in it.
+     *
+     * @param count The number of characters.
+     * @param request The request context.
+     */
+    void outputWritten(long count, TilesRequestContext request);
+}
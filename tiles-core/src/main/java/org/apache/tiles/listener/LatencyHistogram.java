@@ -0,0 +1,218 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with a fixed set of buckets, that can be recorded
+ * by many threads without locking.
+ * <p/>
+ * Latencies are recorded in microseconds. Each power of two is divided into
+ * {@link #SUB_BUCKETS} buckets of the same width, so the relative error of a
+ * recorded value is at most 12.5%, from one microsecond to more than an hour.
+ * Longer latencies are recorded in the last bucket.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LatencyHistogram {
+
+    /**
+     * The number of buckets for each power of two.
+     */
+    public static final int SUB_BUCKETS = 8;
+
+    /**
+     * The base 2 logarithm of {@link #SUB_BUCKETS}.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The highest power of two that has its own buckets.
+     */
+    private static final int MAX_EXPONENT = 32;
+
+    /**
+     * The total number of buckets, the last one containing the values that
+     * are too high for the others.
+     */
+    private static final int BUCKET_COUNT = SUB_BUCKETS
+            + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1;
+
+    /**
+     * The number of recorded values in each bucket.
+     */
+    private AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The number of recorded values.
+     */
+    private AtomicLong count = new AtomicLong();
+
+    /**
+     * The sum of the recorded values, in microseconds.
+     */
+    private AtomicLong total = new AtomicLong();
+
+    /**
+     * The maximum recorded value, in microseconds.
+     */
+    private AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = nanos > 0 ? nanos / 1000 : 0;
+        buckets.incrementAndGet(getBucket(micros));
+        count.incrementAndGet();
+        total.addAndGet(micros);
+        long currentMax = max.get();
+        while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded latencies.
+     *
+     * @return The total time, in microseconds.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * Returns the maximum recorded latency.
+     *
+     * @return The maximum, in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies.
+     *
+     * @return The mean, in microseconds, or <code>0</code> if nothing has
+     * been recorded.
+     */
+    public double getMean() {
+        long currentCount = count.get();
+        return currentCount > 0 ? (double) total.get() / currentCount : 0;
+    }
+
+    /**
+     * Returns an upper bound of the latency below which the given percentage
+     * of the recorded latencies are. While values are recorded, the result
+     * is approximate.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return The percentile, in microseconds, or <code>0</code> if nothing
+     * has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        long currentCount = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            currentCount += counts[i];
+        }
+        if (currentCount == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(currentCount * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= threshold && counts[i] > 0) {
+                return Math.min(getUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Removes all the recorded latencies. Latencies recorded at the same time
+     * may be partially removed.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Returns the index of the bucket of a value.
+     *
+     * @param micros The value, in microseconds.
+     * @return The index of the bucket.
+     */
+    static int getBucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS
+                + subBucket;
+    }
+
+    /**
+     * Returns the highest value of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The highest value, in microseconds.
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.context.TilesRequestContext;
+
+/**
+ * A render listener that keeps the number of renderings, the number of
+ * errors and a latency histogram for each definition, preparer, template and
+ * attribute, and logs the renderings that are slower than a threshold.
+ * <p/>
+ * Recording does not lock: statistics are created the first time a name is
+ * rendered, and then updated atomically.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class MetricsRenderListener implements RenderListener {
+
+    /**
+     * Initialization parameter that contains the time, in milliseconds, above
+     * which the rendering of a definition or of a preparer is logged as slow.
+     * If it is <code>0</code>, slow renderings are not logged.
+     */
+    public static final String SLOW_THRESHOLD_INIT_PARAM =
+        "org.apache.tiles.listener.MetricsRenderListener.SLOW_THRESHOLD";
+
+    /**
+     * The default threshold of slow renderings, in milliseconds.
+     */
+    public static final long DEFAULT_SLOW_THRESHOLD = 500;
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG =
+        LogFactory.getLog(MetricsRenderListener.class);
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /**
+     * The statistics, mapped by phase and then by name.
+     */
+    private Map<RenderPhase, ConcurrentMap<String, RenderStatistics>> statistics;
+
+    /**
+     * The threshold of slow renderings, in nanoseconds.
+     */
+    private long slowThreshold = DEFAULT_SLOW_THRESHOLD * NANOS_PER_MILLI;
+
+    /**
+     * Constructor.
+     */
+    public MetricsRenderListener() {
+        statistics =
+            new EnumMap<RenderPhase, ConcurrentMap<String, RenderStatistics>>(
+                    RenderPhase.class);
+        for (RenderPhase phase : RenderPhase.values()) {
+            statistics.put(phase,
+                    new ConcurrentHashMap<String, RenderStatistics>());
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void init(Map<String, String> params) {
+        String value = params != null ? params.get(SLOW_THRESHOLD_INIT_PARAM)
+                : null;
+        if (value != null) {
+            setSlowThreshold(Long.parseLong(value.trim()));
+        }
+    }
+
+    /**
+     * Returns the time above which renderings are logged as slow.
+     *
+     * @return The threshold, in milliseconds.
+     */
+    public long getSlowThreshold() {
+        return slowThreshold / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Sets the time above which the renderings of definitions and preparers
+     * are logged as slow.
+     *
+     * @param slowThreshold The threshold, in milliseconds. If it is
+     * <code>0</code>, slow renderings are not logged.
+     */
+    public void setSlowThreshold(long slowThreshold) {
+        this.slowThreshold = slowThreshold * NANOS_PER_MILLI;
+    }
+
+    /** {@inheritDoc} */
+    public void renderStarted(RenderPhase phase, String name,
+            TilesRequestContext request) {
+        // Only the end of the phase is recorded.
+    }
+
+    /** {@inheritDoc} */
+    public void renderEnded(RenderPhase phase, String name,
+            TilesRequestContext request, long duration, Throwable error) {
+        if (name == null) {
+            return;
+        }
+        ConcurrentMap<String, RenderStatistics> phaseStatistics = statistics
+                .get(phase);
+        RenderStatistics nameStatistics = phaseStatistics.get(name);
+        if (nameStatistics == null) {
+            nameStatistics = new RenderStatistics();
+            RenderStatistics existing = phaseStatistics.putIfAbsent(name,
+                    nameStatistics);
+            if (existing != null) {
+                nameStatistics = existing;
+            }
+        }
+        nameStatistics.record(duration, error != null);
+
+        if (slowThreshold > 0 && duration > slowThreshold
+                && (phase == RenderPhase.DEFINITION
+                        || phase == RenderPhase.PREPARER)
+                && LOG.isWarnEnabled()) {
+            LOG.warn("Slow tile: rendering the "
+                    + phase.name().toLowerCase() + " '" + name + "' took "
+                    + (duration / NANOS_PER_MILLI) + " ms");
+        }
+    }
+
+    /**
+     * Returns the statistics of a phase.
+     *
+     * @param phase The phase.
+     * @return The statistics, mapped by name.
+     */
+    public Map<String, RenderStatistics> getStatistics(RenderPhase phase) {
+        return Collections.unmodifiableMap(statistics.get(phase));
+    }
+
+    /**
+     * Returns the statistics of a definition, preparer, template or
+     * attribute.
+     *
+     * @param phase The phase.
+     * @param name The name of what has been rendered.
+     * @return The statistics, or <code>null</code> if the name has not been
+     * rendered.
+     */
+    public RenderStatistics getStatistics(RenderPhase phase, String name) {
+        return statistics.get(phase).get(name);
+    }
+
+    /**
+     * Removes all the statistics.
+     */
+    public void reset() {
+        for (Map<String, RenderStatistics> phaseStatistics : statistics
+                .values()) {
+            phaseStatistics.clear();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.Map;
+
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.TilesRequestContext;
+
+/**
+ * Receives notifications from the container when a phase of rendering starts
+ * and ends. Phases are nested: for example, the dispatch to the template of a
+ * definition starts and ends while the definition is rendered.
+ * <p/>
+ * Listeners are called by the threads that render the pages, so they must be
+ * thread-safe, and they should be fast, since they are called many times for
+ * each page. Exceptions thrown by a listener are logged and ignored.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface RenderListener {
+
+    /**
+     * Initializes the listener.
+     *
+     * @param params The initialization parameters of the container.
+     * @throws TilesException If the listener cannot be initialized.
+     */
+    void init(Map<String, String> params) throws TilesException;
+
+    /**
+     * Called when a phase of rendering starts.
+     *
+     * @param phase The phase.
+     * @param name The name of what is rendered, depending on the phase.
+     * @param request The request context.
+     */
+    void renderStarted(RenderPhase phase, String name,
+            TilesRequestContext request);
+
+    /**
+     * Called when a phase of rendering ends, even if it failed.
+     *
+     * @param phase The phase.
+     * @param name The name of what has been rendered, depending on the phase.
+     * @param request The request context.
+     * @param duration The time spent in the phase, in nanoseconds.
+     * @param error The exception that made the phase fail, or
+     * <code>null</code> if the phase succeeded.
+     */
+    void renderEnded(RenderPhase phase, String name,
+            TilesRequestContext request, long duration, Throwable error);
+}
@@ -0,0 +1,53 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+/**
+ * The phases of rendering that are notified to {@link RenderListener}s.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public enum RenderPhase {
+
+    /**
+     * Rendering of a definition, including its preparer, its template and
+     * the definitions it includes. The name is the name of the definition.
+     */
+    DEFINITION,
+
+    /**
+     * Execution of a view preparer. The name is the name of the preparer.
+     */
+    PREPARER,
+
+    /**
+     * Dispatch to a template. The name is the path of the template.
+     */
+    DISPATCH,
+
+    /**
+     * Rendering of an attribute. The name is the name of the attribute or,
+     * if it has no name, its value.
+     */
+    ATTRIBUTE
+}
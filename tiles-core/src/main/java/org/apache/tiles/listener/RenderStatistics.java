@@ -0,0 +1,101 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of a definition, preparer, template or attribute, collected
+ * by a {@link MetricsRenderListener}.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class RenderStatistics {
+
+    /**
+     * The number of failed renderings.
+     */
+    private AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * The latencies of the renderings.
+     */
+    private LatencyHistogram histogram = new LatencyHistogram();
+
+    /**
+     * Records a rendering.
+     *
+     * @param duration The time spent rendering, in nanoseconds.
+     * @param failed <code>true</code> if the rendering failed.
+     */
+    public void record(long duration, boolean failed) {
+        histogram.record(duration);
+        if (failed) {
+            errorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of renderings.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Returns the number of failed renderings.
+     *
+     * @return The error count.
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * Returns the latencies of the renderings.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Removes the recorded statistics.
+     */
+    public void reset() {
+        histogram.reset();
+        errorCount.set(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", errors=" + getErrorCount()
+                + ", mean=" + (long) histogram.getMean() + "us, p99="
+                + histogram.getPercentile(99) + "us, max="
+                + histogram.getMax() + "us";
+    }
+}
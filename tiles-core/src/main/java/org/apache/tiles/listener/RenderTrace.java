@@ -0,0 +1,457 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tiles.Attribute.AttributeType;
+
+/**
+ * The tree of the phases of rendering of a request. Every phase is a node,
+ * whose children are the phases nested in it. A request can have more than one
+ * root, for example when a JSP page inserts many definitions.
+ * <p/>
+ * The phases are nested in the thread that created the trace. The phases of
+ * other threads, for example preparers run in parallel, are added when they
+ * end as children of the current node, so the methods are synchronized.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class RenderTrace {
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000;
+
+    /**
+     * The root nodes.
+     */
+    private List<Node> roots = new ArrayList<Node>();
+
+    /**
+     * The nodes whose phase is in progress, from the root to the innermost
+     * one.
+     */
+    private List<Node> stack = new ArrayList<Node>();
+
+    /**
+     * The thread that renders the request.
+     */
+    private Thread owner = Thread.currentThread();
+
+    /**
+     * Indicates whether the current thread is the one that created this
+     * trace.
+     *
+     * @return <code>true</code> if phases of the current thread are nested.
+     */
+    public boolean isOwner() {
+        return Thread.currentThread() == owner;
+    }
+
+    /**
+     * Returns the root nodes.
+     *
+     * @return The root nodes.
+     */
+    public synchronized List<Node> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Returns the innermost node whose phase is in progress.
+     *
+     * @return The current node, or <code>null</code> if no phase is in
+     * progress.
+     */
+    public synchronized Node getCurrent() {
+        return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+    }
+
+    /**
+     * Starts a new node, nested in the current one.
+     *
+     * @param phase The phase.
+     * @param name The name of what is rendered.
+     */
+    public synchronized void start(RenderPhase phase, String name) {
+        Node node = new Node(phase, name);
+        Node current = getCurrent();
+        if (current != null) {
+            current.children.add(node);
+        } else {
+            roots.add(node);
+        }
+        stack.add(node);
+    }
+
+    /**
+     * Ends the current node.
+     *
+     * @param duration The duration of the phase, in nanoseconds.
+     * @param error The exception that made the phase fail, or
+     * <code>null</code>.
+     * @return The ended node.
+     */
+    public synchronized Node end(long duration, Throwable error) {
+        Node node = stack.remove(stack.size() - 1);
+        node.duration = duration;
+        if (node.written < 0) {
+            // The output of the node is the one of its children, if known.
+            for (Node child : node.children) {
+                if (child.written >= 0) {
+                    node.addWritten(child.written);
+                }
+            }
+        }
+        if (error != null) {
+            node.error = error.getClass().getName() + ": " + error.getMessage();
+        }
+        return node;
+    }
+
+    /**
+     * Sets the attribute type of the current node, if the current thread is
+     * the one that created this trace.
+     *
+     * @param type The type of the attribute.
+     */
+    public synchronized void setCurrentType(AttributeType type) {
+        Node current = getCurrent();
+        if (current != null && isOwner()) {
+            current.setType(type);
+        }
+    }
+
+    /**
+     * Adds characters to the ones written by the current node, if the
+     * current thread is the one that created this trace.
+     *
+     * @param count The number of characters.
+     */
+    public synchronized void addCurrentWritten(long count) {
+        Node current = getCurrent();
+        if (current != null && isOwner()) {
+            current.addWritten(count);
+        }
+    }
+
+    /**
+     * Adds a node whose phase has ended in another thread, as a child of the
+     * current node.
+     *
+     * @param phase The phase.
+     * @param name The name of what has been rendered.
+     * @param duration The duration of the phase, in nanoseconds.
+     * @param error The exception that made the phase fail, or
+     * <code>null</code>.
+     */
+    public synchronized void addEnded(RenderPhase phase, String name,
+            long duration, Throwable error) {
+        start(phase, name);
+        end(duration, error);
+    }
+
+    /**
+     * Returns the trace in JSON format, as an array of the root nodes.
+     *
+     * @return The JSON representation of the trace.
+     */
+    public synchronized String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append('[');
+        for (int i = 0; i < roots.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            roots.get(i).appendJson(builder);
+        }
+        builder.append(']');
+        return builder.toString();
+    }
+
+    /**
+     * Appends a string to a JSON document, as a quoted and escaped string.
+     *
+     * @param builder The JSON document.
+     * @param value The string to append.
+     */
+    private static void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    String hex = Integer.toHexString(c);
+                    builder.append("\\u0000", 0, 6 - hex.length()).append(hex);
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * A phase of rendering.
+     */
+    public static class Node {
+
+        /**
+         * The phase.
+         */
+        private RenderPhase phase;
+
+        /**
+         * The name of what is rendered.
+         */
+        private String name;
+
+        /**
+         * The type of the attribute, for {@link RenderPhase#ATTRIBUTE} nodes.
+         */
+        private AttributeType type;
+
+        /**
+         * The duration of the phase, in nanoseconds.
+         */
+        private long duration;
+
+        /**
+         * The number of characters written, or <code>-1</code> if it is
+         * unknown.
+         */
+        private long written = -1;
+
+        /**
+         * The description of the error that made the phase fail.
+         */
+        private String error;
+
+        /**
+         * The nested phases.
+         */
+        private List<Node> children = new ArrayList<Node>();
+
+        /**
+         * Constructor.
+         *
+         * @param phase The phase.
+         * @param name The name of what is rendered.
+         */
+        public Node(RenderPhase phase, String name) {
+            this.phase = phase;
+            this.name = name;
+        }
+
+        /**
+         * Returns the phase.
+         *
+         * @return The phase.
+         */
+        public RenderPhase getPhase() {
+            return phase;
+        }
+
+        /**
+         * Returns the name of what is rendered.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the type of the attribute.
+         *
+         * @return The type, or <code>null</code> if it is not known.
+         */
+        public AttributeType getType() {
+            return type;
+        }
+
+        /**
+         * Sets the type of the attribute.
+         *
+         * @param type The type.
+         */
+        void setType(AttributeType type) {
+            this.type = type;
+        }
+
+        /**
+         * Returns the duration of the phase.
+         *
+         * @return The duration, in nanoseconds.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Returns the number of characters written.
+         *
+         * @return The number of characters, or <code>-1</code> if it is
+         * unknown.
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        /**
+         * Adds characters to the ones written.
+         *
+         * @param count The number of characters.
+         */
+        void addWritten(long count) {
+            written = written < 0 ? count : written + count;
+        }
+
+        /**
+         * Returns the description of the error that made the phase fail.
+         *
+         * @return The error, or <code>null</code> if the phase succeeded.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Returns the nested phases.
+         *
+         * @return The children.
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * Returns the template of a definition, that is the path of its first
+         * dispatch.
+         *
+         * @return The template, or <code>null</code> if it is not known.
+         */
+        public String getTemplate() {
+            for (Node child : children) {
+                if (child.phase == RenderPhase.DISPATCH) {
+                    return child.name;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the time spent in the nested phases of the given type.
+         *
+         * @param childPhase The phase of the children.
+         * @return The total duration, in nanoseconds.
+         */
+        public long getChildrenDuration(RenderPhase childPhase) {
+            long total = 0;
+            for (Node child : children) {
+                if (child.phase == childPhase) {
+                    total += child.duration;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Returns the node in JSON format. Times are in microseconds.
+         *
+         * @return The JSON representation of the node.
+         */
+        public String toJson() {
+            StringBuilder builder = new StringBuilder();
+            appendJson(builder);
+            return builder.toString();
+        }
+
+        /**
+         * Appends the node to a JSON document.
+         *
+         * @param builder The JSON document.
+         */
+        private void appendJson(StringBuilder builder) {
+            builder.append("{\"phase\":");
+            appendString(builder, phase.name());
+            builder.append(",\"name\":");
+            appendString(builder, String.valueOf(name));
+            if (phase == RenderPhase.DEFINITION) {
+                String template = getTemplate();
+                if (template != null) {
+                    builder.append(",\"template\":");
+                    appendString(builder, template);
+                }
+                builder.append(",\"preparerTime\":").append(
+                        getChildrenDuration(RenderPhase.PREPARER)
+                                / NANOS_PER_MICRO);
+                builder.append(",\"dispatchTime\":").append(
+                        getChildrenDuration(RenderPhase.DISPATCH)
+                                / NANOS_PER_MICRO);
+            }
+            if (type != null) {
+                builder.append(",\"type\":");
+                appendString(builder, type.name());
+            }
+            builder.append(",\"time\":").append(duration / NANOS_PER_MICRO);
+            if (written >= 0) {
+                builder.append(",\"written\":").append(written);
+            }
+            if (error != null) {
+                builder.append(",\"error\":");
+                appendString(builder, error);
+            }
+            if (!children.isEmpty()) {
+                builder.append(",\"children\":[");
+                for (int i = 0; i < children.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    children.get(i).appendJson(builder);
+                }
+                builder.append(']');
+            }
+            builder.append('}');
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.listener;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+
+/**
+ * A render listener that records the tree of the phases of rendering of some
+ * requests, and exports it in JSON format to the log or to a request-scoped
+ * attribute. A request is traced if one of these conditions is true when its
+ * rendering starts:
+ * <ul>
+ * <li>the {@link #ENABLED_ATTRIBUTE} request-scoped attribute is
+ * <code>true</code>;</li>
+ * <li>the request has the header specified by {@link #HEADER_INIT_PARAM};</li>
+ * <li>it is sampled, if {@link #SAMPLE_RATE_INIT_PARAM} is specified.</li>
+ * </ul>
+ * The trace is exported every time a root phase ends, so a JSP page that
+ * inserts many definitions exports it once for each of them.
+ * <p/>
+ * When this listener is not registered, the container does not collect
+ * anything. When it is registered, requests that are not traced only cost a
+ * lookup in the state of the request for each phase.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class TraceRenderListener implements DetailedRenderListener {
+
+    /**
+     * Initialization parameter that contains the sampling rate: if it is
+     * <code>N</code>, one request out of <code>N</code> is traced. If it is
+     * <code>0</code>, requests are not sampled.
+     */
+    public static final String SAMPLE_RATE_INIT_PARAM =
+        "org.apache.tiles.listener.TraceRenderListener.SAMPLE_RATE";
+
+    /**
+     * Initialization parameter that contains the name of the header that
+     * makes a request traced.
+     */
+    public static final String HEADER_INIT_PARAM =
+        "org.apache.tiles.listener.TraceRenderListener.HEADER";
+
+    /**
+     * Initialization parameter that contains where traces are exported:
+     * <code>log</code>, <code>attribute</code> or both, separated by a
+     * comma.
+     */
+    public static final String OUTPUT_INIT_PARAM =
+        "org.apache.tiles.listener.TraceRenderListener.OUTPUT";
+
+    /**
+     * The default name of the header that makes a request traced.
+     */
+    public static final String DEFAULT_HEADER = "X-Tiles-Trace";
+
+    /**
+     * Name of the request-scoped attribute that, if <code>true</code>, makes
+     * the request traced.
+     */
+    public static final String ENABLED_ATTRIBUTE =
+        "org.apache.tiles.listener.TraceRenderListener.ENABLED";
+
+    /**
+     * Name of the request-scoped attribute where the trace is exported, in
+     * JSON format, if <code>attribute</code> is an output.
+     */
+    public static final String TRACE_ATTRIBUTE =
+        "org.apache.tiles.listener.TraceRenderListener.TRACE";
+
+    /**
+     * The logging object, where traces are logged at <code>INFO</code>
+     * level.
+     */
+    private static final Log LOG = LogFactory.getLog(TraceRenderListener.class);
+
+    /**
+     * The name of the object of the state of the request that contains the
+     * trace.
+     */
+    private static final String STATE_KEY = TraceRenderListener.class.getName();
+
+    /**
+     * Marks a request that is not traced, so that the choice is made once.
+     */
+    private static final Object NOT_TRACED = new Object();
+
+    /**
+     * The sampling rate, or <code>0</code> if requests are not sampled.
+     */
+    private long sampleRate;
+
+    /**
+     * The name of the header that makes a request traced.
+     */
+    private String header = DEFAULT_HEADER;
+
+    /**
+     * Indicates whether traces are logged.
+     */
+    private boolean logOutput = true;
+
+    /**
+     * Indicates whether traces are stored in the request.
+     */
+    private boolean attributeOutput;
+
+    /**
+     * The number of requests whose tracing has been decided.
+     */
+    private AtomicLong requestCount = new AtomicLong();
+
+    /** {@inheritDoc} */
+    public void init(Map<String, String> params) throws TilesException {
+        String value = params.get(SAMPLE_RATE_INIT_PARAM);
+        if (value != null) {
+            sampleRate = Long.parseLong(value.trim());
+        }
+        value = params.get(HEADER_INIT_PARAM);
+        if (value != null) {
+            header = value.trim();
+        }
+        value = params.get(OUTPUT_INIT_PARAM);
+        if (value != null) {
+            logOutput = false;
+            attributeOutput = false;
+            for (String output : value.split(",")) {
+                output = output.trim();
+                if ("log".equals(output)) {
+                    logOutput = true;
+                } else if ("attribute".equals(output)) {
+                    attributeOutput = true;
+                } else {
+                    throw new TilesException("Unknown trace output '"
+                            + output + "'");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the trace of a request.
+     *
+     * @param request The request context.
+     * @return The trace, or <code>null</code> if the request is not traced
+     * or its rendering has not started.
+     */
+    public static RenderTrace getTrace(TilesRequestContext request) {
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        if (state == null) {
+            return null;
+        }
+        Object trace = state.getAttribute(STATE_KEY);
+        return trace instanceof RenderTrace ? (RenderTrace) trace : null;
+    }
+
+    /** {@inheritDoc} */
+    public void renderStarted(RenderPhase phase, String name,
+            TilesRequestContext request) {
+        TilesRequestState state = TilesRequestState.getInstance(request);
+        if (state == null) {
+            return;
+        }
+        Object trace = state.getAttribute(STATE_KEY);
+        if (trace == null) {
+            trace = isTraced(request) ? new RenderTrace() : NOT_TRACED;
+            state.setAttribute(STATE_KEY, trace);
+        }
+        if (trace != NOT_TRACED && ((RenderTrace) trace).isOwner()) {
+            ((RenderTrace) trace).start(phase, name);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void renderEnded(RenderPhase phase, String name,
+            TilesRequestContext request, long duration, Throwable error) {
+        RenderTrace trace = getTrace(request);
+        if (trace == null) {
+            return;
+        }
+        if (!trace.isOwner()) {
+            trace.addEnded(phase, name, duration, error);
+            return;
+        }
+        if (trace.getCurrent() == null) {
+            return;
+        }
+        RenderTrace.Node node = trace.end(duration, error);
+        if (trace.getCurrent() == null) {
+            if (logOutput && LOG.isInfoEnabled()) {
+                LOG.info("Render trace: " + node.toJson());
+            }
+            if (attributeOutput) {
+                request.getRequestScope().put(TRACE_ATTRIBUTE, trace.toJson());
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean isDetailed(TilesRequestContext request) {
+        return getTrace(request) != null;
+    }
+
+    /** {@inheritDoc} */
+    public void attributeResolved(AttributeType type,
+            TilesRequestContext request) {
+        RenderTrace trace = getTrace(request);
+        if (trace != null) {
+            trace.setCurrentType(type);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void outputWritten(long count, TilesRequestContext request) {
+        RenderTrace trace = getTrace(request);
+        if (trace != null) {
+            trace.addCurrentWritten(count);
+        }
+    }
+
+    /**
+     * Decides whether a request is traced, when its rendering starts.
+     *
+     * @param request The request context.
+     * @return <code>true</code> if the request must be traced.
+     */
+    protected boolean isTraced(TilesRequestContext request) {
+        Object enabled = request.getRequestScope().get(ENABLED_ATTRIBUTE);
+        if (Boolean.TRUE.equals(enabled) || "true".equals(enabled)) {
+            return true;
+        }
+        Map<String, String> headers = request.getHeader();
+        if (headers != null && headers.get(header) != null) {
+            return true;
+        }
+        return sampleRate > 0
+                && requestCount.incrementAndGet() % sampleRate == 0;
+    }
+}
@@ -20,19 +20,11 @@
  */
 package org.apache.tiles.portlet.context;
 
-
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.portlet.PortletContext;
 
-import org.apache.tiles.context.MapEntry;
+import org.apache.tiles.context.AbstractScopeMap;
 
 /**
  * <p>Private implementation of <code>Map</code> for portlet context
@@ -41,7 +33,7 @@ import org.apache.tiles.context.MapEntry;
  * @version $Rev$ $Date$
  */
 
-final class PortletInitParamMap implements Map<String, String> {
+final class PortletInitParamMap extends AbstractScopeMap<String> {
 
 
     /**
@@ -61,151 +53,16 @@ final class PortletInitParamMap implements Map<String, String> {
 
 
     /** {@inheritDoc} */
-    public void clear() {
-        throw new UnsupportedOperationException();
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean containsKey(Object key) {
-        return (context.getInitParameter(key(key)) != null);
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean containsValue(Object value) {
-        Iterator<String> values = values().iterator();
-        while (values.hasNext()) {
-            if (value.equals(values.next())) {
-                return (true);
-            }
-        }
-        return (false);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Set<Map.Entry<String, String>> entrySet() {
-        Set<Map.Entry<String, String>> set = new HashSet<Map.Entry<String, String>>();
-        Enumeration<String> keys = context.getInitParameterNames();
-        while (keys.hasMoreElements()) {
-            String key = keys.nextElement();
-            set.add(new MapEntry<String, String>(key, context
-                    .getInitParameter(key), false));
-        }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public boolean equals(Object o) {
-        PortletContext otherContext = ((PortletInitParamMap) o).context;
-        boolean retValue = true;
-        synchronized (context) {
-            for (Enumeration<String> attribs = context.getInitParameterNames(); attribs
-                    .hasMoreElements()
-                    && retValue;) {
-                String parameterName = attribs.nextElement();
-                retValue = context.getInitParameter(parameterName).equals(
-                        otherContext.getInitParameter(parameterName));
-            }
-        }
-
-        return retValue;
-    }
-
-
-    /** {@inheritDoc} */
-    public String get(Object key) {
-        return (context.getInitParameter(key(key)));
-    }
-
-
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return (context.hashCode());
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean isEmpty() {
-        return (size() < 1);
+    @Override
+    protected String getValue(String key) {
+        return context.getInitParameter(key);
     }
 
 
     /** {@inheritDoc} */
+    @Override
     @SuppressWarnings("unchecked")
-    public Set<String> keySet() {
-        Set<String> set = new HashSet<String>();
-        Enumeration<String> keys = context.getInitParameterNames();
-        while (keys.hasMoreElements()) {
-            set.add(keys.nextElement());
-        }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    public String put(String key, String value) {
-        throw new UnsupportedOperationException();
-    }
-
-
-    /** {@inheritDoc} */
-    public void putAll(Map<? extends String, ? extends String> map) {
-        throw new UnsupportedOperationException();
-    }
-
-
-    /** {@inheritDoc} */
-    public String remove(Object key) {
-        throw new UnsupportedOperationException();
+    protected Enumeration<String> getKeys() {
+        return context.getInitParameterNames();
     }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public int size() {
-        int n = 0;
-        Enumeration<String> keys = context.getInitParameterNames();
-        while (keys.hasMoreElements()) {
-            keys.nextElement();
-            n++;
-        }
-        return (n);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Collection<String> values() {
-        List<String> list = new ArrayList<String>();
-        Enumeration<String> keys = context.getInitParameterNames();
-        while (keys.hasMoreElements()) {
-            list.add(context.getInitParameter(keys.nextElement()));
-        }
-        return (list);
-    }
-
-
-    /**
-     * Returns the string representation of the key.
-     *
-     * @param key The key.
-     * @return The string representation of the key.
-     * @throws IllegalArgumentException If the key is <code>null</code>.
-     */
-    private String key(Object key) {
-        if (key == null) {
-            throw new IllegalArgumentException();
-        } else if (key instanceof String) {
-            return ((String) key);
-        } else {
-            return (key.toString());
-        }
-    }
-
-
 }
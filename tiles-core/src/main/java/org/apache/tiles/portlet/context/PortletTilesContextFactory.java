@@ -22,20 +22,38 @@
 package org.apache.tiles.portlet.context;
 
 import org.apache.tiles.TilesApplicationContext;
+import org.apache.tiles.context.RequestContextStatistics;
 import org.apache.tiles.context.TilesContextFactory;
 import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
 
 import javax.portlet.PortletContext;
 import javax.portlet.PortletRequest;
 import javax.portlet.PortletResponse;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Creates an instance of the appropriate TilesApplicationContext implementation.
+ * <p/>
+ * The request context created for a request and a response is stored in the
+ * {@link TilesRequestState} of the request, and it is reused while the same
+ * objects are passed.
  *
  * @version $Rev$ $Date$
  */
-public class PortletTilesContextFactory implements TilesContextFactory {
+public class PortletTilesContextFactory implements TilesContextFactory,
+        RequestContextStatistics {
+
+    /**
+     * The number of created request contexts.
+     */
+    private AtomicLong createdCount = new AtomicLong();
+
+    /**
+     * The number of reused request contexts.
+     */
+    private AtomicLong reusedCount = new AtomicLong();
 
     /** {@inheritDoc} */
     public void init(Map<String, String> configParameters) {
@@ -51,22 +69,58 @@ public class PortletTilesContextFactory implements TilesContextFactory {
         return null;
     }
 
+    /** {@inheritDoc} */
+    public long getCreatedRequestContextCount() {
+        return createdCount.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getReusedRequestContextCount() {
+        return reusedCount.get();
+    }
+
     /** {@inheritDoc} */
     public TilesRequestContext createRequestContext(TilesApplicationContext context,
                                                     Object... requestItems) {
         if (requestItems.length == 2) {
             PortletContext portletContext = getPortletContext(context);
             if (portletContext != null) {
-                PortletTilesApplicationContext app = (PortletTilesApplicationContext) context;
-                return new PortletTilesRequestContext(app.getPortletContext(),
-                    (PortletRequest) requestItems[0],
-                    (PortletResponse) requestItems[1]);
+                PortletRequest request = (PortletRequest) requestItems[0];
+                TilesRequestState state = getRequestState(request);
+                TilesRequestContext retValue = state
+                        .getRequestContext(requestItems);
+                if (retValue == null) {
+                    retValue = new PortletTilesRequestContext(portletContext,
+                            request, (PortletResponse) requestItems[1]);
+                    state.setRequestContext(retValue, requestItems);
+                    createdCount.incrementAndGet();
+                } else {
+                    reusedCount.incrementAndGet();
+                }
+                return retValue;
             }
         }
 
         return null;
     }
 
+    /**
+     * Returns the Tiles state of a request, creating it if needed.
+     *
+     * @param request The portlet request.
+     * @return The Tiles state of the request.
+     * @since 2.0.8
+     */
+    protected TilesRequestState getRequestState(PortletRequest request) {
+        TilesRequestState state = (TilesRequestState) request
+                .getAttribute(TilesRequestState.STATE_ATTRIBUTE_NAME);
+        if (state == null) {
+            state = new TilesRequestState();
+            request.setAttribute(TilesRequestState.STATE_ATTRIBUTE_NAME, state);
+        }
+        return state;
+    }
+
     /**
      * Returns the original portlet context.
      *
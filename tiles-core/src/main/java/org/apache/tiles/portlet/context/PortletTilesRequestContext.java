@@ -33,6 +33,7 @@ import javax.portlet.PortletResponse;
 import javax.portlet.RenderRequest;
 import javax.portlet.RenderResponse;
 
+import org.apache.tiles.context.DispatcherCache;
 import org.apache.tiles.context.TilesRequestContext;
 import org.apache.tiles.util.TilesIOException;
 
@@ -98,6 +99,12 @@ public class PortletTilesRequestContext extends PortletTilesApplicationContext i
      */
     protected Map<String, String[]> paramValues = null;
 
+    /**
+     * The lazily obtained cache of the request dispatchers of the
+     * application.
+     */
+    private DispatcherCache<PortletRequestDispatcher> dispatcherCache = null;
+
 
     /**
      * Creates a new instance of PortletTilesRequestContext.
@@ -150,6 +157,7 @@ public class PortletTilesRequestContext extends PortletTilesApplicationContext i
         paramValues = null;
         requestScope = null;
         sessionScope = null;
+        dispatcherCache = null;
 
         // Release references to Portlet API objects
         context = null;
@@ -237,7 +245,7 @@ public class PortletTilesRequestContext extends PortletTilesApplicationContext i
     public void include(String path) throws IOException {
         if (isRenderRequest) {
             try {
-                PortletRequestDispatcher rd = context.getRequestDispatcher(path);
+                PortletRequestDispatcher rd = getRequestDispatcher(path);
 
                 if (rd == null) {
                     throw new IOException(
@@ -255,6 +263,33 @@ public class PortletTilesRequestContext extends PortletTilesApplicationContext i
         }
     }
 
+    /**
+     * Returns the request dispatcher of a path. The dispatchers of paths
+     * without a query string are cached in the {@link DispatcherCache} of the
+     * application.
+     *
+     * @param path The path to dispatch to.
+     * @return The request dispatcher, or <code>null</code> if the path
+     * cannot be dispatched to.
+     * @since 2.0.8
+     */
+    protected PortletRequestDispatcher getRequestDispatcher(String path) {
+        if (!DispatcherCache.isCacheable(path)) {
+            return context.getRequestDispatcher(path);
+        }
+        if (dispatcherCache == null) {
+            dispatcherCache = DispatcherCache.getInstance(this);
+        }
+        PortletRequestDispatcher rd = dispatcherCache.get(path);
+        if (rd == null) {
+            rd = context.getRequestDispatcher(path);
+            if (rd != null) {
+                dispatcherCache.put(path, rd);
+            }
+        }
+        return rd;
+    }
+
     /** {@inheritDoc} */
     public Locale getRequestLocale() {
         if (request != null) {
@@ -24,15 +24,22 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.context.TilesRequestContext;
-import org.apache.tiles.reflect.ClassUtil;
 
-import java.util.HashMap;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Default implementation of the {@link PreparerFactory}.
  * This factory provides no contextual configuration.  It
  * simply instantiates the named preparerInstance and returns it.
+ * <p/>
+ * Each preparer is created once and then shared by all the requests. Getting
+ * an already created preparer does not block and does not use reflection.
+ * The constructors of the preparer classes are cached, so preparers can be
+ * created again cheaply by subclasses.
  *
  * @since Tiles 2.0
  * @version $Rev$ $Date$
@@ -50,11 +57,34 @@ public class BasicPreparerFactory implements PreparerFactory {
      */
     protected Map<String, ViewPreparer> preparers;
 
+    /**
+     * The names of the preparers whose class does not exist.
+     */
+    private Map<String, Boolean> missingPreparers;
+
+    /**
+     * Maps a class name to the constructor used to create preparers.
+     */
+    private Map<String, Constructor<? extends ViewPreparer>> constructors;
+
+    /**
+     * The number of requested preparers that were already available.
+     */
+    private AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * The number of requested preparers that had to be created.
+     */
+    private AtomicLong missCount = new AtomicLong();
+
     /**
      * Constructor.
      */
     public BasicPreparerFactory() {
-        this.preparers = new HashMap<String, ViewPreparer>();
+        this.preparers = new ConcurrentHashMap<String, ViewPreparer>();
+        this.missingPreparers = new ConcurrentHashMap<String, Boolean>();
+        this.constructors =
+            new ConcurrentHashMap<String, Constructor<? extends ViewPreparer>>();
     }
 
 
@@ -70,18 +100,70 @@ public class BasicPreparerFactory implements PreparerFactory {
     public ViewPreparer getPreparer(String name, TilesRequestContext context)
         throws TilesException {
 
-        if (!preparers.containsKey(name)) {
-            preparers.put(name, createPreparer(name));
+        ViewPreparer preparer = preparers.get(name);
+        if (preparer != null || missingPreparers.containsKey(name)) {
+            hitCount.incrementAndGet();
+            return preparer;
+        }
+
+        // Preparers are created only once, even when many requests need the
+        // same preparer at the same time.
+        synchronized (this) {
+            preparer = preparers.get(name);
+            if (preparer != null || missingPreparers.containsKey(name)) {
+                hitCount.incrementAndGet();
+                return preparer;
+            }
+            missCount.incrementAndGet();
+            preparer = createPreparer(name);
+            if (preparer != null) {
+                preparers.put(name, preparer);
+            } else {
+                missingPreparers.put(name, Boolean.TRUE);
+            }
         }
 
-        return preparers.get(name);
+        return preparer;
+    }
+
+    /**
+     * Returns the number of times a requested preparer was already
+     * available, including the ones whose class is known to be missing.
+     *
+     * @return The number of hits.
+     * @since 2.0.8
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of times a requested preparer had to be created.
+     *
+     * @return The number of misses.
+     * @since 2.0.8
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of preparers that have been created and are kept by
+     * this factory.
+     *
+     * @return The number of cached preparers.
+     * @since 2.0.8
+     */
+    public int getCacheSize() {
+        return preparers.size();
     }
 
     /**
      * Creates a view preparer for the given name.
      *
      * @param name The name of the preparer.
-     * @return The created preparer.
+     * @return The created preparer, or <code>null</code> if the class does not
+     * exist.
      * @throws TilesException If something goes wrong during instantiation, or
      * if the created object is not an instance of <code>ViewPreparer</code>.
      */
@@ -91,9 +173,67 @@ public class BasicPreparerFactory implements PreparerFactory {
             LOG.debug("Creating ViewPreparer '" + name + "' . . .");
         }
 
-        Object instance = ClassUtil.instantiate(name, true);
+        Constructor<? extends ViewPreparer> constructor = getConstructor(name);
+        if (constructor == null) {
+            return null;
+        }
+        ViewPreparer instance;
+        try {
+            instance = constructor.newInstance();
+        } catch (InstantiationException e) {
+            throw new TilesException("Unable to instantiate preparer class: '"
+                    + name + "'", e);
+        } catch (IllegalAccessException e) {
+            throw new TilesException("Unable to access preparer class: '"
+                    + name + "'", e);
+        } catch (InvocationTargetException e) {
+            throw new TilesException("The constructor of preparer class: '"
+                    + name + "' threw an exception", e);
+        }
         LOG.debug("ViewPreparer created successfully");
-        return (ViewPreparer) instance;
+        return instance;
 
     }
+
+    /**
+     * Returns the default constructor of a preparer class, loading the class
+     * the first time.
+     *
+     * @param className The name of the preparer class.
+     * @return The constructor, or <code>null</code> if the class does not
+     * exist.
+     * @throws TilesException If the class is not a <code>ViewPreparer</code>
+     * or it has no public default constructor.
+     * @since 2.0.8
+     */
+    protected Constructor<? extends ViewPreparer> getConstructor(
+            String className) throws TilesException {
+        Constructor<? extends ViewPreparer> constructor = constructors
+                .get(className);
+        if (constructor != null) {
+            return constructor;
+        }
+
+        Class<?> namedClass;
+        try {
+            namedClass = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!ViewPreparer.class.isAssignableFrom(namedClass)) {
+            throw new TilesException("The class '" + className
+                    + "' is not a ViewPreparer");
+        }
+        try {
+            constructor = namedClass.asSubclass(ViewPreparer.class)
+                    .getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new TilesException("Unable to instantiate preparer class: '"
+                    + className
+                    + "'. Make sure that this class has a default constructor",
+                    e);
+        }
+        constructors.put(className, constructor);
+        return constructor;
+    }
 }
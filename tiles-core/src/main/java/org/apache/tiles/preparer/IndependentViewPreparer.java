@@ -0,0 +1,52 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.preparer;
+
+/**
+ * A view preparer that can be executed in another thread, before the
+ * definition it belongs to is rendered. When the container is configured to
+ * run preparers in parallel, it starts the independent preparers of all the
+ * definitions that a page is expected to render, and each definition waits
+ * for the result of its own preparer before it is rendered.
+ * <p/>
+ * To be independent, a preparer must follow these rules:
+ * <ul>
+ * <li>it reads the attributes of its own definition and the ones passed to
+ * it by the caller and by the definitions that include it, as they are when
+ * the rendering starts: the attributes put later by templates and by other
+ * preparers are not visible;</li>
+ * <li>it only puts new attributes in the attribute context, without removing
+ * the existing ones;</li>
+ * <li>it only reads the headers, the parameters, the locale and the request
+ * scope of the request. It receives a read-only copy of them: the session
+ * scope, the roles, the underlying request and response, dispatching and
+ * including throw an <code>UnsupportedOperationException</code>;</li>
+ * <li>it can be called by more than one thread at the same time.</li>
+ * </ul>
+ * The render listeners are notified of the execution of the preparer by the
+ * thread of the request, when its definition is rendered.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface IndependentViewPreparer extends ViewPreparer {
+}
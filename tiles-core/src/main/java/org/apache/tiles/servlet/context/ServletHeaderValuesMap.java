@@ -20,21 +20,32 @@
  */
 package org.apache.tiles.servlet.context;
 
-
-import org.apache.tiles.context.MapEntry;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.*;
 
+import org.apache.tiles.context.AbstractScopeMap;
 
 /**
  * <p>Private implementation of <code>Map</code> for servlet request
  * name-values[].</p>
+ * <p>The headers of a request do not change, so the array of the values of
+ * a header is built the first time it is requested, and then reused.</p>
  *
  * @version $Rev$ $Date$
  */
 
-final class ServletHeaderValuesMap implements Map<String, String[]> {
+final class ServletHeaderValuesMap extends AbstractScopeMap<String[]> {
+
+
+    /**
+     * The values of a header that is not present.
+     */
+    private static final String[] NO_VALUES = new String[0];
 
 
     /**
@@ -53,190 +64,52 @@ final class ServletHeaderValuesMap implements Map<String, String[]> {
     private HttpServletRequest request = null;
 
 
-    /** {@inheritDoc} */
-    public void clear() {
-        throw new UnsupportedOperationException();
-    }
+    /**
+     * The values of the headers that have been requested, mapped by header
+     * name.
+     */
+    private Map<String, String[]> values = null;
 
 
     /** {@inheritDoc} */
+    @Override
     public boolean containsKey(Object key) {
-        return (request.getHeader(key(key)) != null);
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean containsValue(Object value) {
-        if (!(value instanceof String[])) {
-            return (false);
-        }
-        String[] test = (String[]) value;
-        Iterator<String[]> values = values().iterator();
-        while (values.hasNext()) {
-            String[] actual = values.next();
-            if (test.length == actual.length) {
-                boolean matched = true;
-                for (int i = 0; i < test.length; i++) {
-                    if (!test[i].equals(actual[i])) {
-                        matched = false;
-                        break;
-                    }
-                }
-                if (matched) {
-                    return (true);
-                }
-            }
+        if (key == null) {
+            throw new IllegalArgumentException();
         }
-        return (false);
+        return request.getHeader(key.toString()) != null;
     }
 
 
     /** {@inheritDoc} */
+    @Override
     @SuppressWarnings("unchecked")
-    public Set<Map.Entry<String, String[]>> entrySet() {
-        Set<Map.Entry<String, String[]>> set = new HashSet<Map.Entry<String, String[]>>();
-        Enumeration<String> keys = request.getHeaderNames();
-        String key;
-        while (keys.hasMoreElements()) {
-            key = keys.nextElement();
-            Enumeration<String> headerEnum = request.getHeaders(key);
-            set.add(new MapEntry<String, String[]>(key,
-                    enumeration2array(headerEnum), false));
+    protected String[] getValue(String key) {
+        String[] retValue = values != null ? values.get(key) : null;
+        if (retValue != null) {
+            return retValue;
         }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-	public boolean equals(Object o) {
-        HttpServletRequest otherRequest = ((ServletHeaderValuesMap) o).request;
-        boolean retValue = true;
-        synchronized (request) {
-            for (Enumeration<String> attribs = request.getHeaderNames(); attribs
-                    .hasMoreElements()
-                    && retValue;) {
-                String parameterName = attribs.nextElement();
-                retValue = request.getHeaders(parameterName).equals(
-                        otherRequest.getHeaders(parameterName));
-            }
+        Enumeration<String> headers = request.getHeaders(key);
+        if (headers == null || !headers.hasMoreElements()) {
+            return NO_VALUES;
         }
-
-        return retValue;
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-	public String[] get(Object key) {
         List<String> list = new ArrayList<String>();
-        Enumeration<String> values = request.getHeaders(key(key));
-        while (values.hasMoreElements()) {
-            list.add(values.nextElement());
+        while (headers.hasMoreElements()) {
+            list.add(headers.nextElement());
         }
-        return ((list.toArray(new String[list.size()])));
-    }
-
-
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return (request.hashCode());
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean isEmpty() {
-        return (size() < 1);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Set<String> keySet() {
-        Set<String> set = new HashSet<String>();
-        Enumeration<String> keys = request.getHeaderNames();
-        while (keys.hasMoreElements()) {
-            set.add(keys.nextElement());
-        }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    public String[] put(String key, String[] value) {
-        throw new UnsupportedOperationException();
-    }
-
-
-    /** {@inheritDoc} */
-    public void putAll(Map<? extends String, ? extends String[]> map) {
-        throw new UnsupportedOperationException();
-    }
-
-
-    /** {@inheritDoc} */
-    public String[] remove(Object key) {
-        throw new UnsupportedOperationException();
-    }
-
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public int size() {
-        int n = 0;
-        Enumeration<String> keys = request.getHeaderNames();
-        while (keys.hasMoreElements()) {
-            keys.nextElement();
-            n++;
+        retValue = list.toArray(new String[list.size()]);
+        if (values == null) {
+            values = new HashMap<String, String[]>();
         }
-        return (n);
+        values.put(key, retValue);
+        return retValue;
     }
 
 
     /** {@inheritDoc} */
+    @Override
     @SuppressWarnings("unchecked")
-	public Collection<String[]> values() {
-        List<String[]> list = new ArrayList<String[]>();
-        Enumeration<String> keys = request.getHeaderNames();
-        while (keys.hasMoreElements()) {
-            String key = keys.nextElement();
-            Enumeration<String> values = request.getHeaders(key);
-            list.add(enumeration2array(values));
-        }
-        return (list);
-    }
-
-
-    /**
-     * Returns the string representation of the key.
-     *
-     * @param key The key.
-     * @return The string representation of the key.
-     * @throws IllegalArgumentException If the key is <code>null</code>.
-     */
-    private String key(Object key) {
-        if (key == null) {
-            throw new IllegalArgumentException();
-        } else if (key instanceof String) {
-            return ((String) key);
-        } else {
-            return (key.toString());
-        }
-    }
-
-    /**
-     * Converts the content of a string enumeration to an array of strings.
-     *
-     * @param enumeration The enumeration to convert.
-     * @return The corresponding array.
-     */
-    private String[] enumeration2array(Enumeration<String> enumeration) {
-        List<String> list1 = new ArrayList<String>();
-        while (enumeration.hasMoreElements()) {
-            list1.add(enumeration.nextElement());
-        }
-        
-        return list1.toArray(new String[list1.size()]);
+    protected Enumeration<String> getKeys() {
+        return request.getHeaderNames();
     }
 }
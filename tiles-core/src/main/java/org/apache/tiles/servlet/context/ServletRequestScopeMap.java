@@ -20,18 +20,11 @@
  */
 package org.apache.tiles.servlet.context;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.servlet.ServletRequest;
 
-import org.apache.tiles.context.MapEntry;
+import org.apache.tiles.context.AbstractScopeMap;
 
 /**
  * <p>Private implementation of <code>Map</code> for servlet request
@@ -40,7 +33,7 @@ import org.apache.tiles.context.MapEntry;
  * @version $Rev$ $Date$
  */
 
-final class ServletRequestScopeMap implements Map<String, Object> {
+final class ServletRequestScopeMap extends AbstractScopeMap<Object> {
 
 
     /**
@@ -60,173 +53,30 @@ final class ServletRequestScopeMap implements Map<String, Object> {
 
 
     /** {@inheritDoc} */
-    public void clear() {
-        Iterator<String> keys = keySet().iterator();
-        while (keys.hasNext()) {
-            request.removeAttribute(keys.next());
-        }
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean containsKey(Object key) {
-        return (request.getAttribute(key(key)) != null);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public boolean containsValue(Object value) {
-        if (value == null) {
-            return (false);
-        }
-        Enumeration<String> keys = request.getAttributeNames();
-        while (keys.hasMoreElements()) {
-            Object next = request.getAttribute(keys.nextElement());
-            if (next == value) {
-                return (true);
-            }
-        }
-        return (false);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Set<Map.Entry<String, Object>> entrySet() {
-        Set<Map.Entry<String, Object>> set = new HashSet<Map.Entry<String, Object>>();
-        Enumeration<String> keys = request.getAttributeNames();
-        String key;
-        while (keys.hasMoreElements()) {
-            key = keys.nextElement();
-            set.add(new MapEntry<String, Object>(key,
-                    request.getAttribute(key), true));
-        }
-        return (set);
+    @Override
+    protected Object getValue(String key) {
+        return request.getAttribute(key);
     }
 
 
     /** {@inheritDoc} */
+    @Override
     @SuppressWarnings("unchecked")
-    public boolean equals(Object o) {
-        ServletRequest otherRequest = ((ServletRequestScopeMap) o).request;
-        boolean retValue = true;
-        synchronized (request) {
-            for (Enumeration<String> attribs = request.getAttributeNames(); attribs
-                    .hasMoreElements()
-                    && retValue;) {
-                String attributeName = attribs.nextElement();
-                retValue = request.getAttribute(attributeName).equals(
-                        otherRequest.getAttribute(attributeName));
-            }
-        }
-
-        return retValue;
+    protected Enumeration<String> getKeys() {
+        return request.getAttributeNames();
     }
 
 
     /** {@inheritDoc} */
-    public Object get(Object key) {
-        return (request.getAttribute(key(key)));
-    }
-
-
-    /** {@inheritDoc} */
-    public int hashCode() {
-        return (request.hashCode());
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean isEmpty() {
-        return (size() < 1);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Set<String> keySet() {
-        Set<String> set = new HashSet<String>();
-        Enumeration<String> keys = request.getAttributeNames();
-        while (keys.hasMoreElements()) {
-            set.add(keys.nextElement());
-        }
-        return (set);
+    @Override
+    protected void setValue(String key, Object value) {
+        request.setAttribute(key, value);
     }
 
 
     /** {@inheritDoc} */
-    public Object put(String key, Object value) {
-        if (value == null) {
-            return (remove(key));
-        }
-        String skey = key(key);
-        Object previous = request.getAttribute(skey);
-        request.setAttribute(skey, value);
-        return (previous);
+    @Override
+    protected void removeValue(String key) {
+        request.removeAttribute(key);
     }
-
-
-    /** {@inheritDoc} */
-    public void putAll(Map<? extends String, ? extends Object> map) {
-        Iterator<? extends String> keys = map.keySet().iterator();
-        while (keys.hasNext()) {
-            String key = keys.next();
-            request.setAttribute(key, map.get(key));
-        }
-    }
-
-
-    /** {@inheritDoc} */
-    public Object remove(Object key) {
-        String skey = key(key);
-        Object previous = request.getAttribute(skey);
-        request.removeAttribute(skey);
-        return (previous);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public int size() {
-        int n = 0;
-        Enumeration<String> keys = request.getAttributeNames();
-        while (keys.hasMoreElements()) {
-            keys.nextElement();
-            n++;
-        }
-        return (n);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Collection<Object> values() {
-        List<Object> list = new ArrayList<Object>();
-        Enumeration<String> keys = request.getAttributeNames();
-        while (keys.hasMoreElements()) {
-            list.add(request.getAttribute(keys.nextElement()));
-        }
-        return (list);
-    }
-
-
-    /**
-     * Returns the string representation of the key.
-     *
-     * @param key The key.
-     * @return The string representation of the key.
-     * @throws IllegalArgumentException If the key is <code>null</code>.
-     */
-    private String key(Object key) {
-        if (key == null) {
-            throw new IllegalArgumentException();
-        } else if (key instanceof String) {
-            return ((String) key);
-        } else {
-            return (key.toString());
-        }
-    }
-
-
 }
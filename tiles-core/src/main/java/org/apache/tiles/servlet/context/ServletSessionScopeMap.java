@@ -20,29 +20,24 @@
  */
 package org.apache.tiles.servlet.context;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
-
 import javax.servlet.http.HttpSession;
 
-import org.apache.tiles.context.MapEntry;
+import org.apache.tiles.context.AbstractScopeMap;
 
 /**
  * <p>Private implementation of <code>Map</code> for HTTP session
  * attributes.</p>
+ * <p>The session is looked up once and then reused. If there is no session
+ * yet, it is looked up again on each call, and it is created only when an
+ * attribute is put.</p>
  *
  * @version $Rev$ $Date$
  */
 
-final class ServletSessionScopeMap implements Map<String, Object> {
+final class ServletSessionScopeMap extends AbstractScopeMap<Object> {
 
 
     /**
@@ -54,224 +49,113 @@ final class ServletSessionScopeMap implements Map<String, Object> {
         this.request = request;
     }
 
+
     /**
      * The request object to use.
      */
     private HttpServletRequest request = null;
 
-    /** {@inheritDoc} */
-    public void clear() {
-        HttpSession session = request.getSession(false);
-        if (session != null) {
-            Iterator<String> keys = keySet().iterator();
-            while (keys.hasNext()) {
-                session.removeAttribute(keys.next());
-            }
-        }
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean containsKey(Object key) {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            return false;
-        }
-
-        return (session.getAttribute(key(key)) != null);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public boolean containsValue(Object value) {
-        HttpSession session = request.getSession(false);
-        if (session == null || value == null) {
-            return (false);
-        }
-        Enumeration<String> keys = session.getAttributeNames();
-        while (keys.hasMoreElements()) {
-            Object next = session.getAttribute(keys.nextElement());
-            if (next == value) {
-                return (true);
-            }
-        }
-        return (false);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Set<Map.Entry<String, Object>> entrySet() {
-        HttpSession session = request.getSession(false);
-        Set<Map.Entry<String, Object>> set = new HashSet<Map.Entry<String, Object>>();
-        if (session != null) {
-            Enumeration<String> keys = session.getAttributeNames();
-            String key;
-            while (keys.hasMoreElements()) {
-                key = keys.nextElement();
-                set.add(new MapEntry<String, Object>(key,
-                        session.getAttribute(key), true));
-            }
-        }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public boolean equals(Object o) {
-        boolean retValue = true;
 
-        HttpSession session = request.getSession(false);
-        synchronized (session) {
-            HttpSession otherSession = ((ServletSessionScopeMap) o).request
-                    .getSession(false);
-            if (session == null) {
-                retValue = otherSession == null;
-            } else {
-                for (Enumeration<String> attribs = session.getAttributeNames(); attribs
-                        .hasMoreElements()
-                        && retValue;) {
-                    String attributeName = attribs.nextElement();
-                    retValue = session.getAttribute(attributeName).equals(
-                            otherSession.getAttribute(attributeName));
-                }
-            }
-        }
-
-        return retValue;
-    }
+    /**
+     * The session, once it has been found.
+     */
+    private HttpSession session = null;
 
 
     /** {@inheritDoc} */
-    public Object get(Object key) {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
+    @Override
+    protected Object getValue(String key) {
+        HttpSession current = getSession(false);
+        if (current == null) {
             return null;
         }
-
-        return (session.getAttribute(key(key)));
-    }
-
-
-    /** {@inheritDoc} */
-    public int hashCode() {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            return 0;
+        try {
+            return current.getAttribute(key);
+        } catch (IllegalStateException e) {
+            current = getNewSession(false);
+            return current != null ? current.getAttribute(key) : null;
         }
-
-        return (session.hashCode());
-    }
-
-
-    /** {@inheritDoc} */
-    public boolean isEmpty() {
-        return (size() < 1);
     }
 
 
     /** {@inheritDoc} */
+    @Override
     @SuppressWarnings("unchecked")
-    public Set<String> keySet() {
-        HttpSession session = request.getSession(false);
-        Set<String> set = new HashSet<String>();
-        if (session != null) {
-            Enumeration<String> keys = session.getAttributeNames();
-            while (keys.hasMoreElements()) {
-                set.add(keys.nextElement());
-            }
+    protected Enumeration<String> getKeys() {
+        HttpSession current = getSession(false);
+        if (current == null) {
+            return emptyKeys();
         }
-        return (set);
-    }
-
-
-    /** {@inheritDoc} */
-    public Object put(String key, Object value) {
-        HttpSession session = request.getSession();
-        if (value == null) {
-            return (remove(key));
+        try {
+            return current.getAttributeNames();
+        } catch (IllegalStateException e) {
+            current = getNewSession(false);
+            return current != null ? current.getAttributeNames()
+                    : emptyKeys();
         }
-        String skey = key(key);
-        Object previous = session.getAttribute(skey);
-        session.setAttribute(skey, value);
-        return (previous);
     }
 
 
     /** {@inheritDoc} */
-    public void putAll(Map<? extends String, ? extends Object> map) {
-        HttpSession session = request.getSession();
-        Iterator<? extends String> keys = map.keySet().iterator();
-        while (keys.hasNext()) {
-            String key = keys.next();
-            session.setAttribute(key, map.get(key));
+    @Override
+    protected void setValue(String key, Object value) {
+        try {
+            getSession(true).setAttribute(key, value);
+        } catch (IllegalStateException e) {
+            getNewSession(true).setAttribute(key, value);
         }
     }
 
 
     /** {@inheritDoc} */
-    public Object remove(Object key) {
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            return null;
+    @Override
+    protected void removeValue(String key) {
+        HttpSession current = getSession(false);
+        if (current == null) {
+            return;
         }
-
-        String skey = key(key);
-        Object previous = session.getAttribute(skey);
-        session.removeAttribute(skey);
-        return (previous);
-    }
-
-
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public int size() {
-        HttpSession session = request.getSession(false);
-        int n = 0;
-        if (session != null) {
-            Enumeration<String> keys = session.getAttributeNames();
-            while (keys.hasMoreElements()) {
-                keys.nextElement();
-                n++;
+        try {
+            current.removeAttribute(key);
+        } catch (IllegalStateException e) {
+            current = getNewSession(false);
+            if (current != null) {
+                current.removeAttribute(key);
             }
         }
-        return (n);
     }
 
 
-    /** {@inheritDoc} */
-    @SuppressWarnings("unchecked")
-    public Collection<Object> values() {
-        HttpSession session = request.getSession(false);
-        List<Object> list = new ArrayList<Object>();
-        if (session != null) {
-            Enumeration<String> keys = session.getAttributeNames();
-            while (keys.hasMoreElements()) {
-                list.add(session.getAttribute(keys.nextElement()));
-            }
+    /**
+     * Returns the session, looking it up if it has not been found yet.
+     *
+     * @param create If <code>true</code> the session is created if it does
+     * not exist.
+     * @return The session, or <code>null</code> if it does not exist and
+     * <code>create</code> is <code>false</code>.
+     */
+    private HttpSession getSession(boolean create) {
+        if (session == null) {
+            return getNewSession(create);
         }
-        return (list);
+        return session;
     }
 
 
     /**
-     * Returns the string representation of the key.
+     * Looks up the session in the request, replacing the one that has been
+     * found, for example because it has been invalidated.
      *
-     * @param key The key.
-     * @return The string representation of the key.
-     * @throws IllegalArgumentException If the key is <code>null</code>.
+     * @param create If <code>true</code> the session is created if it does
+     * not exist.
+     * @return The session, or <code>null</code> if it does not exist and
+     * <code>create</code> is <code>false</code>.
      */
-    private String key(Object key) {
-        if (key == null) {
-            throw new IllegalArgumentException();
-        } else if (key instanceof String) {
-            return ((String) key);
+    private HttpSession getNewSession(boolean create) {
+        if (create) {
+            session = request.getSession();
         } else {
-            return (key.toString());
+            session = request.getSession(false);
         }
+        return session;
     }
-
-
 }
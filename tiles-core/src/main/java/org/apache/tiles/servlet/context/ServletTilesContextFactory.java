@@ -22,20 +22,38 @@
 package org.apache.tiles.servlet.context;
 
 import org.apache.tiles.TilesApplicationContext;
+import org.apache.tiles.context.RequestContextStatistics;
 import org.apache.tiles.context.TilesContextFactory;
 import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Creates an instance of the appropriate TilesApplicationContext implementation.
+ * <p/>
+ * The request context created for a request and a response is stored in the
+ * {@link org.apache.tiles.context.TilesRequestState} of the request, and it is
+ * reused while the same objects are passed.
  *
  * @version $Rev$ $Date$
  */
-public class ServletTilesContextFactory implements TilesContextFactory {
+public class ServletTilesContextFactory implements TilesContextFactory,
+        RequestContextStatistics {
+
+    /**
+     * The number of created request contexts.
+     */
+    private AtomicLong createdCount = new AtomicLong();
+
+    /**
+     * The number of reused request contexts.
+     */
+    private AtomicLong reusedCount = new AtomicLong();
 
     /** {@inheritDoc} */
     public void init(Map<String, String> configParameters) {
@@ -50,15 +68,35 @@ public class ServletTilesContextFactory implements TilesContextFactory {
         return null;
     }
 
+    /** {@inheritDoc} */
+    public long getCreatedRequestContextCount() {
+        return createdCount.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getReusedRequestContextCount() {
+        return reusedCount.get();
+    }
+
     /** {@inheritDoc} */
     public TilesRequestContext createRequestContext(TilesApplicationContext context,
                                                     Object... requestItems) {
         if (requestItems.length == 2) {
             ServletContext servletContext = getServletContext(context);
             if (servletContext != null) {
-                return new ServletTilesRequestContext(servletContext,
-                    (HttpServletRequest) requestItems[0],
-                    (HttpServletResponse) requestItems[1]);
+                HttpServletRequest request = (HttpServletRequest) requestItems[0];
+                TilesRequestState state = ServletUtil.getRequestState(request);
+                TilesRequestContext retValue = state
+                        .getRequestContext(requestItems);
+                if (retValue == null) {
+                    retValue = new ServletTilesRequestContext(servletContext,
+                            request, (HttpServletResponse) requestItems[1]);
+                    state.setRequestContext(retValue, requestItems);
+                    createdCount.incrementAndGet();
+                } else {
+                    reusedCount.incrementAndGet();
+                }
+                return retValue;
             }
         }
 
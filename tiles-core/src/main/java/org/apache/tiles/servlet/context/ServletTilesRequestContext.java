@@ -21,6 +21,7 @@
 package org.apache.tiles.servlet.context;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.Locale;
 import java.util.Map;
 
@@ -30,6 +31,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.DispatcherCache;
 import org.apache.tiles.context.TilesRequestContext;
 import org.apache.tiles.util.TilesIOException;
 
@@ -38,7 +41,8 @@ import org.apache.tiles.util.TilesIOException;
  *
  * @version $Rev$ $Date$
  */
-public class ServletTilesRequestContext extends ServletTilesApplicationContext implements TilesRequestContext {
+public class ServletTilesRequestContext extends ServletTilesApplicationContext
+        implements CapturingTilesRequestContext {
 
     /**
      * The request object to use.
@@ -90,6 +94,12 @@ public class ServletTilesRequestContext extends ServletTilesApplicationContext i
      */
     private Map<String, Object> sessionScope = null;
 
+    /**
+     * The lazily obtained cache of the request dispatchers of the
+     * application.
+     */
+    private DispatcherCache<RequestDispatcher> dispatcherCache = null;
+
 
     /**
      * Creates a new instance of ServletTilesRequestContext.
@@ -187,7 +197,7 @@ public class ServletTilesRequestContext extends ServletTilesApplicationContext i
      * @throws IOException If something goes wrong during the operation.
      */
     protected void forward(String path) throws IOException {
-        RequestDispatcher rd = request.getRequestDispatcher(path);
+        RequestDispatcher rd = getRequestDispatcher(path);
 
         if (rd == null) {
             throw new IOException("No request dispatcher returned for path '"
@@ -206,7 +216,7 @@ public class ServletTilesRequestContext extends ServletTilesApplicationContext i
     /** {@inheritDoc} */
     public void include(String path) throws IOException {
         ServletUtil.setForceInclude(request, true);
-        RequestDispatcher rd = request.getRequestDispatcher(path);
+        RequestDispatcher rd = getRequestDispatcher(path);
 
         if (rd == null) {
             throw new IOException("No request dispatcher returned for path '"
@@ -221,6 +231,65 @@ public class ServletTilesRequestContext extends ServletTilesApplicationContext i
         }
     }
 
+    /**
+     * Returns the request dispatcher of a path. The dispatchers of absolute
+     * paths without a query string are obtained from the servlet context and
+     * cached in the {@link DispatcherCache} of the application.
+     *
+     * @param path The path to dispatch to.
+     * @return The request dispatcher, or <code>null</code> if the path
+     * cannot be dispatched to.
+     * @since 2.0.8
+     */
+    protected RequestDispatcher getRequestDispatcher(String path) {
+        if (!DispatcherCache.isCacheable(path)) {
+            return request.getRequestDispatcher(path);
+        }
+        if (dispatcherCache == null) {
+            dispatcherCache = DispatcherCache.getInstance(this);
+        }
+        RequestDispatcher rd = dispatcherCache.get(path);
+        if (rd == null) {
+            rd = getServletContext().getRequestDispatcher(path);
+            if (rd != null) {
+                dispatcherCache.put(path, rd);
+            }
+        }
+        return rd;
+    }
+
+    /** {@inheritDoc} */
+    public Writer getWriter() throws IOException {
+        return getResponse().getWriter();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned context includes paths with a {@link WriterResponseWrapper}
+     * around the response of this request.
+     */
+    public TilesRequestContext createCapturingContext(Writer writer) {
+        final WriterResponseWrapper wrapper = new WriterResponseWrapper(
+                response, writer);
+        return new ServletTilesRequestContext(getServletContext(), request,
+                wrapper) {
+
+            /** {@inheritDoc} */
+            @Override
+            public void dispatch(String path) throws IOException {
+                include(path);
+            }
+
+            /** {@inheritDoc} */
+            @Override
+            public void include(String path) throws IOException {
+                super.include(path);
+                wrapper.flushBuffer();
+            }
+        };
+    }
+
     /** {@inheritDoc} */
     public Locale getRequestLocale() {
         return request.getLocale();
@@ -267,6 +336,7 @@ public class ServletTilesRequestContext extends ServletTilesApplicationContext i
         paramValues = null;
         requestScope = null;
         sessionScope = null;
+        dispatcherCache = null;
 
         // Release references to Servlet API objects
         request = null;
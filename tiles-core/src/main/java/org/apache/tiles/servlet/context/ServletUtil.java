@@ -21,8 +21,11 @@
 
 package org.apache.tiles.servlet.context;
 
+import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.tiles.context.TilesRequestState;
+
 
 /**
  * Utilities for Tiles servlet support.
@@ -35,7 +38,10 @@ public final class ServletUtil {
     /**
      * Name of the attribute used to store the force-include option.
      * @since 2.0.6
+     * @deprecated The force-include option is stored in the
+     * {@link TilesRequestState}.
      */
+    @Deprecated
     public static final String FORCE_INCLUDE_ATTRIBUTE_NAME =
         "org.apache.tiles.servlet.context.ServletTilesRequestContext.FORCE_INCLUDE";
 
@@ -53,9 +59,9 @@ public final class ServletUtil {
      * @since 2.0.6
      */
     public static boolean isForceInclude(HttpServletRequest request) {
-        Boolean retValue = (Boolean) request
-                .getAttribute(ServletUtil.FORCE_INCLUDE_ATTRIBUTE_NAME);
-        return retValue != null && retValue.booleanValue();
+        TilesRequestState state = (TilesRequestState) request
+                .getAttribute(TilesRequestState.STATE_ATTRIBUTE_NAME);
+        return state != null && state.isForceInclude();
     }
 
     /**
@@ -68,9 +74,23 @@ public final class ServletUtil {
      */
     public static void setForceInclude(HttpServletRequest request,
             boolean forceInclude) {
-        Boolean retValue = Boolean.valueOf(forceInclude);
-        request.setAttribute(
-                ServletUtil.FORCE_INCLUDE_ATTRIBUTE_NAME,
-                retValue);
+        getRequestState(request).setForceInclude(forceInclude);
+    }
+
+    /**
+     * Returns the Tiles state of a request, creating it if needed.
+     *
+     * @param request The request.
+     * @return The Tiles state of the request.
+     * @since 2.0.8
+     */
+    public static TilesRequestState getRequestState(ServletRequest request) {
+        TilesRequestState state = (TilesRequestState) request
+                .getAttribute(TilesRequestState.STATE_ATTRIBUTE_NAME);
+        if (state == null) {
+            state = new TilesRequestState();
+            request.setAttribute(TilesRequestState.STATE_ATTRIBUTE_NAME, state);
+        }
+        return state;
     }
 }
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.servlet.context;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response that writes its body into a writer, instead of the wrapped
+ * response. Headers are still set on the wrapped response.
+ * <p/>
+ * Bytes written to the output stream are kept until {@link #flushBuffer()} is
+ * called, then they are decoded with the character encoding of the response
+ * and written into the writer.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class WriterResponseWrapper extends HttpServletResponseWrapper {
+
+    /**
+     * The writer that receives the body.
+     */
+    private Writer writer;
+
+    /**
+     * The print writer around {@link #writer}.
+     */
+    private PrintWriter printWriter;
+
+    /**
+     * The bytes written to the output stream and not yet decoded.
+     */
+    private ByteArrayOutputStream bytes;
+
+    /**
+     * The output stream that writes into {@link #bytes}.
+     */
+    private ServletOutputStream outputStream;
+
+    /**
+     * Constructor.
+     *
+     * @param response The response to wrap.
+     * @param writer The writer that receives the body.
+     */
+    public WriterResponseWrapper(HttpServletResponse response, Writer writer) {
+        super(response);
+        this.writer = writer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (printWriter == null) {
+            printWriter = new PrintWriter(writer);
+        }
+        return printWriter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            bytes = new ByteArrayOutputStream();
+            outputStream = new ServletOutputStream() {
+
+                /** {@inheritDoc} */
+                @Override
+                public void write(int b) {
+                    bytes.write(b);
+                }
+
+                /** {@inheritDoc} */
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes.write(b, off, len);
+                }
+            };
+        }
+        return outputStream;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The wrapped response is not flushed: the pending output is written into
+     * the writer.
+     */
+    @Override
+    public void flushBuffer() throws IOException {
+        if (printWriter != null) {
+            printWriter.flush();
+        }
+        if (bytes != null && bytes.size() > 0) {
+            String encoding = getCharacterEncoding();
+            writer.write(encoding != null ? bytes.toString(encoding) : bytes
+                    .toString());
+            bytes.reset();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The body is never sent to the client, so the response is never
+     * committed.
+     */
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The length of the body is not known by the wrapped response, so it is
+     * ignored.
+     */
+    @Override
+    public void setContentLength(int len) {
+        // Not the length of the wrapped response.
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Buffers are not reset, since the output may already be in the writer.
+     */
+    @Override
+    public void resetBuffer() {
+        // Ignored, as in included resources.
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The response is not reset, since the output may already be in the
+     * writer.
+     */
+    @Override
+    public void reset() {
+        // Ignored, as in included resources.
+    }
+}
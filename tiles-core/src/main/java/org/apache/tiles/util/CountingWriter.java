@@ -0,0 +1,98 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer that counts the characters written through it into another writer.
+ * <p/>
+ * Flushing this writer does not flush the target writer, so that the owner of
+ * the target decides when it is committed.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class CountingWriter extends Writer {
+
+    /**
+     * The target writer.
+     */
+    private Writer writer;
+
+    /**
+     * The number of characters written.
+     */
+    private long count;
+
+    /**
+     * Constructor.
+     *
+     * @param writer The writer where characters are written.
+     */
+    public CountingWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Returns the number of characters written.
+     *
+     * @return The number of characters.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(int c) throws IOException {
+        writer.write(c);
+        count++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        writer.write(cbuf, off, len);
+        count += len;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        writer.write(str, off, len);
+        count += len;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() {
+        // The target is flushed by its owner.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // The target is closed by its owner.
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer that keeps the characters written into it in a growing array. It
+ * can be reset and used again, so that its array is reused, for example by a
+ * {@link RenderBufferPool}.
+ * <p/>
+ * Unlike {@link java.io.CharArrayWriter}, this class is not synchronized: a
+ * buffer must be used by one thread at a time.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class RenderBuffer extends Writer {
+
+    /**
+     * The default initial capacity, in characters.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The characters.
+     */
+    private char[] chars;
+
+    /**
+     * The number of characters written.
+     */
+    private int length;
+
+    /**
+     * Constructor, with the default initial capacity.
+     */
+    public RenderBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity The initial capacity, in characters.
+     */
+    public RenderBuffer(int capacity) {
+        chars = new char[capacity > 0 ? capacity : DEFAULT_CAPACITY];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(int c) {
+        ensureCapacity(length + 1);
+        chars[length++] = (char) c;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(cbuf, off, chars, length, len);
+        length += len;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(String str) {
+        write(str, 0, str.length());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(String str, int off, int len) {
+        ensureCapacity(length + len);
+        str.getChars(off, off + len, chars, length);
+        length += len;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Writer append(CharSequence csq) {
+        String str = String.valueOf(csq);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() {
+        // Nothing to flush.
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // The buffer can still be used.
+    }
+
+    /**
+     * Writes the content of the buffer into another writer, without copying
+     * it.
+     *
+     * @param writer The writer.
+     * @throws IOException If something goes wrong during writing.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(chars, 0, length);
+    }
+
+    /**
+     * Returns the number of characters written.
+     *
+     * @return The length of the content.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the size of the array that keeps the characters.
+     *
+     * @return The capacity, in characters.
+     */
+    public int capacity() {
+        return chars.length;
+    }
+
+    /**
+     * Removes the content, keeping the array.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Returns the content.
+     *
+     * @return The content of the buffer.
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Makes room for the given number of characters.
+     *
+     * @param capacity The needed capacity.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            char[] newChars = new char[Math.max(chars.length * 2, capacity)];
+            System.arraycopy(chars, 0, newChars, 0, length);
+            chars = newChars;
+        }
+    }
+}
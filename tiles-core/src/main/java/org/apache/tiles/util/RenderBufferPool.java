@@ -0,0 +1,133 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of {@link RenderBuffer}s, so that capturing the output of a page
+ * does not allocate a new array every time. Buffers that have grown beyond
+ * a maximum capacity are not kept, so that a single big page does not hold
+ * memory forever.
+ * <p/>
+ * This class is thread-safe.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class RenderBufferPool {
+
+    /**
+     * The default maximum number of pooled buffers.
+     */
+    public static final int DEFAULT_MAX_BUFFERS = 64;
+
+    /**
+     * The default maximum capacity of a pooled buffer, in characters.
+     */
+    public static final int DEFAULT_MAX_CAPACITY = 64 * 1024;
+
+    /**
+     * The buffers that are not in use.
+     */
+    private Queue<RenderBuffer> buffers =
+        new ConcurrentLinkedQueue<RenderBuffer>();
+
+    /**
+     * The number of buffers in {@link #buffers}.
+     */
+    private AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The maximum number of pooled buffers.
+     */
+    private int maxBuffers;
+
+    /**
+     * The maximum capacity of a pooled buffer.
+     */
+    private int maxCapacity;
+
+    /**
+     * Constructor, with the default limits.
+     */
+    public RenderBufferPool() {
+        this(DEFAULT_MAX_BUFFERS, DEFAULT_MAX_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxBuffers The maximum number of pooled buffers.
+     * @param maxCapacity The maximum capacity of a pooled buffer, in
+     * characters.
+     */
+    public RenderBufferPool(int maxBuffers, int maxCapacity) {
+        this.maxBuffers = maxBuffers;
+        this.maxCapacity = maxCapacity;
+    }
+
+    /**
+     * Returns an empty buffer, taken from the pool if possible. It should be
+     * given back with {@link #release(RenderBuffer)} when it is not used
+     * anymore.
+     *
+     * @return The buffer.
+     */
+    public RenderBuffer acquire() {
+        RenderBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            return new RenderBuffer();
+        }
+        size.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Gives back a buffer to the pool. The buffer must not be used anymore by
+     * the caller.
+     *
+     * @param buffer The buffer.
+     */
+    public void release(RenderBuffer buffer) {
+        if (buffer.capacity() > maxCapacity) {
+            return;
+        }
+        if (size.incrementAndGet() > maxBuffers) {
+            size.decrementAndGet();
+            return;
+        }
+        buffer.reset();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Returns the number of buffers in the pool.
+     *
+     * @return The number of pooled buffers.
+     */
+    public int size() {
+        return size.get();
+    }
+}
@@ -35,10 +35,16 @@ import javax.servlet.ServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.definition.ReloadableDefinitionsFactory;
+import org.apache.tiles.definition.util.DefinitionsFactoryReloader;
 import org.apache.tiles.definition.util.DefinitionsFactoryUtil;
 
 /**
  * Processes Reloadable Tiles Definitions.
+ * <p/>
+ * If the definitions factory is reloadable, a
+ * {@link DefinitionsFactoryReloader} checks the definitions sources in a
+ * background thread, so requests are not slowed down by these checks.
  *
  * @version $Rev$ $Date$
  */
@@ -58,9 +64,15 @@ public class TilesFilter extends TilesServlet implements Filter {
      */
     private FilterConfig filterConfig = null;
 
+    /**
+     * The object that checks and reloads definitions in background.
+     */
+    private DefinitionsFactoryReloader reloader = null;
+
 
     /**
-     * Checks whether Tiles Definitions need to be reloaded.
+     * Passes the request along the chain. Definitions are checked for reload
+     * in a background thread.
      *
      * @param request  The servlet request we are processing
      * @param response The servlet response we are creating
@@ -72,13 +84,7 @@ public class TilesFilter extends TilesServlet implements Filter {
                          FilterChain chain)
         throws IOException, ServletException {
 
-        try {
-            DefinitionsFactoryUtil.reloadDefinitionsFactory(
-                    getServletContext());
-            chain.doFilter(request, response);
-        } catch (Exception e) {
-            throw new ServletException("Error processing request.", e);
-        }
+        chain.doFilter(request, response);
     }
 
     /**
@@ -103,10 +109,15 @@ public class TilesFilter extends TilesServlet implements Filter {
     }
 
     /**
-     * Destroy method for this filter.
+     * Destroy method for this filter. The definitions reloader is stopped
+     * before the container, and its definitions factory, are destroyed.
      */
     public void destroy
         () {
+        if (reloader != null) {
+            reloader.stop();
+            reloader = null;
+        }
         super.destroy();
     }
 
@@ -118,6 +129,36 @@ public class TilesFilter extends TilesServlet implements Filter {
         if (DEBUG) {
             log("TilesDecorationFilter:Initializing filter");
         }
+
+        ReloadableDefinitionsFactory factory = DefinitionsFactoryUtil
+                .getReloadableDefinitionsFactory(filterConfig
+                        .getServletContext());
+        if (factory != null) {
+            try {
+                reloader = DefinitionsFactoryReloader.createReloader(factory,
+                        getParameter(DefinitionsFactoryReloader.CHECK_INTERVAL_INIT_PARAM),
+                        getParameter(DefinitionsFactoryReloader.QUIET_PERIOD_INIT_PARAM));
+            } catch (IllegalArgumentException e) {
+                throw new ServletException(
+                        "Invalid definitions reloader configuration", e);
+            }
+            reloader.start();
+        }
+    }
+
+    /**
+     * Returns the value of a parameter, looking at the filter init parameters
+     * first and then at the context parameters.
+     *
+     * @param name The name of the parameter.
+     * @return The value of the parameter, or <code>null</code> if not found.
+     */
+    private String getParameter(String name) {
+        String value = filterConfig.getInitParameter(name);
+        if (value == null) {
+            value = filterConfig.getServletContext().getInitParameter(name);
+        }
+        return value;
     }
 
     /** {@inheritDoc} */
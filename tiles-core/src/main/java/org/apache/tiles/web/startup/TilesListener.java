@@ -26,13 +26,20 @@ import org.apache.tiles.TilesContainer;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.access.TilesAccess;
 import org.apache.tiles.factory.TilesContainerFactory;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.jmx.TilesContainerManagement;
 
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
 /**
  * Listener for the initialization of the Tiles container.
+ * <p/>
+ * If the {@link TilesContainerManagement#ENABLED_INIT_PARAM} context parameter
+ * is <code>true</code>, the container is registered in the platform MBean
+ * server while it is in service.
  *
  * @version $Rev$ $Date$
  */
@@ -45,6 +52,12 @@ public class TilesListener
     protected static final Log LOG =
         LogFactory.getLog(TilesListener.class);
 
+    /**
+     * The object name of the container in the MBean server, or
+     * <code>null</code> if it is not registered.
+     */
+    private ObjectName objectName;
+
     /**
      * Initialize the TilesContainer and place it
      * into service.
@@ -56,6 +69,11 @@ public class TilesListener
         try {
             TilesContainer container = createContainer(servletContext);
             TilesAccess.setContainer(servletContext, container);
+            if (Boolean.valueOf(servletContext
+                    .getInitParameter(TilesContainerManagement.ENABLED_INIT_PARAM))) {
+                objectName = TilesContainerManagement.register(container,
+                        getManagementName(servletContext));
+            }
         } catch (TilesException e) {
             throw new IllegalStateException("Unable to instantiate container.",
                     e);
@@ -63,17 +81,25 @@ public class TilesListener
     }
 
     /**
-     * Remove the tiles container from service.
+     * Remove the tiles container from service, and release its resources.
      *
      * @param event The intercepted event.
      */
     public void contextDestroyed(ServletContextEvent event) {
         ServletContext servletContext = event.getServletContext();
+        if (objectName != null) {
+            TilesContainerManagement.unregister(objectName);
+            objectName = null;
+        }
+        TilesContainer container = TilesAccess.getContainer(servletContext);
         try {
             TilesAccess.setContainer(servletContext, null);
         } catch (TilesException e) {
             LOG.warn("Unable to remove tiles container from service.");
         }
+        if (container instanceof BasicTilesContainer) {
+            ((BasicTilesContainer) container).destroy();
+        }
     }
 
     /**
@@ -90,4 +116,22 @@ public class TilesListener
         return factory.createContainer(context);
     }
 
+    /**
+     * Returns the name under which the container is registered in the MBean
+     * server.
+     *
+     * @param context The servlet context to use.
+     * @return The value of the {@link TilesContainerManagement#NAME_INIT_PARAM}
+     * parameter if present, otherwise the name of the application.
+     * @since 2.0.8
+     */
+    protected String getManagementName(ServletContext context) {
+        String name = context
+                .getInitParameter(TilesContainerManagement.NAME_INIT_PARAM);
+        if (name == null) {
+            name = context.getServletContextName();
+        }
+        return name != null ? name : "default";
+    }
+
 }
@@ -0,0 +1,173 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.cache;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.CachePolicy;
+
+/**
+ * Tests {@link FragmentCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class FragmentCacheTest extends TestCase {
+
+    /**
+     * The policy used to store fragments.
+     */
+    private CachePolicy policy = new CachePolicy(60, 0,
+            new ArrayList<String>());
+
+    /**
+     * Tests storing and getting fragments.
+     */
+    public void testPopulation() {
+        FragmentCache cache = new FragmentCache(10, 1000);
+        assertNull("The fragment should not be present", cache
+                .getFragment("key"));
+        assertTrue("The population should start", cache
+                .startPopulation("key", "name"));
+        assertFalse("The population should not start twice", cache
+                .startPopulation("key", "name"));
+        assertFalse("The population should not be ended", cache
+                .awaitPopulation("key", 1));
+        cache.endPopulation("key", "content", policy);
+        assertTrue("The population should be ended", cache.awaitPopulation(
+                "key", 1));
+        CachedFragment fragment = cache.getFragment("key");
+        assertEquals("Incorrect content", "content", fragment.getContent());
+        assertEquals("Incorrect name", "name", fragment.getName());
+        assertTrue("The fragment should be fresh", fragment.isFresh(System
+                .currentTimeMillis()));
+        assertEquals("Incorrect hits", 1, cache.getHitCount());
+        assertEquals("Incorrect misses", 1, cache.getMissCount());
+        assertEquals("Incorrect size", 7, cache.getContentSize());
+    }
+
+    /**
+     * Tests that a failed population does not store anything.
+     */
+    public void testFailedPopulation() {
+        FragmentCache cache = new FragmentCache(10, 1000);
+        assertTrue("The population should start", cache
+                .startPopulation("key", "name"));
+        cache.endPopulation("key", null, policy);
+        assertNull("The fragment should not be present", cache
+                .getFragment("key"));
+        assertTrue("The population should start again", cache
+                .startPopulation("key", "name"));
+    }
+
+    /**
+     * Tests the least recently used entries are removed.
+     */
+    public void testEviction() {
+        long freshUntil = System.currentTimeMillis() + 60000;
+        FragmentCache cache = new FragmentCache(2, 10);
+        cache.putFragment("one", new CachedFragment("one", "1", freshUntil,
+                freshUntil));
+        cache.putFragment("two", new CachedFragment("two", "2", freshUntil,
+                freshUntil));
+        cache.getFragment("one");
+        cache.putFragment("three", new CachedFragment("three", "3",
+                freshUntil, freshUntil));
+        assertEquals("Incorrect size", 2, cache.size());
+        assertNull("The least recently used entry should be removed", cache
+                .getFragment("two"));
+        assertNotNull("The entry should be present", cache.getFragment("one"));
+
+        cache.putFragment("four", new CachedFragment("four", "1234567890",
+                freshUntil, freshUntil));
+        assertEquals("The entries should be removed to make room", 1, cache
+                .size());
+        assertEquals("Incorrect content size", 10, cache.getContentSize());
+        cache.putFragment("five", new CachedFragment("five", "12345678901",
+                freshUntil, freshUntil));
+        assertNull("Entries bigger than the cache should not be stored",
+                cache.getFragment("five"));
+    }
+
+    /**
+     * Tests stale and expired entries.
+     */
+    public void testExpiration() {
+        long now = System.currentTimeMillis();
+        FragmentCache cache = new FragmentCache(10, 1000);
+        cache.putFragment("stale", new CachedFragment("stale", "s", now - 1,
+                now + 60000));
+        cache.putFragment("expired", new CachedFragment("expired", "e",
+                now - 2, now - 1));
+        CachedFragment fragment = cache.getFragment("stale");
+        assertFalse("The fragment should be stale", fragment.isFresh(now));
+        assertFalse("The fragment should not be expired", fragment
+                .isExpired(now));
+        assertNull("The expired fragment should be removed", cache
+                .getFragment("expired"));
+        assertEquals("Incorrect size", 1, cache.size());
+    }
+
+    /**
+     * Tests invalidation.
+     */
+    public void testInvalidate() {
+        FragmentCache cache = new FragmentCache(10, 1000);
+        cache.startPopulation("one|a", "one");
+        cache.endPopulation("one|a", "a", policy);
+        cache.startPopulation("one|b", "one");
+        cache.endPopulation("one|b", "b", policy);
+        cache.startPopulation("two", "two");
+        cache.endPopulation("two", "c", policy);
+        assertEquals("Incorrect removed entries", 2, cache.invalidate("one"));
+        assertEquals("Incorrect size", 1, cache.size());
+        assertEquals("Incorrect content size", 1, cache.getContentSize());
+
+        cache.startPopulation("three", "three");
+        cache.invalidateAll();
+        cache.endPopulation("three", "d", policy);
+        assertEquals("Invalidated populations should not be stored", 0,
+                cache.size());
+    }
+
+    /**
+     * Tests that invalidating a definition or attribute affects only its own
+     * populations in progress.
+     */
+    public void testInvalidatePopulations() {
+        FragmentCache cache = new FragmentCache(10, 1000);
+        cache.startPopulation("one|a", "one");
+        cache.startPopulation("two", "two");
+        cache.invalidate("one");
+        cache.endPopulation("one|a", "a", policy);
+        cache.endPopulation("two", "b", policy);
+        assertNull("The invalidated population should not be stored", cache
+                .getFragment("one|a"));
+        assertNotNull("The other population should be stored", cache
+                .getFragment("two"));
+
+        cache.startPopulation("one|a", "one");
+        cache.endPopulation("one|a", "a", policy);
+        assertNotNull("A population started after the invalidation should be"
+                + " stored", cache.getFragment("one|a"));
+    }
+}
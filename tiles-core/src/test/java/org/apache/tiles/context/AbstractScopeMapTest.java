@@ -0,0 +1,157 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.context;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link AbstractScopeMap}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class AbstractScopeMapTest extends TestCase {
+
+    /**
+     * The object whose attributes are viewed.
+     */
+    private Map<String, Object> attributes;
+
+    /**
+     * The map to test.
+     */
+    private Map<String, Object> map;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        attributes = new HashMap<String, Object>();
+        map = new AttributeMap(attributes);
+    }
+
+    /**
+     * Tests reading and writing through the map.
+     */
+    public void testReadWrite() {
+        assertTrue("The map is not empty", map.isEmpty());
+        assertNull("The value should not exist", map.put("one", "1"));
+        attributes.put("two", "2");
+        assertEquals("Incorrect size", 2, map.size());
+        assertEquals("Incorrect value", "1", map.get("one"));
+        assertTrue("The key has not been found", map.containsKey("two"));
+        assertTrue("The value has not been found", map.containsValue("2"));
+        assertEquals("Incorrect previous value", "2", map.put("two", null));
+        assertFalse("The key has not been removed", attributes
+                .containsKey("two"));
+        assertEquals("Incorrect removed value", "1", map.remove("one"));
+        assertTrue("The map is not empty", attributes.isEmpty());
+        try {
+            map.get(null);
+            fail("A null key should not be allowed");
+        } catch (IllegalArgumentException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests the views of the map.
+     */
+    public void testViews() {
+        attributes.put("one", "1");
+        attributes.put("two", "2");
+        assertEquals("Incorrect keys", attributes.keySet(), map.keySet());
+        assertEquals("Incorrect entries", attributes.entrySet(), map
+                .entrySet());
+        assertEquals("Incorrect map", attributes, map);
+        assertEquals("Incorrect hash code", attributes.hashCode(), map
+                .hashCode());
+        assertTrue("The value has not been found", map.values().contains("2"));
+        attributes.put("three", "3");
+        assertEquals("The views are not backed by the object", 3, map
+                .keySet().size());
+
+        Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+        entry.setValue("changed");
+        assertEquals("The entry has not been written through", "changed",
+                attributes.get(entry.getKey()));
+
+        Iterator<String> keys = map.keySet().iterator();
+        keys.next();
+        try {
+            keys.remove();
+            fail("Removing through an iterator should not be supported");
+        } catch (UnsupportedOperationException e) {
+            // success.
+        }
+
+        map.clear();
+        assertTrue("The map has not been cleared", attributes.isEmpty());
+    }
+
+    /**
+     * Map of the attributes stored in another map.
+     */
+    private static class AttributeMap extends AbstractScopeMap<Object> {
+
+        /**
+         * The attributes.
+         */
+        private Map<String, Object> attributes;
+
+        /**
+         * Constructor.
+         *
+         * @param attributes The attributes.
+         */
+        public AttributeMap(Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object getValue(String key) {
+            return attributes.get(key);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Enumeration<String> getKeys() {
+            return Collections.enumeration(attributes.keySet());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void setValue(String key, Object value) {
+            attributes.put(key, value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void removeValue(String key) {
+            attributes.remove(key);
+        }
+    }
+}
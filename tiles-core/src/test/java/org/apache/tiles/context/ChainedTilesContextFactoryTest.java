@@ -84,4 +84,97 @@ public class ChainedTilesContextFactoryTest extends TestCase {
                 request, response);
         assertNotNull("The request context cannot be null", context);
     }
+
+    /**
+     * Tests that the factory that handles a type of request items is
+     * memoized.
+     *
+     * @throws Exception If something goes wrong during testing.
+     */
+    public void testMemoizedFactory() throws Exception {
+        Map<String, String> config = new HashMap<String, String>();
+        config.put(ChainedTilesContextFactory.FACTORY_CLASS_NAMES,
+                IntegerContextFactory.class.getName() + ","
+                + StringContextFactory.class.getName());
+        ChainedTilesContextFactory factory = new ChainedTilesContextFactory();
+        factory.init(config);
+        IntegerContextFactory.calls = 0;
+        StringContextFactory.calls = 0;
+        assertNotNull("The request context cannot be null", factory
+                .createRequestContext(appContext, "first"));
+        assertEquals("The chain has not been walked", 1,
+                IntegerContextFactory.calls);
+        assertNotNull("The request context cannot be null", factory
+                .createRequestContext(appContext, "second"));
+        assertEquals("The chain has been walked again", 1,
+                IntegerContextFactory.calls);
+        assertEquals("The memoized factory has not been used", 2,
+                StringContextFactory.calls);
+        assertNotNull("The request context cannot be null", factory
+                .createRequestContext(appContext, new Integer(1)));
+        assertEquals("The integer factory has not been used", 2,
+                IntegerContextFactory.calls);
+        assertEquals("The string factory has been used", 2,
+                StringContextFactory.calls);
+    }
+
+    /**
+     * Context factory that creates request contexts for an integer.
+     */
+    public static class IntegerContextFactory implements TilesContextFactory {
+
+        /**
+         * The number of calls to {@link #createRequestContext}.
+         */
+        private static int calls;
+
+        /** {@inheritDoc} */
+        public void init(Map<String, String> configParameters) {
+        }
+
+        /** {@inheritDoc} */
+        public TilesApplicationContext createApplicationContext(Object context) {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public TilesRequestContext createRequestContext(
+                TilesApplicationContext context, Object... requestItems) {
+            calls++;
+            if (requestItems.length == 1 && requestItems[0] instanceof Integer) {
+                return new TilesRequestContextWrapper(null);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Context factory that creates request contexts for a string.
+     */
+    public static class StringContextFactory implements TilesContextFactory {
+
+        /**
+         * The number of calls to {@link #createRequestContext}.
+         */
+        private static int calls;
+
+        /** {@inheritDoc} */
+        public void init(Map<String, String> configParameters) {
+        }
+
+        /** {@inheritDoc} */
+        public TilesApplicationContext createApplicationContext(Object context) {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public TilesRequestContext createRequestContext(
+                TilesApplicationContext context, Object... requestItems) {
+            calls++;
+            if (requestItems.length == 1 && requestItems[0] instanceof String) {
+                return new TilesRequestContextWrapper(null);
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.context;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.TilesApplicationContext;
+
+/**
+ * Tests {@link DispatcherCache}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class DispatcherCacheTest extends TestCase {
+
+    /**
+     * The application scope.
+     */
+    private Map<String, Object> applicationScope;
+
+    /**
+     * The initialization parameters of the application.
+     */
+    private Map<String, String> initParams;
+
+    /**
+     * The application context.
+     */
+    private TilesApplicationContext context;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        applicationScope = new HashMap<String, Object>();
+        initParams = new HashMap<String, String>();
+        context = new TilesApplicationContext() {
+
+            public Map<String, Object> getApplicationScope() {
+                return applicationScope;
+            }
+
+            public Map<String, String> getInitParams() {
+                return initParams;
+            }
+
+            public URL getResource(String path) {
+                return null;
+            }
+
+            public Set<URL> getResources(String path) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Tests that the cache is shared by the application and invalidated.
+     */
+    public void testGetInstance() {
+        DispatcherCache<Object> cache = DispatcherCache.getInstance(context);
+        assertSame("The cache should be stored in the application scope",
+                cache, applicationScope.get(DispatcherCache.ATTRIBUTE_NAME));
+        assertSame("The cache should be shared", cache, DispatcherCache
+                .getInstance(context));
+        Object dispatcher = new Object();
+        cache.put("/layout.jsp", dispatcher);
+        assertSame("Incorrect dispatcher", dispatcher, cache
+                .get("/layout.jsp"));
+        DispatcherCache.invalidate(context);
+        assertNull("The cache should be cleared", cache.get("/layout.jsp"));
+    }
+
+    /**
+     * Tests that the size of the cache is bounded.
+     */
+    public void testMaxEntries() {
+        initParams.put(DispatcherCache.MAX_ENTRIES_INIT_PARAM, "1");
+        DispatcherCache<Object> cache = DispatcherCache.getInstance(context);
+        cache.put("/one.jsp", new Object());
+        cache.put("/two.jsp", new Object());
+        assertEquals("Incorrect size", 1, cache.size());
+        assertNull("The least recently used dispatcher should be removed",
+                cache.get("/one.jsp"));
+        assertNotNull("The last dispatcher should be cached", cache
+                .get("/two.jsp"));
+    }
+
+    /**
+     * Tests that the least recently used dispatchers are removed first.
+     */
+    public void testLeastRecentlyUsed() {
+        initParams.put(DispatcherCache.MAX_ENTRIES_INIT_PARAM, "2");
+        DispatcherCache<Object> cache = DispatcherCache.getInstance(context);
+        cache.put("/one.jsp", new Object());
+        cache.put("/two.jsp", new Object());
+        cache.get("/one.jsp");
+        cache.put("/three.jsp", new Object());
+        assertNotNull("The used dispatcher should be kept", cache
+                .get("/one.jsp"));
+        assertNull("The least recently used dispatcher should be removed",
+                cache.get("/two.jsp"));
+        assertNotNull("The new dispatcher should be cached", cache
+                .get("/three.jsp"));
+    }
+
+    /**
+     * Tests that the dispatchers of paths with a query string, or of relative
+     * paths, are not cached.
+     */
+    public void testNotCacheable() {
+        DispatcherCache<Object> cache = DispatcherCache.getInstance(context);
+        cache.put("/page.jsp?id=1", new Object());
+        cache.put("page.jsp", new Object());
+        assertEquals("Nothing should be cached", 0, cache.size());
+
+        initParams.put(DispatcherCache.MAX_ENTRIES_INIT_PARAM, "0");
+        applicationScope.clear();
+        cache = DispatcherCache.getInstance(context);
+        cache.put("/page.jsp", new Object());
+        assertEquals("The cache should be disabled", 0, cache.size());
+    }
+}
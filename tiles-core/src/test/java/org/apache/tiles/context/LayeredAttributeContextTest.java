@@ -0,0 +1,162 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.context;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+
+/**
+ * Tests {@link LayeredAttributeContext}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LayeredAttributeContextTest extends TestCase {
+
+    /**
+     * The parent context.
+     */
+    private AttributeContext parent;
+
+    /**
+     * The default attributes.
+     */
+    private Map<String, Attribute> defaults;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        parent = new BasicAttributeContext();
+        parent.putAttribute("title", new Attribute("Parent title"));
+        parent.putAttribute("header", new Attribute("/header.jsp"));
+        defaults = new HashMap<String, Attribute>();
+        defaults.put("title", new Attribute("Default title"));
+        defaults.put("body", new Attribute("/body.jsp"));
+    }
+
+    /**
+     * Tests that the layers are looked up in the same order as a copy of
+     * the parent context with missing default attributes.
+     */
+    public void testGetAttribute() {
+        LayeredAttributeContext context = new LayeredAttributeContext(parent,
+                defaults);
+        BasicAttributeContext copy = new BasicAttributeContext(parent);
+        copy.addMissing(defaults);
+        for (String name : new String[] {"title", "header", "body", "none"}) {
+            assertSame("Incorrect attribute " + name, copy.getAttribute(name),
+                    context.getAttribute(name));
+        }
+
+        Attribute title = new Attribute("Local title");
+        context.putAttribute("title", title);
+        assertSame("The local attribute has not been used", title, context
+                .getAttribute("title"));
+        assertEquals("The parent context has been modified", "Parent title",
+                parent.getAttribute("title").getValue());
+    }
+
+    /**
+     * Tests that the names of all the layers are returned once.
+     */
+    public void testGetAttributeNames() {
+        LayeredAttributeContext context = new LayeredAttributeContext(parent,
+                defaults);
+        context.putAttribute("title", new Attribute("Local title"));
+        context.putAttribute("footer", new Attribute("/footer.jsp"));
+        Set<String> names = new HashSet<String>();
+        Iterator<String> it = context.getAttributeNames();
+        while (it.hasNext()) {
+            assertTrue("Duplicate name", names.add(it.next()));
+        }
+        Set<String> expected = new HashSet<String>();
+        expected.add("title");
+        expected.add("header");
+        expected.add("body");
+        expected.add("footer");
+        assertEquals("Incorrect names", expected, names);
+    }
+
+    /**
+     * Tests adding missing attributes and clearing the context.
+     */
+    public void testAddMissingAndClear() {
+        LayeredAttributeContext context = new LayeredAttributeContext(parent,
+                defaults);
+        Map<String, Attribute> missing = new HashMap<String, Attribute>();
+        missing.put("header", new Attribute("/other-header.jsp"));
+        missing.put("footer", new Attribute("/footer.jsp"));
+        context.addMissing(missing);
+        assertEquals("An existing attribute has been replaced",
+                "/header.jsp", context.getAttribute("header").getValue());
+        assertEquals("A missing attribute has not been added", "/footer.jsp",
+                context.getAttribute("footer").getValue());
+
+        context.clear();
+        assertNull("The context has not been cleared", context
+                .getAttribute("title"));
+        assertFalse("The context has not been cleared", context
+                .getAttributeNames().hasNext());
+        assertNotNull("The parent context has been cleared", parent
+                .getAttribute("title"));
+        assertEquals("The default attributes have been cleared", 2, defaults
+                .size());
+    }
+
+    /**
+     * Tests that the number of layers walked by a lookup is bounded, and
+     * that deeply nested contexts see the same attributes.
+     */
+    public void testMaxDepth() {
+        LayeredAttributeContext context = new LayeredAttributeContext(parent,
+                defaults);
+        for (int i = 0; i < LayeredAttributeContext.MAX_DEPTH * 3; i++) {
+            Map<String, Attribute> layer = new HashMap<String, Attribute>();
+            layer.put("layer" + i, new Attribute("value" + i));
+            context = new LayeredAttributeContext(context, layer);
+            assertTrue("The depth is not bounded", context.getDepth()
+                    <= LayeredAttributeContext.MAX_DEPTH);
+        }
+        context.putAttribute("title", new Attribute("Local title"));
+        assertEquals("Incorrect local attribute", "Local title", context
+                .getAttribute("title").getValue());
+        assertEquals("Incorrect parent attribute", "/header.jsp", context
+                .getAttribute("header").getValue());
+        assertEquals("Incorrect default attribute", "/body.jsp", context
+                .getAttribute("body").getValue());
+        assertEquals("Incorrect layer attribute", "value0", context
+                .getAttribute("layer0").getValue());
+        int count = 0;
+        for (Iterator<String> it = context.getAttributeNames(); it.hasNext();) {
+            it.next();
+            count++;
+        }
+        assertEquals("Incorrect number of names",
+                LayeredAttributeContext.MAX_DEPTH * 3 + 3, count);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.context;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link TilesRequestState}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TilesRequestStateTest extends TestCase {
+
+    /**
+     * Tests that the state is created once per request scope.
+     */
+    public void testGetInstance() {
+        Map<String, Object> requestScope = new HashMap<String, Object>();
+        TilesRequestState state = TilesRequestState.getInstance(requestScope);
+        assertNotNull("The state has not been created", state);
+        assertSame("The state has been created twice", state,
+                TilesRequestState.getInstance(requestScope));
+        assertSame("The state has not been stored", state, requestScope
+                .get(TilesRequestState.STATE_ATTRIBUTE_NAME));
+        assertNull("The state should not be created without a scope",
+                TilesRequestState.getInstance((Map<String, Object>) null));
+        assertSame("The stack has been created twice", state
+                .getContextStack(), state.getContextStack());
+    }
+
+    /**
+     * Tests the stored request context.
+     */
+    public void testRequestContext() {
+        TilesRequestState state = new TilesRequestState();
+        Object request = new Object();
+        Object response = new Object();
+        TilesRequestContext context = new TilesRequestContextWrapper(null);
+        assertNull("No context should be stored", state.getRequestContext(
+                request, response));
+        state.setRequestContext(context, request, response);
+        assertSame("The context has not been stored", context, state
+                .getRequestContext(request, response));
+        assertNull("The context should be used only for the same items",
+                state.getRequestContext(request, new Object()));
+        assertNull("The context should be used only for the same items",
+                state.getRequestContext(request));
+    }
+
+    /**
+     * Tests the resolved locale.
+     */
+    public void testResolvedLocale() {
+        TilesRequestState state = new TilesRequestState();
+        Object resolver = new Object();
+        assertFalse("The locale should not be resolved", state
+                .isLocaleResolved(resolver, Locale.ITALY));
+        state.setResolvedLocale(resolver, Locale.ITALY, Locale.ITALIAN);
+        assertTrue("The locale should be resolved", state.isLocaleResolved(
+                resolver, Locale.ITALY));
+        assertEquals("Incorrect resolved locale", Locale.ITALIAN, state
+                .getResolvedLocale());
+        assertFalse("The locale is resolved by another object", state
+                .isLocaleResolved(new Object(), Locale.ITALY));
+        assertFalse("Another locale should not be resolved", state
+                .isLocaleResolved(resolver, Locale.FRANCE));
+    }
+}
@@ -24,6 +24,9 @@ package org.apache.tiles.definition;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -345,4 +348,305 @@ public class TestDefinitions extends TestCase {
         attr = newDef.getAttributes().get("attr1");
         assertNotNull("Dependent attribute not found.", attr);
     }
+
+    /**
+     * Tests that resolved definitions are compiled, share the inherited
+     * attributes and cannot be modified.
+     */
+    public void testCompiledDefinitions() {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+
+        Definition def = new Definition();
+        def.setName("parent.def1");
+        def.setTemplate("/test1.jsp");
+        def.setRole("role1, role2");
+        Attribute parentAttr = new Attribute();
+        parentAttr.setValue("value1");
+        def.putAttribute("attr1", parentAttr);
+        defs.put(def.getName(), def);
+
+        def = new Definition();
+        def.setName("child.def1");
+        def.setExtends("parent.def1");
+        Attribute attr = new Attribute();
+        attr.setValue("value2");
+        def.putAttribute("attr2", attr);
+        defs.put(def.getName(), def);
+
+        def = new Definition();
+        def.setName("child.def2");
+        def.setExtends("child.def1");
+        def.setTemplate("/test2.jsp");
+        defs.put(def.getName(), def);
+
+        Definitions definitions = new DefinitionsImpl();
+        try {
+            definitions.addDefinitions(defs);
+        } catch (NoSuchDefinitionException e) {
+            fail("Test failure: " + e);
+        }
+
+        Definition parent = definitions.getDefinition("parent.def1");
+        Definition child = definitions.getDefinition("child.def1");
+        Definition grandChild = definitions.getDefinition("child.def2");
+        assertTrue("The definition has not been compiled",
+                child instanceof CompiledDefinition);
+        assertSame("The inherited attribute has been copied", parentAttr,
+                child.getAttribute("attr1"));
+        assertEquals("Incorrect attr2 value", "value2", child.getAttribute(
+                "attr2").getValue());
+        assertEquals("Incorrect template value", "/test1.jsp", child
+                .getTemplate());
+        assertEquals("Incorrect roles", parent.getRoles(), child.getRoles());
+        assertEquals("Incorrect template value", "/test2.jsp", grandChild
+                .getTemplate());
+        assertSame("The attribute table has not been shared", child
+                .getAttributes(), grandChild.getAttributes());
+
+        try {
+            child.putAttribute("attr3", new Attribute("value3"));
+            fail("A compiled definition should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // success.
+        }
+        try {
+            child.getAttributes().remove("attr1");
+            fail("A compiled definition should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests that only the added definitions and their descendants are
+     * resolved again.
+     *
+     * @throws NoSuchDefinitionException If something goes wrong.
+     */
+    public void testIncrementalResolution() throws NoSuchDefinitionException {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("parent.def1");
+        def.setTemplate("/test1.jsp");
+        defs.put(def.getName(), def);
+        def = new Definition();
+        def.setName("child.def1");
+        def.setExtends("parent.def1");
+        defs.put(def.getName(), def);
+        def = new Definition();
+        def.setName("other.def1");
+        def.setTemplate("/other.jsp");
+        defs.put(def.getName(), def);
+
+        Map<String, Definition> localDefs = new HashMap<String, Definition>();
+        def = new Definition();
+        def.setName("child.def2");
+        def.setExtends("child.def1");
+        localDefs.put(def.getName(), def);
+
+        Definitions definitions = new DefinitionsImpl();
+        definitions.addDefinitions(defs);
+        definitions.addDefinitions(localDefs, Locale.ITALIAN);
+        Definition other = definitions.getDefinition("other.def1");
+
+        defs = new HashMap<String, Definition>();
+        def = new Definition();
+        def.setName("parent.def1");
+        def.setTemplate("/test2.jsp");
+        defs.put(def.getName(), def);
+        definitions.addDefinitions(defs);
+
+        assertEquals("The child has not been resolved again", "/test2.jsp",
+                definitions.getDefinition("child.def1").getTemplate());
+        assertEquals("The localized child has not been resolved again",
+                "/test2.jsp", definitions.getDefinition("child.def2",
+                        Locale.ITALIAN).getTemplate());
+        assertSame("An unrelated definition has been resolved again", other,
+                definitions.getDefinition("other.def1"));
+    }
+
+    /**
+     * Tests the resolution of many definitions in parallel.
+     *
+     * @throws NoSuchDefinitionException If something goes wrong.
+     */
+    public void testParallelResolution() throws NoSuchDefinitionException {
+        final int count = 2000;
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("root");
+        def.setTemplate("/root.jsp");
+        def.put("attr1", "value1");
+        defs.put(def.getName(), def);
+        for (int i = 0; i < count; i++) {
+            def = new Definition();
+            def.setName("level1." + i);
+            def.setExtends("root");
+            defs.put(def.getName(), def);
+            def = new Definition();
+            def.setName("level2." + i);
+            def.setExtends("level1." + i);
+            def.put("attr2", "value" + i);
+            defs.put(def.getName(), def);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DefinitionsImpl definitions = new DefinitionsImpl();
+            definitions.setExecutor(executor);
+            definitions.addDefinitions(defs);
+            for (int i = 0; i < count; i++) {
+                def = definitions.getDefinition("level2." + i);
+                assertEquals("Incorrect template value", "/root.jsp", def
+                        .getTemplate());
+                assertEquals("Incorrect attr1 value", "value1", def
+                        .getAttribute("attr1").getValue());
+                assertEquals("Incorrect attr2 value", "value" + i, def
+                        .getAttribute("attr2").getValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that circular inheritance is detected.
+     */
+    public void testCircularInheritance() {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("def1");
+        def.setExtends("def2");
+        defs.put(def.getName(), def);
+        def = new Definition();
+        def.setName("def2");
+        def.setExtends("def1");
+        defs.put(def.getName(), def);
+
+        try {
+            new DefinitionsImpl().addDefinitions(defs);
+            fail("The circular inheritance has not been detected");
+        } catch (NoSuchDefinitionException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests that the types of the attributes are inferred when the
+     * definitions are loaded.
+     *
+     * @throws NoSuchDefinitionException If something goes wrong.
+     */
+    public void testAttributeClassification() throws NoSuchDefinitionException {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("def1");
+        def.setTemplate("/test1.jsp");
+        def.put("body", "def2");
+        def.put("page", "/page.jsp");
+        def.put("title", "Title");
+        def.put("object", new Integer(1));
+        def.put("typed", "/typed.jsp", AttributeType.STRING, null);
+        defs.put(def.getName(), def);
+        def = new Definition();
+        def.setName("def2");
+        def.setTemplate("/test2.jsp");
+        defs.put(def.getName(), def);
+
+        DefinitionsImpl definitions = new DefinitionsImpl();
+        definitions.addDefinitions(defs);
+        Definition definition = definitions.getDefinition("def1");
+        assertEquals("Incorrect type", AttributeType.DEFINITION, definition
+                .getAttribute("body").getType());
+        assertEquals("Incorrect type", AttributeType.TEMPLATE, definition
+                .getAttribute("page").getType());
+        assertEquals("Incorrect type", AttributeType.STRING, definition
+                .getAttribute("title").getType());
+        assertEquals("Incorrect type", AttributeType.OBJECT, definition
+                .getAttribute("object").getType());
+        assertTrue("The type should be inferred", definition.getAttribute(
+                "title").isTypeInferred());
+        assertEquals("The explicit type has been changed",
+                AttributeType.STRING, definition.getAttribute("typed")
+                        .getType());
+        assertFalse("The explicit type should not be inferred", definition
+                .getAttribute("typed").isTypeInferred());
+    }
+
+    /**
+     * Tests that the attributes of localized definitions are classified
+     * against the definitions of their locale, and that the base attributes
+     * they inherit keep the type inferred in the base definitions.
+     *
+     * @throws NoSuchDefinitionException If something goes wrong.
+     */
+    public void testLocalizedAttributeClassification()
+            throws NoSuchDefinitionException {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("def1");
+        def.setTemplate("/test1.jsp");
+        def.put("body", "localized");
+        defs.put(def.getName(), def);
+
+        DefinitionsImpl definitions = new DefinitionsImpl();
+        definitions.addDefinitions(defs);
+
+        defs = new HashMap<String, Definition>();
+        def = new Definition();
+        def.setName("localized");
+        def.setTemplate("/localized.jsp");
+        defs.put(def.getName(), def);
+        def = new Definition();
+        def.setName("def3");
+        def.setExtends("def1");
+        def.put("header", "localized");
+        def.put("footer", "def1");
+        defs.put(def.getName(), def);
+        definitions.addDefinitions(defs, Locale.ITALIAN);
+
+        Definition definition = definitions.getDefinition("def3",
+                Locale.ITALIAN);
+        assertEquals("Incorrect type", AttributeType.DEFINITION, definition
+                .getAttribute("header").getType());
+        assertEquals("Incorrect type", AttributeType.DEFINITION, definition
+                .getAttribute("footer").getType());
+        Attribute body = definitions.getDefinition("def1").getAttribute(
+                "body");
+        assertSame("The base attribute should be shared", body, definition
+                .getAttribute("body"));
+        assertEquals("The base attribute has been classified again",
+                AttributeType.STRING, body.getType());
+        assertTrue("The type of the base attribute should be inferred", body
+                .isTypeInferred());
+    }
+
+    /**
+     * Tests the filter on the names of the definitions.
+     *
+     * @throws NoSuchDefinitionException If something goes wrong.
+     */
+    public void testMayContainDefinition() throws NoSuchDefinitionException {
+        Map<String, Definition> defs = new HashMap<String, Definition>();
+        Definition def = new Definition();
+        def.setName("def1");
+        def.setTemplate("/test1.jsp");
+        defs.put(def.getName(), def);
+
+        DefinitionsImpl definitions = new DefinitionsImpl();
+        definitions.addDefinitions(defs);
+        assertTrue("The definition should be found", definitions
+                .mayContainDefinition("def1"));
+        assertFalse("The template path should be excluded", definitions
+                .mayContainDefinition("/test1.jsp"));
+
+        defs = new HashMap<String, Definition>();
+        def = new Definition();
+        def.setName("def2");
+        def.setTemplate("/test2.jsp");
+        defs.put(def.getName(), def);
+        definitions.addDefinitions(defs, Locale.ITALIAN);
+        assertTrue("The localized definition should be found", definitions
+                .mayContainDefinition("def2"));
+    }
 }
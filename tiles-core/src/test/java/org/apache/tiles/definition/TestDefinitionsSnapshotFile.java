@@ -0,0 +1,186 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.Definition;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.beans.SimpleMenuItem;
+import org.apache.tiles.context.ListAttribute;
+
+/**
+ * Tests {@link DefinitionsSnapshotFile}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TestDefinitionsSnapshotFile extends TestCase {
+
+    /**
+     * The snapshot file.
+     */
+    private File file;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("tiles", ".snapshot");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    /**
+     * Tests writing and reading definitions.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testWriteRead() throws IOException {
+        Definition parent = new Definition();
+        parent.setName("parent");
+        parent.setTemplate("/parent.jsp");
+        parent.setRole("admin");
+        parent.setCachePolicy(CachePolicy.parse("ttl=60; vary=locale"));
+        parent.put("title", "Parent", AttributeType.STRING, "reader");
+        ListAttribute list = new ListAttribute();
+        list.add(new Attribute("/item.jsp"));
+        SimpleMenuItem item = new SimpleMenuItem();
+        item.setValue("Home");
+        item.setLink("/home.do");
+        list.add(item);
+        parent.putAttribute("items", list);
+        Definition compiledParent = new CompiledDefinition(parent);
+
+        Definition child = new Definition();
+        child.setName("child");
+        child.setExtends("parent");
+        child.put("body", "/child.jsp");
+        child.getAttribute("body").setCachePolicy(
+                CachePolicy.parse("ttl=30; stale=10"));
+        Definition compiledChild = new CompiledDefinition(child,
+                compiledParent);
+
+        Map<String, Definition> definitions =
+            new HashMap<String, Definition>();
+        definitions.put("parent", compiledParent);
+        definitions.put("child", compiledChild);
+        Map<String, String> hashes = new LinkedHashMap<String, String>();
+        hashes.put("file:/defs.xml", DefinitionsSnapshotFile
+                .computeHash("content".getBytes("UTF-8")));
+        hashes.put("file:/defs_fr.xml", DefinitionsSnapshotFile.MISSING_SOURCE);
+        Map<Locale, DefinitionsSnapshotFile.Entry> entries =
+            new LinkedHashMap<Locale, DefinitionsSnapshotFile.Entry>();
+        entries.put(null, new DefinitionsSnapshotFile.Entry(hashes,
+                definitions));
+        entries.put(Locale.FRENCH, new DefinitionsSnapshotFile.Entry(hashes,
+                new HashMap<String, Definition>()));
+
+        DefinitionsSnapshotFile snapshotFile = new DefinitionsSnapshotFile(file);
+        snapshotFile.write(entries);
+        Map<Locale, DefinitionsSnapshotFile.Entry> readEntries = snapshotFile
+                .read();
+
+        assertEquals("Incorrect locales", entries.keySet(), readEntries
+                .keySet());
+        assertEquals("Incorrect hashes", hashes, readEntries.get(null)
+                .getSourceHashes());
+        Map<String, Definition> readDefinitions = readEntries.get(null)
+                .getDefinitions();
+        Definition readParent = readDefinitions.get("parent");
+        Definition readChild = readDefinitions.get("child");
+        assertEquals("Incorrect template", "/parent.jsp", readChild
+                .getTemplate());
+        assertEquals("Incorrect extends", "parent", readChild.getExtends());
+        assertEquals("Incorrect role", "admin", readChild.getRole());
+        assertEquals("Incorrect body", "/child.jsp", readChild.getAttribute(
+                "body").getValue());
+        assertEquals("Incorrect cache policy", CachePolicy
+                .parse("ttl=60; vary=locale"), readParent.getCachePolicy());
+        assertNull("The cache policy should not be inherited", readChild
+                .getCachePolicy());
+        assertEquals("Incorrect attribute cache policy", CachePolicy
+                .parse("ttl=30; stale=10"), readChild.getAttribute("body")
+                .getCachePolicy());
+        Attribute title = readParent.getAttribute("title");
+        assertEquals("Incorrect title", "Parent", title.getValue());
+        assertEquals("Incorrect title type", AttributeType.STRING, title
+                .getType());
+        assertEquals("Incorrect title role", "reader", title.getRole());
+        assertSame("Attributes should be shared", title, readChild
+                .getAttribute("title"));
+
+        Attribute readList = readParent.getAttribute("items");
+        assertTrue("The list attribute has not been read",
+                readList instanceof ListAttribute);
+        List<?> elements = (List<?>) readList.getValue();
+        assertEquals("Incorrect list size", 2, elements.size());
+        assertEquals("Incorrect list attribute", "/item.jsp",
+                ((Attribute) elements.get(0)).getValue());
+        assertEquals("Incorrect list item", "/home.do",
+                ((SimpleMenuItem) elements.get(1)).getLink());
+    }
+
+    /**
+     * Tests reading a file that is not a snapshot.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testInvalidFile() throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write("<tiles-definitions/>".getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+        try {
+            new DefinitionsSnapshotFile(file).read();
+            fail("The file should not be read");
+        } catch (IOException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests reading a file that does not exist.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testMissingFile() throws IOException {
+        file.delete();
+        assertNull("No entries should be read", new DefinitionsSnapshotFile(
+                file).read());
+    }
+}
@@ -24,11 +24,18 @@ package org.apache.tiles.definition;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -173,4 +180,124 @@ public class TestReloadableDefinitionsFactory extends TestCase {
         assertEquals("Incorrect initial template value", "/newtest.jsp",
                 definitions.getDefinition("rewrite.test").getTemplate());
     }
+
+    /**
+     * Tests that a failed refresh keeps the current definitions.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRefreshRollback() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+
+        URL url = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/temp-defs.xml");
+        File file = new File(url.toURI());
+
+        writeDefinitions(file, "<definition name=\"rewrite.test\" template=\"/test.jsp\">"
+            + "<put-attribute name=\"testparm\" value=\"testval\"/>"
+            + "</definition>");
+
+        final List<DefinitionsFactory> refreshed =
+            new ArrayList<DefinitionsFactory>();
+        factory.addRefreshListener(new DefinitionsRefreshListener() {
+
+            public void definitionsRefreshed(DefinitionsFactory factory) {
+                refreshed.add(factory);
+            }
+        });
+        factory.init(new HashMap<String, String>());
+        factory.addSource(url);
+        factory.refresh();
+
+        assertEquals("Incorrect initial template value", "/test.jsp",
+                factory.getDefinition("rewrite.test", null).getTemplate());
+        assertEquals("The listener should be notified", 1, refreshed.size());
+        assertSame("Incorrect refreshed factory", factory, refreshed.get(0));
+
+        writeDefinitions(file, "<definition name=\"rewrite.test\" extends=\"missing.parent\">"
+            + "<put-attribute name=\"testparm\" value=\"testval\"/>"
+            + "</definition>");
+
+        try {
+            factory.refresh();
+            fail("The refresh should have failed");
+        } catch (NoSuchDefinitionException e) {
+            // success.
+        }
+
+        assertEquals("The current definitions should have been kept",
+                "/test.jsp", factory.getDefinition("rewrite.test", null)
+                        .getTemplate());
+        assertEquals("A failed refresh should not be notified", 1, refreshed
+                .size());
+    }
+
+    /**
+     * Tests that background refreshes stop when the factory is destroyed.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testDestroy() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+
+        URL url = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/temp-defs.xml");
+        File file = new File(url.toURI());
+
+        writeDefinitions(file, "<definition name=\"rewrite.test\" template=\"/test.jsp\">"
+            + "<put-attribute name=\"testparm\" value=\"testval\"/>"
+            + "</definition>");
+
+        final CountDownLatch refreshed = new CountDownLatch(1);
+        final AtomicInteger refreshCount = new AtomicInteger();
+        factory.addRefreshListener(new DefinitionsRefreshListener() {
+
+            public void definitionsRefreshed(DefinitionsFactory factory) {
+                refreshCount.incrementAndGet();
+                refreshed.countDown();
+            }
+        });
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(UrlDefinitionsFactory.BACKGROUND_REFRESH_PROPERTY, "true");
+        factory.init(params);
+        factory.addSource(url);
+        factory.refresh();
+        assertTrue("The background refresh did not happen", refreshed.await(
+                10, TimeUnit.SECONDS));
+
+        factory.destroy();
+        writeDefinitions(file, "<definition name=\"rewrite.test\" template=\"/changed.jsp\">"
+            + "<put-attribute name=\"testparm\" value=\"testval\"/>"
+            + "</definition>");
+        factory.refresh();
+        Thread.sleep(200);
+
+        assertEquals("A destroyed factory should not refresh", 1,
+                refreshCount.get());
+        assertEquals("The definitions should not have changed", "/test.jsp",
+                factory.getDefinition("rewrite.test", null).getTemplate());
+    }
+
+    /**
+     * Writes a definitions file.
+     *
+     * @param file The file to write.
+     * @param definitionsXml The XML code of the definitions.
+     * @throws IOException If something goes wrong during writing.
+     */
+    private void writeDefinitions(File file, String definitionsXml)
+            throws IOException {
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\" ?>\n"
+            + "<!DOCTYPE tiles-definitions PUBLIC "
+            + "\"-//Apache Software Foundation//DTD Tiles Configuration 2.0//EN\" "
+            + "\"http://tiles.apache.org/dtds/tiles-config_2_0.dtd\">\n\n"
+            + "<tiles-definitions>"
+            + definitionsXml
+            + "</tiles-definitions>";
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file)));
+        writer.write(xml);
+        writer.close();
+    }
 }
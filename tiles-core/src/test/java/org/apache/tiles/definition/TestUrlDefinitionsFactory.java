@@ -21,12 +21,20 @@
 
 package org.apache.tiles.definition;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -34,6 +42,7 @@ import junit.framework.TestSuite;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Definition;
 import org.apache.tiles.context.TilesRequestContext;
 
 /**
@@ -43,6 +52,11 @@ import org.apache.tiles.context.TilesRequestContext;
  */
 public class TestUrlDefinitionsFactory extends TestCase {
 
+    /**
+     * The number of threads used to read definitions.
+     */
+    private static final int THREAD_COUNT = 4;
+
     /**
      * The logging object.
      */
@@ -114,6 +128,48 @@ public class TestUrlDefinitionsFactory extends TestCase {
         assertNotNull("test.def3 definition not found.", definitions.getDefinition("test.def3"));
     }
 
+    /**
+     * Tests that sources read in parallel are merged in their order, and that
+     * inheritance is resolved after the merge.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @SuppressWarnings("unchecked")
+    public void testReadDefinitionsOrder() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory() {
+
+            /** {@inheritDoc} */
+            @Override
+            protected ExecutorService createLoadExecutor() {
+                return Executors.newFixedThreadPool(THREAD_COUNT);
+            }
+        };
+
+        String[] files = {"defs1.xml", "defs-extends.xml", "defs-later.xml",
+                "defs2.xml", "defs3.xml"};
+        for (String file : files) {
+            URL url = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/" + file);
+            assertNotNull("Could not load " + file + " file.", url);
+            factory.addSource(url);
+        }
+        factory.init(Collections.EMPTY_MAP);
+
+        Definitions definitions = factory.readDefinitions();
+        assertEquals("The last definition should win", "/overridden.jsp",
+                definitions.getDefinition("test.def1").getTemplate());
+        Definition definition = definitions.getDefinition("test.def.extending");
+        assertNotNull("test.def.extending definition not found.", definition);
+        assertEquals("Incorrect template value", "/later.jsp", definition
+                .getTemplate());
+        assertEquals("Incorrect title value", "Extending", definition
+                .getAttribute("title").getValue());
+        assertEquals("Incorrect body value", "/later_body.jsp", definition
+                .getAttribute("body").getValue());
+        assertNotNull("test.def3 definition not found.", definitions
+                .getDefinition("test.def3"));
+    }
+
     /**
      * Tests the getDefinition method.
      *
@@ -196,6 +252,276 @@ public class TestUrlDefinitionsFactory extends TestCase {
                 "Definition to be extended", factory.getDefinition(
                         "test.def.overridden", frenchContext).getAttribute(
                         "title").getValue());
+
+        Set<String> names = ((IndexedDefinitionsFactory) factory)
+                .getDefinitionNames();
+        assertTrue("test.def1 name not found.", names.contains("test.def1"));
+        assertFalse("test.common.french is not a base definition.", names
+                .contains("test.common.french"));
+    }
+
+    /**
+     * Tests that loading the definitions of a new locale does not modify an
+     * already published definitions snapshot.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @SuppressWarnings("unchecked")
+    public void testLocaleSnapshot() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+
+        URL url1 = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/defs1.xml");
+        assertNotNull("Could not load defs1 file.", url1);
+
+        factory.addSource(url1);
+        factory.init(Collections.EMPTY_MAP);
+
+        Definitions snapshot = factory.getDefinitions();
+        TilesRequestContext frenchContext = new MockOnlyLocaleTilesContext(Locale.FRENCH);
+
+        assertEquals("Incorrect France country value", "France", factory
+                .getDefinition("test.def1", frenchContext).getAttribute(
+                        "country").getValue());
+        assertNotSame("A new snapshot should have been published", snapshot,
+                factory.getDefinitions());
+        assertEquals("The old snapshot has been modified", "default", snapshot
+                .getDefinition("test.def1", Locale.FRENCH).getAttribute(
+                        "country").getValue());
+
+        snapshot = factory.getDefinitions();
+        factory.getDefinition("test.def1", frenchContext);
+        assertSame("The snapshot should not change for a processed locale",
+                snapshot, factory.getDefinitions());
+    }
+
+    /**
+     * Tests that a locale whose definitions cannot be read is not marked as
+     * processed, that the base definitions are used for it without reading
+     * it again until the retry delay has elapsed, and that it is read again
+     * after a refresh.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @SuppressWarnings("unchecked")
+    public void testLocaleFailure() throws Exception {
+        FailingUrlDefinitionsFactory factory =
+            new FailingUrlDefinitionsFactory();
+        URL url1 = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/defs1.xml");
+        assertNotNull("Could not load defs1 file.", url1);
+        factory.addSource(url1);
+        factory.init(Collections.EMPTY_MAP);
+        TilesRequestContext frenchContext =
+            new MockOnlyLocaleTilesContext(Locale.FRENCH);
+
+        factory.failing = true;
+        try {
+            factory.getDefinition("test.def1", frenchContext);
+            fail("The localized source should not be read");
+        } catch (DefinitionsFactoryException e) {
+            // success.
+        }
+        assertFalse("The locale should not be processed", factory
+                .isContextProcessed(frenchContext));
+        assertEquals("The base definitions should be used", "default",
+                factory.getDefinition("test.def1", frenchContext)
+                        .getAttribute("country").getValue());
+        assertEquals("The locale should not be read again", 1,
+                factory.failureCount);
+
+        factory.failing = false;
+        factory.refresh();
+        assertEquals("The locale should be read again", "France", factory
+                .getDefinition("test.def1", frenchContext).getAttribute(
+                        "country").getValue());
+        assertTrue("The locale should be processed", factory
+                .isContextProcessed(frenchContext));
+    }
+
+    /**
+     * Tests that the resolved definitions are read from the snapshot file
+     * when the sources have not changed, and from the sources otherwise.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testSnapshotFile() throws Exception {
+        File directory = File.createTempFile("tiles", "");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            File defs1 = copyConfig("defs1.xml", directory);
+            copyConfig("defs1_fr.xml", directory);
+            File snapshotFile = new File(directory, "definitions.snapshot");
+            Map<String, String> params = new HashMap<String, String>();
+            params.put(UrlDefinitionsFactory.SNAPSHOT_FILE_PROPERTY,
+                    snapshotFile.getPath());
+            TilesRequestContext frenchContext =
+                new MockOnlyLocaleTilesContext(Locale.FRENCH);
+
+            CountingUrlDefinitionsFactory factory =
+                new CountingUrlDefinitionsFactory();
+            factory.addSource(defs1.toURI().toURL());
+            factory.init(params);
+            assertEquals("Incorrect France country value", "France", factory
+                    .getDefinition("test.def1", frenchContext).getAttribute(
+                            "country").getValue());
+            factory.flushSnapshot();
+            assertTrue("The snapshot has not been written", snapshotFile
+                    .exists());
+            factory.destroy();
+
+            factory = new CountingUrlDefinitionsFactory();
+            factory.addSource(defs1.toURI().toURL());
+            factory.init(params);
+            assertEquals("The sources should not be read", 0, factory
+                    .getReadCount());
+            assertTrue("The locale should be read from the snapshot",
+                    factory.isContextProcessed(frenchContext));
+            Definition definition = factory.getDefinition("test.def1", null);
+            assertEquals("Incorrect template value", "/test.jsp", definition
+                    .getTemplate());
+            assertEquals("Incorrect default country value", "default",
+                    definition.getAttribute("country").getValue());
+            assertEquals("Incorrect France country value", "France", factory
+                    .getDefinition("test.def1", frenchContext).getAttribute(
+                            "country").getValue());
+            assertEquals("Incorrect inherited value", "France", factory
+                    .getDefinition("test.def.overridden", frenchContext)
+                    .getAttribute("country").getValue());
+
+            OutputStream stream = new FileOutputStream(defs1, true);
+            try {
+                stream.write("<!-- Changed -->".getBytes("UTF-8"));
+            } finally {
+                stream.close();
+            }
+            factory = new CountingUrlDefinitionsFactory();
+            factory.addSource(defs1.toURI().toURL());
+            factory.init(params);
+            assertEquals("The changed source should be read", 1, factory
+                    .getReadCount());
+            assertFalse("The locale should not be read from the snapshot",
+                    factory.isContextProcessed(frenchContext));
+        } finally {
+            File[] files = directory.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Tests that loading a locale reuses the base sources already parsed and
+     * reads only the localized sources that exist.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testLocalizedSourceIndex() throws Exception {
+        File directory = File.createTempFile("tiles", "");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            File defs1 = copyConfig("defs1.xml", directory);
+            copyConfig("defs1_fr.xml", directory);
+            UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+            factory.addSource(defs1.toURI().toURL());
+            factory.init(new HashMap<String, String>());
+
+            // The base source is not read again: the change is not seen
+            // until the definitions are refreshed.
+            defs1.delete();
+            assertEquals("Incorrect France country value", "France", factory
+                    .getDefinition("test.def1",
+                            new MockOnlyLocaleTilesContext(Locale.FRENCH))
+                    .getAttribute("country").getValue());
+            assertEquals("Incorrect default country value", "default",
+                    factory.getDefinition("test.def1",
+                            new MockOnlyLocaleTilesContext(Locale.US))
+                            .getAttribute("country").getValue());
+        } finally {
+            File[] files = directory.listFiles();
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Tests that request locales are mapped to the nearest supported locale.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testSupportedLocales() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+        URL url1 = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/defs1.xml");
+        assertNotNull("Could not load defs1 file.", url1);
+        factory.addSource(url1);
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(UrlDefinitionsFactory.SUPPORTED_LOCALES_PROPERTY,
+                "en_US, fr");
+        factory.init(params);
+
+        assertEquals("Incorrect supported locale", Locale.US, factory
+                .getSupportedLocale(new Locale("en", "US", "WIN")));
+        assertEquals("Incorrect supported locale", Locale.FRENCH, factory
+                .getSupportedLocale(Locale.CANADA_FRENCH));
+        assertNull("The locale should not be supported", factory
+                .getSupportedLocale(Locale.GERMANY));
+
+        assertEquals("Incorrect France country value", "France", factory
+                .getDefinition("test.def1",
+                        new MockOnlyLocaleTilesContext(Locale.CANADA_FRENCH))
+                .getAttribute("country").getValue());
+        assertEquals("Incorrect default country value", "default", factory
+                .getDefinition("test.def1",
+                        new MockOnlyLocaleTilesContext(Locale.GERMANY))
+                .getAttribute("country").getValue());
+        assertNull("Unsupported locales should not be loaded",
+                ((DefinitionsImpl) factory.getDefinitions())
+                        .getLocaleDefinitions(Locale.GERMANY));
+    }
+
+    /**
+     * Tests that the least recently used locale is discarded when the maximum
+     * number of locales is reached.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testLocaleCacheSize() throws Exception {
+        UrlDefinitionsFactory factory = new UrlDefinitionsFactory();
+        URL url1 = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/defs1.xml");
+        assertNotNull("Could not load defs1 file.", url1);
+        factory.addSource(url1);
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(UrlDefinitionsFactory.LOCALE_CACHE_SIZE_PROPERTY, "2");
+        factory.init(params);
+
+        TilesRequestContext usContext = new MockOnlyLocaleTilesContext(
+                Locale.US);
+        TilesRequestContext frenchContext = new MockOnlyLocaleTilesContext(
+                Locale.FRENCH);
+        TilesRequestContext germanContext = new MockOnlyLocaleTilesContext(
+                Locale.GERMANY);
+        factory.getDefinition("test.def1", usContext);
+        factory.getDefinition("test.def1", frenchContext);
+        factory.getDefinition("test.def1", usContext);
+        factory.getDefinition("test.def1", germanContext);
+
+        assertTrue("Locale should be processed.", factory
+                .isContextProcessed(usContext));
+        assertFalse("Locale should have been discarded.", factory
+                .isContextProcessed(frenchContext));
+        assertNull("Discarded definitions should be removed",
+                ((DefinitionsImpl) factory.getDefinitions())
+                        .getLocaleDefinitions(Locale.FRENCH));
+        assertEquals("Incorrect France country value", "France", factory
+                .getDefinition("test.def1", frenchContext).getAttribute(
+                        "country").getValue());
     }
 
     /**
@@ -355,4 +681,88 @@ public class TestUrlDefinitionsFactory extends TestCase {
         assertEquals("file_en_US.jsp", factory.concatPostfix("file.jsp", postfix));
         assertEquals("./path/file_en_US.jsp", factory.concatPostfix("./path/file.jsp", postfix));
     }
+
+    /**
+     * Copies a test configuration file to a directory.
+     *
+     * @param name The name of the configuration file.
+     * @param directory The directory.
+     * @return The copy.
+     * @throws IOException If the file cannot be copied.
+     */
+    private File copyConfig(String name, File directory) throws IOException {
+        File file = new File(directory, name);
+        InputStream in = this.getClass().getClassLoader().getResourceAsStream(
+                "org/apache/tiles/config/" + name);
+        assertNotNull("Could not load " + name + " file.", in);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+        return file;
+    }
+
+    /**
+     * Definitions factory that counts the base sources it reads.
+     */
+    private static class CountingUrlDefinitionsFactory extends
+            UrlDefinitionsFactory {
+
+        /**
+         * The number of base sources read.
+         */
+        private int readCount = 0;
+
+        /**
+         * Returns the number of base sources read.
+         *
+         * @return The number of sources read.
+         */
+        public int getReadCount() {
+            return readCount;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Map<String, Definition> readSource(URL source,
+                Map<String, String> hashes) throws DefinitionsFactoryException {
+            readCount++;
+            return super.readSource(source, hashes);
+        }
+    }
+
+    /**
+     * A factory that can fail to read the localized sources, by giving them
+     * an invalid URL.
+     */
+    private static class FailingUrlDefinitionsFactory extends
+            UrlDefinitionsFactory {
+
+        /**
+         * Indicates whether reading the localized sources fails.
+         */
+        private boolean failing = false;
+
+        /**
+         * The number of localized sources that could not be read.
+         */
+        private int failureCount = 0;
+
+        /** {@inheritDoc} */
+        @Override
+        protected String concatPostfix(String name, String postfix) {
+            if (failing && postfix != null && postfix.length() > 0) {
+                failureCount++;
+                return "invalid:" + name;
+            }
+            return super.concatPostfix(name, postfix);
+        }
+    }
 }
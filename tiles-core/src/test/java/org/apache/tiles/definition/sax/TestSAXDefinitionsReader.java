@@ -0,0 +1,395 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tiles.definition.sax;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.Attribute;
+import org.apache.tiles.Definition;
+import org.apache.tiles.context.ListAttribute;
+import org.apache.tiles.definition.DefinitionsFactoryException;
+import org.apache.tiles.definition.DefinitionsReader;
+import org.apache.tiles.definition.digester.DigesterDefinitionsReader;
+
+/**
+ * Tests the <code>org.apache.tiles.definition.sax.SAXDefinitionsReader</code> class.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TestSAXDefinitionsReader extends TestCase {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory
+            .getLog(TestSAXDefinitionsReader.class);
+
+    /**
+     * Creates a new instance of TestSAXDefinitionsReader.
+     *
+     * @param name The name of the test.
+     */
+    public TestSAXDefinitionsReader(String name) {
+        super(name);
+    }
+
+    /**
+     * Start the tests.
+     *
+     * @param theArgs the arguments. Not used
+     */
+    public static void main(String[] theArgs) {
+        junit.textui.TestRunner.main(
+            new String[] { TestSAXDefinitionsReader.class.getName()});
+    }
+
+    /**
+     * @return a test suite (<code>TestSuite</code>) that includes all methods
+     *         starting with "test"
+     */
+    public static Test suite() {
+        return new TestSuite(TestSAXDefinitionsReader.class);
+    }
+
+    /**
+     * Tests the read method under normal conditions.
+     */
+    public void testRead() {
+        try {
+            DefinitionsReader reader = new SAXDefinitionsReader();
+            reader.init(new HashMap<String, String>());
+
+            URL configFile = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/tiles-defs.xml");
+            assertNotNull("Config file not found", configFile);
+
+            InputStream source = configFile.openStream();
+            Map<String, Definition> definitions = reader.read(source);
+
+            assertNotNull("Definitions not returned.", definitions);
+            assertNotNull("Couldn't find doc.mainLayout tile.",
+                    definitions.get("doc.mainLayout"));
+            assertNotNull("Couldn't Find title attribute.", definitions.get(
+                    "doc.mainLayout").getAttribute("title").getValue());
+            assertEquals("Incorrect Find title attribute.",
+                    "Tiles Library Documentation", definitions.get(
+                            "doc.mainLayout").getAttribute("title").getValue());
+
+            Definition def = definitions.get("doc.role.test");
+            assertNotNull("Couldn't find doc.role.test tile.", def);
+            Attribute attribute = def.getAttribute("title");
+            assertNotNull("Couldn't Find title attribute.", attribute
+                    .getValue());
+            assertEquals("Role 'myrole' expected", attribute.getRole(),
+                    "myrole");
+
+            def = definitions.get("doc.listattribute.test");
+            assertNotNull("Couldn't find doc.listattribute.test tile.", def);
+            attribute = def.getAttribute("items");
+            assertNotNull("Couldn't Find items attribute.", attribute);
+            assertTrue("The class of the attribute is not right",
+                    attribute instanceof ListAttribute);
+            assertTrue("The class of value of the attribute is not right",
+                    attribute.getValue() instanceof List);
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+    }
+
+    /**
+     * Tests calling read without calling init.
+     */
+    public void testNoInit() {
+        try {
+            DefinitionsReader reader = new SAXDefinitionsReader();
+
+            // What happens if we don't call init?
+            // reader.init(new HashMap());
+
+            URL configFile = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/tiles-defs.xml");
+            assertNotNull("Config file not found", configFile);
+
+            InputStream source = configFile.openStream();
+            reader.read(source);
+
+            fail("Should've thrown exception.");
+        } catch (DefinitionsFactoryException e) {
+            // correct.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception caught, it is OK", e);
+            }
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+    }
+
+    /**
+     * Tests read with bad input source.
+     */
+    public void testBadSource() {
+        try {
+            // Create SAX Reader.
+            DefinitionsReader reader = new SAXDefinitionsReader();
+            Map<String, String> params = new HashMap<String, String>();
+
+            // Initialize reader.
+            reader.init(params);
+
+            // Read definitions.
+            reader.read(new String("Bad Input"));
+            fail("Should've thrown an exception.");
+        } catch (DefinitionsFactoryException e) {
+            // correct.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception caught, it is OK", e);
+            }
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+    }
+
+    /**
+     * Tests read with bad XML source.
+     */
+    public void testBadXml() {
+        try {
+            DefinitionsReader reader = new SAXDefinitionsReader();
+            reader.init(new HashMap<String, String>());
+
+            URL configFile = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/malformed-defs.xml");
+            assertNotNull("Config file not found", configFile);
+
+            InputStream source = configFile.openStream();
+            reader.read(source);
+            fail("Should've thrown an exception.");
+        } catch (DefinitionsFactoryException e) {
+            // correct.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception caught, it is OK", e);
+            }
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+    }
+
+    /**
+     * Tests the validating input parameter.
+     *
+     * This test case enables the validating property then passes in a
+     * configuration file with invalid XML.
+     */
+    public void testValidatingParameter() {
+        // Testing with default (validation ON).
+        try {
+            DefinitionsReader reader = new SAXDefinitionsReader();
+            Map<String, String> params = new HashMap<String, String>();
+            reader.init(params);
+
+            URL configFile = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/invalid-defs.xml");
+            assertNotNull("Config file not found", configFile);
+
+            InputStream source = configFile.openStream();
+            reader.read(source);
+            fail("Should've thrown an exception.");
+        } catch (DefinitionsFactoryException e) {
+            // correct.
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Exception caught, it is OK", e);
+            }
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+
+        // Testing with validation OFF.
+        try {
+            DefinitionsReader reader = new SAXDefinitionsReader();
+            Map<String, String> params = new HashMap<String, String>();
+            params.put(SAXDefinitionsReader.PARSER_VALIDATE_PARAMETER_NAME,
+                    "false");
+            reader.init(params);
+
+            URL configFile = this.getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/invalid-defs.xml");
+            assertNotNull("Config file not found", configFile);
+
+            InputStream source = configFile.openStream();
+            reader.read(source);
+        } catch (DefinitionsFactoryException e) {
+            fail("Should not have thrown an exception." + e);
+        } catch (Exception e) {
+            fail("Exception reading configuration." + e);
+        }
+    }
+
+    /**
+     * Tests that the definitions are the same as the ones read by
+     * {@link DigesterDefinitionsReader}.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testSameAsDigester() throws Exception {
+        URL configFile = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/tiles-defs.xml");
+        assertNotNull("Config file not found", configFile);
+
+        DefinitionsReader reader = new SAXDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        InputStream source = configFile.openStream();
+        Map<String, Definition> definitions = reader.read(source);
+        source.close();
+
+        reader = new DigesterDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        source = configFile.openStream();
+        Map<String, Definition> expectedDefinitions = reader.read(source);
+        source.close();
+
+        assertEquals("The definitions are different", expectedDefinitions
+                .keySet(), definitions.keySet());
+        for (Definition expected : expectedDefinitions.values()) {
+            Definition definition = definitions.get(expected.getName());
+            String name = expected.getName();
+            assertEquals("Different template in " + name, expected
+                    .getTemplate(), definition.getTemplate());
+            assertEquals("Different roles in " + name, expected.getRoles(),
+                    definition.getRoles());
+            assertEquals("Different preparer in " + name, expected
+                    .getPreparer(), definition.getPreparer());
+            assertEquals("Different extends in " + name, expected
+                    .getExtends(), definition.getExtends());
+            assertEquals("Different attributes in " + name, expected
+                    .getAttributes().keySet(), definition.getAttributes()
+                    .keySet());
+            for (Map.Entry<String, Attribute> entry : expected
+                    .getAttributes().entrySet()) {
+                assertSameAttribute(name + "." + entry.getKey(), entry
+                        .getValue(), definition.getAttribute(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Tests reading definitions from many threads with the same reader.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testConcurrentRead() throws Exception {
+        final int threadCount = 8;
+        final URL configFile = this.getClass().getClassLoader().getResource(
+                "org/apache/tiles/config/tiles-defs.xml");
+        final DefinitionsReader reader = new SAXDefinitionsReader();
+        reader.init(new HashMap<String, String>());
+        final List<Object> results = new ArrayList<Object>();
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    Object result;
+                    try {
+                        InputStream source = configFile.openStream();
+                        try {
+                            result = reader.read(source);
+                        } finally {
+                            source.close();
+                        }
+                    } catch (Exception e) {
+                        result = e;
+                    }
+                    synchronized (results) {
+                        results.add(result);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals("Some threads did not complete", threadCount, results
+                .size());
+        for (Object result : results) {
+            assertTrue("Error reading definitions: " + result,
+                    result instanceof Map);
+            Map<?, ?> definitions = (Map<?, ?>) result;
+            assertNotNull("Couldn't find doc.mainLayout tile.", definitions
+                    .get("doc.mainLayout"));
+        }
+    }
+
+    /**
+     * Checks that two attributes are equal.
+     *
+     * @param name The name of the attribute, used in messages.
+     * @param expected The expected attribute.
+     * @param attribute The attribute to check.
+     */
+    private void assertSameAttribute(String name, Attribute expected,
+            Attribute attribute) {
+        assertEquals("Different class for " + name, expected.getClass(),
+                attribute.getClass());
+        assertEquals("Different type for " + name, expected.getType(),
+                attribute.getType());
+        assertEquals("Different roles for " + name, expected.getRoles(),
+                attribute.getRoles());
+        if (expected instanceof ListAttribute) {
+            List<?> expectedList = (List<?>) expected.getValue();
+            List<?> list = (List<?>) attribute.getValue();
+            assertEquals("Different size for " + name, expectedList.size(),
+                    list.size());
+            for (int i = 0; i < expectedList.size(); i++) {
+                Object expectedElement = expectedList.get(i);
+                Object element = list.get(i);
+                if (expectedElement instanceof Attribute) {
+                    assertSameAttribute(name + "[" + i + "]",
+                            (Attribute) expectedElement, (Attribute) element);
+                } else {
+                    assertEquals("Different class for " + name + "[" + i
+                            + "]", expectedElement.getClass(), element
+                            .getClass());
+                    assertEquals("Different element for " + name + "[" + i
+                            + "]", expectedElement.toString(), element
+                            .toString());
+                }
+            }
+        } else {
+            assertEquals("Different value for " + name, expected.getValue(),
+                    attribute.getValue());
+        }
+    }
+}
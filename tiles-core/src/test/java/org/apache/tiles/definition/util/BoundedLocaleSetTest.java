@@ -0,0 +1,83 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link BoundedLocaleSet}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class BoundedLocaleSetTest extends TestCase {
+
+    /**
+     * Tests that the least recently used locale is evicted.
+     */
+    public void testEviction() {
+        BoundedLocaleSet locales = new BoundedLocaleSet(2);
+        assertNull("Nothing should be evicted", locales.add(Locale.US));
+        assertNull("Nothing should be evicted", locales.add(Locale.FRENCH));
+        assertNull("The set is full", locales.add(Locale.US));
+        assertTrue("Locale not found", locales.contains(Locale.US));
+        assertEquals("Incorrect eviction candidate", Locale.FRENCH, locales
+                .getEvictionCandidate());
+        assertEquals("Incorrect evicted locale", Locale.FRENCH, locales
+                .add(Locale.GERMANY));
+        assertFalse("Locale should have been evicted", locales
+                .contains(Locale.FRENCH));
+        assertEquals("Incorrect size", 2, locales.size());
+    }
+
+    /**
+     * Tests that a locale used after the last addition is more recent than
+     * the locales that have not been used since.
+     */
+    public void testRecency() {
+        BoundedLocaleSet locales = new BoundedLocaleSet(3);
+        locales.add(Locale.US);
+        locales.add(Locale.FRENCH);
+        locales.add(Locale.GERMANY);
+        assertTrue("Locale not found", locales.contains(Locale.US));
+        assertTrue("Locale not found", locales.contains(Locale.GERMANY));
+        assertEquals("Incorrect eviction candidate", Locale.FRENCH, locales
+                .getEvictionCandidate());
+        locales.add(Locale.ITALIAN);
+        assertTrue("Locale not found", locales.contains(Locale.GERMANY));
+        assertTrue("Locale not found", locales.contains(Locale.ITALIAN));
+        assertEquals("Incorrect evicted locale", Locale.US, locales
+                .add(Locale.JAPANESE));
+    }
+
+    /**
+     * Tests the creation of a set with a wrong size.
+     */
+    public void testWrongSize() {
+        try {
+            new BoundedLocaleSet(0);
+            fail("The size should have been rejected");
+        } catch (IllegalArgumentException e) {
+            // success.
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.definition.ReloadableDefinitionsFactory;
+
+/**
+ * Tests the definitions factory reloader.
+ *
+ * @version $Rev$ $Date$
+ */
+public class DefinitionsFactoryReloaderTest extends TestCase {
+
+    /**
+     * The check interval to use, in milliseconds.
+     */
+    private static final long CHECK_INTERVAL = 10;
+
+    /**
+     * The quiet period to use, in milliseconds.
+     */
+    private static final long QUIET_PERIOD = 100;
+
+    /**
+     * Tests that a burst of changes causes only one refresh.
+     *
+     * @throws InterruptedException If the test is interrupted.
+     */
+    public void testRefresh() throws InterruptedException {
+        CountingFactory factory = new CountingFactory();
+        DefinitionsFactoryReloader reloader = new DefinitionsFactoryReloader(
+                factory, CHECK_INTERVAL, QUIET_PERIOD);
+        reloader.start();
+        try {
+            Thread.sleep(CHECK_INTERVAL * 2);
+            assertEquals("The factory should not be refreshed", 0,
+                    factory.getRefreshCount());
+
+            factory.setRefreshRequired(true);
+            Thread.sleep(QUIET_PERIOD * 3);
+            assertEquals("The factory should be refreshed once", 1,
+                    factory.getRefreshCount());
+        } finally {
+            reloader.stop();
+        }
+    }
+
+    /**
+     * Tests the creation of a reloader with a wrong check interval.
+     */
+    public void testWrongCheckInterval() {
+        try {
+            DefinitionsFactoryReloader.createReloader(new CountingFactory(),
+                    "0", null);
+            fail("The check interval should have been rejected");
+        } catch (IllegalArgumentException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Reloadable factory that counts the refreshes.
+     */
+    private static class CountingFactory implements ReloadableDefinitionsFactory {
+
+        /**
+         * Indicates whether the factory is out of date.
+         */
+        private volatile boolean refreshRequired = false;
+
+        /**
+         * The number of refreshes.
+         */
+        private volatile int refreshCount = 0;
+
+        /**
+         * Sets whether the factory is out of date.
+         *
+         * @param refreshRequired <code>true</code> if it is out of date.
+         */
+        public void setRefreshRequired(boolean refreshRequired) {
+            this.refreshRequired = refreshRequired;
+        }
+
+        /**
+         * Returns the number of refreshes.
+         *
+         * @return The number of refreshes.
+         */
+        public int getRefreshCount() {
+            return refreshCount;
+        }
+
+        /** {@inheritDoc} */
+        public boolean refreshRequired() {
+            return refreshRequired;
+        }
+
+        /** {@inheritDoc} */
+        public void refresh() {
+            refreshCount++;
+            refreshRequired = false;
+        }
+    }
+}
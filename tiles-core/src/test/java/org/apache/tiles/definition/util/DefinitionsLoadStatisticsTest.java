@@ -0,0 +1,56 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link DefinitionsLoadStatistics}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class DefinitionsLoadStatisticsTest extends TestCase {
+
+    /**
+     * Tests that the last reload and the parse times are recorded.
+     */
+    public void testRecord() {
+        DefinitionsLoadStatistics statistics = new DefinitionsLoadStatistics();
+        assertEquals("Nothing has been loaded", 0, statistics
+                .getLastReloadTime());
+        statistics.recordReload(1000, 20);
+        statistics.recordReload(2000, 30);
+        assertEquals("Incorrect reload time", 2000, statistics
+                .getLastReloadTime());
+        assertEquals("Incorrect reload duration", 30, statistics
+                .getLastReloadDuration());
+        statistics.recordParse("file:/tiles.xml", 5);
+        statistics.recordParse("file:/tiles.xml", 7);
+        Map<String, Long> parseTimes = statistics.getParseTimes();
+        assertEquals("Incorrect parse time", Long.valueOf(7), parseTimes
+                .get("file:/tiles.xml"));
+        parseTimes.clear();
+        assertEquals("The parse times should be copied", 1, statistics
+                .getParseTimes().size());
+    }
+}
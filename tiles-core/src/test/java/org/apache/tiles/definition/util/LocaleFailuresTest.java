@@ -0,0 +1,71 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link LocaleFailures}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocaleFailuresTest extends TestCase {
+
+    /**
+     * Tests that the delay doubles after every failure, up to the maximum.
+     */
+    public void testRecordFailure() {
+        LocaleFailures failures = new LocaleFailures(60000, 150000);
+        assertFalse("The locale has not failed", failures
+                .isRetryDeferred(Locale.ITALY));
+        assertEquals("Incorrect first delay", 60000, failures
+                .recordFailure(Locale.ITALY));
+        assertTrue("The retry should be deferred", failures
+                .isRetryDeferred(Locale.ITALY));
+        assertFalse("Another locale has not failed", failures
+                .isRetryDeferred(Locale.FRANCE));
+        assertEquals("The delay should double", 120000, failures
+                .recordFailure(Locale.ITALY));
+        assertEquals("The delay should be limited", 150000, failures
+                .recordFailure(Locale.ITALY));
+        assertFalse("A null locale never fails", failures
+                .isRetryDeferred(null));
+    }
+
+    /**
+     * Tests that the failures are forgotten.
+     */
+    public void testRemove() {
+        LocaleFailures failures = new LocaleFailures(60000, 150000);
+        failures.recordFailure(Locale.ITALY);
+        failures.recordFailure(Locale.FRANCE);
+        failures.remove(Locale.ITALY);
+        assertFalse("The failure should be forgotten", failures
+                .isRetryDeferred(Locale.ITALY));
+        assertEquals("The delay should start again", 60000, failures
+                .recordFailure(Locale.ITALY));
+        failures.clear();
+        assertFalse("The failure should be forgotten", failures
+                .isRetryDeferred(Locale.FRANCE));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link LocalizedSourceIndex}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LocalizedSourceIndexTest extends TestCase {
+
+    /**
+     * Tests the index of a directory.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testDirectory() throws IOException {
+        File directory = File.createTempFile("tiles", "");
+        directory.delete();
+        directory.mkdirs();
+        File source = new File(directory, "defs.xml");
+        File localized = new File(directory, "defs_fr.xml");
+        try {
+            new FileOutputStream(source).close();
+            new FileOutputStream(localized).close();
+            URL url = source.toURI().toURL();
+            LocalizedSourceIndex index = new LocalizedSourceIndex(Collections
+                    .singletonList(url));
+
+            String localizedPath = localized.toURI().toURL().toExternalForm();
+            String missingPath = new File(directory, "defs_it.xml").toURI()
+                    .toURL().toExternalForm();
+            assertTrue("The source should be indexed", index
+                    .isIndexed(missingPath));
+            assertTrue("The source should exist", index.exists(localizedPath));
+            assertFalse("The source should not exist", index
+                    .exists(missingPath));
+            assertFalse("HTTP sources should not be indexed", index
+                    .isIndexed("http://localhost/defs_fr.xml"));
+            String prefix = new File(directory, "defs_").toURI().toURL()
+                    .toExternalForm();
+            assertTrue("A localized source should exist", index
+                    .existsBetween(prefix, ".xml"));
+            assertFalse("No localized source should exist", index
+                    .existsBetween(prefix, ".properties"));
+        } finally {
+            source.delete();
+            localized.delete();
+            directory.delete();
+        }
+    }
+
+    /**
+     * Tests the index of a jar file.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testJar() throws IOException {
+        File jar = File.createTempFile("tiles", ".jar");
+        try {
+            JarOutputStream stream = new JarOutputStream(new FileOutputStream(
+                    jar));
+            try {
+                stream.putNextEntry(new JarEntry("WEB-INF/defs.xml"));
+                stream.closeEntry();
+                stream.putNextEntry(new JarEntry("WEB-INF/defs_fr.xml"));
+                stream.closeEntry();
+            } finally {
+                stream.close();
+            }
+            String prefix = "jar:" + jar.toURI().toURL().toExternalForm()
+                    + "!/WEB-INF/";
+            LocalizedSourceIndex index = new LocalizedSourceIndex(Collections
+                    .singletonList(new URL(prefix + "defs.xml")));
+
+            assertTrue("The source should be indexed", index.isIndexed(prefix
+                    + "defs_it.xml"));
+            assertTrue("The source should exist", index.exists(prefix
+                    + "defs_fr.xml"));
+            assertFalse("The source should not exist", index.exists(prefix
+                    + "defs_it.xml"));
+        } finally {
+            jar.delete();
+        }
+    }
+}
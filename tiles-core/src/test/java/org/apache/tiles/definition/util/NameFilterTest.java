@@ -0,0 +1,67 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link NameFilter}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NameFilterTest extends TestCase {
+
+    /**
+     * Tests that the names of the filter are always found and that most of
+     * the other strings are excluded.
+     */
+    public void testMightContain() {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            names.add("definition." + i);
+        }
+        NameFilter filter = new NameFilter(names);
+        for (String name : names) {
+            assertTrue("The name " + name + " should be found", filter
+                    .mightContain(name));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (filter.mightContain("/WEB-INF/jsp/page" + i + ".jsp")) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives,
+                falsePositives < 50);
+    }
+
+    /**
+     * Tests an empty filter.
+     */
+    public void testEmpty() {
+        NameFilter filter = new NameFilter(Collections.<String>emptyList());
+        assertFalse("No name should be found", filter.mightContain("def"));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.definition.util;
+
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link SupportedLocales}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class SupportedLocalesTest extends TestCase {
+
+    /**
+     * Tests that a locale is mapped to the nearest supported locale.
+     */
+    public void testGetNearest() {
+        SupportedLocales locales = SupportedLocales.parse("en, fr_FR, it-IT-x");
+        assertEquals("A supported locale should be kept", Locale.FRANCE,
+                locales.getNearest(Locale.FRANCE));
+        assertEquals("The variant should be supported", new Locale("it",
+                "IT", "x"), locales.getNearest(new Locale("it", "IT", "x")));
+        assertEquals("The language should be used", Locale.ENGLISH, locales
+                .getNearest(Locale.US));
+        assertEquals("The variant should be removed", Locale.FRANCE, locales
+                .getNearest(new Locale("fr", "FR", "y")));
+        assertNull("The country should not be added", locales
+                .getNearest(Locale.FRENCH));
+        assertNull("The locale should not be supported", locales
+                .getNearest(Locale.ITALY));
+        assertNull("A null locale should stay null", locales.getNearest(null));
+    }
+}
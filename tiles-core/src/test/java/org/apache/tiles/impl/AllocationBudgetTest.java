@@ -0,0 +1,315 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+
+/**
+ * Checks that rendering does not allocate more than the budgets recorded in
+ * <code>allocation-budgets.properties</code>. Each scenario renders a new
+ * request, as a servlet container would, and the bytes allocated by the
+ * thread are read from <code>com.sun.management.ThreadMXBean</code>. The
+ * test does nothing on virtual machines that do not support it.
+ * <p/>
+ * When a change reduces the allocation, lower the budget so the improvement
+ * stays in place.
+ *
+ * @version $Rev$ $Date$
+ */
+public class AllocationBudgetTest extends TestCase {
+
+    /**
+     * The number of renderings before measuring, so that the code is
+     * compiled and the caches are filled.
+     */
+    private static final int WARMUP_ITERATIONS = 5000;
+
+    /**
+     * The number of measured renderings.
+     */
+    private static final int MEASURED_ITERATIONS = 2000;
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The budgets, in bytes per rendering, mapped by scenario name.
+     */
+    private Properties budgets;
+
+    /**
+     * The writer that receives the output.
+     */
+    private StringWriter out;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        budgets = new Properties();
+        InputStream stream = getClass().getResourceAsStream(
+                "allocation-budgets.properties");
+        try {
+            budgets.load(stream);
+        } finally {
+            stream.close();
+        }
+
+        container = new BasicTilesContainer();
+        MockContainerSupport.configure(container, MockContainerSupport
+                .createDefinitionsFactory(getClass().getResource(
+                        "allocation-defs.xml")));
+        container.setPreparerFactory(new BasicPreparerFactory());
+        out = new StringWriter();
+    }
+
+    /**
+     * Checks the rendering of a definition whose template does not use
+     * tags.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRenderSimple() throws Exception {
+        checkBudget("render.simple", new Scenario() {
+            public void run(RenderingContext request) throws TilesException {
+                container.render("budget.simple", request);
+            }
+        });
+    }
+
+    /**
+     * Checks the rendering of a composite definition, whose template inserts
+     * its attributes with tags, one of them being a definition and one being
+     * protected by a role.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRenderComposite() throws Exception {
+        checkBudget("render.composite", new Scenario() {
+            public void run(RenderingContext request) throws TilesException {
+                container.render("budget.composite", request);
+            }
+        });
+    }
+
+    /**
+     * Checks the calls made by <code>&lt;tiles:insertDefinition&gt;</code>.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testInsertDefinitionTag() throws Exception {
+        checkBudget("tag.insertDefinition", new Scenario() {
+            public void run(RenderingContext request) throws TilesException {
+                container.startContext(request);
+                try {
+                    container.render("budget.simple", request);
+                } finally {
+                    container.endContext(request);
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks the calls made by <code>&lt;tiles:insertAttribute&gt;</code>,
+     * inside a page that has put an attribute.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testInsertAttributeTag() throws Exception {
+        final Attribute header = new Attribute("header", "/header.jsp", null,
+                Attribute.AttributeType.TEMPLATE);
+        checkBudget("tag.insertAttribute", new Scenario() {
+            public void run(RenderingContext request) throws TilesException,
+                    IOException {
+                container.startContext(request).putAttribute("header", header);
+                try {
+                    request.insertAttribute("header");
+                } finally {
+                    container.endContext(request);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a scenario and compares its allocation with its budget.
+     *
+     * @param name The name of the scenario.
+     * @param scenario The scenario.
+     * @throws Exception If something goes wrong.
+     */
+    private void checkBudget(String name, Scenario scenario) throws Exception {
+        long budget = Long.parseLong(budgets.getProperty(name));
+        if (getAllocatedBytes() < 0) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runOnce(scenario);
+        }
+        long before = getAllocatedBytes();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            runOnce(scenario);
+        }
+        long allocated = (getAllocatedBytes() - before) / MEASURED_ITERATIONS;
+        assertTrue("The scenario '" + name + "' allocates " + allocated
+                + " bytes per rendering, more than its budget of " + budget
+                + " bytes", allocated <= budget);
+    }
+
+    /**
+     * Runs a scenario on a new request.
+     *
+     * @param scenario The scenario.
+     * @throws Exception If something goes wrong.
+     */
+    private void runOnce(Scenario scenario) throws Exception {
+        out.getBuffer().setLength(0);
+        scenario.run(new RenderingContext(out));
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread.
+     *
+     * @return The allocated bytes, or <code>-1</code> if they cannot be read.
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        try {
+            Class<?> beanClass = Class
+                    .forName("com.sun.management.ThreadMXBean");
+            if (!beanClass.isInstance(bean)
+                    || !((Boolean) beanClass.getMethod(
+                            "isThreadAllocatedMemoryEnabled").invoke(bean))
+                            .booleanValue()) {
+                return -1;
+            }
+            Method method = beanClass.getMethod("getThreadAllocatedBytes",
+                    long.class);
+            return ((Long) method.invoke(bean, Thread.currentThread()
+                    .getId())).longValue();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A rendering to measure.
+     */
+    private interface Scenario {
+
+        /**
+         * Renders a request.
+         *
+         * @param request The request.
+         * @throws TilesException If something goes wrong.
+         * @throws IOException If something goes wrong.
+         */
+        void run(RenderingContext request) throws TilesException,
+                IOException;
+    }
+
+    /**
+     * A request context whose templates insert the attributes of the current
+     * definition as the JSP tags do.
+     */
+    private class RenderingContext extends
+            MockContainerSupport.RequestContext {
+
+        /**
+         * Constructor.
+         *
+         * @param out The output.
+         */
+        public RenderingContext(Writer out) {
+            super(Locale.US, out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            // Templates are included from now on, as in JSP pages.
+            TilesRequestState.getInstance(this).setForceInclude(true);
+            if ("/layout.jsp".equals(path)) {
+                try {
+                    getWriter().write(container.getAttributeContext(this)
+                            .getAttribute("title").getValue().toString());
+                    insertAttribute("header");
+                    insertAttribute("body");
+                    insertAttribute("footer");
+                } catch (TilesException e) {
+                    throw new IOException(e.getMessage());
+                }
+            } else {
+                getWriter().write(path);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isUserInRole(String role) {
+            return false;
+        }
+
+        /**
+         * Inserts an attribute, as <code>&lt;tiles:insertAttribute&gt;</code>
+         * does.
+         *
+         * @param name The name of the attribute.
+         * @throws TilesException If something goes wrong.
+         * @throws IOException If something goes wrong.
+         */
+        public void insertAttribute(String name) throws TilesException,
+                IOException {
+            Attribute attribute = container.getAttributeContext(this)
+                    .getAttribute(name);
+            container.startContext(this);
+            try {
+                container.render(attribute, getWriter(), this);
+            } finally {
+                container.endContext(this);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected MockContainerSupport.RequestContext newContext(
+                Writer writer) {
+            return new RenderingContext(writer);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+import org.apache.tiles.impl.KeyedDefinitionsFactoryTilesContainer.DefaultKeyExtractor;
+
+/**
+ * Tests that the template and string types inferred when the definitions are
+ * loaded are checked again for each request, since the definitions that can
+ * be seen depend on the request.
+ *
+ * @version $Rev$ $Date$
+ */
+public class AttributeTypeTest extends TestCase {
+
+    /**
+     * The container.
+     */
+    private KeyedDefinitionsFactoryTilesContainer container;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        container = new KeyedDefinitionsFactoryTilesContainer();
+        MockContainerSupport.configure(container,
+                createDefinitionsFactory("attribute-types-defs.xml"));
+        container.key2definitionsFactory.put("keyed",
+                createDefinitionsFactory("attribute-types-keyed-defs.xml"));
+    }
+
+    /**
+     * Tests a base attribute whose value is the name of a definition that
+     * exists only in a localized file.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testLocalizedDefinition() throws TilesException, IOException {
+        MockContainerSupport.RequestContext request = createRequest(Locale.US);
+        Attribute body = getAttribute("body", request);
+        container.render(body, request.getWriter(), request);
+        assertEquals("The attribute should be a string", "types.localized",
+                request.getWriter().toString());
+
+        assertEquals("The type should be inferred at load time",
+                Attribute.AttributeType.STRING, body.getType());
+
+        request = createRequest(Locale.ITALIAN);
+        assertSame("The base attribute should be shared", body, getAttribute(
+                "body", request));
+        container.render(body, request.getWriter(), request);
+        assertEquals("The attribute should be a definition", "/localized.jsp",
+                request.getWriter().toString());
+        assertEquals("The calculated type should not be stored",
+                Attribute.AttributeType.STRING, body.getType());
+        assertTrue("The type should be inferred", body.isTypeInferred());
+    }
+
+    /**
+     * Tests a base attribute whose value is the name of a definition that
+     * exists only in a keyed definitions factory.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testKeyedDefinition() throws TilesException, IOException {
+        MockContainerSupport.RequestContext request = createRequest(Locale.US);
+        Attribute menu = getAttribute("menu", request);
+        container.render(menu, request.getWriter(), request);
+        assertEquals("The attribute should be a string", "types.keyed",
+                request.getWriter().toString());
+
+        request = createRequest(Locale.US);
+        request.getRequestScope().put(
+                DefaultKeyExtractor.DEFINITIONS_FACTORY_KEY_ATTRIBUTE_NAME,
+                "keyed");
+        menu = getAttribute("menu", request);
+        container.render(menu, request.getWriter(), request);
+        assertEquals("The attribute should be a definition", "/keyed.jsp",
+                request.getWriter().toString());
+    }
+
+    /**
+     * Tests a base attribute whose value is a template path.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testTemplate() throws TilesException, IOException {
+        MockContainerSupport.RequestContext request = createRequest(Locale.ITALIAN);
+        container.render(getAttribute("title", request), request.getWriter(), request);
+        assertEquals("The attribute should be a template", "/title.jsp",
+                request.getWriter().toString());
+    }
+
+    /**
+     * Returns an attribute of the base definition.
+     *
+     * @param name The name of the attribute.
+     * @param request The request context.
+     * @return The attribute.
+     * @throws TilesException If something goes wrong.
+     */
+    private Attribute getAttribute(String name, TilesRequestContext request)
+            throws TilesException {
+        return container.getDefinition("types.page", request)
+                .getAttribute(name);
+    }
+
+    /**
+     * Creates a definitions factory that reads a resource of this class.
+     *
+     * @param resource The name of the resource.
+     * @return The definitions factory.
+     * @throws TilesException If something goes wrong.
+     */
+    private UrlDefinitionsFactory createDefinitionsFactory(String resource)
+            throws TilesException {
+        return MockContainerSupport.createDefinitionsFactory(getClass()
+                .getResource(resource));
+    }
+
+    /**
+     * Creates a request context.
+     *
+     * @param locale The locale of the request.
+     * @return The request context.
+     */
+    private static MockContainerSupport.RequestContext createRequest(
+            Locale locale) {
+        return new MockContainerSupport.RequestContext(locale,
+                new StringWriter());
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.CachePolicy;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.cache.FragmentCache;
+import org.apache.tiles.definition.MockOnlyLocaleTilesContext;
+
+/**
+ * Tests the capture and the caching of rendered fragments in
+ * {@link BasicTilesContainer}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class FragmentCachingTest extends TestCase {
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The number of times each path has been dispatched to.
+     */
+    private Map<String, Integer> dispatches;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        Definition page = MockContainerSupport.createDefinition("page",
+                "/page.jsp");
+        page.setCachePolicy(CachePolicy.parse("ttl=60; vary=param:id"));
+        Definition plain = MockContainerSupport.createDefinition("plain",
+                "/plain.jsp");
+        Definition menu = MockContainerSupport.createDefinition("menu",
+                "/menu.jsp");
+        menu.setCachePolicy(CachePolicy.parse("ttl=60; vary=attr:selected"));
+
+        container = new BasicTilesContainer();
+        MockContainerSupport.configure(container, MockContainerSupport
+                .createDefinitionsFactory(page, plain, menu));
+        container.setFragmentCache(new FragmentCache(10, 1000));
+        dispatches = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Tests that a definition with a cache policy is rendered once.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testCachedDefinition() throws TilesException {
+        RenderingContext first = new RenderingContext("1");
+        container.render("page", first);
+        RenderingContext second = new RenderingContext("1");
+        container.render("page", second);
+        assertEquals("The definition should be rendered once", new Integer(1),
+                dispatches.get("/page.jsp"));
+        assertEquals("Incorrect output", "/page.jsp:1", first.getWriter().toString());
+        assertEquals("Incorrect cached output", "/page.jsp:1", second.getWriter()
+                .toString());
+
+        container.render("page", new RenderingContext("2"));
+        assertEquals("The definition should vary by parameter",
+                new Integer(2), dispatches.get("/page.jsp"));
+
+        container.render("plain", new RenderingContext("1"));
+        container.render("plain", new RenderingContext("1"));
+        assertEquals("The definition should not be cached", new Integer(2),
+                dispatches.get("/plain.jsp"));
+    }
+
+    /**
+     * Tests the invalidation of cached definitions.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testInvalidate() throws TilesException {
+        container.render("page", new RenderingContext("1"));
+        container.invalidateFragments("page");
+        container.render("page", new RenderingContext("1"));
+        assertEquals("The definition should be rendered again",
+                new Integer(2), dispatches.get("/page.jsp"));
+        container.invalidateAllFragments();
+        assertEquals("The cache should be empty", 0, container
+                .getFragmentCache().size());
+    }
+
+    /**
+     * Tests that an attribute with a cache policy is rendered once.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testCachedAttribute() throws TilesException, IOException {
+        Attribute attribute = new Attribute("/body.jsp", null,
+                Attribute.AttributeType.TEMPLATE);
+        attribute.setCachePolicy(CachePolicy.parse("ttl=60"));
+        RenderingContext first = new RenderingContext("1");
+        container.render(attribute, first.getWriter(), first);
+        RenderingContext second = new RenderingContext("2");
+        container.render(attribute, second.getWriter(), second);
+        assertEquals("The attribute should be rendered once", new Integer(1),
+                dispatches.get("/body.jsp"));
+        assertEquals("Incorrect cached output", "/body.jsp:1", second.getWriter()
+                .toString());
+    }
+
+    /**
+     * Tests that the output is cached separately for callers that put
+     * different values of the attributes listed by the cache policy, and
+     * that the other attributes of the caller are not part of the key.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testCallerAttributes() throws TilesException, IOException {
+        renderMenu(new Attribute("home"));
+        RenderingContext request = new RenderingContext("1");
+        AttributeContext context = container.startContext(request);
+        context.putAttribute("selected", new Attribute("home"));
+        context.putAttribute("user", new Attribute("tiles"));
+        container.render("menu", request);
+        container.endContext(request);
+        assertEquals("The attributes that are not listed should be ignored",
+                new Integer(1), dispatches.get("/menu.jsp"));
+        renderMenu(new Attribute("news"));
+        assertEquals("The callers should not share the output", new Integer(2),
+                dispatches.get("/menu.jsp"));
+        renderMenu(new Attribute("home"));
+        assertEquals("The output should be cached for each caller",
+                new Integer(2), dispatches.get("/menu.jsp"));
+        renderMenu(new Attribute(new Object()));
+        renderMenu(new Attribute(new Object()));
+        assertEquals("The output should not be cached for an object",
+                new Integer(4), dispatches.get("/menu.jsp"));
+
+        Attribute attribute = new Attribute("/body.jsp", null,
+                Attribute.AttributeType.TEMPLATE);
+        attribute.setCachePolicy(CachePolicy
+                .parse("ttl=60; vary=attr:selected"));
+        request = new RenderingContext("1");
+        context = container.startContext(request);
+        context.putAttribute("selected", new Attribute("home"));
+        container.render(attribute, request.getWriter(), request);
+        container.endContext(request);
+        request = new RenderingContext("1");
+        context = container.startContext(request);
+        context.putAttribute("selected", new Attribute("news"));
+        container.render(attribute, request.getWriter(), request);
+        container.endContext(request);
+        assertEquals("The callers should not share the attribute output",
+                new Integer(2), dispatches.get("/body.jsp"));
+    }
+
+    /**
+     * Tests the attribute key components of a cache policy.
+     */
+    public void testAttributePolicy() {
+        assertEquals("Incorrect key components", Arrays.asList(new String[] {
+                "locale", "attr:selected"}), CachePolicy.parse(
+                "vary=locale, attr:selected").getKeyComponents());
+        try {
+            CachePolicy.parse("vary=attr:");
+            fail("An attribute component needs a name");
+        } catch (IllegalArgumentException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests rendering into a writer.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testRenderTo() throws TilesException, IOException {
+        RenderingContext request = new RenderingContext("1");
+        StringWriter writer = new StringWriter();
+        container.renderTo("plain", writer, request);
+        assertEquals("Incorrect output", "/plain.jsp:1", writer.toString());
+        assertEquals("Nothing should be written in the response", "",
+                request.getWriter().toString());
+
+        writer = new StringWriter();
+        container.renderTo(new Attribute("/body.jsp", null,
+                Attribute.AttributeType.TEMPLATE), writer, request);
+        assertEquals("Incorrect attribute output", "/body.jsp:1", writer
+                .toString());
+
+        assertEquals("Incorrect string output", "/plain.jsp:1", container
+                .renderToString("plain", request));
+        assertEquals("The buffer should be back in the pool", 1, container
+                .getRenderBufferPool().size());
+        assertEquals("Incorrect output with a pooled buffer", "/plain.jsp:1",
+                container.renderToString("plain", request));
+    }
+
+    /**
+     * Tests rendering into a writer when the request cannot be captured.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testRenderToNotCapturing() throws IOException {
+        try {
+            container.renderTo("plain", new StringWriter(),
+                    new MockOnlyLocaleTilesContext(null));
+            fail("The output should not be captured");
+        } catch (TilesException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Renders the "menu" definition from a caller that puts an attribute.
+     *
+     * @param selected The attribute put by the caller.
+     * @throws TilesException If something goes wrong.
+     */
+    private void renderMenu(Attribute selected) throws TilesException {
+        RenderingContext request = new RenderingContext("1");
+        AttributeContext context = container.startContext(request);
+        context.putAttribute("selected", selected);
+        try {
+            container.render("menu", request);
+        } finally {
+            container.endContext(request);
+        }
+    }
+
+    /**
+     * A request context that writes the dispatched path and the "id"
+     * parameter, and counts the dispatches.
+     */
+    private class RenderingContext extends MockContainerSupport.RequestContext {
+
+        /**
+         * Constructor.
+         *
+         * @param id The value of the "id" parameter.
+         */
+        public RenderingContext(String id) {
+            this(id, new StringWriter());
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param id The value of the "id" parameter.
+         * @param out The output.
+         */
+        public RenderingContext(String id, Writer out) {
+            super(null, out);
+            getParam().put("id", id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            Integer count = dispatches.get(path);
+            dispatches.put(path, new Integer(count != null ? count
+                    .intValue() + 1 : 1));
+            getWriter().write(path + ":" + getParam().get("id"));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected MockContainerSupport.RequestContext newContext(
+                Writer writer) {
+            return new RenderingContext(getParam().get("id"), writer);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesApplicationContext;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.TilesContextFactory;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.definition.Definitions;
+import org.apache.tiles.definition.DefinitionsFactory;
+import org.apache.tiles.definition.MockOnlyLocaleTilesContext;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+
+/**
+ * Sets up the containers used by the rendering tests, without a servlet
+ * environment: the request context is the first request item, and the
+ * definitions are kept in memory or read from a resource.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class MockContainerSupport {
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private MockContainerSupport() {
+    }
+
+    /**
+     * Configures a container to use a definitions factory, and the first
+     * request item as the request context.
+     *
+     * @param container The container to configure.
+     * @param definitionsFactory The definitions factory.
+     */
+    public static void configure(BasicTilesContainer container,
+            DefinitionsFactory definitionsFactory) {
+        container.setDefinitionsFactory(definitionsFactory);
+        container.setContextFactory(new TilesContextFactory() {
+
+            /** {@inheritDoc} */
+            public void init(Map<String, String> configurationParameters) {
+            }
+
+            /** {@inheritDoc} */
+            public TilesApplicationContext createApplicationContext(
+                    Object context) {
+                return null;
+            }
+
+            /** {@inheritDoc} */
+            public TilesRequestContext createRequestContext(
+                    TilesApplicationContext context, Object... requestItems) {
+                return (TilesRequestContext) requestItems[0];
+            }
+        });
+    }
+
+    /**
+     * Creates a definitions factory that returns the given definitions, for
+     * every request.
+     *
+     * @param definitions The definitions.
+     * @return The definitions factory.
+     */
+    public static DefinitionsFactory createDefinitionsFactory(
+            Definition... definitions) {
+        final Map<String, Definition> definitionMap =
+            new HashMap<String, Definition>();
+        for (Definition definition : definitions) {
+            definitionMap.put(definition.getName(), definition);
+        }
+        return new DefinitionsFactory() {
+
+            /** {@inheritDoc} */
+            public void init(Map<String, String> params) {
+            }
+
+            /** {@inheritDoc} */
+            public Definition getDefinition(String name,
+                    TilesRequestContext tilesContext) {
+                return definitionMap.get(name);
+            }
+
+            /** {@inheritDoc} */
+            public void addSource(Object source) {
+            }
+
+            /** {@inheritDoc} */
+            public Definitions readDefinitions() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Creates a definitions factory that reads a resource. As in the
+     * container, the source is added before the factory is initialized, so
+     * the definitions are loaded by the initialization. It fails if no
+     * definition has been loaded.
+     *
+     * @param source The resource to read.
+     * @return The definitions factory.
+     * @throws TilesException If something goes wrong.
+     */
+    public static UrlDefinitionsFactory createDefinitionsFactory(URL source)
+            throws TilesException {
+        Assert.assertNotNull("The definitions file has not been found",
+                source);
+        UrlDefinitionsFactory definitionsFactory = new UrlDefinitionsFactory();
+        definitionsFactory.addSource(source);
+        definitionsFactory.init(new HashMap<String, String>());
+        Assert.assertFalse("The definitions of " + source
+                + " have not been loaded", definitionsFactory
+                .getDefinitionNames().isEmpty());
+        return definitionsFactory;
+    }
+
+    /**
+     * Creates a definition.
+     *
+     * @param name The name of the definition.
+     * @param template The template of the definition.
+     * @return The definition.
+     */
+    public static Definition createDefinition(String name, String template) {
+        Definition definition = new Definition();
+        definition.setName(name);
+        definition.setTemplate(template);
+        return definition;
+    }
+
+    /**
+     * A request context that keeps its scope, headers and parameters in
+     * memory, and writes the dispatched paths into its output. It can be
+     * captured: the capturing contexts share its scope, headers and
+     * parameters.
+     */
+    public static class RequestContext extends MockOnlyLocaleTilesContext
+            implements CapturingTilesRequestContext {
+
+        /**
+         * The request scope.
+         */
+        private Map<String, Object> requestScope = new HashMap<String, Object>();
+
+        /**
+         * The headers.
+         */
+        private Map<String, String> header = new HashMap<String, String>();
+
+        /**
+         * The request parameters.
+         */
+        private Map<String, String> param = new HashMap<String, String>();
+
+        /**
+         * The output.
+         */
+        private Writer out;
+
+        /**
+         * Constructor, without a locale and writing in a new buffer.
+         */
+        public RequestContext() {
+            this(null, new StringWriter());
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param locale The locale of the request. It can be
+         * <code>null</code>.
+         * @param out The output.
+         */
+        public RequestContext(Locale locale, Writer out) {
+            super(locale);
+            this.out = out;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Map<String, Object> getRequestScope() {
+            return requestScope;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Map<String, String> getHeader() {
+            return header;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Map<String, String> getParam() {
+            return param;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            out.write(path);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void include(String path) throws IOException {
+            dispatch(path);
+        }
+
+        /** {@inheritDoc} */
+        public Writer getWriter() {
+            return out;
+        }
+
+        /** {@inheritDoc} */
+        public TilesRequestContext createCapturingContext(Writer writer) {
+            RequestContext context = newContext(writer);
+            context.requestScope = requestScope;
+            context.header = header;
+            context.param = param;
+            return context;
+        }
+
+        /**
+         * Creates a request context of the same class, for the same locale,
+         * that writes into another output. Override it in subclasses, so
+         * that the capturing contexts behave as the original one.
+         *
+         * @param writer The output.
+         * @return The new request context.
+         */
+        protected RequestContext newContext(Writer writer) {
+            return new RequestContext(getRequestLocale(), writer);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.impl;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+import org.apache.tiles.preparer.IndependentViewPreparer;
+import org.apache.tiles.preparer.PreparerException;
+
+/**
+ * Tests the parallel execution of preparers in {@link BasicTilesContainer}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ParallelPreparersTest extends TestCase {
+
+    /**
+     * The barrier that both preparers must reach, so they must run at the
+     * same time.
+     */
+    private static CyclicBarrier barrier;
+
+    /**
+     * Released when a {@link SlowPreparer} starts running.
+     */
+    private static CountDownLatch slowStarted;
+
+    /**
+     * Indicates that a {@link SlowPreparer} has finished running.
+     */
+    private static volatile boolean slowFinished;
+
+    /**
+     * The request context received by a {@link CallerAttributePreparer}.
+     */
+    private static volatile TilesRequestContext preparedRequest;
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The executor that runs the preparers.
+     */
+    private ExecutorService executor;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        Definition page = MockContainerSupport.createDefinition("page",
+                "/page.jsp");
+        page.setPreparer(BarrierPreparer.class.getName());
+        page.put("body", "child");
+        Definition child = MockContainerSupport.createDefinition("child",
+                "/child.jsp");
+        child.setPreparer(BarrierPreparer.class.getName());
+        child.put("child", "true");
+        Definition failing = MockContainerSupport.createDefinition("failing",
+                "/failing.jsp");
+        failing.put("body", "slow");
+        Definition slow = MockContainerSupport.createDefinition("slow",
+                "/slow.jsp");
+        slow.setPreparer(SlowPreparer.class.getName());
+        Definition outer = MockContainerSupport.createDefinition("outer",
+                "/outer.jsp");
+        outer.put("body", "inner");
+        outer.put("title", "Outer title");
+        outer.put("subtitle", "Outer subtitle");
+        Definition inner = MockContainerSupport.createDefinition("inner",
+                "/inner.jsp");
+        inner.setPreparer(CallerAttributePreparer.class.getName());
+        inner.put("subtitle", "Inner subtitle");
+
+        container = new BasicTilesContainer();
+        MockContainerSupport.configure(container, MockContainerSupport
+                .createDefinitionsFactory(page, child, failing, slow, outer,
+                        inner));
+        container.setPreparerFactory(new BasicPreparerFactory());
+        executor = Executors.newFixedThreadPool(2);
+        container.setPreparerExecutor(executor);
+        barrier = new CyclicBarrier(2);
+        slowStarted = new CountDownLatch(1);
+        slowFinished = false;
+        preparedRequest = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that the preparers of a page and of the definition it includes
+     * run at the same time, and that their attributes are visible when the
+     * definitions are rendered.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testParallelPreparers() throws TilesException {
+        RenderingContext request = new RenderingContext();
+        container.render("page", request);
+        assertEquals("The page has not been prepared", "page",
+                request.rendered.get("/page.jsp"));
+        assertEquals("The child has not been prepared", "child",
+                request.rendered.get("/child.jsp"));
+        assertNull("The preparers have not been cleaned up",
+                getPendingPreparers(request));
+    }
+
+    /**
+     * Tests that the preparers are started again when the same request
+     * renders a definition a second time. If the pending preparers of the
+     * first rendering were not cleaned up, the preparer of the page would
+     * run alone and wait for the other one until the barrier times out.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testRenderTwice() throws TilesException {
+        RenderingContext request = new RenderingContext();
+        container.render("page", request);
+        request.rendered.clear();
+        container.render("page", request);
+        assertEquals("The page has not been prepared", "page",
+                request.rendered.get("/page.jsp"));
+        assertEquals("The child has not been prepared", "child",
+                request.rendered.get("/child.jsp"));
+        assertNull("The preparers have not been cleaned up",
+                getPendingPreparers(request));
+    }
+
+    /**
+     * Tests that a preparer started in parallel sees the attributes of the
+     * caller and of the definitions that include its definition, and that it
+     * receives a copy of the request.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testCallerAttributes() throws TilesException {
+        RenderingContext request = new RenderingContext();
+        request.getRequestScope().put("user", "tiles");
+        AttributeContext callerContext = container.startContext(request);
+        callerContext.putAttribute("title", new Attribute("Caller title"));
+        try {
+            container.render("outer", request);
+        } finally {
+            container.endContext(request);
+        }
+        assertEquals("The attributes of the caller are not visible",
+                "Caller title|Outer subtitle", request.rendered
+                        .get("/inner.jsp"));
+        assertNotNull("The preparer has not been executed", preparedRequest);
+        assertNotSame("The preparer received the request", request,
+                preparedRequest);
+        assertEquals("The request scope has not been copied", "tiles",
+                preparedRequest.getRequestScope().get("user"));
+        assertFalse("The state of the request has been copied",
+                preparedRequest.getRequestScope().containsKey(
+                        TilesRequestState.STATE_ATTRIBUTE_NAME));
+        try {
+            preparedRequest.getSessionScope();
+            fail("The session should not be available");
+        } catch (UnsupportedOperationException e) {
+            // success.
+        }
+    }
+
+    /**
+     * Tests that a rendering that fails waits for the preparers it started,
+     * that use the request, to stop running before returning.
+     */
+    public void testWaitForRunningPreparers() {
+        RenderingContext request = new RenderingContext();
+        try {
+            container.render("failing", request);
+            fail("The rendering should fail");
+        } catch (TilesException e) {
+            // success.
+        }
+        assertTrue("The preparer is still running", slowFinished);
+        assertNull("The preparers have not been cleaned up",
+                getPendingPreparers(request));
+    }
+
+    /**
+     * Tests that destroying the container does not shut down an executor
+     * that it has not created.
+     */
+    public void testDestroy() {
+        container.destroy();
+        assertNull("The executor is still used", container
+                .getPreparerExecutor());
+        assertFalse("The executor has been shut down", executor.isShutdown());
+    }
+
+    /**
+     * Returns the preparers that the container has recorded as pending in
+     * the state of a request.
+     *
+     * @param request The request context.
+     * @return The pending preparers, or <code>null</code> if none is
+     * recorded.
+     */
+    private Object getPendingPreparers(TilesRequestContext request) {
+        assertTrue("The request state has not been used", request
+                .getRequestScope().containsKey(
+                        TilesRequestState.STATE_ATTRIBUTE_NAME));
+        return TilesRequestState.getInstance(request).getAttribute(
+                BasicTilesContainer.class.getName() + ".PENDING_PREPARERS");
+    }
+
+    /**
+     * A preparer that waits for another one, and puts the name of its
+     * definition as an attribute.
+     */
+    public static class BarrierPreparer implements IndependentViewPreparer {
+
+        /** {@inheritDoc} */
+        public void execute(TilesRequestContext tilesContext,
+                AttributeContext attributeContext) throws PreparerException {
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new PreparerException(
+                        "The preparers are not running in parallel", e);
+            }
+            Object template = attributeContext.getAttribute("child") != null
+                    ? "child" : "page";
+            attributeContext.putAttribute("prepared",
+                    new Attribute(template));
+        }
+    }
+
+    /**
+     * A preparer that puts the values of the "title" and "subtitle"
+     * attributes it sees, and records the request it receives.
+     */
+    public static class CallerAttributePreparer implements
+            IndependentViewPreparer {
+
+        /** {@inheritDoc} */
+        public void execute(TilesRequestContext tilesContext,
+                AttributeContext attributeContext) throws PreparerException {
+            preparedRequest = tilesContext;
+            attributeContext.putAttribute("prepared", new Attribute(
+                    attributeContext.getAttribute("title").getValue() + "|"
+                            + attributeContext.getAttribute("subtitle")
+                                    .getValue()));
+        }
+    }
+
+    /**
+     * A preparer that runs for a while after it has started.
+     */
+    public static class SlowPreparer implements IndependentViewPreparer {
+
+        /** {@inheritDoc} */
+        public void execute(TilesRequestContext tilesContext,
+                AttributeContext attributeContext) throws PreparerException {
+            slowStarted.countDown();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new PreparerException("The preparer has been interrupted",
+                        e);
+            }
+            slowFinished = true;
+        }
+    }
+
+    /**
+     * A request context that records the value of the "prepared" attribute
+     * for each dispatched path, renders the "child" definition from the page
+     * and the "inner" definition from the outer one, and fails to render the
+     * "failing" definition.
+     */
+    private class RenderingContext extends MockContainerSupport.RequestContext {
+
+        /**
+         * The value of the "prepared" attribute, mapped by dispatched path.
+         */
+        private Map<String, Object> rendered = new HashMap<String, Object>();
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            if ("/failing.jsp".equals(path)) {
+                try {
+                    slowStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("The page cannot be rendered");
+            }
+            AttributeContext context = container.getAttributeContext(this);
+            Attribute prepared = context.getAttribute("prepared");
+            if (prepared != null) {
+                rendered.put(path, prepared.getValue());
+            }
+            String nested = null;
+            if ("/page.jsp".equals(path)) {
+                nested = "child";
+            } else if ("/outer.jsp".equals(path)) {
+                nested = "inner";
+            }
+            if (nested != null) {
+                try {
+                    container.render(nested, this);
+                } catch (TilesException e) {
+                    IOException exception = new IOException(e.getMessage());
+                    exception.initCause(e);
+                    throw exception;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.TilesApplicationContext;
+import org.apache.tiles.context.RequestContextStatistics;
+import org.apache.tiles.context.TilesContextFactory;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.definition.MockOnlyLocaleTilesContext;
+import org.apache.tiles.definition.UrlDefinitionsFactory;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+
+/**
+ * Tests {@link TilesContainerManagement}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TilesContainerManagementTest extends TestCase {
+
+    /**
+     * The definitions factory.
+     */
+    private UrlDefinitionsFactory factory;
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The object to test.
+     */
+    private TilesContainerManagement management;
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void setUp() throws Exception {
+        factory = new UrlDefinitionsFactory();
+        for (String name : new String[] {"defs1.xml", "defs2.xml", "defs3.xml"}) {
+            URL url = getClass().getClassLoader().getResource(
+                    "org/apache/tiles/config/" + name);
+            assertNotNull("Could not load " + name, url);
+            factory.addSource(url);
+        }
+        factory.init(Collections.EMPTY_MAP);
+
+        container = new BasicTilesContainer();
+        container.setDefinitionsFactory(factory);
+        container.setPreparerFactory(new BasicPreparerFactory());
+        container.setContextFactory(new CountingContextFactory());
+        management = new TilesContainerManagement(container);
+    }
+
+    /**
+     * Tests the statistics of the definitions.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testDefinitionStatistics() throws Exception {
+        assertEquals("Incorrect base definition count", factory
+                .getDefinitionNames().size(), management
+                .getBaseDefinitionCount());
+        assertNotNull("The reload time should be known", management
+                .getLastReloadTime());
+        assertTrue("The reload duration should be known", management
+                .getLastReloadDuration() >= 0);
+        assertEquals("Incorrect number of parse times", 3, management
+                .getSourceParseTimes().length);
+        assertEquals("No locale should be processed", 0, management
+                .getProcessedLocales().length);
+
+        factory.getDefinition("test.def1", new MockOnlyLocaleTilesContext(
+                Locale.FRENCH));
+        assertEquals("Incorrect processed locales", Arrays
+                .asList(new String[] {"fr"}), Arrays.asList(management
+                .getProcessedLocales()));
+        String[] counts = management.getLocaleDefinitionCounts();
+        assertEquals("Incorrect locale counts", 1, counts.length);
+        assertTrue("Incorrect locale count " + counts[0], counts[0]
+                .startsWith("fr=") && !counts[0].equals("fr=-1"));
+        assertTrue("The localized sources should have been parsed",
+                management.getSourceParseTimes().length > 3);
+    }
+
+    /**
+     * Tests the operations.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testOperations() throws Exception {
+        String dump = management.dumpDefinition("test.def1", "");
+        assertTrue("The template should be described: " + dump, dump
+                .indexOf("template: /test.jsp") >= 0);
+        assertTrue("The attributes should be described: " + dump, dump
+                .indexOf("attribute country: default") >= 0);
+        assertNull("The definition does not exist", management
+                .dumpDefinition("not.there", null));
+
+        factory.getDefinition("test.def1", new MockOnlyLocaleTilesContext(
+                Locale.FRENCH));
+        dump = management.dumpDefinition("test.def1", "fr");
+        assertTrue("The localized definition should be described: " + dump,
+                dump.indexOf("attribute country: France") >= 0);
+        assertTrue("The locale should be evicted", management
+                .evictLocale("fr"));
+        assertFalse("The locale has already been evicted", management
+                .evictLocale("fr"));
+        assertEquals("No locale should be processed", 0, management
+                .getProcessedLocales().length);
+        dump = management.dumpDefinition("test.def1", "fr");
+        assertTrue("The base definition should be described: " + dump,
+                dump.indexOf("attribute country: default") >= 0);
+
+        long lastReload = management.getLastReloadTime().getTime();
+        management.refresh();
+        assertTrue("The definitions should have been reloaded", management
+                .getLastReloadTime().getTime() >= lastReload);
+    }
+
+    /**
+     * Tests the other statistics.
+     */
+    public void testContainerStatistics() {
+        assertEquals("Incorrect preparer cache size", 0, management
+                .getPreparerCacheSize());
+        assertEquals("Incorrect created count", 2, management
+                .getCreatedRequestContextCount());
+        assertEquals("Incorrect reused count", 1, management
+                .getReusedRequestContextCount());
+    }
+
+    /**
+     * Tests the registration in the MBean server.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRegister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = TilesContainerManagement.register(container,
+                "test, app");
+        assertNotNull("The container should be registered", name);
+        try {
+            assertTrue("The container is not registered", server
+                    .isRegistered(name));
+            assertEquals("Incorrect attribute", management
+                    .getBaseDefinitionCount(), server.getAttribute(name,
+                    "BaseDefinitionCount"));
+            assertNull("The name is already used", TilesContainerManagement
+                    .register(container, "test, app"));
+        } finally {
+            TilesContainerManagement.unregister(name);
+        }
+        assertFalse("The container should be unregistered", server
+                .isRegistered(name));
+    }
+
+    /**
+     * A context factory with fixed statistics.
+     */
+    private static class CountingContextFactory implements
+            TilesContextFactory, RequestContextStatistics {
+
+        /** {@inheritDoc} */
+        public void init(Map<String, String> configurationParameters) {
+        }
+
+        /** {@inheritDoc} */
+        public TilesApplicationContext createApplicationContext(Object context) {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public TilesRequestContext createRequestContext(
+                TilesApplicationContext context, Object... requestItems) {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        public long getCreatedRequestContextCount() {
+            return 2;
+        }
+
+        /** {@inheritDoc} */
+        public long getReusedRequestContextCount() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.listener;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    /**
+     * Tests that each value is in a bucket whose upper bound is not less
+     * than the value, and not more than 12.5% higher.
+     */
+    public void testBuckets() {
+        int lastBucket = -1;
+        for (long micros = 0; micros < 100000; micros++) {
+            int bucket = LatencyHistogram.getBucket(micros);
+            assertTrue("Buckets should not decrease", bucket >= lastBucket);
+            lastBucket = bucket;
+            long upperBound = LatencyHistogram.getUpperBound(bucket);
+            assertTrue("The value " + micros + " is above its bucket",
+                    micros <= upperBound);
+            assertTrue("The bucket of " + micros + " is too wide",
+                    upperBound - micros <= micros / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals("Huge values should be in the last bucket",
+                Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram
+                        .getBucket(Long.MAX_VALUE / 1000)));
+    }
+
+    /**
+     * Tests recording values and computing statistics.
+     */
+    public void testRecord() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals("The percentile of nothing should be 0", 0, histogram
+                .getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals("Incorrect count", 100, histogram.getCount());
+        assertEquals("Incorrect max", 100000, histogram.getMax());
+        assertEquals("Incorrect mean", 50500.0, histogram.getMean(), 0.1);
+        long median = histogram.getPercentile(50);
+        assertTrue("Incorrect median " + median, median >= 50000
+                && median <= 50000 * 9 / 8);
+        assertEquals("Incorrect 100th percentile", 100000, histogram
+                .getPercentile(100));
+        histogram.reset();
+        assertEquals("The histogram should be empty", 0, histogram.getCount());
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.listener;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.impl.MockContainerSupport;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+import org.apache.tiles.preparer.PreparerException;
+import org.apache.tiles.preparer.ViewPreparer;
+
+/**
+ * Tests {@link MetricsRenderListener} and the notifications of the
+ * container.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MetricsRenderListenerTest extends TestCase {
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The listener.
+     */
+    private MetricsRenderListener listener;
+
+    /**
+     * The notifications received by the container, as strings.
+     */
+    private List<String> events;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        Definition page = MockContainerSupport.createDefinition("page",
+                "/page.jsp");
+        page.setPreparer(TestPreparer.class.getName());
+        Definition broken = MockContainerSupport.createDefinition("broken",
+                "/broken.jsp");
+
+        container = new BasicTilesContainer();
+        MockContainerSupport.configure(container, MockContainerSupport
+                .createDefinitionsFactory(page, broken));
+        container.setPreparerFactory(new BasicPreparerFactory());
+        listener = new MetricsRenderListener();
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(MetricsRenderListener.SLOW_THRESHOLD_INIT_PARAM, "0");
+        listener.init(params);
+        container.addRenderListener(listener);
+        events = new ArrayList<String>();
+        container.addRenderListener(new RenderListener() {
+
+            public void init(Map<String, String> params) {
+            }
+
+            public void renderStarted(RenderPhase phase, String name,
+                    TilesRequestContext request) {
+                events.add("start " + phase + " " + name);
+            }
+
+            public void renderEnded(RenderPhase phase, String name,
+                    TilesRequestContext request, long duration,
+                    Throwable error) {
+                events.add("end " + phase + " " + name
+                        + (error != null ? " failed" : ""));
+            }
+        });
+    }
+
+    /**
+     * Tests the notifications and the statistics of a rendering.
+     *
+     * @throws TilesException If something goes wrong.
+     * @throws IOException If something goes wrong.
+     */
+    public void testRender() throws TilesException, IOException {
+        RenderingContext request = new RenderingContext();
+        container.render("page", request);
+        container.render(new Attribute("body", (Object) "page"), new StringWriter(),
+                request);
+
+        List<String> expected = new ArrayList<String>();
+        expected.add("start DEFINITION page");
+        expected.add("start PREPARER " + TestPreparer.class.getName());
+        expected.add("end PREPARER " + TestPreparer.class.getName());
+        expected.add("start DISPATCH /page.jsp");
+        expected.add("end DISPATCH /page.jsp");
+        expected.add("end DEFINITION page");
+        assertEquals("Incorrect notifications", expected, events.subList(0,
+                expected.size()));
+        assertEquals("Incorrect attribute notification", "start ATTRIBUTE body",
+                events.get(expected.size()));
+
+        assertEquals("Incorrect definition count", 2, listener.getStatistics(
+                RenderPhase.DEFINITION, "page").getCount());
+        assertEquals("Incorrect preparer count", 2, listener.getStatistics(
+                RenderPhase.PREPARER, TestPreparer.class.getName())
+                .getCount());
+        assertEquals("Incorrect dispatch count", 2, listener.getStatistics(
+                RenderPhase.DISPATCH, "/page.jsp").getCount());
+        assertEquals("Incorrect attribute count", 1, listener.getStatistics(
+                RenderPhase.ATTRIBUTE, "body").getCount());
+        assertEquals("There should be no errors", 0, listener.getStatistics(
+                RenderPhase.DEFINITION, "page").getErrorCount());
+
+        container.removeRenderListener(listener);
+        container.render("page", request);
+        assertEquals("The removed listener should not be notified", 2,
+                listener.getStatistics(RenderPhase.DEFINITION, "page")
+                        .getCount());
+    }
+
+    /**
+     * Tests the notification of errors.
+     */
+    public void testError() {
+        try {
+            container.render("broken", new RenderingContext());
+            fail("The rendering should fail");
+        } catch (TilesException e) {
+            // success.
+        }
+        assertEquals("The error should be counted", 1, listener
+                .getStatistics(RenderPhase.DEFINITION, "broken")
+                .getErrorCount());
+        assertEquals("The error should be counted", 1, listener
+                .getStatistics(RenderPhase.DISPATCH, "/broken.jsp")
+                .getErrorCount());
+        assertTrue("The error should be notified", events
+                .contains("end DEFINITION broken failed"));
+    }
+
+    /**
+     * A preparer that does nothing.
+     */
+    public static class TestPreparer implements ViewPreparer {
+
+        /** {@inheritDoc} */
+        public void execute(TilesRequestContext tilesContext,
+                AttributeContext attributeContext) throws PreparerException {
+            // Nothing to prepare.
+        }
+    }
+
+    /**
+     * A request context that fails when dispatching to "/broken.jsp".
+     */
+    private static class RenderingContext extends
+            MockContainerSupport.RequestContext {
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            if ("/broken.jsp".equals(path)) {
+                throw new IOException("Broken template");
+            }
+        }
+    }
+}
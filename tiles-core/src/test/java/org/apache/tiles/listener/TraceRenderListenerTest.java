@@ -0,0 +1,221 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.listener;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.Definition;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.Attribute.AttributeType;
+import org.apache.tiles.context.TilesRequestState;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.impl.MockContainerSupport;
+import org.apache.tiles.preparer.BasicPreparerFactory;
+
+/**
+ * Tests {@link TraceRenderListener}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TraceRenderListenerTest extends TestCase {
+
+    /**
+     * The container.
+     */
+    private BasicTilesContainer container;
+
+    /**
+     * The listener.
+     */
+    private TraceRenderListener listener;
+
+    /**
+     * The initialization parameters of the listener.
+     */
+    private Map<String, String> params;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        Definition page = MockContainerSupport.createDefinition("page",
+                "/page.jsp");
+        page.setPreparer(MetricsRenderListenerTest.TestPreparer.class
+                .getName());
+        page.putAttribute("title", new Attribute("title", "Hello",
+                null, AttributeType.STRING));
+        page.putAttribute("body", new Attribute("body",
+                "/body.jsp", null, AttributeType.TEMPLATE));
+
+        container = new BasicTilesContainer();
+        MockContainerSupport.configure(container, MockContainerSupport
+                .createDefinitionsFactory(page));
+        container.setPreparerFactory(new BasicPreparerFactory());
+        listener = new TraceRenderListener();
+        params = new HashMap<String, String>();
+        params.put(TraceRenderListener.OUTPUT_INIT_PARAM, "attribute");
+    }
+
+    /**
+     * Tests that requests are not traced by default.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testNotTraced() throws TilesException {
+        listener.init(params);
+        container.addRenderListener(listener);
+        RenderingContext request = new RenderingContext(new StringWriter());
+        container.render("page", request);
+        assertNull("The request should not be traced", TraceRenderListener
+                .getTrace(request));
+        assertNull("The trace should not be exported", request
+                .getRequestScope().get(TraceRenderListener.TRACE_ATTRIBUTE));
+        assertEquals("The output should not change", "/page.jsp:Hello/body.jsp",
+                request.getWriter().toString());
+    }
+
+    /**
+     * Tests the trace of a request.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testTrace() throws TilesException {
+        listener.init(params);
+        container.addRenderListener(listener);
+        RenderingContext request = new RenderingContext(new StringWriter());
+        request.getRequestScope().put(TraceRenderListener.ENABLED_ATTRIBUTE,
+                Boolean.TRUE);
+        container.render("page", request);
+        assertEquals("The output should not change", "/page.jsp:Hello/body.jsp",
+                request.getWriter().toString());
+
+        List<RenderTrace.Node> roots = TraceRenderListener.getTrace(request)
+                .getRoots();
+        assertEquals("Incorrect roots", 1, roots.size());
+        RenderTrace.Node root = roots.get(0);
+        assertEquals("Incorrect root", "page", root.getName());
+        assertEquals("Incorrect template", "/page.jsp", root.getTemplate());
+        assertEquals("Incorrect children", 2, root.getChildren().size());
+        assertEquals("Incorrect preparer", RenderPhase.PREPARER, root
+                .getChildren().get(0).getPhase());
+        RenderTrace.Node dispatch = root.getChildren().get(1);
+        assertEquals("Incorrect dispatch", RenderPhase.DISPATCH, dispatch
+                .getPhase());
+        assertEquals("Incorrect attributes", 2, dispatch.getChildren().size());
+        RenderTrace.Node title = dispatch.getChildren().get(0);
+        assertEquals("Incorrect attribute", "title", title.getName());
+        assertEquals("Incorrect type", AttributeType.STRING, title.getType());
+        assertEquals("Incorrect output", 5, title.getWritten());
+        RenderTrace.Node body = dispatch.getChildren().get(1);
+        assertEquals("Incorrect type", AttributeType.TEMPLATE, body.getType());
+        assertEquals("The included template should be counted", 9, body
+                .getChildren().get(0).getWritten());
+        assertEquals("Incorrect total output", 14, dispatch.getWritten());
+
+        String json = (String) request.getRequestScope().get(
+                TraceRenderListener.TRACE_ATTRIBUTE);
+        assertNotNull("The trace should be exported", json);
+        assertTrue("Incorrect JSON " + json, json.startsWith(
+                "[{\"phase\":\"DEFINITION\",\"name\":\"page\","
+                + "\"template\":\"/page.jsp\",\"preparerTime\":"));
+        assertTrue("Incorrect JSON " + json, json.indexOf(
+                "\"name\":\"title\",\"type\":\"STRING\"") > 0);
+    }
+
+    /**
+     * Tests tracing requests with a header and by sampling.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testHeaderAndSampling() throws TilesException {
+        params.put(TraceRenderListener.SAMPLE_RATE_INIT_PARAM, "2");
+        params.put(TraceRenderListener.HEADER_INIT_PARAM, "X-Trace");
+        listener.init(params);
+        container.addRenderListener(listener);
+
+        RenderingContext request = new RenderingContext(new StringWriter());
+        request.getHeader().put("X-Trace", "1");
+        container.render("page", request);
+        assertNotNull("The request should be traced", TraceRenderListener
+                .getTrace(request));
+
+        int traced = 0;
+        for (int i = 0; i < 4; i++) {
+            request = new RenderingContext(new StringWriter());
+            container.render("page", request);
+            if (TraceRenderListener.getTrace(request) != null) {
+                traced++;
+            }
+        }
+        assertEquals("Incorrect number of sampled requests", 2, traced);
+    }
+
+    /**
+     * A request context whose templates render the attributes of the
+     * current definition, as a JSP page would.
+     */
+    private class RenderingContext extends
+            MockContainerSupport.RequestContext {
+
+        /**
+         * Constructor.
+         *
+         * @param out The output.
+         */
+        public RenderingContext(Writer out) {
+            super(null, out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dispatch(String path) throws IOException {
+            // Templates are included from now on, as in JSP pages.
+            TilesRequestState.getInstance(this).setForceInclude(true);
+            Writer out = getWriter();
+            out.write(path);
+            if ("/page.jsp".equals(path)) {
+                out.write(":");
+                try {
+                    container.render(container.getAttributeContext(this)
+                            .getAttribute("title"), out, this);
+                    container.render(container.getAttributeContext(this)
+                            .getAttribute("body"), out, this);
+                } catch (TilesException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected MockContainerSupport.RequestContext newContext(
+                Writer writer) {
+            return new RenderingContext(writer);
+        }
+    }
+}
@@ -20,6 +20,11 @@
  */
 package org.apache.tiles.preparer;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import junit.framework.TestCase;
 import org.apache.tiles.TilesException;
 
@@ -56,4 +61,62 @@ public class BasicPreparerFactoryTest extends TestCase {
         p = factory.getPreparer(name, null);
         assertNull(p);
     }
+
+    /**
+     * Tests the hit and miss counters.
+     *
+     * @throws TilesException If something goes wrong.
+     */
+    public void testCounters() throws TilesException {
+        String name = ViewPreparerSupport.class.getName();
+        ViewPreparer p = factory.getPreparer(name, null);
+        assertSame("The preparer has not been reused", p, factory.getPreparer(
+                name, null));
+        factory.getPreparer("org.doesnotexist.Class", null);
+        factory.getPreparer("org.doesnotexist.Class", null);
+        assertEquals("Incorrect misses", 2, factory.getMissCount());
+        assertEquals("Incorrect hits", 2, factory.getHitCount());
+    }
+
+    /**
+     * Tests that a preparer requested by many threads at the same time is
+     * created only once.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testConcurrentGetPreparer() throws Exception {
+        final String name = ViewPreparerSupport.class.getName();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] results = new Future<?>[32];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = executor.submit(new Callable<ViewPreparer>() {
+                    public ViewPreparer call() throws TilesException {
+                        return factory.getPreparer(name, null);
+                    }
+                });
+            }
+            Object first = results[0].get();
+            for (Future<?> result : results) {
+                assertSame("The preparer has been created twice", first,
+                        result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("Incorrect misses", 1, factory.getMissCount());
+        assertEquals("Incorrect hits", 31, factory.getHitCount());
+    }
+
+    /**
+     * Tests getting a preparer whose class is not a preparer.
+     */
+    public void testNotAPreparer() {
+        try {
+            factory.getPreparer(String.class.getName(), null);
+            fail("A string is not a preparer");
+        } catch (TilesException e) {
+            // success.
+        }
+    }
 }
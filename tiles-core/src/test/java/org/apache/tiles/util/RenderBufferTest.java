@@ -0,0 +1,79 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link RenderBuffer} and {@link RenderBufferPool}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RenderBufferTest extends TestCase {
+
+    /**
+     * Tests writing into a buffer.
+     *
+     * @throws IOException If something goes wrong.
+     */
+    public void testWrite() throws IOException {
+        RenderBuffer buffer = new RenderBuffer(4);
+        buffer.write("Hello");
+        buffer.write(',');
+        buffer.write(" world".toCharArray(), 0, 6);
+        buffer.append("!");
+        assertEquals("Incorrect content", "Hello, world!", buffer.toString());
+        assertEquals("Incorrect length", 13, buffer.length());
+        assertTrue("The buffer should have grown", buffer.capacity() >= 13);
+        StringWriter writer = new StringWriter();
+        buffer.writeTo(writer);
+        assertEquals("Incorrect written content", "Hello, world!", writer
+                .toString());
+        int capacity = buffer.capacity();
+        buffer.reset();
+        assertEquals("The buffer should be empty", "", buffer.toString());
+        assertEquals("The array should be kept", capacity, buffer.capacity());
+    }
+
+    /**
+     * Tests reusing buffers.
+     */
+    public void testPool() {
+        RenderBufferPool pool = new RenderBufferPool(1, 2048);
+        RenderBuffer first = pool.acquire();
+        RenderBuffer second = pool.acquire();
+        first.write("content");
+        pool.release(first);
+        pool.release(second);
+        assertEquals("Only one buffer should be pooled", 1, pool.size());
+        RenderBuffer reused = pool.acquire();
+        assertSame("The buffer should be reused", first, reused);
+        assertEquals("The buffer should be empty", 0, reused.length());
+        assertEquals("The pool should be empty", 0, pool.size());
+
+        RenderBuffer big = new RenderBuffer(4096);
+        pool.release(big);
+        assertEquals("Big buffers should not be pooled", 0, pool.size());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reads the number of bytes allocated by the current thread. It uses the
+ * <code>com.sun.management.ThreadMXBean</code> extension, through
+ * reflection, so it works only on virtual machines that support it.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public final class AllocationCounter {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(AllocationCounter.class);
+
+    /**
+     * The thread management bean.
+     */
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory
+            .getThreadMXBean();
+
+    /**
+     * The method that returns the bytes allocated by a thread, or
+     * <code>null</code> if it is not supported.
+     */
+    private static final Method ALLOCATED_BYTES_METHOD =
+        getAllocatedBytesMethod();
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private AllocationCounter() {
+    }
+
+    /**
+     * Indicates whether the allocated bytes can be read.
+     *
+     * @return <code>true</code> if {@link #getAllocatedBytes()} is supported.
+     */
+    public static boolean isSupported() {
+        return ALLOCATED_BYTES_METHOD != null;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread since it
+     * started.
+     *
+     * @return The allocated bytes, or <code>-1</code> if they cannot be read.
+     */
+    public static long getAllocatedBytes() {
+        if (ALLOCATED_BYTES_METHOD == null) {
+            return -1;
+        }
+        try {
+            return ((Long) ALLOCATED_BYTES_METHOD.invoke(THREAD_BEAN, Thread
+                    .currentThread().getId())).longValue();
+        } catch (Exception e) {
+            LOG.debug("Cannot read the allocated bytes", e);
+            return -1;
+        }
+    }
+
+    /**
+     * Finds the method that returns the bytes allocated by a thread, and
+     * enables the measure.
+     *
+     * @return The method, or <code>null</code> if it is not supported.
+     */
+    private static Method getAllocatedBytesMethod() {
+        try {
+            Class<?> beanClass = Class
+                    .forName("com.sun.management.ThreadMXBean");
+            if (!beanClass.isInstance(THREAD_BEAN)) {
+                return null;
+            }
+            Method supported = beanClass
+                    .getMethod("isThreadAllocatedMemorySupported");
+            if (!((Boolean) supported.invoke(THREAD_BEAN)).booleanValue()) {
+                return null;
+            }
+            beanClass.getMethod("setThreadAllocatedMemoryEnabled",
+                    boolean.class).invoke(THREAD_BEAN, Boolean.TRUE);
+            return beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Exception e) {
+            LOG.debug("The allocated bytes cannot be read", e);
+            return null;
+        }
+    }
+}
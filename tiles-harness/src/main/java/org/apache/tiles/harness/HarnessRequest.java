@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A request processed by the harness. It is the request item passed to the
+ * container, and it plays the role of the servlet request and response.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class HarnessRequest {
+
+    /**
+     * The locale of the request.
+     */
+    private Locale locale;
+
+    /**
+     * The roles of the user.
+     */
+    private Set<String> roles;
+
+    /**
+     * The request scope.
+     */
+    private Map<String, Object> requestScope;
+
+    /**
+     * The session scope.
+     */
+    private Map<String, Object> sessionScope;
+
+    /**
+     * The writer that receives the output.
+     */
+    private Writer writer;
+
+    /**
+     * Constructor.
+     *
+     * @param locale The locale of the request.
+     * @param roles The roles of the user, or <code>null</code> if the user
+     * has no role.
+     * @param sessionScope The session scope, shared by the requests of the
+     * same session.
+     * @param writer The writer that receives the output.
+     */
+    public HarnessRequest(Locale locale, Set<String> roles,
+            Map<String, Object> sessionScope, Writer writer) {
+        this.locale = locale;
+        this.roles = roles != null ? roles : Collections.<String>emptySet();
+        this.sessionScope = sessionScope;
+        this.writer = writer;
+        requestScope = new HashMap<String, Object>();
+    }
+
+    /**
+     * Creates a request that shares everything with another request, except
+     * the writer.
+     *
+     * @param request The original request.
+     * @param writer The writer that receives the output.
+     */
+    HarnessRequest(HarnessRequest request, Writer writer) {
+        locale = request.locale;
+        roles = request.roles;
+        requestScope = request.requestScope;
+        sessionScope = request.sessionScope;
+        this.writer = writer;
+    }
+
+    /**
+     * Returns the locale of the request.
+     *
+     * @return The locale.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Checks whether the user has a role.
+     *
+     * @param role The role.
+     * @return <code>true</code> if the user has the role.
+     */
+    public boolean isUserInRole(String role) {
+        return roles.contains(role);
+    }
+
+    /**
+     * Returns the request scope.
+     *
+     * @return The request scope.
+     */
+    public Map<String, Object> getRequestScope() {
+        return requestScope;
+    }
+
+    /**
+     * Returns the session scope.
+     *
+     * @return The session scope.
+     */
+    public Map<String, Object> getSessionScope() {
+        return sessionScope;
+    }
+
+    /**
+     * Returns the writer that receives the output.
+     *
+     * @return The writer.
+     */
+    public Writer getWriter() {
+        return writer;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tiles.TilesApplicationContext;
+
+/**
+ * An application context that keeps everything in memory. Resources are
+ * loaded from the class path, and templates are Java objects registered
+ * under the paths of the pages they replace.
+ * <p/>
+ * It has the <code>getInitParameter</code>,
+ * <code>getInitParameterNames</code> and <code>getAttribute</code> methods
+ * of a servlet context, so it can be passed to
+ * {@link org.apache.tiles.factory.TilesContainerFactory} and
+ * {@link org.apache.tiles.access.TilesAccess}.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class InMemoryTilesApplicationContext implements
+        TilesApplicationContext {
+
+    /**
+     * The application scope.
+     */
+    private Map<String, Object> applicationScope =
+        new ConcurrentHashMap<String, Object>();
+
+    /**
+     * The initialization parameters.
+     */
+    private Map<String, String> initParams;
+
+    /**
+     * The templates, mapped by path.
+     */
+    private Map<String, Template> templates =
+        new ConcurrentHashMap<String, Template>();
+
+    /**
+     * Constructor.
+     *
+     * @param initParams The initialization parameters.
+     */
+    public InMemoryTilesApplicationContext(Map<String, String> initParams) {
+        this.initParams = Collections.unmodifiableMap(
+                new HashMap<String, String>(initParams));
+    }
+
+    /**
+     * Registers a template.
+     *
+     * @param path The path of the template, as used in definitions.
+     * @param template The template.
+     */
+    public void registerTemplate(String path, Template template) {
+        templates.put(path, template);
+    }
+
+    /**
+     * Returns a registered template.
+     *
+     * @param path The path of the template.
+     * @return The template, or <code>null</code> if it has not been
+     * registered.
+     */
+    public Template getTemplate(String path) {
+        return templates.get(path);
+    }
+
+    /**
+     * Returns an initialization parameter.
+     *
+     * @param name The name of the parameter.
+     * @return The value of the parameter.
+     */
+    public String getInitParameter(String name) {
+        return initParams.get(name);
+    }
+
+    /**
+     * Returns the names of the initialization parameters.
+     *
+     * @return The names of the parameters.
+     */
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(initParams.keySet());
+    }
+
+    /**
+     * Returns an attribute of the application scope.
+     *
+     * @param name The name of the attribute.
+     * @return The attribute.
+     */
+    public Object getAttribute(String name) {
+        return applicationScope.get(name);
+    }
+
+    /**
+     * Sets an attribute of the application scope.
+     *
+     * @param name The name of the attribute.
+     * @param value The attribute.
+     */
+    public void setAttribute(String name, Object value) {
+        applicationScope.put(name, value);
+    }
+
+    /**
+     * Removes an attribute of the application scope.
+     *
+     * @param name The name of the attribute.
+     */
+    public void removeAttribute(String name) {
+        applicationScope.remove(name);
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, Object> getApplicationScope() {
+        return applicationScope;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getInitParams() {
+        return initParams;
+    }
+
+    /** {@inheritDoc} */
+    public URL getResource(String path) throws IOException {
+        return getClassLoader().getResource(toResourceName(path));
+    }
+
+    /** {@inheritDoc} */
+    public Set<URL> getResources(String path) throws IOException {
+        Set<URL> urls = new HashSet<URL>();
+        Enumeration<URL> resources = getClassLoader().getResources(
+                toResourceName(path));
+        while (resources.hasMoreElements()) {
+            urls.add(resources.nextElement());
+        }
+        return urls;
+    }
+
+    /**
+     * Converts a path, as used in a web application, to the name of a
+     * resource of the class path.
+     *
+     * @param path The path.
+     * @return The name of the resource.
+     */
+    private static String toResourceName(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    /**
+     * Returns the class loader used to load resources.
+     *
+     * @return The class loader.
+     */
+    private static ClassLoader getClassLoader() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) {
+            loader = InMemoryTilesApplicationContext.class.getClassLoader();
+        }
+        return loader;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.util.Map;
+
+import org.apache.tiles.TilesApplicationContext;
+import org.apache.tiles.context.TilesContextFactory;
+import org.apache.tiles.context.TilesRequestContext;
+
+/**
+ * Creates the contexts of the harness: the application context is the
+ * {@link InMemoryTilesApplicationContext} itself, and a new
+ * {@link InMemoryTilesRequestContext} is created for each
+ * {@link HarnessRequest}, as the servlet context factory does for servlet
+ * requests.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class InMemoryTilesContextFactory implements TilesContextFactory {
+
+    /** {@inheritDoc} */
+    public void init(Map<String, String> configurationParameters) {
+    }
+
+    /** {@inheritDoc} */
+    public TilesApplicationContext createApplicationContext(Object context) {
+        if (context instanceof InMemoryTilesApplicationContext) {
+            return (InMemoryTilesApplicationContext) context;
+        }
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    public TilesRequestContext createRequestContext(
+            TilesApplicationContext context, Object... requestItems) {
+        if (requestItems.length == 1
+                && requestItems[0] instanceof HarnessRequest
+                && context instanceof InMemoryTilesApplicationContext) {
+            return new InMemoryTilesRequestContext(
+                    (InMemoryTilesApplicationContext) context,
+                    (HarnessRequest) requestItems[0]);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tiles.TilesContainer;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.access.TilesAccess;
+import org.apache.tiles.context.CapturingTilesRequestContext;
+import org.apache.tiles.context.TilesRequestContext;
+import org.apache.tiles.util.TilesIOException;
+
+/**
+ * The request context of a {@link HarnessRequest}. Dispatching to a path,
+ * or including it, renders the {@link Template} registered under that path
+ * in the application context, as a servlet container would execute a JSP
+ * page.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class InMemoryTilesRequestContext implements
+        CapturingTilesRequestContext {
+
+    /**
+     * The application context.
+     */
+    private InMemoryTilesApplicationContext applicationContext;
+
+    /**
+     * The request.
+     */
+    private HarnessRequest request;
+
+    /**
+     * Constructor.
+     *
+     * @param applicationContext The application context.
+     * @param request The request.
+     */
+    public InMemoryTilesRequestContext(
+            InMemoryTilesApplicationContext applicationContext,
+            HarnessRequest request) {
+        this.applicationContext = applicationContext;
+        this.request = request;
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getHeader() {
+        return Collections.emptyMap();
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getHeaderValues() {
+        return Collections.emptyMap();
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, Object> getRequestScope() {
+        return request.getRequestScope();
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, Object> getSessionScope() {
+        return request.getSessionScope();
+    }
+
+    /** {@inheritDoc} */
+    public void dispatch(String path) throws IOException {
+        include(path);
+    }
+
+    /** {@inheritDoc} */
+    public void include(String path) throws IOException {
+        Template template = applicationContext.getTemplate(path);
+        if (template == null) {
+            throw new IOException("No template registered for '" + path
+                    + "'");
+        }
+        TilesContainer container = TilesAccess
+                .getContainer(applicationContext);
+        try {
+            template.render(new TemplateContext(container, request));
+        } catch (TilesException e) {
+            throw new TilesIOException("Error rendering '" + path + "'", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String> getParam() {
+        return Collections.emptyMap();
+    }
+
+    /** {@inheritDoc} */
+    public Map<String, String[]> getParamValues() {
+        return Collections.emptyMap();
+    }
+
+    /** {@inheritDoc} */
+    public Locale getRequestLocale() {
+        return request.getLocale();
+    }
+
+    /** {@inheritDoc} */
+    public boolean isUserInRole(String role) {
+        return request.isUserInRole(role);
+    }
+
+    /** {@inheritDoc} */
+    public Object getRequest() {
+        return request;
+    }
+
+    /** {@inheritDoc} */
+    public Object getResponse() {
+        return request;
+    }
+
+    /** {@inheritDoc} */
+    public Writer getWriter() {
+        return request.getWriter();
+    }
+
+    /** {@inheritDoc} */
+    public TilesRequestContext createCapturingContext(Writer writer) {
+        return new InMemoryTilesRequestContext(applicationContext,
+                new HarnessRequest(request, writer));
+    }
+}
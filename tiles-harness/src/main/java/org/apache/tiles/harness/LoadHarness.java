@@ -0,0 +1,425 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tiles.TilesContainer;
+import org.apache.tiles.TilesException;
+import org.apache.tiles.access.TilesAccess;
+import org.apache.tiles.factory.TilesContainerFactory;
+import org.apache.tiles.impl.BasicTilesContainer;
+import org.apache.tiles.listener.LatencyHistogram;
+
+/**
+ * Renders pages from many threads at the same time, without a servlet
+ * container, and reports the throughput, the latency percentiles and the
+ * allocation per request.
+ * <p/>
+ * The container is created by {@link TilesContainerFactory} with the
+ * factories configured in the application context, so the definitions
+ * factory, the preparer factory and the attribute context stack are the
+ * ones used in production. Each thread plays a user with its own session,
+ * and every request is a new {@link HarnessRequest}.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LoadHarness {
+
+    /**
+     * The logging object.
+     */
+    private static final Log LOG = LogFactory.getLog(LoadHarness.class);
+
+    /**
+     * The container.
+     */
+    private TilesContainer container;
+
+    /**
+     * The number of threads.
+     */
+    private int threads = 8;
+
+    /**
+     * The number of requests rendered by each thread.
+     */
+    private int requestsPerThread = 10000;
+
+    /**
+     * The number of requests rendered by each thread before measuring.
+     */
+    private int warmupRequestsPerThread = 1000;
+
+    /**
+     * The names of the definitions to render, in turn.
+     */
+    private String[] pages = ReferenceTemplates.PAGES;
+
+    /**
+     * The locales of the requests, in turn.
+     */
+    private Locale[] locales = {Locale.ENGLISH, Locale.FRENCH};
+
+    /**
+     * The roles of the users.
+     */
+    private Set<String> roles = Collections.emptySet();
+
+    /**
+     * Constructor. The container is created and published in the
+     * application context.
+     *
+     * @param applicationContext The application context.
+     * @throws TilesException If the container cannot be created.
+     */
+    public LoadHarness(InMemoryTilesApplicationContext applicationContext)
+            throws TilesException {
+        container = TilesContainerFactory.getFactory(applicationContext)
+                .createContainer(applicationContext);
+        TilesAccess.setContainer(applicationContext, container);
+    }
+
+    /**
+     * Creates an application context with the reference definitions and
+     * templates.
+     *
+     * @param initParams Additional initialization parameters, for example to
+     * change the factories or to enable render listeners.
+     * @return The application context.
+     */
+    public static InMemoryTilesApplicationContext createReferenceContext(
+            Map<String, String> initParams) {
+        Map<String, String> params = new HashMap<String, String>();
+        params.put(BasicTilesContainer.DEFINITIONS_CONFIG,
+                ReferenceTemplates.DEFINITIONS_PATH);
+        params.put(TilesContainerFactory.CONTEXT_FACTORY_INIT_PARAM,
+                InMemoryTilesContextFactory.class.getName());
+        params.putAll(initParams);
+        InMemoryTilesApplicationContext context =
+            new InMemoryTilesApplicationContext(params);
+        ReferenceTemplates.register(context);
+        return context;
+    }
+
+    /**
+     * Returns the container.
+     *
+     * @return The container.
+     */
+    public TilesContainer getContainer() {
+        return container;
+    }
+
+    /**
+     * Sets the number of threads.
+     *
+     * @param threads The number of threads.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of requests rendered by each thread.
+     *
+     * @param requestsPerThread The number of requests.
+     */
+    public void setRequestsPerThread(int requestsPerThread) {
+        this.requestsPerThread = requestsPerThread;
+    }
+
+    /**
+     * Sets the number of requests rendered by each thread before measuring.
+     *
+     * @param warmupRequestsPerThread The number of requests.
+     */
+    public void setWarmupRequestsPerThread(int warmupRequestsPerThread) {
+        this.warmupRequestsPerThread = warmupRequestsPerThread;
+    }
+
+    /**
+     * Sets the names of the definitions to render, in turn.
+     *
+     * @param pages The names of the definitions.
+     */
+    public void setPages(String... pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Sets the locales of the requests, in turn.
+     *
+     * @param locales The locales.
+     */
+    public void setLocales(Locale... locales) {
+        this.locales = locales;
+    }
+
+    /**
+     * Sets the roles of the users.
+     *
+     * @param roles The roles.
+     */
+    public void setRoles(Set<String> roles) {
+        this.roles = roles;
+    }
+
+    /**
+     * Renders a single page, in the first locale.
+     *
+     * @param page The name of the definition to render.
+     * @return The output.
+     * @throws TilesException If the page cannot be rendered.
+     */
+    public String render(String page) throws TilesException {
+        StringWriter writer = new StringWriter();
+        container.render(page, new HarnessRequest(locales[0], roles,
+                new HashMap<String, Object>(), writer));
+        return writer.toString();
+    }
+
+    /**
+     * Warms up, then renders the pages from all the threads and measures.
+     *
+     * @return The report of the measured requests.
+     * @throws InterruptedException If the thread is interrupted while
+     * waiting for the others.
+     */
+    public LoadReport run() throws InterruptedException {
+        if (warmupRequestsPerThread > 0) {
+            runPass(warmupRequestsPerThread);
+        }
+        return runPass(requestsPerThread);
+    }
+
+    /**
+     * Renders the pages from all the threads.
+     *
+     * @param requests The number of requests rendered by each thread.
+     * @return The report.
+     * @throws InterruptedException If the thread is interrupted while
+     * waiting for the others.
+     */
+    private LoadReport runPass(int requests) throws InterruptedException {
+        PassState state = new PassState(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Worker(i, requests, state),
+                    "tiles-harness-" + i);
+            thread.start();
+        }
+        long startTime = System.nanoTime();
+        state.start.countDown();
+        state.done.await();
+        long elapsedTime = System.nanoTime() - startTime;
+        return new LoadReport(threads, (long) threads * requests,
+                state.errors.get(), elapsedTime, state.latencies,
+                state.allocationKnown.get() ? state.allocatedBytes.get() : -1,
+                state.writtenChars.get());
+    }
+
+    /**
+     * The state of a pass, shared by its threads.
+     */
+    private static class PassState {
+
+        /**
+         * Starts the threads together.
+         */
+        private CountDownLatch start = new CountDownLatch(1);
+
+        /**
+         * Counts the threads that have finished.
+         */
+        private CountDownLatch done;
+
+        /**
+         * The latencies of the requests.
+         */
+        private LatencyHistogram latencies = new LatencyHistogram();
+
+        /**
+         * The number of failed requests.
+         */
+        private AtomicLong errors = new AtomicLong();
+
+        /**
+         * The bytes allocated by the threads.
+         */
+        private AtomicLong allocatedBytes = new AtomicLong();
+
+        /**
+         * Whether the allocated bytes have been measured by all the threads.
+         */
+        private AtomicBoolean allocationKnown = new AtomicBoolean(
+                AllocationCounter.isSupported());
+
+        /**
+         * The number of written characters.
+         */
+        private AtomicLong writtenChars = new AtomicLong();
+
+        /**
+         * Whether an error has been logged.
+         */
+        private AtomicBoolean errorLogged = new AtomicBoolean();
+
+        /**
+         * Constructor.
+         *
+         * @param threads The number of threads.
+         */
+        public PassState(int threads) {
+            done = new CountDownLatch(threads);
+        }
+    }
+
+    /**
+     * Renders requests in a thread.
+     */
+    private class Worker implements Runnable {
+
+        /**
+         * The index of the thread.
+         */
+        private int index;
+
+        /**
+         * The number of requests to render.
+         */
+        private int requests;
+
+        /**
+         * The state of the pass.
+         */
+        private PassState state;
+
+        /**
+         * Constructor.
+         *
+         * @param index The index of the thread.
+         * @param requests The number of requests to render.
+         * @param state The state of the pass.
+         */
+        public Worker(int index, int requests, PassState state) {
+            this.index = index;
+            this.requests = requests;
+            this.state = state;
+        }
+
+        /** {@inheritDoc} */
+        public void run() {
+            try {
+                state.start.await();
+                Map<String, Object> sessionScope =
+                    new HashMap<String, Object>();
+                StringWriter writer = new StringWriter();
+                long writtenChars = 0;
+                long allocatedBefore = AllocationCounter.getAllocatedBytes();
+                for (int i = 0; i < requests; i++) {
+                    String page = pages[(index + i) % pages.length];
+                    Locale locale = locales[(index + i) % locales.length];
+                    writer.getBuffer().setLength(0);
+                    long startTime = System.nanoTime();
+                    try {
+                        container.render(page, new HarnessRequest(locale,
+                                roles, sessionScope, writer));
+                    } catch (Exception e) {
+                        state.errors.incrementAndGet();
+                        if (state.errorLogged.compareAndSet(false, true)) {
+                            LOG.warn("Cannot render '" + page + "'", e);
+                        }
+                    }
+                    state.latencies.record(System.nanoTime() - startTime);
+                    writtenChars += writer.getBuffer().length();
+                }
+                long allocatedAfter = AllocationCounter.getAllocatedBytes();
+                if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                    state.allocatedBytes.addAndGet(allocatedAfter
+                            - allocatedBefore);
+                } else {
+                    state.allocationKnown.set(false);
+                }
+                state.writtenChars.addAndGet(writtenChars);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                state.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Runs the harness with the reference definitions and prints the report.
+     * <p/>
+     * Usage: <code>LoadHarness [-threads &lt;n&gt;] [-requests &lt;n&gt;]
+     * [-warmup &lt;n&gt;] [-pages &lt;name,...&gt;]
+     * [-locales &lt;locale,...&gt;] [-roles &lt;role,...&gt;]</code>
+     *
+     * @param args The arguments.
+     * @throws Exception If something goes wrong.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness(
+                createReferenceContext(new HashMap<String, String>()));
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if ("-threads".equals(args[i])) {
+                harness.setThreads(Integer.parseInt(value));
+            } else if ("-requests".equals(args[i])) {
+                harness.setRequestsPerThread(Integer.parseInt(value));
+            } else if ("-warmup".equals(args[i])) {
+                harness.setWarmupRequestsPerThread(Integer.parseInt(value));
+            } else if ("-pages".equals(args[i])) {
+                harness.setPages(value.split(","));
+            } else if ("-locales".equals(args[i])) {
+                String[] names = value.split(",");
+                Locale[] locales = new Locale[names.length];
+                for (int j = 0; j < names.length; j++) {
+                    String[] parts = names[j].split("_", 2);
+                    locales[j] = parts.length == 1 ? new Locale(parts[0])
+                            : new Locale(parts[0], parts[1]);
+                }
+                harness.setLocales(locales);
+            } else if ("-roles".equals(args[i])) {
+                harness.setRoles(new HashSet<String>(Arrays
+                        .asList(value.split(","))));
+            } else {
+                System.err.println("Unknown option: " + args[i]);
+                System.exit(1);
+            }
+        }
+        System.out.println(harness.run());
+    }
+}
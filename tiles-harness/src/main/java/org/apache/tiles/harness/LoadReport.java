@@ -0,0 +1,208 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import org.apache.tiles.listener.LatencyHistogram;
+
+/**
+ * The results of a run of {@link LoadHarness}.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class LoadReport {
+
+    /**
+     * The number of threads.
+     */
+    private int threads;
+
+    /**
+     * The number of rendered requests, including the failed ones.
+     */
+    private long requests;
+
+    /**
+     * The number of failed requests.
+     */
+    private long errors;
+
+    /**
+     * The duration of the run, in nanoseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * The latencies of the requests.
+     */
+    private LatencyHistogram latencies;
+
+    /**
+     * The bytes allocated by all the threads, or <code>-1</code> if they are
+     * not known.
+     */
+    private long allocatedBytes;
+
+    /**
+     * The number of characters written by all the requests.
+     */
+    private long writtenChars;
+
+    /**
+     * Constructor.
+     *
+     * @param threads The number of threads.
+     * @param requests The number of rendered requests, including the failed
+     * ones.
+     * @param errors The number of failed requests.
+     * @param elapsedTime The duration of the run, in nanoseconds.
+     * @param latencies The latencies of the requests.
+     * @param allocatedBytes The bytes allocated by all the threads, or
+     * <code>-1</code> if they are not known.
+     * @param writtenChars The number of characters written by all the
+     * requests.
+     */
+    public LoadReport(int threads, long requests, long errors,
+            long elapsedTime, LatencyHistogram latencies, long allocatedBytes,
+            long writtenChars) {
+        this.threads = threads;
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedTime = elapsedTime;
+        this.latencies = latencies;
+        this.allocatedBytes = allocatedBytes;
+        this.writtenChars = writtenChars;
+    }
+
+    /**
+     * Returns the number of threads.
+     *
+     * @return The number of threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Returns the number of rendered requests, including the failed ones.
+     *
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     *
+     * @return The number of failed requests.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the duration of the run.
+     *
+     * @return The duration, in nanoseconds.
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Returns the number of requests rendered per second.
+     *
+     * @return The throughput.
+     */
+    public double getThroughput() {
+        return elapsedTime > 0 ? requests * 1e9 / elapsedTime : 0;
+    }
+
+    /**
+     * Returns a percentile of the latencies of the requests.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return The percentile, in microseconds.
+     * @see LatencyHistogram#getPercentile(double)
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    /**
+     * Returns the maximum latency of the requests.
+     *
+     * @return The maximum latency, in microseconds.
+     */
+    public long getMaxLatency() {
+        return latencies.getMax();
+    }
+
+    /**
+     * Returns the average number of bytes allocated by a request.
+     *
+     * @return The allocated bytes, or <code>-1</code> if they are not known.
+     */
+    public long getAllocatedBytesPerRequest() {
+        if (allocatedBytes < 0 || requests == 0) {
+            return -1;
+        }
+        return allocatedBytes / requests;
+    }
+
+    /**
+     * Returns the average number of characters written by a request.
+     *
+     * @return The written characters.
+     */
+    public long getWrittenCharsPerRequest() {
+        return requests > 0 ? writtenChars / requests : 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Threads:              ").append(threads).append('\n');
+        builder.append("Requests:             ").append(requests).append('\n');
+        builder.append("Errors:               ").append(errors).append('\n');
+        builder.append("Elapsed time (ms):    ").append(elapsedTime / 1000000)
+                .append('\n');
+        builder.append("Throughput (req/s):   ").append(
+                Math.round(getThroughput())).append('\n');
+        builder.append("Latency p50 (us):     ").append(
+                getLatencyPercentile(50)).append('\n');
+        builder.append("Latency p90 (us):     ").append(
+                getLatencyPercentile(90)).append('\n');
+        builder.append("Latency p99 (us):     ").append(
+                getLatencyPercentile(99)).append('\n');
+        builder.append("Latency max (us):     ").append(getMaxLatency())
+                .append('\n');
+        long allocated = getAllocatedBytesPerRequest();
+        builder.append("Allocated (B/req):    ").append(
+                allocated >= 0 ? String.valueOf(allocated) : "unknown")
+                .append('\n');
+        builder.append("Output (chars/req):   ").append(
+                getWrittenCharsPerRequest()).append('\n');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.TilesException;
+
+/**
+ * The templates of the reference definitions, contained in
+ * <code>harness-defs.xml</code>. They do what the JSP pages of the test web
+ * application do with the Tiles tags.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public final class ReferenceTemplates {
+
+    /**
+     * The path of the reference definitions, as a class path resource.
+     */
+    public static final String DEFINITIONS_PATH =
+        "/org/apache/tiles/harness/harness-defs.xml";
+
+    /**
+     * The names of the reference definitions that are complete pages.
+     */
+    public static final String[] PAGES = {"harness.home",
+            "harness.composite", "harness.preparer", "harness.nested"};
+
+    /**
+     * Private constructor to avoid instantiation.
+     */
+    private ReferenceTemplates() {
+    }
+
+    /**
+     * Registers the templates into an application context.
+     *
+     * @param context The application context.
+     */
+    public static void register(InMemoryTilesApplicationContext context) {
+        context.registerTemplate("/layout.jsp", new LayoutTemplate());
+        context.registerTemplate("/menu.jsp", new MenuTemplate());
+        context.registerTemplate("/inner.jsp", new InnerTemplate());
+        context.registerTemplate("/nested.jsp", new NestedTemplate());
+        context.registerTemplate("/header.jsp", new StaticTemplate(
+                "<h2 class=\"header\">This is a header</h2>"));
+        context.registerTemplate("/body.jsp", new StaticTemplate(
+                "<p>This is a body.</p>"));
+        context.registerTemplate("/admin.jsp", new StaticTemplate(
+                "<p>Administration</p>"));
+        context.registerTemplate("/footer.jsp", new StaticTemplate(
+                "<p class=\"footer\">This is a footer</p>"));
+    }
+
+    /**
+     * A template that writes a fixed string.
+     */
+    private static class StaticTemplate implements Template {
+
+        /**
+         * The content of the template.
+         */
+        private String content;
+
+        /**
+         * Constructor.
+         *
+         * @param content The content of the template.
+         */
+        public StaticTemplate(String content) {
+            this.content = content;
+        }
+
+        /** {@inheritDoc} */
+        public void render(TemplateContext context) throws IOException {
+            context.write(content);
+        }
+    }
+
+    /**
+     * The layout of the pages, as <code>layout.jsp</code>.
+     */
+    private static class LayoutTemplate implements Template {
+
+        /** {@inheritDoc} */
+        public void render(TemplateContext context) throws TilesException,
+                IOException {
+            context.write("<table border=\"2\" width=\"300\">\n");
+            context.write("<tr><td><strong>");
+            context.getAsString("title");
+            context.write("</strong></td></tr>\n<tr><td>");
+            context.insertAttribute("header");
+            context.write("</td></tr>\n<tr><td>");
+            context.insertAttribute("menu");
+            context.write("</td></tr>\n<tr><td>");
+            context.insertAttribute("body");
+            context.write("</td></tr>\n<tr><td>");
+            context.insertAttribute("admin");
+            context.write("</td></tr>\n<tr><td>");
+            context.insertAttribute("footer");
+            context.write("</td></tr>\n</table>\n");
+        }
+    }
+
+    /**
+     * A menu, that iterates over a list attribute.
+     */
+    private static class MenuTemplate implements Template {
+
+        /** {@inheritDoc} */
+        public void render(TemplateContext context) throws TilesException,
+                IOException {
+            List<?> items = (List<?>) context.getAttribute("items").getValue();
+            context.write("<ul>\n");
+            for (Object item : items) {
+                context.write("<li>");
+                context.write(((Attribute) item).getValue().toString());
+                context.write("</li>\n");
+            }
+            context.write("</ul>\n");
+        }
+    }
+
+    /**
+     * An inner page, that imports its title, as
+     * <code>testimportattribute.jsp</code>.
+     */
+    private static class InnerTemplate implements Template {
+
+        /** {@inheritDoc} */
+        public void render(TemplateContext context) throws TilesException,
+                IOException {
+            context.write("<div><h3>");
+            context.write(context.importAttribute("title").toString());
+            context.write("</h3>");
+            context.insertAttribute("body");
+            context.write("</div>\n");
+        }
+    }
+
+    /**
+     * A page that inserts a definition, as
+     * <code>testinsertdefinition.jsp</code>.
+     */
+    private static class NestedTemplate implements Template {
+
+        /** {@inheritDoc} */
+        public void render(TemplateContext context) throws TilesException {
+            context.insertDefinition("harness.inner");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.IOException;
+
+import org.apache.tiles.TilesException;
+
+/**
+ * A template written in Java, that takes the place of a JSP page in the
+ * harness. It is executed when its path is dispatched to or included.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public interface Template {
+
+    /**
+     * Renders the template.
+     *
+     * @param context The context of the rendering, that gives access to the
+     * operations of the Tiles tags.
+     * @throws TilesException If something goes wrong during rendering.
+     * @throws IOException If the output cannot be written.
+     */
+    void render(TemplateContext context) throws TilesException, IOException;
+}
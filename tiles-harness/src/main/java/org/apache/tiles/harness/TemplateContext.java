@@ -0,0 +1,158 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.tiles.Attribute;
+import org.apache.tiles.AttributeContext;
+import org.apache.tiles.TilesContainer;
+import org.apache.tiles.TilesException;
+
+/**
+ * The context in which a {@link Template} is rendered. Its methods call the
+ * container as the Tiles JSP tags do, so a template makes the same calls as
+ * the page it replaces.
+ *
+ * @version $Rev$ $Date$
+ * @since 2.0.8
+ */
+public class TemplateContext {
+
+    /**
+     * The container.
+     */
+    private TilesContainer container;
+
+    /**
+     * The request.
+     */
+    private HarnessRequest request;
+
+    /**
+     * Constructor.
+     *
+     * @param container The container.
+     * @param request The request.
+     */
+    public TemplateContext(TilesContainer container, HarnessRequest request) {
+        this.container = container;
+        this.request = request;
+    }
+
+    /**
+     * Returns the request.
+     *
+     * @return The request.
+     */
+    public HarnessRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Writes a string to the output.
+     *
+     * @param value The string to write.
+     * @throws IOException If the output cannot be written.
+     */
+    public void write(String value) throws IOException {
+        request.getWriter().write(value);
+    }
+
+    /**
+     * Returns an attribute of the current attribute context.
+     *
+     * @param name The name of the attribute.
+     * @return The attribute.
+     * @throws TilesException If the attribute is not found.
+     */
+    public Attribute getAttribute(String name) throws TilesException {
+        AttributeContext attributeContext = container
+                .getAttributeContext(request);
+        Attribute attribute = attributeContext.getAttribute(name);
+        if (attribute == null) {
+            throw new TilesException("Attribute '" + name + "' not found.");
+        }
+        return attribute;
+    }
+
+    /**
+     * Writes the value of an attribute, as
+     * <code>&lt;tiles:getAsString&gt;</code> does.
+     *
+     * @param name The name of the attribute.
+     * @throws TilesException If the attribute is not found.
+     * @throws IOException If the output cannot be written.
+     */
+    public void getAsString(String name) throws TilesException, IOException {
+        write(getAttribute(name).getValue().toString());
+    }
+
+    /**
+     * Renders an attribute, as <code>&lt;tiles:insertAttribute&gt;</code>
+     * does.
+     *
+     * @param name The name of the attribute.
+     * @throws TilesException If the attribute cannot be rendered.
+     * @throws IOException If the output cannot be written.
+     */
+    public void insertAttribute(String name) throws TilesException,
+            IOException {
+        Attribute attribute = getAttribute(name);
+        container.startContext(request);
+        try {
+            container.render(attribute, request.getWriter(), request);
+        } finally {
+            container.endContext(request);
+        }
+    }
+
+    /**
+     * Renders a definition, as <code>&lt;tiles:insertDefinition&gt;</code>
+     * does.
+     *
+     * @param name The name of the definition.
+     * @throws TilesException If the definition cannot be rendered.
+     */
+    public void insertDefinition(String name) throws TilesException {
+        container.startContext(request);
+        try {
+            container.render(name, request);
+        } finally {
+            container.endContext(request);
+        }
+    }
+
+    /**
+     * Copies the value of an attribute into the request scope, as
+     * <code>&lt;tiles:importAttribute scope="request"&gt;</code> does.
+     *
+     * @param name The name of the attribute.
+     * @return The value of the attribute.
+     * @throws TilesException If the attribute is not found.
+     */
+    public Object importAttribute(String name) throws TilesException {
+        Object value = getAttribute(name).getValue();
+        request.getRequestScope().put(name, value);
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * $Id$
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tiles.harness;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link LoadHarness} with the reference definitions.
+ *
+ * @version $Rev$ $Date$
+ */
+public class LoadHarnessTest extends TestCase {
+
+    /**
+     * The harness.
+     */
+    private LoadHarness harness;
+
+    /** {@inheritDoc} */
+    @Override
+    protected void setUp() throws Exception {
+        harness = new LoadHarness(LoadHarness
+                .createReferenceContext(new HashMap<String, String>()));
+    }
+
+    /**
+     * Tests rendering the reference pages.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRender() throws Exception {
+        String output = harness.render("harness.composite");
+        assertTrue("The title has not been rendered", output
+                .contains("This is a composite definition."));
+        assertTrue("The menu has not been rendered", output
+                .contains("<li>Products</li>"));
+        assertTrue("The inner definition has not been rendered", output
+                .contains("<h3>This is an inner definition.</h3>"));
+        assertFalse("The admin attribute should not be rendered", output
+                .contains("Administration"));
+
+        assertTrue("The preparer has not been called", harness.render(
+                "harness.preparer").contains(
+                "This is the value added by the ViewPreparer"));
+        assertTrue("The nested definition has not been rendered", harness
+                .render("harness.nested").contains(
+                        "<h3>This is an inner definition.</h3>"));
+
+        harness.setRoles(Collections.singleton("admin"));
+        harness.setLocales(Locale.FRENCH);
+        output = harness.render("harness.home");
+        assertTrue("The admin attribute has not been rendered", output
+                .contains("Administration"));
+        assertTrue("The French title has not been rendered", output
+                .contains("Accueil"));
+    }
+
+    /**
+     * Tests a run from many threads.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    public void testRun() throws Exception {
+        harness.setThreads(4);
+        harness.setRequestsPerThread(50);
+        harness.setWarmupRequestsPerThread(10);
+        harness.setRoles(new HashSet<String>());
+        LoadReport report = harness.run();
+        assertEquals("Incorrect request count", 200, report.getRequests());
+        assertEquals("There should be no errors", 0, report.getErrors());
+        assertTrue("The latencies have not been recorded", report
+                .getMaxLatency() >= report.getLatencyPercentile(50));
+        assertTrue("The output has not been counted", report
+                .getWrittenCharsPerRequest() > 0);
+    }
+}
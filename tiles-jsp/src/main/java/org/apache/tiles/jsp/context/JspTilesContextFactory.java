@@ -32,11 +32,22 @@ import java.util.Map;
 
 /**
  * Creates an instance of the appropriate TilesApplicationContext implementation.
+ * <p/>
+ * The request context created for a page context is stored in its page scope,
+ * so that all the tags of a page share it.
  *
  * @version $Rev$ $Date$
  */
 public class JspTilesContextFactory implements TilesContextFactory {
 
+    /**
+     * Name of the page-scoped attribute that contains the request context.
+     *
+     * @since 2.0.8
+     */
+    public static final String REQUEST_CONTEXT_ATTRIBUTE_NAME =
+        "org.apache.tiles.jsp.context.JspTilesContextFactory.REQUEST_CONTEXT";
+
     /** {@inheritDoc} */
     public void init(Map<String, String> configParameters) {
     }
@@ -57,7 +68,16 @@ public class JspTilesContextFactory implements TilesContextFactory {
         if (requestItems.length == 1) {
             ServletContext servletContext = getServletContext(context);
             if (servletContext != null) {
-                return new JspTilesRequestContext(servletContext, (PageContext) requestItems[0]);
+                PageContext pageContext = (PageContext) requestItems[0];
+                TilesRequestContext retValue = (TilesRequestContext) pageContext
+                        .getAttribute(REQUEST_CONTEXT_ATTRIBUTE_NAME);
+                if (retValue == null) {
+                    retValue = new JspTilesRequestContext(servletContext,
+                            pageContext);
+                    pageContext.setAttribute(REQUEST_CONTEXT_ATTRIBUTE_NAME,
+                            retValue);
+                }
+                return retValue;
             }
         }
 
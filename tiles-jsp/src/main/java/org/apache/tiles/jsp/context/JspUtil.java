@@ -22,6 +22,7 @@ package org.apache.tiles.jsp.context;
 
 import org.apache.tiles.servlet.context.ServletUtil;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.jsp.PageContext;
 
 /**
@@ -45,10 +46,8 @@ public final class JspUtil {
      * @since 2.0.6
      */
     public static boolean isForceInclude(PageContext context) {
-        Boolean retValue = (Boolean) context.getAttribute(
-                ServletUtil.FORCE_INCLUDE_ATTRIBUTE_NAME,
-                PageContext.REQUEST_SCOPE);
-        return retValue != null && retValue.booleanValue();
+        return ServletUtil.isForceInclude((HttpServletRequest) context
+                .getRequest());
     }
 
     /**
@@ -60,9 +59,7 @@ public final class JspUtil {
      * @since 2.0.6
      */
     public static void setForceInclude(PageContext context, boolean forceInclude) {
-        Boolean retValue = Boolean.valueOf(forceInclude);
-        context.setAttribute(
-                ServletUtil.FORCE_INCLUDE_ATTRIBUTE_NAME,
-                retValue, PageContext.REQUEST_SCOPE);
+        ServletUtil.setForceInclude((HttpServletRequest) context.getRequest(),
+                forceInclude);
     }
 }
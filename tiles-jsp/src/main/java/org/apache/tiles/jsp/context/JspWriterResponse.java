@@ -22,6 +22,7 @@ package org.apache.tiles.jsp.context;
 
 import javax.servlet.http.HttpServletResponseWrapper;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.jsp.JspWriter;
 import javax.servlet.jsp.PageContext;
 import java.io.PrintWriter;
 import java.io.IOException;
@@ -45,6 +46,11 @@ public class JspWriterResponse extends HttpServletResponseWrapper {
      */
     private PrintWriter writer;
 
+    /**
+     * The JSP writer wrapped by {@link #writer}.
+     */
+    private JspWriter out;
+
     /**
      * Constructor.
      *
@@ -56,10 +62,20 @@ public class JspWriterResponse extends HttpServletResponseWrapper {
     }
 
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned writer wraps the current JSP writer of the page context,
+     * that changes when a body tag is processed.
+     */
     public PrintWriter getWriter() throws IOException {
-        if (writer == null) {
-            writer = new PrintWriter(context.getOut());
+        JspWriter currentOut = context.getOut();
+        if (writer == null || out != currentOut) {
+            if (writer != null) {
+                writer.flush();
+            }
+            out = currentOut;
+            writer = new PrintWriter(currentOut);
         }
         return writer;
     }
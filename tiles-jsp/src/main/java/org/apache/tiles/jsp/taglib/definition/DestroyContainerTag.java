@@ -20,8 +20,10 @@
  */
 package org.apache.tiles.jsp.taglib.definition;
 
+import org.apache.tiles.TilesContainer;
 import org.apache.tiles.TilesException;
 import org.apache.tiles.access.TilesAccess;
+import org.apache.tiles.impl.BasicTilesContainer;
 import org.apache.tiles.jsp.taglib.TilesTag;
 
 import javax.servlet.jsp.JspException;
@@ -36,11 +38,16 @@ public class DestroyContainerTag extends TilesTag {
     /** {@inheritDoc} */
     @Override
     public int doEndTag() throws JspException {
+        TilesContainer container = TilesAccess.getContainer(pageContext
+                .getServletContext());
         try {
             TilesAccess.setContainer(pageContext.getServletContext(), null);
         } catch (TilesException e) {
             throw new JspException(e);
         }
+        if (container instanceof BasicTilesContainer) {
+            ((BasicTilesContainer) container).destroy();
+        }
         return EVAL_PAGE;
     }
 }